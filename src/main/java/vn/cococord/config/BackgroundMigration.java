@@ -0,0 +1,143 @@
+package vn.cococord.config;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.entity.mongodb.Message;
+
+/**
+ * Base of the one-off data migrations. The work runs on a background thread once
+ * the application is ready; when it finishes, a document named after the migration
+ * is written to the migrations collection and later starts skip it after that one
+ * lookup. A run that was stopped or failed starts over on the next start, so every
+ * batch must be safe to apply twice.
+ */
+@Slf4j
+@SuppressWarnings("null")
+public abstract class BackgroundMigration {
+
+    private static final String COLLECTION = "migrations";
+    private static final int DUPLICATE_KEY = 11000;
+
+    protected final MongoTemplate mongoTemplate;
+    private final String name;
+
+    @Value("${app.chat.migration.batch-size:500}")
+    private int batchSize;
+
+    private volatile boolean complete;
+    private volatile Thread worker;
+
+    protected BackgroundMigration(MongoTemplate mongoTemplate, String name) {
+        this.mongoTemplate = mongoTemplate;
+        this.name = name;
+    }
+
+    protected abstract boolean isEnabled();
+
+    /**
+     * Does the work on the migration thread
+     *
+     * @return Number of documents migrated, for the log
+     */
+    protected abstract int migrate();
+
+    /**
+     * True once the migration has finished on this or an earlier run
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (isEnabled()) {
+            worker = Thread.ofVirtual().name(name).start(this::run);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread current = worker;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            if (mongoTemplate.exists(Query.query(Criteria.where("_id").is(name)), COLLECTION)) {
+                complete = true;
+                return;
+            }
+            int migrated = migrate();
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            mongoTemplate.save(new Document("_id", name).append("migrated", migrated)
+                    .append("completedAt", new Date()), COLLECTION);
+            complete = true;
+            log.info("Migration {} finished: {} document(s)", name, migrated);
+        } catch (Exception e) {
+            log.error("Migration {} stopped, it is resumed on the next start: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Pages through the messages matching pending in _id order, batch-size at a
+     * time, projected to fields. Stops when none are left or the thread is
+     * interrupted.
+     *
+     * @return Number of messages passed to migrateBatch
+     */
+    protected int forEachBatch(Criteria pending, List<String> fields, Consumer<List<Message>> migrateBatch) {
+        int migrated = 0;
+        String lastId = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            Criteria criteria = lastId != null ? new Criteria().andOperator(pending, Criteria.where("_id").gt(lastId))
+                    : pending;
+            Query query = Query.query(criteria).with(Sort.by("_id")).limit(batchSize);
+            fields.forEach(query.fields()::include);
+
+            List<Message> batch = mongoTemplate.find(query, Message.class);
+            if (batch.isEmpty()) {
+                break;
+            }
+            migrateBatch.accept(batch);
+            migrated += batch.size();
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+        return migrated;
+    }
+
+    /**
+     * One unordered bulk insert; documents already written by an earlier run hit
+     * their unique index and are skipped.
+     */
+    protected void insertIgnoringDuplicates(List<?> documents, Class<?> type) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        try {
+            mongoTemplate.bulkOps(BulkMode.UNORDERED, type).insert(documents).execute();
+        } catch (BulkOperationException e) {
+            if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package vn.cococord.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Carries committed changes of node-local caches between nodes over
+ * {@link RedisConfig#CACHE_INVALIDATION_CHANNEL}. Each cache registers a
+ * {@link CacheInvalidator} under its own name; without Redis changes stay local.
+ */
+@Component
+@Slf4j
+@SuppressWarnings("null")
+public class CacheInvalidationBus implements MessageListener {
+
+    private final ObjectMapper objectMapper;
+
+    // Optional Redis; the listener container depends on beans that register here, so both are resolved late
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final ObjectProvider<RedisMessageListenerContainer> listenerContainer;
+
+    @Value("${spring.data.redis.enabled:false}")
+    private boolean redisEnabled;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, CacheInvalidator<?>> caches = new ConcurrentHashMap<>();
+
+    public CacheInvalidationBus(ObjectMapper objectMapper, ObjectProvider<StringRedisTemplate> redisTemplate,
+            ObjectProvider<RedisMessageListenerContainer> listenerContainer) {
+        this.objectMapper = objectMapper;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    /**
+     * @param keysOf    keys whose loads a change races with; empty for every key
+     * @param drop      removes the entries a change touches
+     * @param committed run once the change is committed, here and on every other node
+     */
+    public <C> CacheInvalidator<C> register(String name, Class<C> changeType, Function<C, Collection<?>> keysOf,
+            Consumer<C> drop, @Nullable Consumer<C> committed) {
+        CacheInvalidator<C> invalidator = new CacheInvalidator<>(name, changeType, keysOf, drop, committed, this);
+        if (caches.putIfAbsent(name, invalidator) != null) {
+            throw new IllegalStateException("Cache invalidator already registered: " + name);
+        }
+        return invalidator;
+    }
+
+    public <C> CacheInvalidator<C> register(String name, Class<C> changeType, Function<C, Collection<?>> keysOf,
+            Consumer<C> drop) {
+        return register(name, changeType, keysOf, drop, null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        RedisMessageListenerContainer container = redisEnabled ? listenerContainer.getIfAvailable() : null;
+        if (container != null) {
+            container.addMessageListener(this, new ChannelTopic(RedisConfig.CACHE_INVALIDATION_CHANNEL));
+        }
+    }
+
+    @Override
+    public void onMessage(@NonNull Message message, @Nullable byte[] pattern) {
+        try {
+            Envelope envelope = objectMapper.readValue(
+                    new String(message.getBody(), StandardCharsets.UTF_8), Envelope.class);
+            if (!nodeId.equals(envelope.origin())) {
+                applyRemote(envelope);
+            }
+        } catch (Exception e) {
+            log.warn("Ignoring bad cache invalidation: {}", e.getMessage());
+        }
+    }
+
+    <C> void publish(CacheInvalidator<C> cache, C change) {
+        StringRedisTemplate redis = redisEnabled ? redisTemplate.getIfAvailable() : null;
+        if (redis == null) {
+            return;
+        }
+        try {
+            redis.convertAndSend(RedisConfig.CACHE_INVALIDATION_CHANNEL, objectMapper.writeValueAsString(
+                    new Envelope(nodeId, cache.name(), objectMapper.valueToTree(change))));
+        } catch (Exception e) {
+            log.warn("Failed to publish {} invalidation: {}", cache.name(), e.getMessage());
+        }
+    }
+
+    private void applyRemote(Envelope envelope) throws Exception {
+        CacheInvalidator<?> cache = caches.get(envelope.cache());
+        if (cache != null) {
+            applyRemote(cache, envelope.change());
+        }
+    }
+
+    private <C> void applyRemote(CacheInvalidator<C> cache, JsonNode change) throws Exception {
+        cache.applyRemote(objectMapper.treeToValue(change, cache.changeType()));
+    }
+
+    record Envelope(String origin, String cache, JsonNode change) {
+    }
+}
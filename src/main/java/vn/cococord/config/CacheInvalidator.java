@@ -0,0 +1,129 @@
+package vn.cococord.config;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Invalidation of one node-local cache (created by {@link CacheInvalidationBus#register}).
+ *
+ * Load race: a loader takes stamp(key) before reading and only stores the value if
+ * isCurrent(key, stamp) afterwards. A change touching known keys moves only their
+ * stamps (one of STRIPES counters per key hash); a change without keys moves all.
+ *
+ * A change is applied now and again once the surrounding transaction commits (a
+ * load in between still reads the old rows), then published to the other nodes,
+ * which drop what it touches. Without a transaction it is applied and published
+ * at once.
+ *
+ * @param <C> change description, serialized as JSON between nodes
+ */
+public final class CacheInvalidator<C> {
+
+    private static final int STRIPES = 64;
+
+    private final String name;
+    private final Class<C> changeType;
+    private final Function<C, Collection<?>> keysOf;
+    private final Consumer<C> drop;
+    @Nullable
+    private final Consumer<C> committed;
+    private final CacheInvalidationBus bus;
+
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+
+    CacheInvalidator(String name, Class<C> changeType, Function<C, Collection<?>> keysOf, Consumer<C> drop,
+            @Nullable Consumer<C> committed, CacheInvalidationBus bus) {
+        this.name = name;
+        this.changeType = changeType;
+        this.keysOf = keysOf;
+        this.drop = drop;
+        this.committed = committed;
+        this.bus = bus;
+    }
+
+    public long stamp(Object key) {
+        return stamps.get(stripe(key));
+    }
+
+    /**
+     * False if a change touching this key happened since stamp was taken
+     */
+    public boolean isCurrent(Object key, long stamp) {
+        return stamps.get(stripe(key)) == stamp;
+    }
+
+    /**
+     * Drops what the change touches, here and on the other nodes
+     */
+    public void invalidate(C change) {
+        apply(change, () -> drop.accept(change));
+    }
+
+    /**
+     * Applies the change locally with update (e.g. in place) instead of dropping;
+     * the other nodes still drop what it touches
+     */
+    public void apply(C change, Runnable update) {
+        advance(change);
+        update.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    advance(change);
+                    update.run();
+                    settled(change);
+                }
+            });
+        } else {
+            settled(change);
+        }
+    }
+
+    String name() {
+        return name;
+    }
+
+    Class<C> changeType() {
+        return changeType;
+    }
+
+    /**
+     * A committed change published by another node
+     */
+    void applyRemote(C change) {
+        advance(change);
+        drop.accept(change);
+        if (committed != null) {
+            committed.accept(change);
+        }
+    }
+
+    private void settled(C change) {
+        if (committed != null) {
+            committed.accept(change);
+        }
+        bus.publish(this, change);
+    }
+
+    private void advance(C change) {
+        Collection<?> keys = keysOf.apply(change);
+        if (keys.isEmpty()) {
+            for (int i = 0; i < STRIPES; i++) {
+                stamps.incrementAndGet(i);
+            }
+        } else {
+            keys.forEach(key -> stamps.incrementAndGet(stripe(key)));
+        }
+    }
+
+    private static int stripe(Object key) {
+        return Math.floorMod(key.hashCode(), STRIPES);
+    }
+}
@@ -0,0 +1,388 @@
+package vn.cococord.config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per-stream sequence numbers and replay log for channel and DM events
+ * (app.websocket.replay.*), so a reconnecting client can ask for what it missed
+ * instead of refetching history pages.
+ *
+ * A stream is one channel (/topic/channel/{id}/**) or DM group (/topic/dm/{id}/**);
+ * typing events are not sequenced. Every other event published to a stream gets
+ * the STOMP header x-seq and is kept in a bounded per-stream log (last
+ * events-per-stream events, at most max-age-ms old).
+ *
+ * Sequence numbers are floored at (now in ms) * 1024, so they keep increasing
+ * across restarts without an epoch, stay below 2^53 (safe as JS numbers) and any
+ * timestamp converts to a valid resume position. With the Redis relay broker they
+ * are allocated in Redis so all nodes agree; relayed events keep the origin's number.
+ *
+ * Each stream knows from which sequence on its log is complete (node start, then
+ * the newest event trimmed). Resuming from before that point is reported as a gap.
+ *
+ * Delivery order: a stream's lock is taken in preSend and released in
+ * afterSendCompletion, so assigning a number and the broker handing the event to
+ * every subscriber's outbound queue happen as one step (the broker channel has no
+ * executor, the broker runs on the sending thread). Without Redis sessions therefore
+ * receive a stream's events in sequence order. A send made while the thread already
+ * delivers another stream only tries that stream's lock and goes ahead unlocked if
+ * it is busy: two threads nesting into each other's streams cannot deadlock.
+ *
+ * With the Redis relay the number is allocated before the lock, so a Redis round
+ * trip never holds up the stream. Events (local ones included) can then arrive after
+ * higher numbers; clients resume from the highest number up to which they have seen
+ * every event, not the highest seen.
+ */
+@Component
+@Slf4j
+@SuppressWarnings("null")
+public class ChannelEventSequencer implements ChannelInterceptor {
+
+    public static final String SEQ_HEADER = "x-seq";
+
+    private static final String CHANNEL_PREFIX = "/topic/channel/";
+    private static final String DM_PREFIX = "/topic/dm/";
+    private static final String TYPING_SUFFIX = "/typing";
+    private static final int TIME_SHIFT = 10;
+    private static final String SEQ_KEY_PREFIX = "cococord:seq:";
+    private static final long SEQ_KEY_TTL_SECONDS = 86400;
+    // Pushed for a nested send that went ahead without its stream's lock
+    private static final ReentrantLock NOT_HELD = new ReentrantLock();
+
+    // INCR, but never below the time floor (ARGV[1])
+    private static final RedisScript<Long> NEXT_SEQ_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('INCR', KEYS[1]) "
+                    + "local floor = tonumber(ARGV[1]) "
+                    + "if v < floor then redis.call('SET', KEYS[1], ARGV[1]) v = floor end "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2]) "
+                    + "return v",
+            Long.class);
+
+    private final ObjectProvider<RedisTopicRelay> topicRelay;
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+
+    @Value("${app.websocket.replay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.websocket.replay.events-per-stream:256}")
+    private int eventsPerStream;
+
+    @Value("${app.websocket.replay.max-age-ms:300000}")
+    private long maxAgeMs;
+
+    @Value("${app.websocket.replay.max-streams:50000}")
+    private int maxStreams;
+
+    private boolean clustered;
+    private long startSeq;
+
+    /**
+     * Raised to the coverage of streams evicted from the map, so a stream that comes
+     * back is not mistaken for one that had no events
+     */
+    private volatile long evictedCoverage;
+
+    // Delivery locks the current thread holds between preSend and afterSendCompletion,
+    // innermost first (a send from inside the broker's delivery nests)
+    private final ThreadLocal<ArrayDeque<ReentrantLock>> delivering = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final Map<String, StreamLog> streams = Collections.synchronizedMap(
+            new LinkedHashMap<>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, StreamLog> eldest) {
+                    if (size() <= maxStreams) {
+                        return false;
+                    }
+                    evictedCoverage = Math.max(evictedCoverage, eldest.getValue().lastSeq());
+                    return true;
+                }
+            });
+
+    public ChannelEventSequencer(ObjectProvider<RedisTopicRelay> topicRelay,
+            ObjectProvider<StringRedisTemplate> redisTemplate) {
+        this.topicRelay = topicRelay;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        clustered = topicRelay.getIfAvailable() != null;
+        startSeq = timeFloor(System.currentTimeMillis());
+        evictedCoverage = startSeq;
+    }
+
+    /**
+     * Broker channel: stamp and log local publishes, log relayed ones under their origin number
+     */
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        String stream = sequencedStream(message);
+        if (stream == null) {
+            return message;
+        }
+
+        StreamLog streamLog = streamLog(stream);
+        boolean relayed = message.getHeaders().containsKey(RedisTopicRelay.RELAYED_HEADER);
+        Long allocated = clustered && !relayed ? allocateInRedis(stream) : null;
+        // Released in afterSendCompletion, once the broker has delivered the event
+        delivering.get().push(acquireDelivery(streamLog));
+        try {
+            return stamp(message, (byte[]) message.getPayload(),
+                    SimpMessageHeaderAccessor.getDestination(message.getHeaders()), relayed, allocated, streamLog);
+        } catch (RuntimeException e) {
+            releaseDelivery();
+            throw e;
+        }
+    }
+
+    @Override
+    public void afterSendCompletion(@NonNull Message<?> message, @NonNull MessageChannel channel, boolean sent,
+            @Nullable Exception ex) {
+        // Only events preSend took a lock for; sends complete in reverse order of their preSend
+        if (sequencedStream(message) != null) {
+            releaseDelivery();
+        }
+    }
+
+    // Stream of a message this interceptor numbers, or null
+    @Nullable
+    private String sequencedStream(Message<?> message) {
+        if (!enabled || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[])) {
+            return null;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        return destination != null ? streamOf(destination) : null;
+    }
+
+    /**
+     * seq was allocated in Redis before the lock (null: Redis unavailable, or not clustered)
+     */
+    private Message<?> stamp(Message<?> message, byte[] payload, String destination, boolean relayed,
+            @Nullable Long seq, StreamLog streamLog) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        String stamped = accessor.getFirstNativeHeader(SEQ_HEADER);
+        if (stamped != null && relayed) {
+            try {
+                streamLog.add(new ReplayEvent(Long.parseLong(stamped), destination, payload,
+                        contentType != null ? contentType.toString() : null, System.currentTimeMillis()));
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring relayed event with bad sequence {}", stamped);
+            }
+            return message;
+        }
+
+        ReplayEvent event = seq != null || !clustered
+                ? streamLog.add(seq, destination, payload, contentType != null ? contentType.toString() : null)
+                : null;
+        if (event == null) {
+            // Redis unavailable: delivered without a number, resumes will report a gap
+            streamLog.markIncomplete();
+            return message;
+        }
+        accessor.setNativeHeader(SEQ_HEADER, Long.toString(event.seq()));
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Events of the stream containing destination with a sequence above afterSeq,
+     * or null if destination is not a sequenced stream
+     */
+    @Nullable
+    public Replay replay(String destination, long afterSeq) {
+        String stream = streamOf(destination);
+        if (stream == null) {
+            return null;
+        }
+        StreamLog streamLog = streams.get(stream);
+        if (streamLog == null) {
+            // No event since this node started (or since the stream was evicted)
+            return new Replay(stream, afterSeq < evictedCoverage, evictedCoverage, List.of());
+        }
+        return streamLog.replay(stream, afterSeq);
+    }
+
+    @Scheduled(fixedDelayString = "${app.websocket.replay.trim-interval-ms:60000}")
+    public void trimExpired() {
+        List<StreamLog> logs;
+        synchronized (streams) {
+            logs = new ArrayList<>(streams.values());
+        }
+        logs.forEach(StreamLog::trim);
+    }
+
+    /**
+     * "channel:{id}" / "dm:{id}", or null for other destinations and typing events
+     */
+    @Nullable
+    public static String streamOf(String destination) {
+        if (destination.endsWith(TYPING_SUFFIX)) {
+            return null;
+        }
+        String prefix = destination.startsWith(CHANNEL_PREFIX) ? CHANNEL_PREFIX
+                : destination.startsWith(DM_PREFIX) ? DM_PREFIX : null;
+        if (prefix == null) {
+            return null;
+        }
+        int end = destination.indexOf('/', prefix.length());
+        String id = end < 0 ? destination.substring(prefix.length()) : destination.substring(prefix.length(), end);
+        if (id.isEmpty() || !id.chars().allMatch(Character::isDigit)) {
+            return null;
+        }
+        return (CHANNEL_PREFIX.equals(prefix) ? "channel:" : "dm:") + id;
+    }
+
+    /**
+     * Blocks only for the outermost send of the thread; a nested send takes the lock
+     * if free, otherwise goes ahead without it (NOT_HELD)
+     */
+    private ReentrantLock acquireDelivery(StreamLog streamLog) {
+        if (delivering.get().isEmpty()) {
+            streamLog.delivery.lock();
+            return streamLog.delivery;
+        }
+        return streamLog.delivery.tryLock() ? streamLog.delivery : NOT_HELD;
+    }
+
+    private void releaseDelivery() {
+        ReentrantLock held = delivering.get().poll();
+        if (held != null && held != NOT_HELD) {
+            held.unlock();
+        }
+    }
+
+    private StreamLog streamLog(String stream) {
+        StreamLog streamLog = streams.get(stream);
+        if (streamLog == null) {
+            synchronized (streams) {
+                streamLog = streams.computeIfAbsent(stream, key -> new StreamLog(Math.max(startSeq, evictedCoverage)));
+            }
+        }
+        return streamLog;
+    }
+
+    @Nullable
+    private Long allocateInRedis(String stream) {
+        StringRedisTemplate redis = redisTemplate.getIfAvailable();
+        if (redis == null) {
+            return null;
+        }
+        try {
+            return redis.execute(NEXT_SEQ_SCRIPT, List.of(SEQ_KEY_PREFIX + stream),
+                    Long.toString(timeFloor(System.currentTimeMillis())), Long.toString(SEQ_KEY_TTL_SECONDS));
+        } catch (Exception e) {
+            log.warn("Failed to allocate sequence for {}: {}", stream, e.getMessage());
+            return null;
+        }
+    }
+
+    private static long timeFloor(long millis) {
+        return millis << TIME_SHIFT;
+    }
+
+    public record Replay(String stream, boolean gap, long lastSeq, List<ReplayEvent> events) {
+    }
+
+    public record ReplayEvent(long seq, String destination, byte[] payload, @Nullable String contentType,
+            long loggedAt) {
+    }
+
+    private final class StreamLog {
+        // Held while an event of the stream is numbered and delivered; separate from the log's monitor
+        private final ReentrantLock delivery = new ReentrantLock();
+        private final ArrayDeque<ReplayEvent> events = new ArrayDeque<>();
+        private long lastSeq;
+        // Every event with a higher sequence is in the log
+        private long completeAfter;
+
+        private StreamLog(long completeAfter) {
+            this.completeAfter = completeAfter;
+            this.lastSeq = completeAfter;
+        }
+
+        private synchronized long lastSeq() {
+            return lastSeq;
+        }
+
+        /**
+         * Append with the given sequence, or the next local one when seq is null
+         */
+        private synchronized ReplayEvent add(@Nullable Long seq, String destination, byte[] payload,
+                @Nullable String contentType) {
+            long assigned = seq != null ? seq : Math.max(lastSeq + 1, timeFloor(System.currentTimeMillis()));
+            ReplayEvent event = new ReplayEvent(assigned, destination, payload, contentType,
+                    System.currentTimeMillis());
+            add(event);
+            return event;
+        }
+
+        private synchronized void add(ReplayEvent event) {
+            if (event.seq() > lastSeq || events.isEmpty()) {
+                events.addLast(event);
+            } else {
+                // Relayed or concurrently allocated out of order: keep the log sorted
+                ArrayDeque<ReplayEvent> newer = new ArrayDeque<>();
+                while (!events.isEmpty() && events.peekLast().seq() > event.seq()) {
+                    newer.addFirst(events.pollLast());
+                }
+                events.addLast(event);
+                events.addAll(newer);
+            }
+            lastSeq = Math.max(lastSeq, event.seq());
+            trim();
+        }
+
+        private synchronized void markIncomplete() {
+            completeAfter = Math.max(completeAfter, timeFloor(System.currentTimeMillis()));
+        }
+
+        private synchronized void trim() {
+            long oldest = System.currentTimeMillis() - maxAgeMs;
+            while (!events.isEmpty() && (events.size() > eventsPerStream || events.peekFirst().loggedAt() < oldest)) {
+                completeAfter = Math.max(completeAfter, events.pollFirst().seq());
+            }
+        }
+
+        private synchronized Replay replay(String stream, long afterSeq) {
+            List<ReplayEvent> newer = new ArrayList<>();
+            Iterator<ReplayEvent> it = events.descendingIterator();
+            while (it.hasNext()) {
+                ReplayEvent event = it.next();
+                if (event.seq() <= afterSeq) {
+                    break;
+                }
+                newer.add(event);
+            }
+            Collections.reverse(newer);
+            return new Replay(stream, afterSeq < completeAfter, lastSeq, newer);
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package vn.cococord.config;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.entity.mysql.Channel;
+import vn.cococord.entity.mysql.PermissionBit;
+import vn.cococord.repository.IChannelRepository;
+import vn.cococord.repository.IDirectMessageMemberRepository;
+import vn.cococord.repository.IServerMemberRepository;
+import vn.cococord.repository.IUserRepository;
+import vn.cococord.service.IChannelAccessListener;
+import vn.cococord.service.IPermissionService;
+
+/**
+ * SUBSCRIBE authorization for broker topics (app.websocket.subscribe-auth.enabled):
+ * <ul>
+ * <li>/topic/channel/{id}/**, /topic/voice/{id}/** - server member, and VIEW_CHANNEL
+ * for private channels (same rule as IChannelService.canUserAccessChannel);</li>
+ * <li>/topic/server.{id}.*, /topic/server/{id}/** - server member;</li>
+ * <li>/topic/dm/{id}/** - DM group member;</li>
+ * <li>/topic/user.{id}.* - the user themselves;</li>
+ * <li>/topic/admin.*, /topic/admin/** and wildcard destinations - ROLE_ADMIN.</li>
+ * </ul>
+ * A denied SUBSCRIBE is dropped before the broker registers it; the session stays
+ * open. Checks run on the inbound executor (beforeHandle), not the transport thread.
+ *
+ * The user is identified by the id bound to the session at CONNECT (bindUser), never
+ * by looking up the principal name later: after a rename another account may hold it.
+ *
+ * Per user the guard caches the server ids they belong to, the final channel bitmask
+ * of private channels and known DM groups; channel metadata (server, private flag)
+ * is shared by all users. A reconnecting user is then authorized from memory for
+ * every public channel and server topic. Entries expire after cache-ttl-ms.
+ *
+ * Access changes arrive as IChannelAccessListener calls and are published to the
+ * other nodes (CacheInvalidationBus). After the change commits, live subscriptions
+ * that may be affected are checked again on every node and the ones that lost
+ * access are unsubscribed at the broker.
+ */
+@Component
+@Slf4j
+@SuppressWarnings("null")
+public class ChannelSubscriptionGuard implements ExecutorChannelInterceptor, IChannelAccessListener {
+
+    private static final String ADMIN_AUTHORITY = "ROLE_ADMIN";
+
+    /**
+     * Session attribute holding the id of the user authenticated at CONNECT
+     */
+    public static final String USER_ID_ATTRIBUTE = "cococord.userId";
+
+    private final IChannelRepository channelRepository;
+    private final IServerMemberRepository serverMemberRepository;
+    private final IDirectMessageMemberRepository dmMemberRepository;
+    private final IUserRepository userRepository;
+    private final IPermissionService permissionService;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Value("${app.websocket.subscribe-auth.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.websocket.subscribe-auth.cache-ttl-ms:600000}")
+    private long cacheTtlMs;
+
+    private final Map<Long, UserGrants> users = new ConcurrentHashMap<>();
+    private final Map<Long, ChannelMeta> channels = new ConcurrentHashMap<>();
+    private final Map<String, SessionSubscriptions> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * A value loaded while a change touching it happened is used once but not cached
+     * (same scheme as the send context cache). Loads are stamped by user id.
+     */
+    private final CacheInvalidator<Revocation> invalidator;
+
+    // Lazy: both are built after the broker configuration that registers this interceptor
+    public ChannelSubscriptionGuard(IChannelRepository channelRepository,
+            IServerMemberRepository serverMemberRepository,
+            IDirectMessageMemberRepository dmMemberRepository,
+            IUserRepository userRepository,
+            @Lazy IPermissionService permissionService,
+            @Lazy SimpMessagingTemplate messagingTemplate,
+            CacheInvalidationBus invalidationBus) {
+        this.channelRepository = channelRepository;
+        this.serverMemberRepository = serverMemberRepository;
+        this.dmMemberRepository = dmMemberRepository;
+        this.userRepository = userRepository;
+        this.permissionService = permissionService;
+        this.messagingTemplate = messagingTemplate;
+        this.invalidator = invalidationBus.register("subscription-grants", Revocation.class, Revocation::keys,
+                this::evict, this::recheck);
+    }
+
+    @Override
+    public Message<?> beforeHandle(@NonNull Message<?> message, @NonNull MessageChannel channel,
+            @NonNull MessageHandler handler) {
+        // Only gate the broker; annotation and user-destination handlers ignore /topic anyway
+        if (!enabled || !(handler instanceof AbstractBrokerMessageHandler)) {
+            return message;
+        }
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        if (sessionId == null || subscriptionId == null) {
+            return message;
+        }
+        if (type == SimpMessageType.UNSUBSCRIBE) {
+            SessionSubscriptions session = sessions.get(sessionId);
+            if (session != null) {
+                session.subscriptions().remove(subscriptionId);
+            }
+            return message;
+        }
+        if (type != SimpMessageType.SUBSCRIBE) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        if (destination == null) {
+            return message;
+        }
+        Target target = parse(destination);
+        if (target == null) {
+            return deny(sessionId, destination);
+        }
+        if (target.kind() == Kind.OPEN) {
+            return message;
+        }
+        if (target.kind() == Kind.ADMIN) {
+            return isAdmin(user) ? message : deny(sessionId, destination);
+        }
+
+        Long userId = userIdOf(message.getHeaders());
+        Target checked = userId != null ? authorize(userId, target) : null;
+        if (checked == null) {
+            return deny(sessionId, destination);
+        }
+        sessions.computeIfAbsent(sessionId, id -> new SessionSubscriptions(userId, new ConcurrentHashMap<>()))
+                .subscriptions().put(subscriptionId, checked);
+        return message;
+    }
+
+    /**
+     * Binds the authenticated user's id to the session; called on CONNECT once the
+     * principal is set.
+     */
+    public void bindUser(SimpMessageHeaderAccessor accessor) {
+        Principal user = accessor.getUser();
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (user == null || attributes == null) {
+            return;
+        }
+        userRepository.findByUsername(user.getName())
+                .ifPresent(found -> attributes.put(USER_ID_ATTRIBUTE, found.getId()));
+    }
+
+    /**
+     * Same rules as SUBSCRIBE, for reads outside a subscription (e.g. event replay)
+     */
+    public boolean canRead(SimpMessageHeaderAccessor session, String destination) {
+        Principal user = session.getUser();
+        Target target = parse(destination);
+        if (target == null) {
+            return false;
+        }
+        if (target.kind() == Kind.OPEN) {
+            return true;
+        }
+        if (target.kind() == Kind.ADMIN) {
+            return isAdmin(user);
+        }
+        Long userId = userIdOf(session.getMessageHeaders());
+        return userId != null && authorize(userId, target) != null;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    // ===== Access changes =====
+
+    @Override
+    public void onChannelChanged(Long channelId) {
+        invalidator.invalidate(new Revocation(Scope.CHANNEL, channelId, null));
+    }
+
+    @Override
+    public void onServerChanged(Long serverId) {
+        invalidator.invalidate(new Revocation(Scope.SERVER, serverId, null));
+    }
+
+    @Override
+    public void onServerMemberChanged(Long serverId, Long userId) {
+        invalidator.invalidate(new Revocation(Scope.SERVER_MEMBER, serverId, userId));
+    }
+
+    @Override
+    public void onDmMemberRemoved(Long dmGroupId, Long userId) {
+        invalidator.invalidate(new Revocation(Scope.DM_MEMBER, dmGroupId, userId));
+    }
+
+    @Override
+    public void onDmGroupDeleted(Long dmGroupId) {
+        invalidator.invalidate(new Revocation(Scope.DM_GROUP, dmGroupId, null));
+    }
+
+    @Scheduled(fixedDelayString = "${app.websocket.subscribe-auth.cache-ttl-ms:600000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        users.values().removeIf(grants -> now - grants.loadedAt() > cacheTtlMs);
+        channels.values().removeIf(meta -> now - meta.loadedAt() > cacheTtlMs);
+    }
+
+    // ===== Authorization =====
+
+    /**
+     * The target with its server filled in if the user may subscribe, otherwise null
+     */
+    @Nullable
+    private Target authorize(Long userId, Target target) {
+        try {
+            return switch (target.kind()) {
+                case USER -> target.id().equals(userId) ? target : null;
+                case SERVER -> grants(userId).servers().contains(target.id()) ? target : null;
+                case DM -> isDmMember(userId, target.id()) ? target : null;
+                case CHANNEL -> {
+                    ChannelMeta meta = channelMeta(target.id());
+                    yield meta != null && canViewChannel(userId, target.id(), meta)
+                            ? new Target(Kind.CHANNEL, target.id(), meta.serverId())
+                            : null;
+                }
+                default -> target;
+            };
+        } catch (Exception e) {
+            log.warn("Subscription check failed for user {} on {} {}: {}", userId, target.kind(), target.id(),
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean canViewChannel(Long userId, Long channelId, ChannelMeta meta) {
+        UserGrants grants = grants(userId);
+        if (!grants.servers().contains(meta.serverId())) {
+            return false;
+        }
+        if (!meta.isPrivate()) {
+            return true;
+        }
+        Long bitmask = grants.privateChannels().get(channelId);
+        if (bitmask == null) {
+            long stamp = invalidator.stamp(userId);
+            bitmask = permissionService.computeChannelPermissions(userId, channelId).getFinalBitmask();
+            if (invalidator.isCurrent(userId, stamp)) {
+                grants.privateChannels().put(channelId, bitmask);
+            }
+        }
+        return PermissionBit.VIEW_CHANNEL.isSet(bitmask);
+    }
+
+    private boolean isDmMember(Long userId, Long dmGroupId) {
+        UserGrants grants = grants(userId);
+        if (grants.dmGroups().contains(dmGroupId)) {
+            return true;
+        }
+        long stamp = invalidator.stamp(userId);
+        boolean member = dmMemberRepository.existsByDmGroupIdAndUserId(dmGroupId, userId);
+        // Only membership is cached: a later add is not signalled
+        if (member && invalidator.isCurrent(userId, stamp)) {
+            grants.dmGroups().add(dmGroupId);
+        }
+        return member;
+    }
+
+    private UserGrants grants(Long userId) {
+        UserGrants grants = users.get(userId);
+        if (grants != null && System.currentTimeMillis() - grants.loadedAt() <= cacheTtlMs) {
+            return grants;
+        }
+        long stamp = invalidator.stamp(userId);
+        UserGrants loaded = new UserGrants(Set.copyOf(serverMemberRepository.findServerIdsByUserId(userId)),
+                new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet(), System.currentTimeMillis());
+        if (invalidator.isCurrent(userId, stamp)) {
+            users.put(userId, loaded);
+        }
+        return loaded;
+    }
+
+    @Nullable
+    private ChannelMeta channelMeta(Long channelId) {
+        ChannelMeta meta = channels.get(channelId);
+        if (meta != null && System.currentTimeMillis() - meta.loadedAt() <= cacheTtlMs) {
+            return meta;
+        }
+        long stamp = invalidator.stamp(channelId);
+        Channel channel = channelRepository.findById(channelId).orElse(null);
+        if (channel == null || channel.getServer() == null) {
+            return null;
+        }
+        meta = new ChannelMeta(channel.getServer().getId(), Boolean.TRUE.equals(channel.getIsPrivate()),
+                System.currentTimeMillis());
+        if (invalidator.isCurrent(channelId, stamp)) {
+            channels.put(channelId, meta);
+        }
+        return meta;
+    }
+
+    @Nullable
+    private static Long userIdOf(MessageHeaders headers) {
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        return attributes != null && attributes.get(USER_ID_ATTRIBUTE) instanceof Long userId ? userId : null;
+    }
+
+    private static boolean isAdmin(@Nullable Principal user) {
+        return user instanceof Authentication authentication && authentication.getAuthorities().stream()
+                .anyMatch(authority -> ADMIN_AUTHORITY.equals(authority.getAuthority()));
+    }
+
+    @Nullable
+    private static Message<?> deny(String sessionId, String destination) {
+        log.debug("Rejected SUBSCRIBE to {} for session {}", destination, sessionId);
+        return null;
+    }
+
+    // ===== Revocation =====
+
+    /**
+     * Runs now and again once the change commits: a SUBSCRIBE in between still reads
+     * the old rows and could cache the old grant.
+     */
+    private void evict(Revocation change) {
+        Long id = change.id();
+        switch (change.scope()) {
+            case CHANNEL -> {
+                channels.remove(id);
+                users.values().forEach(grants -> grants.privateChannels().remove(id));
+            }
+            // Roles or the server itself changed: every member's view of it is stale
+            case SERVER -> {
+                channels.values().removeIf(meta -> id.equals(meta.serverId()));
+                users.values().removeIf(grants -> grants.servers().contains(id));
+            }
+            case SERVER_MEMBER -> users.remove(change.userId());
+            case DM_MEMBER -> {
+                UserGrants grants = users.get(change.userId());
+                if (grants != null) {
+                    grants.dmGroups().remove(id);
+                }
+            }
+            case DM_GROUP -> users.values().forEach(grants -> grants.dmGroups().remove(id));
+        }
+    }
+
+    /**
+     * Live subscriptions are re-checked after the second eviction, against committed data only
+     */
+    private void recheck(Revocation change) {
+        Long userId = change.userId();
+        List<Candidate> candidates = new ArrayList<>();
+        sessions.forEach((sessionId, session) -> {
+            if (userId == null || userId.equals(session.userId())) {
+                session.subscriptions().forEach((subscriptionId, target) -> {
+                    if (change.affects(target)) {
+                        candidates.add(new Candidate(sessionId, subscriptionId, session.userId(), target));
+                    }
+                });
+            }
+        });
+        if (!candidates.isEmpty()) {
+            Thread.ofVirtual().name("ws-subscription-recheck").start(() -> candidates.forEach(this::revokeIfDenied));
+        }
+    }
+
+    private void revokeIfDenied(Candidate candidate) {
+        if (authorize(candidate.userId(), candidate.target()) != null) {
+            return;
+        }
+        SessionSubscriptions session = sessions.get(candidate.sessionId());
+        if (session == null || session.subscriptions().remove(candidate.subscriptionId()) == null) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(candidate.sessionId());
+        accessor.setSubscriptionId(candidate.subscriptionId());
+        messagingTemplate.getMessageChannel()
+                .send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        log.info("Revoked subscription {} of session {} ({} {})", candidate.subscriptionId(),
+                candidate.sessionId(), candidate.target().kind(), candidate.target().id());
+    }
+
+    // ===== Destinations =====
+
+    @Nullable
+    private Target parse(String destination) {
+        if (destination.startsWith("/topic/admin.") || destination.startsWith("/topic/admin/")
+                || pathMatcher.isPattern(destination)) {
+            return new Target(Kind.ADMIN, null, null);
+        }
+        if (destination.startsWith("/topic/channel/")) {
+            return idTarget(Kind.CHANNEL, destination, "/topic/channel/".length(), '/');
+        }
+        if (destination.startsWith("/topic/voice/")) {
+            return idTarget(Kind.CHANNEL, destination, "/topic/voice/".length(), '/');
+        }
+        if (destination.startsWith("/topic/server.")) {
+            return idTarget(Kind.SERVER, destination, "/topic/server.".length(), '.');
+        }
+        if (destination.startsWith("/topic/server/")) {
+            return idTarget(Kind.SERVER, destination, "/topic/server/".length(), '/');
+        }
+        if (destination.startsWith("/topic/dm/")) {
+            return idTarget(Kind.DM, destination, "/topic/dm/".length(), '/');
+        }
+        if (destination.startsWith("/topic/user.")) {
+            return idTarget(Kind.USER, destination, "/topic/user.".length(), '.');
+        }
+        return new Target(Kind.OPEN, null, null);
+    }
+
+    /**
+     * Guarded destination with a malformed id is rejected (null)
+     */
+    @Nullable
+    private static Target idTarget(Kind kind, String destination, int start, char separator) {
+        int end = destination.indexOf(separator, start);
+        String id = end < 0 ? destination.substring(start) : destination.substring(start, end);
+        try {
+            Long parsed = Long.valueOf(id);
+            return new Target(kind, parsed, kind == Kind.SERVER ? parsed : null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private enum Kind {
+        OPEN, ADMIN, CHANNEL, SERVER, DM, USER
+    }
+
+    private record Target(Kind kind, @Nullable Long id, @Nullable Long serverId) {
+    }
+
+    private enum Scope {
+        CHANNEL, SERVER, SERVER_MEMBER, DM_MEMBER, DM_GROUP
+    }
+
+    /**
+     * An access change: id is the channel, server or DM group of the scope; userId is
+     * set for the member scopes
+     */
+    record Revocation(Scope scope, Long id, @Nullable Long userId) {
+
+        /**
+         * Member changes race only with that user's loads; the others with any
+         */
+        Collection<?> keys() {
+            return userId != null ? List.of(userId) : List.of();
+        }
+
+        private boolean affects(Target target) {
+            return switch (scope) {
+                case CHANNEL -> target.kind() == Kind.CHANNEL && id.equals(target.id());
+                case SERVER, SERVER_MEMBER -> id.equals(target.serverId());
+                case DM_MEMBER, DM_GROUP -> target.kind() == Kind.DM && id.equals(target.id());
+            };
+        }
+    }
+
+    private record Candidate(String sessionId, String subscriptionId, Long userId, Target target) {
+    }
+
+    private record SessionSubscriptions(Long userId, Map<String, Target> subscriptions) {
+    }
+
+    private record UserGrants(Set<Long> servers, Map<Long, Long> privateChannels, Set<Long> dmGroups,
+            long loadedAt) {
+    }
+
+    private record ChannelMeta(Long serverId, boolean isPrivate, long loadedAt) {
+    }
+}
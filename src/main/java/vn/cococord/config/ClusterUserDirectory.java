@@ -0,0 +1,258 @@
+package vn.cococord.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.entity.mysql.User;
+import vn.cococord.repository.IUserRepository;
+
+/**
+ * Cluster-wide view of which node holds each user's WebSocket sessions, used by
+ * {@link RedisTopicRelay} to send user destinations only to the owning nodes.
+ *
+ * Spring's local SimpUserRegistry still resolves sessions on the owning node;
+ * this directory only answers "which nodes" and is kept in Redis:
+ * <ul>
+ * <li>ws:user:name:{username} / ws:user:id:{userId} - hash nodeId -> open sessions</li>
+ * <li>ws:nodes - sorted set nodeId -> last heartbeat (ms); fields of nodes that
+ * stopped heartbeating are ignored and removed when read</li>
+ * </ul>
+ * Lookups are cached locally for app.websocket.user-directory.cache-ttl-ms; a
+ * connect or disconnect anywhere evicts the user's entries on every node through
+ * {@link RedisConfig#USER_DIRECTORY_CHANNEL}.
+ */
+@Component
+@ConditionalOnExpression("${spring.data.redis.enabled:false} and '${app.websocket.broker.mode:simple}' == 'redis-relay'")
+@Slf4j
+@SuppressWarnings("null")
+public class ClusterUserDirectory implements MessageListener {
+
+    private static final String USER_NAME_PREFIX = "ws:user:name:";
+    private static final String USER_ID_PREFIX = "ws:user:id:";
+    private static final String NODES_KEY = "ws:nodes";
+
+    // Decrement this node's session count in both user hashes, dropping fields that reach zero
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            for i, key in ipairs(KEYS) do
+              if redis.call('HINCRBY', key, ARGV[1], -1) <= 0 then
+                redis.call('HDEL', key, ARGV[1])
+              end
+            end
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final IUserRepository userRepository;
+
+    @Value("${app.websocket.broker.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${app.websocket.user-directory.cache-ttl-ms:5000}")
+    private long cacheTtlMs;
+
+    @Value("${app.websocket.user-directory.node-timeout-ms:30000}")
+    private long nodeTimeoutMs;
+
+    private String nodeId;
+
+    // Sessions on this node; remove() decides which disconnect event counts
+    private final Map<String, LocalSession> localSessions = new ConcurrentHashMap<>();
+    private final Map<String, CachedNodes> cache = new ConcurrentHashMap<>();
+    /**
+     * Bumped before every cache eviction. A lookup only caches what it read from Redis
+     * if no eviction happened meanwhile, so a late put cannot outlive the change.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    // nodeId -> last heartbeat seen (ms), refreshed with every heartbeat
+    private volatile Map<String, Long> nodeHeartbeats = new ConcurrentHashMap<>();
+
+    public ClusterUserDirectory(StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer,
+            IUserRepository userRepository) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.userRepository = userRepository;
+    }
+
+    @PostConstruct
+    public void start() {
+        nodeId = configuredNodeId.isEmpty() ? UUID.randomUUID().toString() : configuredNodeId;
+        listenerContainer.addMessageListener(this, new ChannelTopic(RedisConfig.USER_DIRECTORY_CHANNEL));
+        heartbeat();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Other nodes holding sessions of the user, or null if the directory cannot answer
+     */
+    @Nullable
+    public Set<String> findRemoteNodesByUsername(String username) {
+        return findRemoteNodes(USER_NAME_PREFIX + username);
+    }
+
+    @Nullable
+    public Set<String> findRemoteNodesByUserId(Long userId) {
+        return findRemoteNodes(USER_ID_PREFIX + userId);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Principal principal = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (principal == null || sessionId == null) {
+            return;
+        }
+        Long userId = userRepository.findByUsername(principal.getName()).map(User::getId).orElse(null);
+        LocalSession session = new LocalSession(principal.getName(), userId);
+        localSessions.put(sessionId, session);
+        try {
+            for (String key : session.keys()) {
+                redisTemplate.opsForHash().increment(key, nodeId, 1);
+            }
+            publishChange(session);
+        } catch (Exception e) {
+            log.error("Failed to register session {} of {} in the user directory: {}", sessionId,
+                    session.username(), e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        // Disconnect can be published more than once per session
+        LocalSession session = localSessions.remove(event.getSessionId());
+        if (session == null) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, session.keys(), nodeId);
+            publishChange(session);
+        } catch (Exception e) {
+            log.error("Failed to release session {} of {} in the user directory: {}", event.getSessionId(),
+                    session.username(), e.getMessage());
+        }
+    }
+
+    /**
+     * Directory channel: a user connected or disconnected somewhere
+     */
+    @Override
+    public void onMessage(@NonNull org.springframework.data.redis.connection.Message message,
+            @Nullable byte[] pattern) {
+        generation.incrementAndGet();
+        cache.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Scheduled(fixedDelayString = "${app.websocket.user-directory.heartbeat-ms:10000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now - nodeTimeoutMs * 10);
+            Map<String, Long> heartbeats = new ConcurrentHashMap<>();
+            var live = redisTemplate.opsForZSet().rangeByScoreWithScores(NODES_KEY, now - nodeTimeoutMs,
+                    Double.MAX_VALUE);
+            if (live != null) {
+                live.forEach(node -> heartbeats.put(node.getValue(), node.getScore().longValue()));
+            }
+            nodeHeartbeats = heartbeats;
+        } catch (Exception e) {
+            log.warn("User directory heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    @Nullable
+    private Set<String> findRemoteNodes(String key) {
+        long now = System.currentTimeMillis();
+        CachedNodes cached = cache.get(key);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.nodes();
+        }
+
+        long startGeneration = generation.get();
+        Map<Object, Object> counts;
+        try {
+            counts = redisTemplate.opsForHash().entries(key);
+        } catch (Exception e) {
+            log.warn("User directory lookup of {} failed: {}", key, e.getMessage());
+            return null;
+        }
+
+        Set<String> nodes = new HashSet<>();
+        for (Map.Entry<Object, Object> entry : counts.entrySet()) {
+            String node = (String) entry.getKey();
+            if (node.equals(nodeId) || Long.parseLong((String) entry.getValue()) <= 0) {
+                continue;
+            }
+            if (isLive(node, now)) {
+                nodes.add(node);
+            } else {
+                redisTemplate.opsForHash().delete(key, node);
+            }
+        }
+        Set<String> result = Set.copyOf(nodes);
+        if (generation.get() == startGeneration) {
+            cache.put(key, new CachedNodes(result, now + cacheTtlMs));
+        }
+        return result;
+    }
+
+    private boolean isLive(String node, long now) {
+        Long seen = nodeHeartbeats.get(node);
+        if (seen == null || seen < now - nodeTimeoutMs) {
+            // Started after our last heartbeat, or missed one: ask Redis before dropping it
+            Double score = redisTemplate.opsForZSet().score(NODES_KEY, node);
+            if (score == null || score.longValue() < now - nodeTimeoutMs) {
+                return false;
+            }
+            nodeHeartbeats.put(node, score.longValue());
+        }
+        return true;
+    }
+
+    private void publishChange(LocalSession session) {
+        for (String key : session.keys()) {
+            generation.incrementAndGet();
+            cache.remove(key);
+            redisTemplate.convertAndSend(RedisConfig.USER_DIRECTORY_CHANNEL, key);
+        }
+    }
+
+    private record LocalSession(String username, @Nullable Long userId) {
+        private List<String> keys() {
+            return userId != null
+                    ? List.of(USER_NAME_PREFIX + username, USER_ID_PREFIX + userId)
+                    : List.of(USER_NAME_PREFIX + username);
+        }
+    }
+
+    private record CachedNodes(Set<String> nodes, long expiresAt) {
+    }
+}
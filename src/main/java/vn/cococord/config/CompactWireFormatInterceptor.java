@@ -0,0 +1,321 @@
+package vn.cococord.config;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opt-in compact wire format for channel message events, negotiated per STOMP
+ * session with the CONNECT header {@code x-wire-format: compact} (JSON) or
+ * {@code compact-cbor} (binary CBOR, raw WebSocket only - SockJS cannot carry
+ * binary frames, so SockJS sessions asking for it get {@code compact}; the SockJS
+ * endpoint marks its sessions with {@link #sockJsSessionMarker()}).
+ *
+ * message.created / message.updated events on /topic/channel/** are rewritten
+ * as {@code {"t": type, "p": payload, "a": {userId: {"n", "d", "v"}}}}: author
+ * username, displayName and avatarUrl are sent once per subscription in "a" and
+ * afterwards only referenced through payload.userId; null, empty and default
+ * fields are omitted. Rewritten frames carry {@code x-wire-format} so clients can
+ * tell them apart from regular JSON frames. Sessions that do not ask for it are
+ * not touched.
+ *
+ * The simple broker hands the same payload array to every subscriber, so the
+ * compacted variants are computed once per broadcast and cached by identity.
+ * This is an outbound channel interceptor rather than a MessageConverter: the
+ * converter runs once per publish, before the broker fans out, and cannot know
+ * the receiving session's format or which authors its subscription has seen.
+ */
+@Component
+@Slf4j
+@SuppressWarnings("null")
+public class CompactWireFormatInterceptor implements ChannelInterceptor {
+
+    public static final String WIRE_FORMAT_HEADER = "x-wire-format";
+    private static final String COMPACT = "compact";
+    private static final String COMPACT_CBOR = "compact-cbor";
+    private static final String SOCKJS_ATTRIBUTE = "cococord.sockjs";
+
+    private static final String CHANNEL_TOPIC_PREFIX = "/topic/channel/";
+    private static final Set<String> COMPACT_EVENT_TYPES = Set.of("message.created", "message.updated");
+
+    // Authors remembered per subscription; older ones are simply sent again
+    private static final int MAX_AUTHORS_PER_SUBSCRIPTION = 1024;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    @Value("${app.websocket.compact-format.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, SessionFormat> sessions = new ConcurrentHashMap<>();
+
+    // Keyed by payload identity (arrays do not override equals), released with the broadcast
+    private final Map<byte[], Optional<Encoded>> encodedPayloads = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!enabled) {
+            return message;
+        }
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (type == null) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+
+        switch (type) {
+            case CONNECT -> negotiate(sessionId, message);
+            case SUBSCRIBE, UNSUBSCRIBE -> {
+                SessionFormat format = sessions.get(sessionId);
+                String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+                if (format != null && subscriptionId != null) {
+                    format.resetSubscription(subscriptionId);
+                }
+            }
+            case MESSAGE -> {
+                return encode(sessionId, message);
+            }
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    /**
+     * Handshake interceptor for the SockJS endpoint: its sessions only get text frames
+     */
+    public HandshakeInterceptor sockJsSessionMarker() {
+        return new HandshakeInterceptor() {
+            @Override
+            public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                    WebSocketHandler wsHandler, Map<String, Object> attributes) {
+                attributes.put(SOCKJS_ATTRIBUTE, Boolean.TRUE);
+                return true;
+            }
+
+            @Override
+            public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                    WebSocketHandler wsHandler, @Nullable Exception exception) {
+            }
+        };
+    }
+
+    private void negotiate(String sessionId, Message<?> message) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        String requested = accessor.getFirstNativeHeader(WIRE_FORMAT_HEADER);
+        if (!COMPACT.equalsIgnoreCase(requested) && !COMPACT_CBOR.equalsIgnoreCase(requested)) {
+            return;
+        }
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        boolean sockJs = attributes != null && Boolean.TRUE.equals(attributes.get(SOCKJS_ATTRIBUTE));
+        boolean binary = COMPACT_CBOR.equalsIgnoreCase(requested) && !sockJs;
+        sessions.put(sessionId, new SessionFormat(binary));
+        log.debug("Session {} asked for wire format {}, using {}", sessionId, requested,
+                binary ? COMPACT_CBOR : COMPACT);
+    }
+
+    private Message<?> encode(String sessionId, Message<?> message) {
+        SessionFormat format = sessions.get(sessionId);
+        if (format == null || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        if (destination == null || subscriptionId == null || !destination.startsWith(CHANNEL_TOPIC_PREFIX)) {
+            return message;
+        }
+
+        // Parse outside the map lock: sessions of other broadcasts must not wait on it. Two sessions
+        // racing on the same payload both parse it and the first result is kept.
+        Optional<Encoded> cached = encodedPayloads.get(payload);
+        if (cached == null) {
+            Optional<Encoded> parsed = compact(payload);
+            cached = encodedPayloads.putIfAbsent(payload, parsed);
+            if (cached == null) {
+                cached = parsed;
+            }
+        }
+        Encoded encoded = cached.orElse(null);
+        if (encoded == null) {
+            return message;
+        }
+
+        boolean withAuthor = encoded.authorId == null
+                || format.markAuthorSent(subscriptionId, encoded.authorId, encoded.authorFingerprint);
+        byte[] body = encoded.bytes(format.binary, withAuthor);
+        if (body == null) {
+            return message;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setNativeHeader(WIRE_FORMAT_HEADER, format.binary ? COMPACT_CBOR : COMPACT);
+        // octet-stream makes the STOMP handler send a binary WebSocket frame
+        accessor.setContentType(format.binary ? MimeTypeUtils.APPLICATION_OCTET_STREAM : MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Split a WebSocketEvent into the compact payload and its author entry
+     */
+    private Optional<Encoded> compact(byte[] payload) {
+        try {
+            JsonNode event = jsonMapper.readTree(payload);
+            if (event == null || !event.isObject() || !COMPACT_EVENT_TYPES.contains(event.path("type").asText())
+                    || !event.path("payload").isObject()) {
+                return Optional.empty();
+            }
+
+            ObjectNode message = ((ObjectNode) event.get("payload")).deepCopy();
+            ObjectNode author = jsonMapper.createObjectNode();
+            putIfPresent(author, "n", message.remove("username"));
+            putIfPresent(author, "d", message.remove("displayName"));
+            putIfPresent(author, "v", message.remove("avatarUrl"));
+            stripDefaults(message);
+
+            JsonNode userId = message.get("userId");
+            Long authorId = userId != null && userId.canConvertToLong() ? userId.asLong() : null;
+            return Optional.of(new Encoded(event.get("type").asText(), message, authorId, author));
+        } catch (Exception e) {
+            log.debug("Payload is not a compactable event: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static void putIfPresent(ObjectNode target, String field, JsonNode value) {
+        if (value != null && !value.isNull()) {
+            target.set(field, value);
+        }
+    }
+
+    /**
+     * Drop nulls, empty arrays and values the client can assume (false flags, type=TEXT)
+     */
+    private static void stripDefaults(ObjectNode node) {
+        Iterator<Map.Entry<String, JsonNode>> fields = node.properties().iterator();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (value.isNull()
+                    || (value.isArray() && value.isEmpty())
+                    || (value.isBoolean() && !value.booleanValue())
+                    || ("type".equals(field.getKey()) && "TEXT".equals(value.asText()))) {
+                fields.remove();
+            } else if (value.isObject()) {
+                stripDefaults((ObjectNode) value);
+            } else if (value.isArray()) {
+                value.forEach(item -> {
+                    if (item.isObject()) {
+                        stripDefaults((ObjectNode) item);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Compacted event plus its four lazily serialized variants (JSON/CBOR, with/without author)
+     */
+    private final class Encoded {
+        private final String type;
+        private final ObjectNode payload;
+        private final Long authorId;
+        private final ObjectNode author;
+        private final int authorFingerprint;
+        private final byte[][] variants = new byte[4][];
+
+        private Encoded(String type, ObjectNode payload, Long authorId, ObjectNode author) {
+            this.type = type;
+            this.payload = payload;
+            this.authorId = authorId;
+            this.author = author;
+            this.authorFingerprint = author.hashCode();
+        }
+
+        private synchronized byte[] bytes(boolean binary, boolean withAuthor) {
+            int index = (binary ? 2 : 0) + (withAuthor ? 1 : 0);
+            if (variants[index] == null) {
+                ObjectNode frame = jsonMapper.createObjectNode();
+                frame.put("t", type);
+                frame.set("p", payload);
+                if (withAuthor && authorId != null && !author.isEmpty()) {
+                    frame.putObject("a").set(String.valueOf(authorId), author);
+                }
+                try {
+                    variants[index] = binary ? cborMapper.writeValueAsBytes(frame) : jsonMapper.writeValueAsBytes(frame);
+                } catch (Exception e) {
+                    log.warn("Failed to encode compact frame: {}", e.getMessage());
+                    return null;
+                }
+            }
+            return variants[index];
+        }
+    }
+
+    private static final class SessionFormat {
+        private final boolean binary;
+        // subscriptionId -> (authorId -> fingerprint of the author data the client holds)
+        private final Map<String, Map<Long, Integer>> authorsBySubscription = new ConcurrentHashMap<>();
+
+        private SessionFormat(boolean binary) {
+            this.binary = binary;
+        }
+
+        private void resetSubscription(String subscriptionId) {
+            authorsBySubscription.remove(subscriptionId);
+        }
+
+        /**
+         * @return true if the author has to be included (first time, or the data changed)
+         */
+        private boolean markAuthorSent(String subscriptionId, Long authorId, int fingerprint) {
+            Map<Long, Integer> authors = authorsBySubscription.computeIfAbsent(subscriptionId,
+                    id -> new LinkedHashMap<>(64, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+                            return size() > MAX_AUTHORS_PER_SUBSCRIPTION;
+                        }
+                    });
+            synchronized (authors) {
+                return !Objects.equals(authors.put(authorId, fingerprint), fingerprint);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package vn.cococord.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import vn.cococord.entity.mongodb.Message;
+import vn.cococord.entity.mongodb.MessageEdit;
+
+/**
+ * Moves edit history embedded in old message documents (editHistory) into the
+ * message_edits collection and removes the field from the message
+ * (app.chat.edits.migrate-embedded, on by default). Until a message is migrated
+ * its history is read from the document as well, see editId.
+ */
+@Component
+@SuppressWarnings("null")
+public class EmbeddedEditHistoryMigration extends BackgroundMigration {
+
+    @Value("${app.chat.edits.migrate-embedded:true}")
+    private boolean enabled;
+
+    public EmbeddedEditHistoryMigration(MongoTemplate mongoTemplate) {
+        super(mongoTemplate, "edit-history-migration");
+    }
+
+    /**
+     * Id of the i-th embedded edit once moved: rerunning a batch that was interrupted
+     * before the unset skips these, and readers can tell migrated entries apart.
+     */
+    public static String editId(String messageId, int index) {
+        return messageId + ":" + index;
+    }
+
+    @Override
+    protected boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    protected int migrate() {
+        return forEachBatch(Criteria.where("editHistory.0").exists(true), List.of("channelId", "editHistory"),
+                this::migrateBatch);
+    }
+
+    private void migrateBatch(List<Message> batch) {
+        List<MessageEdit> edits = new ArrayList<>();
+        for (Message message : batch) {
+            List<Message.EditHistory> history = message.getEditHistory();
+            for (int i = 0; i < history.size(); i++) {
+                edits.add(MessageEdit.builder()
+                        .id(editId(message.getId(), i))
+                        .messageId(message.getId())
+                        .channelId(message.getChannelId())
+                        .oldContent(history.get(i).getOldContent())
+                        .editedAt(history.get(i).getEditedAt())
+                        .build());
+            }
+        }
+        insertIgnoringDuplicates(edits, MessageEdit.class);
+
+        // Written after the inserts: an interrupted run redoes the batch rather than losing edits
+        BulkOperations unset = mongoTemplate.bulkOps(BulkMode.UNORDERED, Message.class);
+        for (Message message : batch) {
+            unset.updateOne(Query.query(Criteria.where("_id").is(message.getId())), new Update().unset("editHistory"));
+        }
+        unset.execute();
+    }
+}
@@ -0,0 +1,99 @@
+package vn.cococord.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import vn.cococord.entity.mongodb.Message;
+import vn.cococord.entity.mongodb.MessageReaction;
+
+/**
+ * Moves reactor ids embedded in old message documents (reactions.userIds) into
+ * the message_reactions collection and strips them from the message, leaving
+ * only per-emoji counts (app.chat.reactions.migrate-embedded, on by default).
+ *
+ * Legacy counts already include the embedded reactors, so they are only raised
+ * to the number of reactors ($max), never overwritten: a concurrent $inc from
+ * the live path is kept. Reaction writes migrate their message first
+ * (migrateMessage) until the background run is complete, so a reactor is never
+ * counted twice.
+ */
+@Component
+@SuppressWarnings("null")
+public class EmbeddedReactionMigration extends BackgroundMigration {
+
+    private static final Criteria PENDING = Criteria.where("reactions.userIds.0").exists(true);
+
+    @Value("${app.chat.reactions.migrate-embedded:true}")
+    private boolean enabled;
+
+    public EmbeddedReactionMigration(MongoTemplate mongoTemplate) {
+        super(mongoTemplate, "reaction-migration");
+    }
+
+    /**
+     * Migrates one message if it still embeds reactors
+     */
+    public void migrateMessage(String messageId) {
+        Query query = Query.query(new Criteria().andOperator(Criteria.where("_id").is(messageId), PENDING));
+        query.fields().include("channelId").include("reactions");
+        Message message = mongoTemplate.findOne(query, Message.class);
+        if (message != null) {
+            migrateBatch(List.of(message));
+        }
+    }
+
+    @Override
+    protected boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    protected int migrate() {
+        return forEachBatch(PENDING, List.of("channelId", "reactions"), this::migrateBatch);
+    }
+
+    private void migrateBatch(List<Message> batch) {
+        List<MessageReaction> reactors = new ArrayList<>();
+        BulkOperations counts = mongoTemplate.bulkOps(BulkMode.UNORDERED, Message.class);
+        for (Message message : batch) {
+            Update update = new Update();
+            for (int i = 0; i < message.getReactions().size(); i++) {
+                Message.Reaction reaction = message.getReactions().get(i);
+                if (reaction.getUserIds() == null || reaction.getUserIds().isEmpty()) {
+                    continue;
+                }
+                for (Long userId : reaction.getUserIds()) {
+                    reactors.add(MessageReaction.builder()
+                            .messageId(message.getId())
+                            .channelId(message.getChannelId())
+                            .emoji(reaction.getEmoji())
+                            .userId(userId)
+                            .build());
+                }
+                // Matched by emoji: a counter pulled meanwhile shifts the positions
+                String element = "reactions.$[r" + i + "]";
+                update.max(element + ".count", reaction.getUserIds().size())
+                        .unset(element + ".userIds")
+                        .filterArray(Criteria.where("r" + i + ".emoji").is(reaction.getEmoji()));
+            }
+            if (!update.getUpdateObject().isEmpty()) {
+                // Guard: a message another writer already migrated is left alone
+                counts.updateOne(Query.query(new Criteria().andOperator(
+                        Criteria.where("_id").is(message.getId()), PENDING)), update);
+            }
+        }
+
+        // Reactors are stored before the ids are stripped: a stopped run redoes the batch
+        insertIgnoringDuplicates(reactors, MessageReaction.class);
+        counts.execute();
+    }
+}
@@ -0,0 +1,157 @@
+package vn.cococord.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+
+/**
+ * Subscription registry for the simple broker that indexes exact destinations
+ * in a hash map. Almost every subscription here is exact (/topic/channel/{id},
+ * /topic/voice/{id}, ...), so a publish costs one lookup plus the subscribers of
+ * that destination, independent of how many subscriptions exist in total.
+ *
+ * Each destination keeps an immutable subscriber snapshot that publishes share;
+ * subscribe / unsubscribe only drop the snapshot and the next publish rebuilds it,
+ * so churn on a large topic does not copy it on every change. Wildcard
+ * subscriptions are kept in a separate list and only they go through the path
+ * matcher. Selector headers are not supported.
+ */
+public class ExactMatchSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    private final Map<String, DestinationSubscribers> exact = new ConcurrentHashMap<>();
+    private final List<PatternSubscription> patterns = new CopyOnWriteArrayList<>();
+    // sessionId -> subscriptionId -> destination, for unsubscribe and disconnect
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    protected void addSubscriptionInternal(@NonNull String sessionId, @NonNull String subscriptionId,
+            @NonNull String destination, @NonNull Message<?> message) {
+        sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(subscriptionId, destination);
+        if (pathMatcher.isPattern(destination)) {
+            patterns.add(new PatternSubscription(sessionId, subscriptionId, destination));
+            return;
+        }
+        exact.compute(destination, (key, subscribers) -> {
+            DestinationSubscribers target = subscribers != null ? subscribers : new DestinationSubscribers();
+            target.add(sessionId, subscriptionId);
+            return target;
+        });
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(@NonNull String sessionId, @NonNull String subscriptionId,
+            @NonNull Message<?> message) {
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        String destination = subscriptions != null ? subscriptions.remove(subscriptionId) : null;
+        if (destination != null) {
+            remove(sessionId, subscriptionId, destination);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(@NonNull String sessionId) {
+        Map<String, String> subscriptions = sessions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.forEach((subscriptionId, destination) -> remove(sessionId, subscriptionId, destination));
+        }
+    }
+
+    @Override
+    @NonNull
+    protected MultiValueMap<String, String> findSubscriptionsInternal(@NonNull String destination,
+            @NonNull Message<?> message) {
+        DestinationSubscribers subscribers = exact.get(destination);
+        MultiValueMap<String, String> result = subscribers != null ? subscribers.snapshot() : null;
+        if (patterns.isEmpty()) {
+            return result != null ? result : new LinkedMultiValueMap<>();
+        }
+
+        MultiValueMap<String, String> merged = null;
+        for (PatternSubscription subscription : patterns) {
+            if (pathMatcher.match(subscription.pattern(), destination)) {
+                if (merged == null) {
+                    merged = result != null ? new LinkedMultiValueMap<>(result) : new LinkedMultiValueMap<>();
+                }
+                merged.add(subscription.sessionId(), subscription.subscriptionId());
+            }
+        }
+        if (merged != null) {
+            return merged;
+        }
+        return result != null ? result : new LinkedMultiValueMap<>();
+    }
+
+    private void remove(String sessionId, String subscriptionId, String destination) {
+        if (pathMatcher.isPattern(destination)) {
+            patterns.removeIf(p -> p.sessionId().equals(sessionId) && p.subscriptionId().equals(subscriptionId));
+            return;
+        }
+        exact.computeIfPresent(destination, (key, subscribers) -> {
+            subscribers.remove(sessionId, subscriptionId);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private record PatternSubscription(String sessionId, String subscriptionId, String pattern) {
+    }
+
+    /**
+     * Subscribers of one exact destination. Writes happen inside the map's compute,
+     * reads share the snapshot.
+     */
+    private static final class DestinationSubscribers {
+        private final Map<String, List<String>> bySession = new LinkedHashMap<>();
+        private volatile MultiValueMap<String, String> snapshot;
+
+        private synchronized void add(String sessionId, String subscriptionId) {
+            List<String> ids = bySession.computeIfAbsent(sessionId, id -> new ArrayList<>(1));
+            if (!ids.contains(subscriptionId)) {
+                ids.add(subscriptionId);
+                snapshot = null;
+            }
+        }
+
+        private synchronized void remove(String sessionId, String subscriptionId) {
+            List<String> ids = bySession.get(sessionId);
+            if (ids != null && ids.remove(subscriptionId)) {
+                if (ids.isEmpty()) {
+                    bySession.remove(sessionId);
+                }
+                snapshot = null;
+            }
+        }
+
+        private synchronized boolean isEmpty() {
+            return bySession.isEmpty();
+        }
+
+        private MultiValueMap<String, String> snapshot() {
+            MultiValueMap<String, String> current = snapshot;
+            if (current != null) {
+                return current;
+            }
+            synchronized (this) {
+                if (snapshot == null) {
+                    LinkedMultiValueMap<String, String> copy = new LinkedMultiValueMap<>(bySession.size());
+                    bySession.forEach((sessionId, ids) -> copy.put(sessionId, List.copyOf(ids)));
+                    snapshot = CollectionUtils.unmodifiableMultiValueMap(copy);
+                }
+                return snapshot;
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package vn.cococord.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor for a STOMP channel that records queue depth, running tasks and task
+ * latency (time waiting for a thread, time running). Wraps either a thread pool
+ * or a virtual-thread-per-task executor, see WebSocketExecutorConfig.
+ */
+public class InstrumentedChannelExecutor implements Executor {
+
+    private final String name;
+    private final String mode;
+    private final Executor delegate;
+    @Nullable
+    private final ThreadPoolTaskExecutor pool;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalRunNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    public InstrumentedChannelExecutor(String name, String mode, Executor delegate) {
+        this.name = name;
+        this.mode = mode;
+        this.delegate = delegate;
+        this.pool = delegate instanceof ThreadPoolTaskExecutor threadPool ? threadPool : null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        long enqueuedAt = System.nanoTime();
+        queued.incrementAndGet();
+        submitted.increment();
+        try {
+            delegate.execute(() -> {
+                long startedAt = System.nanoTime();
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                record(totalWaitNanos, maxWaitNanos, startedAt - enqueuedAt);
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.increment();
+                    record(totalRunNanos, maxRunNanos, System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Current counters; averages and maxima are since startup
+     */
+    public Map<String, Object> snapshot() {
+        long done = completed.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", mode);
+        stats.put("queueDepth", queued.get());
+        stats.put("activeTasks", active.get());
+        if (pool != null) {
+            stats.put("poolSize", pool.getPoolSize());
+            stats.put("maxPoolSize", pool.getMaxPoolSize());
+        }
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", done);
+        stats.put("rejected", rejected.sum());
+        stats.put("avgWaitMs", done > 0 ? toMillis(totalWaitNanos.sum()) / done : 0.0);
+        stats.put("maxWaitMs", toMillis(maxWaitNanos.get()));
+        stats.put("avgRunMs", done > 0 ? toMillis(totalRunNanos.sum()) / done : 0.0);
+        stats.put("maxRunMs", toMillis(maxRunNanos.get()));
+        return stats;
+    }
+
+    private static void record(LongAdder total, AtomicLong max, long nanos) {
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -5,12 +5,16 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
 import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
 
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import vn.cococord.entity.mongodb.Message;
+import vn.cococord.entity.mongodb.MessageEdit;
+import vn.cococord.entity.mongodb.MessageReaction;
 
 /**
  * MongoDB Index Configuration
@@ -28,6 +32,8 @@ public class MongoIndexConfig {
     public void initIndexes() {
         try {
             createMessageIndexes();
+            createReactionIndexes();
+            createEditIndexes();
             log.info("MongoDB indexes created successfully");
         } catch (Exception e) {
             log.error("Failed to create MongoDB indexes: {}", e.getMessage());
@@ -61,6 +67,18 @@ public class MongoIndexConfig {
             log.warn("Compound index may already exist: {}", e.getMessage());
         }
 
+        // Channel history pages sort on (createdAt, _id); without _id in the index every
+        // keyset page would sort all of the channel's messages before/after the cursor in memory
+        try {
+            indexOps.ensureIndex(new Index()
+                    .on("channelId", Sort.Direction.ASC)
+                    .on("createdAt", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC));
+            log.info("Created compound index on Message (channelId, createdAt, _id)");
+        } catch (Exception e) {
+            log.warn("Channel history index may already exist: {}", e.getMessage());
+        }
+
         // Compound index for server queries
         try {
             indexOps.ensureIndex(new Index()
@@ -71,6 +89,18 @@ public class MongoIndexConfig {
             log.warn("Compound index may already exist: {}", e.getMessage());
         }
 
+        // Thread pages; only replies carry parentMessageId, so the index stays small
+        try {
+            indexOps.ensureIndex(new Index()
+                    .on("parentMessageId", Sort.Direction.ASC)
+                    .on("createdAt", Sort.Direction.ASC)
+                    .on("_id", Sort.Direction.ASC)
+                    .partial(PartialIndexFilter.of(Criteria.where("parentMessageId").exists(true))));
+            log.info("Created compound index on Message (parentMessageId, createdAt, _id)");
+        } catch (Exception e) {
+            log.warn("Thread index may already exist: {}", e.getMessage());
+        }
+
         // Index for user queries
         try {
             indexOps.ensureIndex(new Index().on("userId", Sort.Direction.ASC));
@@ -79,4 +109,52 @@ public class MongoIndexConfig {
             log.warn("User index may already exist: {}", e.getMessage());
         }
     }
+
+    private void createReactionIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(MessageReaction.class);
+
+        // One reaction per (message, emoji, user); duplicate inserts mean "already reacted"
+        try {
+            indexOps.ensureIndex(new Index()
+                    .on("messageId", Sort.Direction.ASC)
+                    .on("emoji", Sort.Direction.ASC)
+                    .on("userId", Sort.Direction.ASC)
+                    .unique());
+            log.info("Created unique index on MessageReaction (messageId, emoji, userId)");
+        } catch (Exception e) {
+            log.warn("Reaction unique index may already exist: {}", e.getMessage());
+        }
+
+        // "Who reacted" pages in reaction order
+        try {
+            indexOps.ensureIndex(new Index()
+                    .on("messageId", Sort.Direction.ASC)
+                    .on("emoji", Sort.Direction.ASC)
+                    .on("_id", Sort.Direction.ASC));
+            log.info("Created compound index on MessageReaction (messageId, emoji, _id)");
+        } catch (Exception e) {
+            log.warn("Reaction list index may already exist: {}", e.getMessage());
+        }
+
+        // Viewer's own reactions on a history page
+        try {
+            indexOps.ensureIndex(new Index()
+                    .on("messageId", Sort.Direction.ASC)
+                    .on("userId", Sort.Direction.ASC));
+            log.info("Created compound index on MessageReaction (messageId, userId)");
+        } catch (Exception e) {
+            log.warn("Reaction viewer index may already exist: {}", e.getMessage());
+        }
+    }
+
+    private void createEditIndexes() {
+        try {
+            mongoTemplate.indexOps(MessageEdit.class).ensureIndex(new Index()
+                    .on("messageId", Sort.Direction.ASC)
+                    .on("editedAt", Sort.Direction.DESC));
+            log.info("Created compound index on MessageEdit (messageId, editedAt)");
+        } catch (Exception e) {
+            log.warn("Edit history index may already exist: {}", e.getMessage());
+        }
+    }
 }
@@ -1,7 +1,6 @@
 package vn.cococord.config;
 
-import java.util.List;
-
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
@@ -16,11 +15,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import vn.cococord.dto.websocket.PresenceChangeEvent;
 import vn.cococord.dto.websocket.WebSocketEvent;
-import vn.cococord.entity.mysql.Server;
-import vn.cococord.entity.mysql.ServerMember;
-import vn.cococord.repository.IServerMemberRepository;
-import vn.cococord.repository.IUserRepository;
-import vn.cococord.service.IFriendService;
+import vn.cococord.service.IPresenceAudienceIndex;
+import vn.cococord.service.IPresenceAudienceIndex.Audience;
 
 /**
  * Redis Pub/Sub subscriber for presence events.
@@ -37,11 +33,12 @@ import vn.cococord.service.IFriendService;
 public class PresenceRedisMessageSubscriber implements MessageListener {
 
     private final SimpMessagingTemplate messagingTemplate;
-    private final IUserRepository userRepository;
-    private final IServerMemberRepository serverMemberRepository;
-    private final IFriendService friendService;
+    private final IPresenceAudienceIndex audienceIndex;
     private final ObjectMapper objectMapper;
 
+    @Value("${app.presence.global-topic.enabled:false}")
+    private boolean globalTopicEnabled;
+
     @Override
     public void onMessage(@NonNull Message message, @Nullable byte[] pattern) {
         try {
@@ -62,36 +59,24 @@ public class PresenceRedisMessageSubscriber implements MessageListener {
     private void broadcastPresenceChange(PresenceChangeEvent event) {
         WebSocketEvent wsEvent = new WebSocketEvent("user.status.changed", event);
 
-        // Broadcast to user's friends
-        try {
-            userRepository.findById(event.getUserId()).ifPresent(user -> {
-                try {
-                    var friends = friendService.getFriends(user.getUsername());
-                    for (var friend : friends) {
-                        messagingTemplate.convertAndSendToUser(friend.getUsername(), "/queue/presence", wsEvent);
-                    }
-                } catch (Exception e) {
-                    log.error("Failed to broadcast presence to friends: {}", e.getMessage());
-                }
-            });
-        } catch (Exception e) {
-            log.error("Failed to find user for presence broadcast: {}", e.getMessage());
+        Audience audience = audienceIndex.get(event.getUserId());
+        for (String username : audience.usernames()) {
+            try {
+                messagingTemplate.convertAndSendToUser(username, "/queue/presence", wsEvent);
+            } catch (Exception e) {
+                log.error("Failed to broadcast presence to {}: {}", username, e.getMessage());
+            }
         }
-
-        // Broadcast to servers where user is a member
-        try {
-            List<ServerMember> memberships = serverMemberRepository.findByUserId(event.getUserId());
-            for (ServerMember membership : memberships) {
-                Server server = membership.getServer();
-                messagingTemplate.convertAndSend(
-                        "/topic/server." + server.getId() + ".presence",
-                        wsEvent);
+        for (Long serverId : audience.serverIds()) {
+            try {
+                messagingTemplate.convertAndSend("/topic/server." + serverId + ".presence", wsEvent);
+            } catch (Exception e) {
+                log.error("Failed to broadcast presence to server {}: {}", serverId, e.getMessage());
             }
-        } catch (Exception e) {
-            log.error("Failed to broadcast presence to servers: {}", e.getMessage());
         }
 
-        // Also broadcast to global presence topic
-        messagingTemplate.convertAndSend("/topic/presence", wsEvent);
+        if (globalTopicEnabled) {
+            messagingTemplate.convertAndSend("/topic/presence", wsEvent);
+        }
     }
 }
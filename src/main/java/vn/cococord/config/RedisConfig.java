@@ -1,9 +1,16 @@
 package vn.cococord.config;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
@@ -31,6 +38,27 @@ public class RedisConfig {
      */
     public static final String PRESENCE_CHANNEL = "cococord:presence:channel";
 
+    /**
+     * Redis channel carrying committed changes of node-local caches between nodes
+     */
+    public static final String CACHE_INVALIDATION_CHANNEL = "cococord:cache:invalidation";
+
+    /**
+     * Redis channel carrying /topic publishes between nodes (broker relay mode)
+     */
+    public static final String BROKER_RELAY_CHANNEL = "cococord:broker:topic";
+
+    /**
+     * Per-node Redis channel for user destinations routed to the node holding the sessions.
+     * Format: cococord:broker:node:{nodeId}
+     */
+    public static final String BROKER_NODE_CHANNEL_PREFIX = "cococord:broker:node:";
+
+    /**
+     * Redis channel announcing user directory changes (connect / disconnect)
+     */
+    public static final String USER_DIRECTORY_CHANNEL = "cococord:broker:directory";
+
     /**
      * Redis key prefix for user sessions
      * Format: presence:sessions:{userId} -> Set of sessionIds
@@ -54,6 +82,26 @@ public class RedisConfig {
      */
     public static final long PRESENCE_TTL_SECONDS = 300;
 
+    /**
+     * RedisAutoConfiguration is excluded (Redis is optional), so the connection
+     * factory is built here from the spring.data.redis.* properties
+     */
+    @Bean
+    @ConditionalOnMissingBean(RedisConnectionFactory.class)
+    public LettuceConnectionFactory redisConnectionFactory(
+            @Value("${spring.data.redis.host:localhost}") String host,
+            @Value("${spring.data.redis.port:6379}") int port,
+            @Value("${spring.data.redis.password:}") String password,
+            @Value("${spring.data.redis.timeout:2000ms}") Duration timeout) {
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(host, port);
+        if (!password.isEmpty()) {
+            server.setPassword(password);
+        }
+        return new LettuceConnectionFactory(server, LettuceClientConfiguration.builder()
+                .commandTimeout(timeout)
+                .build());
+    }
+
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
@@ -0,0 +1,214 @@
+package vn.cococord.config;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.service.IChannelTailCache;
+
+/**
+ * Relays /topic publishes between application nodes over Redis Pub/Sub
+ * (app.websocket.broker.mode=redis-relay, requires spring.data.redis.enabled).
+ *
+ * Every node keeps its in-process simple broker and delivers only to its own
+ * subscribers. Server-side publishes to /topic/** are, after local delivery,
+ * published once to {@link RedisConfig#BROKER_RELAY_CHANNEL}; other nodes hand
+ * them to their local broker marked as relayed so they are not published again.
+ * A node ignores its own publishes, and a bounded set of recently seen relay ids
+ * drops duplicates.
+ *
+ * User-targeted messages (/user/{username}/** from convertAndSendToUser and
+ * /topic/user.{userId}.**) are instead sent only to the nodes that
+ * {@link ClusterUserDirectory} lists for the user, on their
+ * {@link RedisConfig#BROKER_NODE_CHANNEL_PREFIX} channel. If the directory cannot
+ * answer they fall back to the broadcast channel.
+ *
+ * Relayed channel events are also handed to IChannelTailCache, so the tail of a
+ * channel stays current on nodes other than the one the message was sent on.
+ */
+@Component
+@ConditionalOnExpression("${spring.data.redis.enabled:false} and '${app.websocket.broker.mode:simple}' == 'redis-relay'")
+@Slf4j
+@SuppressWarnings("null")
+public class RedisTopicRelay implements ChannelInterceptor, MessageListener {
+
+    private static final String TOPIC_PREFIX = "/topic/";
+    private static final String USER_TOPIC_PREFIX = "/topic/user.";
+    private static final String USER_PREFIX = "/user/";
+    static final String RELAYED_HEADER = "cococordRelayed";
+    private static final int SEEN_IDS = 4096;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ClusterUserDirectory userDirectory;
+    private final IChannelTailCache channelTailCache;
+
+    private String nodeId;
+
+    // Insertion-ordered, guarded by itself
+    private final Set<String> seenIds = Collections.newSetFromMap(new LinkedHashMap<>(SEEN_IDS * 2, 0.75f) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > SEEN_IDS;
+        }
+    });
+
+    // The messaging template is built by the broker configuration that registers this interceptor
+    public RedisTopicRelay(StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer,
+            ObjectMapper objectMapper, @Lazy SimpMessagingTemplate messagingTemplate,
+            ClusterUserDirectory userDirectory, IChannelTailCache channelTailCache) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        this.messagingTemplate = messagingTemplate;
+        this.userDirectory = userDirectory;
+        this.channelTailCache = channelTailCache;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        nodeId = userDirectory.getNodeId();
+        listenerContainer.addMessageListener(this, List.of(new ChannelTopic(RedisConfig.BROKER_RELAY_CHANNEL),
+                new ChannelTopic(RedisConfig.BROKER_NODE_CHANNEL_PREFIX + nodeId)));
+        log.info("Broker relay enabled, node id {}", nodeId);
+    }
+
+    /**
+     * Broker channel: publish local /topic and /user messages to the other nodes once they were delivered here
+     */
+    @Override
+    public void postSend(@NonNull Message<?> message, @NonNull MessageChannel channel, boolean sent) {
+        if (!sent || message.getHeaders().containsKey(RELAYED_HEADER)
+                || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !(destination.startsWith(TOPIC_PREFIX) || destination.startsWith(USER_PREFIX))) {
+            return;
+        }
+
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        RelayEnvelope envelope = new RelayEnvelope(UUID.randomUUID().toString(), nodeId, destination,
+                contentType != null ? contentType.toString() : null,
+                SimpMessageHeaderAccessor.wrap(message).toNativeHeaderMap(), payload);
+        try {
+            String body = objectMapper.writeValueAsString(envelope);
+            Set<String> owners = findOwnerNodes(destination);
+            if (owners == null) {
+                redisTemplate.convertAndSend(RedisConfig.BROKER_RELAY_CHANNEL, body);
+            } else {
+                for (String owner : owners) {
+                    redisTemplate.convertAndSend(RedisConfig.BROKER_NODE_CHANNEL_PREFIX + owner, body);
+                }
+            }
+        } catch (Exception e) {
+            // Local subscribers already have it; remote ones miss this event
+            log.error("Failed to relay {} to other nodes: {}", destination, e.getMessage());
+        }
+    }
+
+    /**
+     * Redis: deliver another node's publish to the subscribers connected here
+     */
+    @Override
+    public void onMessage(@NonNull org.springframework.data.redis.connection.Message message,
+            @Nullable byte[] pattern) {
+        RelayEnvelope envelope;
+        try {
+            envelope = objectMapper.readValue(message.getBody(), RelayEnvelope.class);
+        } catch (Exception e) {
+            log.error("Failed to read relayed broker message: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(envelope.origin()) || !markSeen(envelope.id())) {
+            return;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(envelope.destination());
+        if (envelope.contentType() != null) {
+            accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+        }
+        if (envelope.nativeHeaders() != null) {
+            // e.g. x-seq from ChannelEventSequencer
+            envelope.nativeHeaders().forEach((name, values) -> values.forEach(value -> accessor.addNativeHeader(name, value)));
+        }
+        accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+        accessor.setLeaveMutable(true);
+        // Before delivery: a client reloading history on this event must find it in the tail
+        channelTailCache.onRelayedEvent(envelope.destination(), envelope.payload());
+        try {
+            messagingTemplate.send(envelope.destination(),
+                    MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.error("Failed to deliver relayed message to {}: {}", envelope.destination(), e.getMessage());
+        }
+    }
+
+    /**
+     * Remote nodes holding the addressed user's sessions, or null to broadcast
+     */
+    private Set<String> findOwnerNodes(String destination) {
+        if (destination.startsWith(USER_PREFIX)) {
+            int end = destination.indexOf('/', USER_PREFIX.length());
+            if (end < 0) {
+                return null;
+            }
+            // Same escaping as Spring's user destination resolver
+            String username = destination.substring(USER_PREFIX.length(), end).replace("%2F", "/");
+            return userDirectory.findRemoteNodesByUsername(username);
+        }
+        if (destination.startsWith(USER_TOPIC_PREFIX)) {
+            int end = destination.indexOf('.', USER_TOPIC_PREFIX.length());
+            String id = destination.substring(USER_TOPIC_PREFIX.length(), end < 0 ? destination.length() : end);
+            try {
+                return userDirectory.findRemoteNodesByUserId(Long.valueOf(id));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private boolean markSeen(String id) {
+        synchronized (seenIds) {
+            return seenIds.add(id);
+        }
+    }
+
+    /**
+     * Wire format on the relay channel; the payload is the already serialized STOMP body
+     */
+    public record RelayEnvelope(String id, String origin, String destination, String contentType,
+            Map<String, List<String>> nativeHeaders, byte[] payload) {
+    }
+}
@@ -0,0 +1,88 @@
+package vn.cococord.config;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import vn.cococord.entity.mongodb.Message;
+
+/**
+ * Adds replies written before thread counters existed to replyCount / lastReplyAt
+ * of their parents (app.chat.threads.backfill-reply-counts, on by default). Those
+ * replies are the ones without a replyCount field of their own (every message
+ * saved since carries one), so they were never counted live. As on the live path,
+ * only replies in the parent's channel are counted.
+ *
+ * Each parent gets one update that $inc's the counted value and $max's lastReplyAt,
+ * so concurrent replies are not overwritten, and is marked replyCountBackfilled in
+ * the same update. The replies are then given replyCount 0: a run stopped between
+ * the two steps skips the marked parent and only finishes marking its replies.
+ */
+@Component
+@SuppressWarnings("null")
+public class ReplyCountBackfill extends BackgroundMigration {
+
+    private static final String BACKFILLED = "replyCountBackfilled";
+    private static final Criteria LEGACY_REPLY = Criteria.where("parentMessageId").exists(true)
+            .and("replyCount").exists(false);
+
+    @Value("${app.chat.threads.backfill-reply-counts:true}")
+    private boolean enabled;
+
+    public ReplyCountBackfill(MongoTemplate mongoTemplate) {
+        super(mongoTemplate, "reply-count-backfill");
+    }
+
+    @Override
+    protected boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    protected int migrate() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(LEGACY_REPLY),
+                Aggregation.group("parentMessageId", "channelId").count().as("replyCount")
+                        .max("createdAt").as("lastReplyAt"));
+
+        int updated = 0;
+        for (Document thread : mongoTemplate.aggregate(aggregation, Message.class, Document.class)) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            Document key = thread.get("_id", Document.class);
+            String parentId = key.getString("parentMessageId");
+            Object channelId = key.get("channelId");
+
+            // Matches nothing for replies from another channel; those are only marked
+            updated += (int) mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(parentId).and("channelId").is(channelId)
+                            .and(BACKFILLED).exists(false)),
+                    withLastReplyAt(new Update()
+                            .inc("replyCount", thread.getInteger("replyCount"))
+                            .set(BACKFILLED, true), thread.getDate("lastReplyAt")),
+                    Message.class).getModifiedCount();
+            mongoTemplate.updateMulti(
+                    Query.query(new Criteria().andOperator(LEGACY_REPLY,
+                            Criteria.where("parentMessageId").is(parentId).and("channelId").is(channelId))),
+                    new Update().set("replyCount", 0),
+                    Message.class);
+        }
+        return updated;
+    }
+
+    private static Update withLastReplyAt(Update update, Date lastReplyAt) {
+        return lastReplyAt != null
+                ? update.max("lastReplyAt", LocalDateTime.ofInstant(lastReplyAt.toInstant(), ZoneId.systemDefault()))
+                : update;
+    }
+}
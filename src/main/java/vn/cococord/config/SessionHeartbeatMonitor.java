@@ -0,0 +1,328 @@
+package vn.cococord.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * STOMP heart-beating and dead-session reaping (app.websocket.heartbeat.*).
+ *
+ * The server offers heart-beat server-ms,client-ms in CONNECTED and the intervals
+ * are negotiated per session as in the STOMP spec. Each session has a read and a
+ * write deadline on a {@link TimingWheel} ticked by the heartbeat scheduler.
+ * Inbound frames and outbound messages only stamp a timestamp; when a deadline
+ * fires it is re-armed from that timestamp, so the wheel sees one entry per
+ * session and direction regardless of traffic.
+ *
+ * <ul>
+ * <li>write deadline - nothing sent for the write interval: send a heartbeat;</li>
+ * <li>read deadline - nothing received for missed-heartbeats x read interval: the
+ * session is closed. If the transport does not report the close within
+ * close-grace-ms (half-open TCP), the close is signalled to the STOMP handler
+ * directly so SessionDisconnectEvent still fires (presence, voice, broker).</li>
+ * </ul>
+ * Sessions whose client does not send heartbeats are not reaped.
+ */
+@Component
+@Slf4j
+@SuppressWarnings("null")
+public class SessionHeartbeatMonitor implements WebSocketHandlerDecoratorFactory {
+
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+    private final WebSocketExecutorConfig executors;
+    private final MessageChannel clientOutboundChannel;
+
+    @Value("${app.websocket.heartbeat.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.websocket.heartbeat.server-ms:10000}")
+    private long serverHeartbeatMs;
+
+    @Value("${app.websocket.heartbeat.client-ms:10000}")
+    private long clientHeartbeatMs;
+
+    @Value("${app.websocket.heartbeat.missed-heartbeats:2}")
+    private int missedHeartbeats;
+
+    @Value("${app.websocket.heartbeat.close-grace-ms:5000}")
+    private long closeGraceMs;
+
+    @Value("${app.websocket.heartbeat.tick-ms:500}")
+    private long tickMs;
+
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+    private TimingWheel<Deadline> wheel;
+    private ScheduledFuture<?> ticker;
+
+    private final LongAdder heartbeatsSent = new LongAdder();
+    private final LongAdder reaped = new LongAdder();
+    private final LongAdder forcedDisconnects = new LongAdder();
+
+    // The outbound channel is created by the broker configuration that registers this monitor
+    public SessionHeartbeatMonitor(WebSocketExecutorConfig executors,
+            @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        this.executors = executors;
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        wheel = new TimingWheel<>(tickMs, System.currentTimeMillis());
+        ticker = executors.getHeartbeatScheduler().scheduleAtFixedRate(this::tick, Duration.ofMillis(tickMs));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.cancel(false);
+        }
+    }
+
+    /**
+     * Client inbound channel: every frame (heartbeats included) counts as activity
+     */
+    public ChannelInterceptor inboundInterceptor() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+                SessionState state = enabled ? stateOf(message) : null;
+                if (state != null) {
+                    state.lastRead = System.currentTimeMillis();
+                }
+                return message;
+            }
+        };
+    }
+
+    /**
+     * Client outbound channel: offers our heart-beat in CONNECTED, arms the session's
+     * deadlines and counts sent messages as write activity
+     */
+    public ChannelInterceptor outboundInterceptor() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+                if (!enabled) {
+                    return message;
+                }
+                if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.CONNECT_ACK) {
+                    return negotiate(message);
+                }
+                SessionState state = stateOf(message);
+                if (state != null) {
+                    state.lastWrite = System.currentTimeMillis();
+                }
+                return message;
+            }
+        };
+    }
+
+    @Override
+    @NonNull
+    public WebSocketHandler decorate(@NonNull WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+                if (enabled) {
+                    sessions.put(session.getId(), new SessionState(session, getDelegate()));
+                }
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus closeStatus)
+                    throws Exception {
+                SessionState state = sessions.remove(session.getId());
+                if (state != null && !state.closed.compareAndSet(false, true)) {
+                    // Already signalled by a forced disconnect
+                    return;
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("sessions", sessions.size());
+        stats.put("scheduledDeadlines", wheel != null ? wheel.size() : 0);
+        stats.put("heartbeatsSent", heartbeatsSent.sum());
+        stats.put("reaped", reaped.sum());
+        stats.put("forcedDisconnects", forcedDisconnects.sum());
+        return stats;
+    }
+
+    private Message<?> negotiate(Message<?> connectAck) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(connectAck.getHeaders());
+        SessionState state = sessionId != null ? sessions.get(sessionId) : null;
+        Message<?> connect = (Message<?>) connectAck.getHeaders().get(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER);
+        long[] client = connect != null ? StompHeaderAccessor.wrap(connect).getHeartbeat() : new long[] { 0, 0 };
+
+        if (state != null) {
+            long now = System.currentTimeMillis();
+            // STOMP: each direction uses the larger of what one side offers and the other wants
+            state.writeInterval = serverHeartbeatMs > 0 && client[1] > 0 ? Math.max(serverHeartbeatMs, client[1]) : 0;
+            state.readInterval = clientHeartbeatMs > 0 && client[0] > 0 ? Math.max(clientHeartbeatMs, client[0]) : 0;
+            state.lastRead = now;
+            state.lastWrite = now;
+            if (state.writeInterval > 0) {
+                wheel.schedule(new Deadline(state, Kind.WRITE), now + state.writeInterval);
+            }
+            if (state.readInterval > 0) {
+                wheel.schedule(new Deadline(state, Kind.READ), now + readTimeout(state));
+            }
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(connectAck);
+        accessor.setHeader(SimpMessageHeaderAccessor.HEART_BEAT_HEADER,
+                new long[] { serverHeartbeatMs, clientHeartbeatMs });
+        return MessageBuilder.createMessage(connectAck.getPayload(), accessor.getMessageHeaders());
+    }
+
+    private void tick() {
+        List<Deadline> due;
+        try {
+            due = wheel.advance(System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("Heartbeat wheel tick failed: {}", e.getMessage());
+            return;
+        }
+        for (Deadline deadline : due) {
+            try {
+                fire(deadline);
+            } catch (Exception e) {
+                log.debug("Heartbeat deadline for session {} failed: {}", deadline.state().session.getId(),
+                        e.getMessage());
+            }
+        }
+    }
+
+    private void fire(Deadline deadline) {
+        SessionState state = deadline.state();
+        if (state.closed.get()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        switch (deadline.kind()) {
+            case WRITE -> {
+                long next = state.lastWrite + state.writeInterval;
+                if (next <= now) {
+                    sendHeartbeat(state);
+                    next = now + state.writeInterval;
+                }
+                wheel.schedule(deadline, next);
+            }
+            case READ -> {
+                long next = state.lastRead + readTimeout(state);
+                if (next > now) {
+                    wheel.schedule(deadline, next);
+                } else {
+                    reap(state, now - state.lastRead);
+                    wheel.schedule(new Deadline(state, Kind.FORCE_CLOSE), now + closeGraceMs);
+                }
+            }
+            case FORCE_CLOSE -> forceDisconnect(state);
+        }
+    }
+
+    private void sendHeartbeat(SessionState state) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.HEARTBEAT);
+        accessor.setSessionId(state.session.getId());
+        clientOutboundChannel.send(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+        heartbeatsSent.increment();
+    }
+
+    private void reap(SessionState state, long silentMs) {
+        reaped.increment();
+        String sessionId = state.session.getId();
+        log.info("Closing WebSocket session {}: no frames for {} ms", sessionId, silentMs);
+        // close() can block on a dead socket
+        Thread.ofVirtual().name("ws-reap-" + sessionId).start(() -> {
+            try {
+                state.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (Exception e) {
+                log.debug("Failed to close session {}: {}", sessionId, e.getMessage());
+            }
+        });
+    }
+
+    private void forceDisconnect(SessionState state) {
+        if (!state.closed.compareAndSet(false, true)) {
+            return;
+        }
+        // Stays registered so a late close from the transport is not passed on a second time
+        String sessionId = state.session.getId();
+        forcedDisconnects.increment();
+        log.warn("WebSocket session {} did not close, signalling disconnect", sessionId);
+        try {
+            state.handler.afterConnectionClosed(state.session, CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (Exception e) {
+            log.warn("Forced disconnect of session {} failed: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private long readTimeout(SessionState state) {
+        return state.readInterval * Math.max(1, missedHeartbeats);
+    }
+
+    @Nullable
+    private SessionState stateOf(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return sessionId != null ? sessions.get(sessionId) : null;
+    }
+
+    private enum Kind {
+        READ, WRITE, FORCE_CLOSE
+    }
+
+    private record Deadline(SessionState state, Kind kind) {
+    }
+
+    private static final class SessionState {
+        private final WebSocketSession session;
+        private final WebSocketHandler handler;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long lastRead;
+        private volatile long lastWrite;
+        private volatile long readInterval;
+        private volatile long writeInterval;
+
+        private SessionState(WebSocketSession session, WebSocketHandler handler) {
+            this.session = session;
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package vn.cococord.config;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per-session send buffer on the client outbound channel, replacing the broker's
+ * preserve-publish-order queue (app.websocket.outbound-buffer.enabled).
+ *
+ * Each session has at most one message in flight on the outbound executor; the
+ * rest wait here, so a slow client holds one outbound thread and its own memory
+ * instead of an unbounded queue:
+ * <ul>
+ * <li>chat and every other event is queued in order and never dropped;</li>
+ * <li>typing, presence and voice-state events (and heartbeats) are coalesced to
+ * the latest value per key, e.g. destination + user (typing lists: destination +
+ * origin node), and sent after the queued critical events;</li>
+ * <li>a session whose queued bytes go over max-bytes, or whose in-flight send
+ * has taken longer than send-time-limit-ms, is disconnected and counted.</li>
+ * </ul>
+ * Released messages go through the channel again, so interceptors after this one
+ * (compact wire format) still see each session's messages in delivery order.
+ */
+@Component
+@Slf4j
+@SuppressWarnings("null")
+public class SessionOutboundBuffer implements ExecutorChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final long HEADER_OVERHEAD_BYTES = 256;
+    private static final String HEARTBEAT_KEY = "heartbeat";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${app.websocket.outbound-buffer.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.websocket.outbound-buffer.max-bytes:1048576}")
+    private long maxBytes;
+
+    @Value("${app.websocket.outbound-buffer.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+
+    private final Map<String, SessionBuffer> buffers = new ConcurrentHashMap<>();
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder overflowDisconnects = new LongAdder();
+    private final LongAdder timeoutDisconnects = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        if (!enabled) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null || !sessions.containsKey(sessionId)) {
+            // Not (or no longer) an open WebSocket session
+            return message;
+        }
+        SessionBuffer buffer = buffers.computeIfAbsent(sessionId, id -> new SessionBuffer(id, channel));
+        if (buffer.isInFlight(message)) {
+            // Released by this buffer, deliver it
+            return message;
+        }
+        buffer.enqueue(message, coalesceKey(message));
+        return null;
+    }
+
+    @Override
+    public void afterMessageHandled(@NonNull Message<?> message, @NonNull MessageChannel channel,
+            @NonNull MessageHandler handler, @Nullable Exception ex) {
+        if (!enabled) {
+            return;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionBuffer buffer = sessionId != null ? buffers.get(sessionId) : null;
+        if (buffer != null) {
+            // Interceptors may have replaced the message; one is in flight per session, so it is that one
+            buffer.onHandled();
+        }
+    }
+
+    /**
+     * Transport: remember the raw session so over-budget sessions can be closed
+     */
+    @Override
+    @NonNull
+    public WebSocketHandler decorate(@NonNull WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+                sessions.put(session.getId(), session);
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus closeStatus)
+                    throws Exception {
+                sessions.remove(session.getId());
+                SessionBuffer buffer = buffers.remove(session.getId());
+                if (buffer != null) {
+                    buffer.close();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionBuffer buffer = buffers.remove(event.getSessionId());
+        if (buffer != null) {
+            buffer.close();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        long queuedBytes = 0;
+        int backlogged = 0;
+        for (SessionBuffer buffer : buffers.values()) {
+            long bytes = buffer.queuedBytes();
+            queuedBytes += bytes;
+            if (bytes > 0) {
+                backlogged++;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("sessions", buffers.size());
+        stats.put("backloggedSessions", backlogged);
+        stats.put("queuedBytes", queuedBytes);
+        stats.put("coalesced", coalesced.sum());
+        stats.put("overflowDisconnects", overflowDisconnects.sum());
+        stats.put("timeoutDisconnects", timeoutDisconnects.sum());
+        return stats;
+    }
+
+    /**
+     * Key under which only the latest message is kept, or null if the message must be delivered
+     */
+    @Nullable
+    private String coalesceKey(Message<?> message) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (type == SimpMessageType.HEARTBEAT) {
+            return HEARTBEAT_KEY;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (type != SimpMessageType.MESSAGE || destination == null
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return null;
+        }
+
+        boolean typing = destination.endsWith("/typing");
+        boolean presence = destination.equals("/topic/presence") || destination.endsWith(".presence")
+                || destination.startsWith("/queue/presence");
+        boolean voice = destination.startsWith("/topic/voice/") && !destination.endsWith("/signal");
+        if (!typing && !presence && !voice) {
+            return null;
+        }
+
+        JsonNode body;
+        try {
+            body = objectMapper.readTree(payload);
+        } catch (Exception e) {
+            return null;
+        }
+        if (body == null || !body.isObject()) {
+            return null;
+        }
+        String subscription = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        String prefix = destination + "|" + subscription + "|";
+        if (typing) {
+            // Aggregated list (TypingEvent) replaces the previous one of the same node
+            if (body.has("usernames")) {
+                return prefix + "node:" + body.path("node").asText("");
+            }
+            return body.hasNonNull("username") ? prefix + body.get("username").asText() : null;
+        }
+        if (presence) {
+            JsonNode event = body.has("payload") ? body.get("payload") : body;
+            return event.hasNonNull("userId") ? prefix + event.get("userId").asText() : null;
+        }
+        // Voice: only per-user state updates (mic / cam / speaking), join and leave must arrive
+        return "VOICE_STATE_UPDATE".equals(body.path("type").asText()) && body.hasNonNull("userId")
+                ? prefix + body.get("userId").asText()
+                : null;
+    }
+
+    private static long sizeOf(Message<?> message) {
+        return HEADER_OVERHEAD_BYTES + (message.getPayload() instanceof byte[] bytes ? bytes.length : 0);
+    }
+
+    private final class SessionBuffer {
+        private final String sessionId;
+        private final MessageChannel channel;
+        private final ArrayDeque<Message<?>> critical = new ArrayDeque<>();
+        private final LinkedHashMap<String, Message<?>> latest = new LinkedHashMap<>();
+        private long bytes;
+        private Message<?> inFlight;
+        private long inFlightSince;
+        private boolean closed;
+
+        private SessionBuffer(String sessionId, MessageChannel channel) {
+            this.sessionId = sessionId;
+            this.channel = channel;
+        }
+
+        private synchronized boolean isInFlight(Message<?> message) {
+            return inFlight == message;
+        }
+
+        private synchronized long queuedBytes() {
+            return bytes;
+        }
+
+        private void enqueue(Message<?> message, @Nullable String key) {
+            Message<?> next;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (key != null) {
+                    Message<?> replaced = latest.remove(key);
+                    if (replaced != null) {
+                        bytes -= sizeOf(replaced);
+                        coalesced.increment();
+                    }
+                    latest.put(key, message);
+                } else {
+                    critical.addLast(message);
+                }
+                bytes += sizeOf(message);
+
+                if (bytes > maxBytes) {
+                    overflowDisconnects.increment();
+                    terminate("buffered " + bytes + " bytes");
+                    return;
+                }
+                if (inFlight != null && System.currentTimeMillis() - inFlightSince > sendTimeLimitMs) {
+                    timeoutDisconnects.increment();
+                    terminate("send blocked for " + (System.currentTimeMillis() - inFlightSince) + " ms");
+                    return;
+                }
+                if (inFlight != null) {
+                    return;
+                }
+                next = takeNext();
+            }
+            dispatch(next);
+        }
+
+        private void onHandled() {
+            Message<?> next;
+            synchronized (this) {
+                if (inFlight == null) {
+                    return;
+                }
+                inFlight = null;
+                next = takeNext();
+            }
+            dispatch(next);
+        }
+
+        private synchronized void close() {
+            closed = true;
+            critical.clear();
+            latest.clear();
+            bytes = 0;
+            inFlight = null;
+        }
+
+        // Caller holds the lock; critical events go first
+        private Message<?> takeNext() {
+            Message<?> next = critical.pollFirst();
+            if (next == null && !latest.isEmpty()) {
+                Iterator<Message<?>> it = latest.values().iterator();
+                next = it.next();
+                it.remove();
+            }
+            if (next != null) {
+                bytes -= sizeOf(next);
+                inFlight = next;
+                inFlightSince = System.currentTimeMillis();
+            }
+            return next;
+        }
+
+        private void dispatch(@Nullable Message<?> next) {
+            while (next != null) {
+                try {
+                    channel.send(next);
+                    return;
+                } catch (Exception e) {
+                    log.warn("Dropping outbound message for session {}: {}", sessionId, e.getMessage());
+                    synchronized (this) {
+                        if (inFlight != next) {
+                            return;
+                        }
+                        inFlight = null;
+                        next = takeNext();
+                    }
+                }
+            }
+        }
+
+        // Caller holds the lock
+        private void terminate(String reason) {
+            log.warn("Closing slow WebSocket session {}: {}", sessionId, reason);
+            closed = true;
+            critical.clear();
+            latest.clear();
+            bytes = 0;
+            WebSocketSession session = sessions.get(sessionId);
+            if (session != null) {
+                // close() can block on the same stuck socket, keep it off the publisher's thread
+                Thread.ofVirtual().name("ws-close-" + sessionId).start(() -> {
+                    try {
+                        session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                    } catch (Exception e) {
+                        log.debug("Failed to close session {}: {}", sessionId, e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+}
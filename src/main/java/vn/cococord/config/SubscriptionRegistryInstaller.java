@@ -0,0 +1,32 @@
+package vn.cococord.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Swaps the simple broker's default subscription registry for
+ * {@link ExactMatchSubscriptionRegistry} (app.websocket.broker.exact-registry.enabled).
+ * MessageBrokerRegistry has no hook for the registry, so it is set on the handler
+ * bean before the broker starts.
+ */
+@Component
+@Slf4j
+public class SubscriptionRegistryInstaller implements BeanPostProcessor {
+
+    @Value("${app.websocket.broker.exact-registry.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+        if (enabled && bean instanceof SimpleBrokerMessageHandler broker) {
+            broker.setSubscriptionRegistry(new ExactMatchSubscriptionRegistry());
+            log.info("Simple broker uses the exact-match subscription registry");
+        }
+        return bean;
+    }
+}
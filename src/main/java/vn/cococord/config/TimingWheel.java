@@ -0,0 +1,100 @@
+package vn.cococord.config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: 4 levels of 64 slots, level 0 slots are one tick wide.
+ * Scheduling is O(1); advancing costs one slot per elapsed tick plus the entries that
+ * move down a level when a higher slot comes due. Deadlines beyond the last level
+ * are parked in its furthest slot and re-inserted when that slot comes due, so
+ * they never fire early.
+ *
+ * There is no cancel: owners keep the real deadline elsewhere and ignore or
+ * re-arm entries that fire for stale state, which keeps touch paths free of wheel work.
+ */
+public class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMs;
+    private final List<List<ArrayDeque<Entry<T>>>> levels = new ArrayList<>(LEVELS);
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMs, long startMs) {
+        this.tickMs = Math.max(1, tickMs);
+        this.currentTick = startMs / this.tickMs;
+        for (int level = 0; level < LEVELS; level++) {
+            List<ArrayDeque<Entry<T>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new ArrayDeque<>());
+            }
+            levels.add(slots);
+        }
+    }
+
+    public synchronized void schedule(T item, long deadlineMs) {
+        insert(new Entry<>(item, Math.max(deadlineMs / tickMs, currentTick + 1)));
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Move the wheel to nowMs and return every item whose deadline tick has passed
+     */
+    public synchronized List<T> advance(long nowMs) {
+        long targetTick = nowMs / tickMs;
+        List<T> expired = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade(1);
+            ArrayDeque<Entry<T>> slot = levels.get(0).get((int) (currentTick & MASK));
+            Entry<T> entry;
+            while ((entry = slot.pollFirst()) != null) {
+                if (entry.tick() <= currentTick) {
+                    expired.add(entry.item());
+                    size--;
+                } else {
+                    insert(entry);
+                }
+            }
+        }
+        return expired;
+    }
+
+    // When a lower level wraps, the due slot of the level above is spread over the levels below
+    private void cascade(int level) {
+        if (level >= LEVELS || ((currentTick >> (SLOT_BITS * (level - 1))) & MASK) != 0) {
+            return;
+        }
+        cascade(level + 1);
+        ArrayDeque<Entry<T>> slot = levels.get(level).get((int) ((currentTick >> (SLOT_BITS * level)) & MASK));
+        List<Entry<T>> moved = new ArrayList<>(slot);
+        slot.clear();
+        moved.forEach(this::insert);
+    }
+
+    private void insert(Entry<T> entry) {
+        long delta = entry.tick() - currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (SLOT_BITS * (level + 1)) || level == LEVELS - 1) {
+                long tick = level == LEVELS - 1
+                        ? Math.min(entry.tick(), currentTick + (1L << (SLOT_BITS * LEVELS)) - 1)
+                        : entry.tick();
+                levels.get(level).get((int) ((tick >> (SLOT_BITS * level)) & MASK)).addLast(entry);
+                return;
+            }
+        }
+    }
+
+    private record Entry<T>(T item, long tick) {
+    }
+}
@@ -2,11 +2,15 @@ package vn.cococord.config;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  * WebSocket Configuration for realtime messaging
@@ -18,24 +22,71 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @SuppressWarnings("null")
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final CompactWireFormatInterceptor compactWireFormatInterceptor;
+    private final SessionOutboundBuffer outboundBuffer;
+    private final ObjectProvider<RedisTopicRelay> topicRelay;
+    private final WebSocketExecutorConfig executors;
+    private final SessionHeartbeatMonitor heartbeatMonitor;
+    private final ChannelEventSequencer eventSequencer;
+
+    @Value("${app.websocket.inbound.preserve-order:false}")
+    private boolean preserveReceiveOrder;
+
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
         // Enable a simple memory-based message broker to send messages to clients
         // Prefixes: /topic for broadcast, /queue for point-to-point
         config.enableSimpleBroker("/topic", "/queue");
 
+        // Sequence numbers and replay log for channel / DM events; before the relay so numbers travel with it
+        config.configureBrokerChannel().interceptors(eventSequencer);
+
+        // Multi-node: each node keeps its simple broker, /topic publishes are relayed over Redis
+        // (app.websocket.broker.mode=redis-relay)
+        topicRelay.ifAvailable(relay -> config.configureBrokerChannel().interceptors(relay));
+
         // Prefix for messages from clients to server
         config.setApplicationDestinationPrefixes("/app");
 
         // Prefix for user-specific destinations
         config.setUserDestinationPrefix("/user");
+
+        // Deliver to each session in publish order; per-session encoders rely on it.
+        // The outbound buffer keeps that order itself (one message in flight per session).
+        config.setPreservePublishOrder(!outboundBuffer.isEnabled());
+    }
+
+    @Override
+    public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
+        // Sees CONNECT (format negotiation) and SUBSCRIBE/UNSUBSCRIBE; every frame stamps heartbeat activity
+        registration.interceptors(heartbeatMonitor.inboundInterceptor(), compactWireFormatInterceptor);
+        registration.executor(executors.getInbound());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(@NonNull ChannelRegistration registration) {
+        // Heartbeat first (CONNECTED negotiation, write activity); then the buffer, so messages
+        // it releases pass the compact encoder in delivery order
+        registration.interceptors(heartbeatMonitor.outboundInterceptor(), outboundBuffer, compactWireFormatInterceptor);
+        registration.executor(executors.getOutbound());
+    }
+
+    @Override
+    public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
+        // Heartbeat monitor outermost: a forced disconnect passes through the other decorators
+        registration.addDecoratorFactory(outboundBuffer);
+        registration.addDecoratorFactory(heartbeatMonitor);
     }
 
     @Override
     public void registerStompEndpoints(@NonNull StompEndpointRegistry registry) {
+        // Handle each session's frames in arrival order (useful with inbound mode=virtual)
+        registry.setPreserveReceiveOrder(preserveReceiveOrder);
+
         // WebSocket endpoint that clients will connect to
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*") // Allow all origins (configure properly for production)
+                .addInterceptors(compactWireFormatInterceptor.sockJsSessionMarker()) // text frames only
                 .withSockJS(); // Enable SockJS fallback options
 
         // Alternative endpoint without SockJS
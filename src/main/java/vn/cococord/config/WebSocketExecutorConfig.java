@@ -0,0 +1,129 @@
+package vn.cococord.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executors for the STOMP client inbound / outbound channels.
+ *
+ * Inbound runs the @MessageMapping handlers, which block on MongoDB and MySQL.
+ * It is either a bounded thread pool (app.websocket.inbound.mode=pool) or one
+ * virtual thread per message (mode=virtual), so a slow query parks a virtual
+ * thread instead of holding a pool thread. In virtual mode
+ * app.websocket.inbound.max-concurrency caps handlers in flight to keep
+ * database pools from being swamped; senders wait for a slot.
+ *
+ * Pool sizes of 0 fall back to Spring's defaults (2 x CPU cores), a queue
+ * capacity below 0 means unbounded. The heartbeat scheduler drives STOMP
+ * heart-beating (SessionHeartbeatMonitor). None of these are registered as beans
+ * so they do not replace the application executor / scheduler used by @Async
+ * and @Scheduled.
+ */
+@Component
+@Slf4j
+public class WebSocketExecutorConfig {
+
+    @Value("${app.websocket.inbound.mode:pool}")
+    private String inboundMode;
+
+    @Value("${app.websocket.inbound.core-pool-size:0}")
+    private int inboundCoreSize;
+
+    @Value("${app.websocket.inbound.max-pool-size:0}")
+    private int inboundMaxSize;
+
+    @Value("${app.websocket.inbound.queue-capacity:-1}")
+    private int inboundQueueCapacity;
+
+    @Value("${app.websocket.inbound.max-concurrency:0}")
+    private int inboundMaxConcurrency;
+
+    @Value("${app.websocket.outbound.core-pool-size:0}")
+    private int outboundCoreSize;
+
+    @Value("${app.websocket.outbound.max-pool-size:0}")
+    private int outboundMaxSize;
+
+    @Value("${app.websocket.outbound.queue-capacity:-1}")
+    private int outboundQueueCapacity;
+
+    private ThreadPoolTaskExecutor inboundPool;
+    private SimpleAsyncTaskExecutor inboundVirtual;
+    private ThreadPoolTaskExecutor outboundPool;
+    private InstrumentedChannelExecutor inbound;
+    private InstrumentedChannelExecutor outbound;
+    private ThreadPoolTaskScheduler heartbeatScheduler;
+
+    @PostConstruct
+    public void start() {
+        if ("virtual".equalsIgnoreCase(inboundMode)) {
+            inboundVirtual = new SimpleAsyncTaskExecutor("ws-inbound-vt-");
+            inboundVirtual.setVirtualThreads(true);
+            if (inboundMaxConcurrency > 0) {
+                inboundVirtual.setConcurrencyLimit(inboundMaxConcurrency);
+            }
+            inbound = new InstrumentedChannelExecutor("clientInbound", "virtual", inboundVirtual);
+            log.info("WebSocket inbound channel uses virtual threads (max concurrency: {})",
+                    inboundMaxConcurrency > 0 ? inboundMaxConcurrency : "unlimited");
+        } else {
+            inboundPool = pool("ws-inbound-", inboundCoreSize, inboundMaxSize, inboundQueueCapacity);
+            inbound = new InstrumentedChannelExecutor("clientInbound", "pool", inboundPool);
+        }
+        outboundPool = pool("ws-outbound-", outboundCoreSize, outboundMaxSize, outboundQueueCapacity);
+        outbound = new InstrumentedChannelExecutor("clientOutbound", "pool", outboundPool);
+
+        heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.setThreadNamePrefix("ws-heartbeat-");
+        heartbeatScheduler.setPoolSize(1);
+        heartbeatScheduler.initialize();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (inboundPool != null) {
+            inboundPool.shutdown();
+        }
+        if (inboundVirtual != null) {
+            inboundVirtual.close();
+        }
+        outboundPool.shutdown();
+        heartbeatScheduler.shutdown();
+    }
+
+    public InstrumentedChannelExecutor getInbound() {
+        return inbound;
+    }
+
+    public InstrumentedChannelExecutor getOutbound() {
+        return outbound;
+    }
+
+    public ThreadPoolTaskScheduler getHeartbeatScheduler() {
+        return heartbeatScheduler;
+    }
+
+    public List<InstrumentedChannelExecutor> getAll() {
+        return List.of(inbound, outbound);
+    }
+
+    private static ThreadPoolTaskExecutor pool(String prefix, int coreSize, int maxSize, int queueCapacity) {
+        int core = coreSize > 0 ? coreSize : Runtime.getRuntime().availableProcessors() * 2;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(prefix);
+        executor.setCorePoolSize(core);
+        executor.setMaxPoolSize(Math.max(core, maxSize));
+        executor.setQueueCapacity(queueCapacity >= 0 ? queueCapacity : Integer.MAX_VALUE);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -32,6 +32,7 @@ public class WebSocketSecurityConfig implements WebSocketMessageBrokerConfigurer
 
     private final JwtTokenProvider jwtTokenProvider;
     private final CustomUserDetailsService userDetailsService;
+    private final ChannelSubscriptionGuard subscriptionGuard;
 
     @Override
     @SuppressWarnings("null")
@@ -59,12 +60,13 @@ public class WebSocketSecurityConfig implements WebSocketMessageBrokerConfigurer
 
                             SecurityContextHolder.getContext().setAuthentication(authentication);
                             accessor.setUser(authentication);
+                            subscriptionGuard.bindUser(accessor);
                         }
                     }
                 }
 
                 return message;
             }
-        });
+        }, subscriptionGuard); // SUBSCRIBE authorization, see ChannelSubscriptionGuard
     }
 }
@@ -12,6 +12,9 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
+import vn.cococord.config.SessionHeartbeatMonitor;
+import vn.cococord.config.SessionOutboundBuffer;
+import vn.cococord.config.WebSocketExecutorConfig;
 import vn.cococord.dto.request.AdminReportActionRequest;
 import vn.cococord.dto.request.AdminCreateUserRequest;
 import vn.cococord.dto.request.AdminRoleRequest;
@@ -23,6 +26,7 @@ import vn.cococord.repository.IChannelRepository;
 import vn.cococord.repository.IServerMemberRepository;
 import vn.cococord.service.IAdminService;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +43,9 @@ public class AdminApiController {
     private final IAdminService adminService;
     private final IServerMemberRepository serverMemberRepository;
     private final IChannelRepository channelRepository;
+    private final WebSocketExecutorConfig webSocketExecutors;
+    private final SessionOutboundBuffer sessionOutboundBuffer;
+    private final SessionHeartbeatMonitor sessionHeartbeatMonitor;
 
     // ================== Dashboard ==================
 
@@ -456,4 +463,30 @@ public class AdminApiController {
     public ResponseEntity<Map<String, Long>> getOnlineCount() {
         return ResponseEntity.ok(Map.of("onlineUsers", adminService.getOnlineUserCount()));
     }
+
+    /**
+     * Queue depth, active tasks and task latency of the STOMP channel executors
+     */
+    @GetMapping("/stats/websocket-executors")
+    public ResponseEntity<Map<String, Map<String, Object>>> getWebSocketExecutorStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        webSocketExecutors.getAll().forEach(executor -> stats.put(executor.getName(), executor.snapshot()));
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Per-session outbound buffers: backlog, coalesced events and slow-client disconnects
+     */
+    @GetMapping("/stats/websocket-outbound")
+    public ResponseEntity<Map<String, Object>> getWebSocketOutboundStats() {
+        return ResponseEntity.ok(sessionOutboundBuffer.snapshot());
+    }
+
+    /**
+     * STOMP heart-beating: tracked sessions, heartbeats sent and reaped dead sessions
+     */
+    @GetMapping("/stats/websocket-heartbeats")
+    public ResponseEntity<Map<String, Object>> getWebSocketHeartbeatStats() {
+        return ResponseEntity.ok(sessionHeartbeatMonitor.snapshot());
+    }
 }
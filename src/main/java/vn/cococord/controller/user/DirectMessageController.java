@@ -25,6 +25,8 @@ import org.springframework.web.bind.annotation.RestController;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import vn.cococord.dto.permission.DmGroupContext;
+import vn.cococord.dto.permission.DmMemberSnapshot;
 import vn.cococord.dto.request.CreateGroupDMRequest;
 import vn.cococord.dto.request.LogCallEventRequest;
 import vn.cococord.dto.request.SendDirectMessageRequest;
@@ -32,10 +34,12 @@ import vn.cococord.dto.request.UpdateGroupDMRequest;
 import vn.cococord.dto.response.DMGroupMemberResponse;
 import vn.cococord.dto.response.DMGroupResponse;
 import vn.cococord.dto.response.DirectMessageSidebarItemResponse;
+import vn.cococord.dto.websocket.DirectMessageEvent;
 import vn.cococord.entity.mongodb.DirectMessage;
 import vn.cococord.entity.mysql.DirectMessageGroup;
 import vn.cococord.entity.mysql.User;
 import vn.cococord.service.IDirectMessageService;
+import vn.cococord.service.IDmGroupContextCache;
 import vn.cococord.service.IUserService;
 
 @RestController
@@ -46,6 +50,7 @@ public class DirectMessageController {
 
     private final IUserService userService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final IDmGroupContextCache dmGroupContextCache;
 
     private Long getUserIdFromUsername(String username) {
         return userService.getUserByUsername(username).getId();
@@ -250,7 +255,10 @@ public class DirectMessageController {
             @PathVariable Long dmGroupId,
             @Valid @RequestBody SendDirectMessageRequest request,
             @AuthenticationPrincipal UserDetails userDetails) {
-        Long userId = getUserIdFromUsername(userDetails.getUsername());
+        // Members resolve from the cached group context; anyone else is rejected by the service
+        DmGroupContext group = dmGroupContextCache.get(dmGroupId);
+        DmMemberSnapshot member = group != null ? group.findMember(userDetails.getUsername()) : null;
+        Long userId = member != null ? member.getUserId() : getUserIdFromUsername(userDetails.getUsername());
         log.info("[DM-REST] 📨 User {} sending message to dmGroupId={}, type={}", userId, dmGroupId, request.getType());
         log.info("[DM-REST] Message content: {}", request.getContent());
 
@@ -267,7 +275,7 @@ public class DirectMessageController {
         // Broadcast to WebSocket topic for real-time delivery to ALL participants
         String destination = "/topic/dm/" + dmGroupId;
         try {
-            messagingTemplate.convertAndSend(destination, message);
+            messagingTemplate.convertAndSend(destination, DirectMessageEvent.from(message));
             log.info("[DM-REST] 📡 Successfully broadcast message to {} for real-time delivery", destination);
         } catch (Exception e) {
             log.error("[DM-REST] ❌ Failed to broadcast message to {}: {}", destination, e.getMessage(), e);
@@ -300,7 +308,7 @@ public class DirectMessageController {
         if (message != null) {
             String destination = "/topic/dm/" + dmGroupId;
             try {
-                messagingTemplate.convertAndSend(destination, message);
+                messagingTemplate.convertAndSend(destination, DirectMessageEvent.from(message));
             } catch (Exception e) {
                 log.error("[DM-CALL-LOG] Failed to broadcast call log to {}: {}", destination, e.getMessage(), e);
             }
@@ -345,7 +353,7 @@ public class DirectMessageController {
         if (updated.getDmGroupId() != null) {
             String destination = "/topic/dm/" + updated.getDmGroupId();
             try {
-                messagingTemplate.convertAndSend(destination, updated);
+                messagingTemplate.convertAndSend(destination, DirectMessageEvent.from(updated));
                 log.info("[DM] Successfully broadcast edited message to {}", destination);
             } catch (Exception e) {
                 log.error("[DM] Failed to broadcast edited message to {}: {}", destination, e.getMessage(), e);
@@ -36,6 +36,7 @@ import vn.cococord.repository.INotificationRepository;
 import vn.cococord.repository.IInviteLinkRepository;
 import vn.cococord.repository.IServerMemberRepository;
 import vn.cococord.repository.IServerRepository;
+import vn.cococord.service.IChannelSendContextCache;
 import vn.cococord.service.IUserService;
 
 @RestController
@@ -51,6 +52,7 @@ public class InviteNotificationController {
     private final IUserService userService;
     private final SimpMessagingTemplate messagingTemplate;
     private final ObjectMapper objectMapper;
+    private final IChannelSendContextCache sendContextCache;
 
     /**
      * Send a server invite notification to a user (real-time via WebSocket)
@@ -231,6 +233,7 @@ public class InviteNotificationController {
                 .user(user)
                 .build();
         serverMemberRepository.save(member);
+        sendContextCache.invalidateServerMember(serverId, user.getId());
 
         // Mark notification as read and delete it
         notificationRepository.delete(notification);
@@ -1,9 +1,11 @@
 package vn.cococord.controller.user;
 
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -18,6 +20,7 @@ import lombok.extern.slf4j.Slf4j;
 import vn.cococord.dto.request.AddReactionRequest;
 import vn.cococord.dto.response.FileUploadResponse;
 import vn.cococord.dto.response.MessageResponse;
+import vn.cococord.dto.response.ReactionUserResponse;
 import vn.cococord.service.IFileStorageService;
 import vn.cococord.service.IMessageService;
 
@@ -72,6 +75,20 @@ public class MessageActionController {
         return ResponseEntity.ok(new MessageResponse("Reaction removed successfully"));
     }
 
+    /**
+     * Users who reacted to a message with an emoji (paginated, oldest reaction first)
+     */
+    @GetMapping("/messages/{messageId}/reactions/{emoji}/users")
+    public ResponseEntity<Slice<ReactionUserResponse>> getReactionUsers(
+            @PathVariable String messageId,
+            @PathVariable String emoji,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size,
+            Authentication authentication) {
+        String username = authentication.getName();
+        return ResponseEntity.ok(messageService.getReactionUsers(messageId, emoji, after, size, username));
+    }
+
     /**
      * Pin a message
      */
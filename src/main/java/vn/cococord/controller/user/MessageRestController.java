@@ -2,12 +2,14 @@ package vn.cococord.controller.user;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import vn.cococord.annotation.CheckChannelAccess;
 import vn.cococord.dto.response.ChatMessageResponse;
+import vn.cococord.dto.response.MessageEditResponse;
 import vn.cococord.service.IMessageService;
 
 import java.util.List;
@@ -36,7 +38,29 @@ public class MessageRestController {
             @RequestParam(defaultValue = "50") int size,
             @AuthenticationPrincipal UserDetails userDetails) {
 
-        Page<ChatMessageResponse> messages = messageService.getChannelMessages(channelId, page, size);
+        Page<ChatMessageResponse> messages = messageService.getChannelMessages(channelId, page, size,
+                userDetails.getUsername());
+        return ResponseEntity.ok(messages);
+    }
+
+    /**
+     * GET /api/messages/channel/{channelId}/cursor
+     * Keyset-paginated message history (newest first, no total count)
+     * Anchors: before / after / around = message id, at most one per request
+     * Requires VIEW_CHANNEL permission
+     */
+    @GetMapping("/channel/{channelId}/cursor")
+    @CheckChannelAccess(permission = "VIEW_CHANNEL", channelIdParam = "channelId")
+    public ResponseEntity<Slice<ChatMessageResponse>> getChannelMessagesByCursor(
+            @PathVariable Long channelId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String around,
+            @RequestParam(defaultValue = "50") int size,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        Slice<ChatMessageResponse> messages = messageService.getChannelMessages(channelId, before, after, around,
+                size, userDetails.getUsername());
         return ResponseEntity.ok(messages);
     }
 
@@ -49,23 +73,40 @@ public class MessageRestController {
             @PathVariable String messageId,
             @AuthenticationPrincipal UserDetails userDetails) {
 
-        ChatMessageResponse message = messageService.getMessageById(messageId);
+        ChatMessageResponse message = messageService.getMessageById(messageId, userDetails.getUsername());
         return ResponseEntity.ok(message);
     }
 
     /**
      * GET /api/messages/{messageId}/replies
-     * Get all replies to a message
+     * Keyset-paginated replies to a message (oldest first)
+     * after = id of the last reply already loaded
      */
     @GetMapping("/{messageId}/replies")
-    public ResponseEntity<List<ChatMessageResponse>> getMessageReplies(
+    public ResponseEntity<Slice<ChatMessageResponse>> getMessageReplies(
             @PathVariable String messageId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size,
             @AuthenticationPrincipal UserDetails userDetails) {
 
-        List<ChatMessageResponse> replies = messageService.getMessageReplies(messageId);
+        Slice<ChatMessageResponse> replies = messageService.getMessageReplies(messageId, after, size,
+                userDetails.getUsername());
         return ResponseEntity.ok(replies);
     }
 
+    /**
+     * GET /api/messages/{messageId}/edits
+     * Get previous versions of a message (newest first)
+     */
+    @GetMapping("/{messageId}/edits")
+    public ResponseEntity<List<MessageEditResponse>> getEditHistory(
+            @PathVariable String messageId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        List<MessageEditResponse> edits = messageService.getEditHistory(messageId, userDetails.getUsername());
+        return ResponseEntity.ok(edits);
+    }
+
     /**
      * DELETE /api/messages/{messageId}
      * Delete a message
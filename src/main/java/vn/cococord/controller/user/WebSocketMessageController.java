@@ -1,20 +1,42 @@
 package vn.cococord.controller.user;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import vn.cococord.config.ChannelEventSequencer;
+import vn.cococord.config.ChannelSubscriptionGuard;
 import vn.cococord.dto.request.EditMessageRequest;
+import vn.cococord.dto.request.ResumeRequest;
 import vn.cococord.dto.request.SendMessageRequest;
+import vn.cococord.dto.permission.DmGroupContext;
+import vn.cococord.dto.permission.DmMemberSnapshot;
 import vn.cococord.dto.response.ChatMessageResponse;
+import vn.cococord.dto.websocket.DirectMessageEvent;
+import vn.cococord.dto.websocket.ResumeResponse;
 import vn.cococord.entity.mongodb.DirectMessage;
+import vn.cococord.entity.mongodb.TypingIndicator.TypingContext;
+import vn.cococord.exception.ForbiddenException;
 import vn.cococord.service.IDirectMessageService;
+import vn.cococord.service.IDmGroupContextCache;
 import vn.cococord.service.IMessageService;
+import vn.cococord.service.ITypingTracker;
 
 /**
  * WebSocket Controller for realtime chat messaging
@@ -29,6 +51,13 @@ public class WebSocketMessageController {
     private final IMessageService messageService;
     private final IDirectMessageService directMessageService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ChannelEventSequencer eventSequencer;
+    private final ChannelSubscriptionGuard subscriptionGuard;
+    private final ObjectMapper objectMapper;
+    private final ITypingTracker typingTracker;
+    private final IDmGroupContextCache dmGroupContextCache;
+
+    private static final int MAX_RESUME_STREAMS = 100;
 
     /**
      * Send message to a channel
@@ -36,13 +65,14 @@ public class WebSocketMessageController {
      * Broadcast to: /topic/channel/{channelId}
      */
     @MessageMapping("/chat.sendMessage")
-    public void sendMessage(@Payload SendMessageRequest request, Principal principal) {
+    public void sendMessage(@Payload SendMessageRequest request, Principal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
         try {
             String username = principal.getName();
             log.info("Received message from user: {} to channel: {}", username, request.getChannelId());
 
             // Save message - service will handle WebSocket broadcast
-            messageService.sendMessage(request, username);
+            messageService.sendMessage(request, username, headerAccessor.getSessionId());
 
             log.info("Message saved and broadcast handled by service for channel: {}", request.getChannelId());
         } catch (Exception e) {
@@ -107,20 +137,15 @@ public class WebSocketMessageController {
     /**
      * User typing indicator
      * Client sends to: /app/chat.typing
-     * Broadcast to: /topic/channel/{channelId}/typing
+     * Aggregated state broadcast to: /topic/channel/{channelId}/typing (TypingEvent)
      */
     @MessageMapping("/chat.typing")
     public void userTyping(@Payload TypingNotification notification, Principal principal) {
         try {
             String username = principal.getName();
-            notification.setUsername(username);
-            
             log.debug("User {} typing in channel {}: {}", username, notification.getChannelId(), notification.isTyping());
 
-            // Broadcast typing indicator to channel (all subscribers will receive)
-            messagingTemplate.convertAndSend(
-                    "/topic/channel/" + notification.getChannelId() + "/typing",
-                    notification);
+            typingTracker.update(TypingContext.SERVER, notification.getChannelId(), username, notification.isTyping());
         } catch (Exception e) {
             log.error("Error handling typing notification: {}", e.getMessage());
         }
@@ -150,14 +175,20 @@ public class WebSocketMessageController {
     public void sendDirectMessage(@Payload DirectMessagePayload payload, Principal principal) {
         try {
             String username = principal.getName();
-            log.info("[DM-WS] Received DM via WebSocket from user: {} (senderId={}) to dmGroupId={}",
-                    username, payload.getSenderId(), payload.getDmGroupId());
-            log.info("[DM-WS] Message content: {}", payload.getContent());
+            log.info("[DM-WS] Received DM via WebSocket from user: {} to dmGroupId={}",
+                    username, payload.getDmGroupId());
+
+            // Sender comes from the session, not the payload; the cached group context resolves it
+            DmGroupContext group = dmGroupContextCache.get(payload.getDmGroupId());
+            DmMemberSnapshot sender = group != null ? group.findMember(username) : null;
+            if (sender == null) {
+                throw new ForbiddenException("You are not a member of this DM group");
+            }
 
             // Save direct message
             DirectMessage message = directMessageService.sendDirectMessageWithAttachments(
                     payload.getDmGroupId(),
-                    payload.getSenderId(),
+                    sender.getUserId(),
                     payload.getContent(),
                     payload.getAttachmentUrls());
 
@@ -165,7 +196,7 @@ public class WebSocketMessageController {
 
             // Broadcast to all members of this DM group
             String destination = "/topic/dm/" + payload.getDmGroupId();
-            messagingTemplate.convertAndSend(destination, message);
+            messagingTemplate.convertAndSend(destination, DirectMessageEvent.from(message));
 
             log.info("[DM-WS] Message broadcast to {}", destination);
         } catch (Exception e) {
@@ -240,16 +271,65 @@ public class WebSocketMessageController {
     /**
      * User typing in DM
      * Client sends to: /app/dm.typing
+     * Aggregated state broadcast to: /topic/dm/{dmGroupId}/typing (TypingEvent)
      */
     @MessageMapping("/dm.typing")
     public void userTypingInDM(@Payload DMTypingNotification notification, Principal principal) {
-        String username = principal.getName();
-        notification.setUsername(username);
+        typingTracker.update(TypingContext.DM, notification.getDmGroupId(), principal.getName(),
+                notification.isTyping());
+    }
 
-        // Broadcast typing indicator to DM group (except sender)
-        messagingTemplate.convertAndSend(
-                "/topic/dm/" + notification.getDmGroupId() + "/typing",
-                notification);
+    /**
+     * Catch up after a reconnect from the replay log instead of refetching history
+     * Client sends to: /app/resume
+     * Reply to this session only: /user/queue/resume
+     */
+    @MessageMapping("/resume")
+    public void resume(@Payload ResumeRequest request, Principal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
+        List<ResumeResponse.StreamReplay> replies = new ArrayList<>();
+        List<ResumeRequest.StreamPosition> positions = request.getStreams() != null ? request.getStreams() : List.of();
+        for (ResumeRequest.StreamPosition position : positions.stream().limit(MAX_RESUME_STREAMS).toList()) {
+            String destination = position.getDestination();
+            if (destination == null) {
+                continue;
+            }
+            if (!subscriptionGuard.canRead(headerAccessor, destination)) {
+                replies.add(ResumeResponse.StreamReplay.builder()
+                        .stream(ChannelEventSequencer.streamOf(destination))
+                        .denied(true)
+                        .build());
+                continue;
+            }
+            long afterSeq = position.getAfterSeq() != null ? position.getAfterSeq() : 0L;
+            ChannelEventSequencer.Replay replay = eventSequencer.replay(destination, afterSeq);
+            if (replay == null) {
+                continue;
+            }
+            replies.add(ResumeResponse.StreamReplay.builder()
+                    .stream(replay.stream())
+                    .gap(replay.gap())
+                    .lastSeq(replay.lastSeq())
+                    .events(replay.events().stream()
+                            .map(event -> new ResumeResponse.ReplayedEvent(event.seq(), event.destination(),
+                                    toJson(event.payload())))
+                            .toList())
+                    .build());
+        }
+
+        SimpMessageHeaderAccessor reply = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        reply.setSessionId(headerAccessor.getSessionId());
+        reply.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(principal.getName(), "/queue/resume",
+                new ResumeResponse(replies), reply.getMessageHeaders());
+    }
+
+    private JsonNode toJson(byte[] payload) {
+        try {
+            return objectMapper.readTree(payload);
+        } catch (IOException e) {
+            return TextNode.valueOf(new String(payload, StandardCharsets.UTF_8));
+        }
     }
 
     // DTOs for WebSocket messages
@@ -290,6 +370,8 @@ public class WebSocketMessageController {
             return isTyping;
         }
 
+        // Clients send "isTyping"; the bean property is "typing"
+        @JsonAlias("isTyping")
         public void setTyping(boolean typing) {
             isTyping = typing;
         }
@@ -456,6 +538,8 @@ public class WebSocketMessageController {
             return isTyping;
         }
 
+        // Clients send "isTyping"; the bean property is "typing"
+        @JsonAlias("isTyping")
         public void setTyping(boolean typing) {
             isTyping = typing;
         }
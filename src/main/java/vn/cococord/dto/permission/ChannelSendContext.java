@@ -0,0 +1,46 @@
+package vn.cococord.dto.permission;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import vn.cococord.entity.mysql.PermissionBit;
+
+/**
+ * Snapshot of everything the send path needs to know about a user in a channel:
+ * author display data, the channel's server and the computed permission bitmask.
+ * Built once per STOMP session and channel, then served from memory.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChannelSendContext {
+
+    private Long userId;
+    private String username;
+    private String displayName;
+    private String avatarUrl;
+
+    private Long channelId;
+    private Long serverId;
+
+    /**
+     * Channel access as checked by IChannelService.canUserAccessChannel
+     */
+    private boolean accessible;
+
+    /**
+     * Final channel bitmask from IPermissionService.computeChannelPermissions
+     */
+    private long permissionBitmask;
+
+    /**
+     * Active server mute at the time the snapshot was built
+     */
+    private boolean muted;
+
+    public boolean canSendMessages() {
+        return accessible && !muted && PermissionBit.SEND_MESSAGES.isSet(permissionBitmask);
+    }
+}
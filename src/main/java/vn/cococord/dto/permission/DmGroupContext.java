@@ -0,0 +1,45 @@
+package vn.cococord.dto.permission;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Snapshot of what the DM send path needs: who is in the group and their author
+ * display data. Built once per group, then served from memory until membership
+ * or a member's profile changes.
+ */
+@Getter
+@AllArgsConstructor
+public class DmGroupContext {
+
+    private final Long dmGroupId;
+
+    /**
+     * userId -> member, unmodifiable
+     */
+    private final Map<Long, DmMemberSnapshot> members;
+
+    public boolean isMember(Long userId) {
+        return userId != null && members.containsKey(userId);
+    }
+
+    public DmMemberSnapshot getMember(Long userId) {
+        return userId != null ? members.get(userId) : null;
+    }
+
+    public DmMemberSnapshot findMember(String username) {
+        return members.values().stream()
+                .filter(member -> member.getUsername().equals(username))
+                .findFirst()
+                .orElse(null);
+    }
+
+    public List<Long> otherMemberIds(Long userId) {
+        return members.keySet().stream()
+                .filter(id -> !id.equals(userId))
+                .toList();
+    }
+}
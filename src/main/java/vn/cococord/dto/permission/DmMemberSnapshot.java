@@ -0,0 +1,19 @@
+package vn.cococord.dto.permission;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Author display data of one DM group member
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DmMemberSnapshot {
+
+    private Long userId;
+    private String username;
+    private String displayName;
+    private String avatarUrl;
+}
@@ -0,0 +1,35 @@
+package vn.cococord.dto.request;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sent to /app/resume after a reconnect: the last sequence number seen per stream
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResumeRequest {
+
+    private List<StreamPosition> streams;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StreamPosition {
+        /**
+         * Any destination of the stream, e.g. /topic/channel/42 or /topic/dm/7
+         */
+        private String destination;
+
+        /**
+         * Last x-seq received; without one, (last sync time in ms) * 1024 also works
+         */
+        private Long afterSeq;
+    }
+}
@@ -28,4 +28,6 @@ public class SendMessageRequest {
     private String metadata; // Additional metadata (JSON string for stickers, etc.)
 
     private List<AttachmentRequest> attachments; // File attachments
+
+    private String nonce; // Optional client id, echoed back on /user/queue/acks
 }
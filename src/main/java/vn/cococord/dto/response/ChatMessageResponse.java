@@ -11,7 +11,7 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class ChatMessageResponse {
     private String id;
     private Long channelId;
@@ -24,9 +24,12 @@ public class ChatMessageResponse {
     private String type;
     private String parentMessageId;
     private String threadId;
+    private Integer replyCount;
+    private LocalDateTime lastReplyAt;
     private String metadata; // Additional metadata (JSON string for stickers, etc.)
     private List<AttachmentResponse> attachments;
     private List<Long> mentionedUserIds;
+    private List<ReactionResponse> reactions;
     private Boolean isEdited;
     private LocalDateTime editedAt;
     private LocalDateTime createdAt;
@@ -42,4 +45,18 @@ public class ChatMessageResponse {
         private String fileType;
         private Long fileSize;
     }
+
+    /**
+     * Per-emoji count; me is true when the viewer is one of the reactors
+     */
+    @Data
+    @Builder(toBuilder = true)
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReactionResponse {
+        private String emoji;
+        private String emojiId;
+        private Integer count;
+        private boolean me;
+    }
 }
@@ -0,0 +1,19 @@
+package vn.cococord.dto.response;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageEditResponse {
+    private String id;
+    private String messageId;
+    private String oldContent;
+    private LocalDateTime editedAt;
+}
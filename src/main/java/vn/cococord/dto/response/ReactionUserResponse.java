@@ -0,0 +1,25 @@
+package vn.cococord.dto.response;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A user who reacted to a message with a given emoji.
+ * id is the cursor for the next page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReactionUserResponse {
+    private String id;
+    private Long userId;
+    private String username;
+    private String displayName;
+    private String avatarUrl;
+    private LocalDateTime reactedAt;
+}
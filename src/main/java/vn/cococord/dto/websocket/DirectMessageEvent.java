@@ -0,0 +1,70 @@
+package vn.cococord.dto.websocket;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import vn.cococord.entity.mongodb.DirectMessage;
+
+/**
+ * Direct message as broadcast on /topic/dm/{dmGroupId}: the fields clients render,
+ * without read receipts, edit history or mention lists, and without empty values.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class DirectMessageEvent {
+
+    private String id;
+    private Long dmGroupId;
+    private Long senderId;
+    private String senderUsername;
+    private String senderDisplayName;
+    private String senderAvatarUrl;
+    private String content;
+    private DirectMessage.MessageType type;
+    private String systemEventType;
+    private String callId;
+    private Boolean callVideo;
+    private Integer callDurationSeconds;
+    private String metadata;
+    private String parentMessageId;
+    private List<DirectMessage.Attachment> attachments;
+    private List<DirectMessage.Embed> embeds;
+    private List<DirectMessage.Reaction> reactions;
+    private Boolean isEdited;
+    private LocalDateTime editedAt;
+    private LocalDateTime createdAt;
+
+    public static DirectMessageEvent from(DirectMessage message) {
+        return DirectMessageEvent.builder()
+                .id(message.getId())
+                .dmGroupId(message.getDmGroupId())
+                .senderId(message.getSenderId())
+                .senderUsername(message.getSenderUsername())
+                .senderDisplayName(message.getSenderDisplayName())
+                .senderAvatarUrl(message.getSenderAvatarUrl())
+                .content(message.getContent())
+                .type(message.getType())
+                .systemEventType(message.getSystemEventType())
+                .callId(message.getCallId())
+                .callVideo(message.getCallVideo())
+                .callDurationSeconds(message.getCallDurationSeconds())
+                .metadata(message.getMetadata())
+                .parentMessageId(message.getParentMessageId())
+                .attachments(message.getAttachments())
+                .embeds(message.getEmbeds())
+                .reactions(message.getReactions())
+                .isEdited(message.getIsEdited())
+                .editedAt(message.getEditedAt())
+                .createdAt(message.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,23 @@
+package vn.cococord.dto.websocket;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Acknowledgement sent to the sender on /user/queue/acks once a channel
+ * message has been persisted and broadcast.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MessageAckEvent {
+    private String nonce; // Client-generated id echoed back from SendMessageRequest
+    private String messageId;
+    private Long channelId;
+    private LocalDateTime createdAt;
+}
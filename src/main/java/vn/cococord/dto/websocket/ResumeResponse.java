@@ -0,0 +1,45 @@
+package vn.cococord.dto.websocket;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reply on /user/queue/resume. gap=true means events after afterSeq are no longer
+ * (or were never) held by this node: refetch history, then apply the returned
+ * events that are newer than it.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ResumeResponse {
+    private List<StreamReplay> streams;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Builder
+    public static class StreamReplay {
+        private String stream;
+        private boolean gap;
+        private boolean denied;
+        private Long lastSeq;
+        private List<ReplayedEvent> events;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Builder
+    public static class ReplayedEvent {
+        private long seq;
+        private String destination;
+        private JsonNode body;
+    }
+}
@@ -0,0 +1,19 @@
+package vn.cococord.dto.websocket;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ThreadUpdateEvent {
+    private String parentMessageId;
+    private Long channelId;
+    private Integer replyCount;
+    private LocalDateTime lastReplyAt;
+}
@@ -0,0 +1,28 @@
+package vn.cococord.dto.websocket;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Aggregated typing state of a channel or DM group as seen by one node, replaces
+ * the previous event of that node. usernames lists the first typers in the order
+ * they started; count is the total. Clients merge the events of all nodes and drop
+ * a node's state when it is not repeated within ttlMs.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingEvent {
+
+    private Long channelId;
+    private Long dmGroupId;
+    private List<String> usernames;
+    private int count;
+    private String node;
+    private long ttlMs;
+}
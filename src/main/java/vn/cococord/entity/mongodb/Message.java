@@ -62,6 +62,12 @@ public class Message {
 
     private String threadId;
 
+    // Thread summary on the parent, maintained with $inc / $max as replies come and go
+    @Builder.Default
+    private Integer replyCount = 0;
+
+    private LocalDateTime lastReplyAt;
+
     // Metadata (for stickers, etc.)
     private String metadata;
 
@@ -83,7 +89,7 @@ public class Message {
     @Builder.Default
     private Boolean mentionEveryone = false;
 
-    // Reactions
+    // Reactions: per-emoji counts only, reactors are in the message_reactions collection
     @Builder.Default
     private List<Reaction> reactions = new ArrayList<>();
 
@@ -93,8 +99,9 @@ public class Message {
 
     private LocalDateTime editedAt;
 
-    @Builder.Default
-    private List<EditHistory> editHistory = new ArrayList<>();
+    // Legacy: edits are stored in the message_edits collection. Only read to migrate old documents
+    // and by the edit history endpoint until they are.
+    private List<EditHistory> editHistory;
 
     // Deletion
     @Builder.Default
@@ -185,6 +192,7 @@ public class Message {
     public static class Reaction {
         private String emoji;
         private String emojiId; // For custom emojis
+        // Embedded reactors are only kept for forum posts; messages store them in MessageReaction
         @Builder.Default
         private Set<Long> userIds = new HashSet<>();
         private Integer count;
@@ -0,0 +1,35 @@
+package vn.cococord.entity.mongodb;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A previous version of a channel message, written on every edit.
+ * Kept out of the message document so history reads never load it.
+ * Indexes are created in MongoIndexConfig.
+ */
+@Document(collection = "message_edits")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageEdit {
+
+    @Id
+    private String id;
+
+    private String messageId;
+
+    private Long channelId;
+
+    private String oldContent;
+
+    private LocalDateTime editedAt;
+}
@@ -0,0 +1,38 @@
+package vn.cococord.entity.mongodb;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One user's reaction to a channel message.
+ * The message document only keeps per-emoji counts; who reacted lives here.
+ * Indexes are created in MongoIndexConfig.
+ */
+@Document(collection = "message_reactions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageReaction {
+
+    @Id
+    private String id;
+
+    private String messageId;
+
+    private Long channelId;
+
+    private String emoji;
+
+    private Long userId;
+
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
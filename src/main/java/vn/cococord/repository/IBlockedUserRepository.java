@@ -1,6 +1,8 @@
 package vn.cococord.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.cococord.entity.mysql.BlockedUser;
 
@@ -29,4 +31,11 @@ public interface IBlockedUserRepository extends JpaRepository<BlockedUser, Long>
      * Delete block record
      */
     void deleteByUserIdAndBlockedUserId(Long userId, Long blockedUserId);
+
+    /**
+     * Ids of users the user blocked or was blocked by
+     */
+    @Query("SELECT CASE WHEN b.user.id = :userId THEN b.blockedUser.id ELSE b.user.id END FROM BlockedUser b " +
+            "WHERE b.user.id = :userId OR b.blockedUser.id = :userId")
+    List<Long> findBlockRelatedUserIds(@Param("userId") Long userId);
 }
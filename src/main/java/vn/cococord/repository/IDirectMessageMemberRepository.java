@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import vn.cococord.dto.permission.DmMemberSnapshot;
 import vn.cococord.entity.mysql.DirectMessageMember;
 
 import java.time.LocalDateTime;
@@ -48,6 +49,20 @@ public interface IDirectMessageMemberRepository extends JpaRepository<DirectMess
     @Query("SELECT COUNT(m) FROM DirectMessageMember m WHERE m.user.id = :userId AND m.lastReadAt < :lastMessageTime")
     long countUnreadForUser(@Param("userId") Long userId, @Param("lastMessageTime") LocalDateTime lastMessageTime);
 
+    /**
+     * Members with their display data in one query (DM send path cache)
+     */
+    @Query("SELECT new vn.cococord.dto.permission.DmMemberSnapshot(u.id, u.username, u.displayName, u.avatarUrl) "
+            + "FROM DirectMessageMember m JOIN m.user u WHERE m.dmGroup.id = :dmGroupId")
+    List<DmMemberSnapshot> findMemberSnapshots(@Param("dmGroupId") Long dmGroupId);
+
     @Query("SELECT m.user.id FROM DirectMessageMember m WHERE m.dmGroup.id = :dmGroupId AND m.user.id <> :userId")
     List<Long> findOtherUserIds(@Param("dmGroupId") Long dmGroupId, @Param("userId") Long userId);
+
+    /**
+     * (dmGroupId, userId, username) of every other member of the user's DM groups
+     */
+    @Query("SELECT other.dmGroup.id, u.id, u.username FROM DirectMessageMember me, DirectMessageMember other "
+            + "JOIN other.user u WHERE me.user.id = :userId AND other.dmGroup.id = me.dmGroup.id AND u.id <> :userId")
+    List<Object[]> findCoMembersOfUser(@Param("userId") Long userId);
 }
@@ -57,6 +57,14 @@ public interface IFriendRequestRepository extends JpaRepository<FriendRequest, L
             "(fr.sender.id = :userId OR fr.receiver.id = :userId)")
     List<FriendRequest> findAcceptedFriendships(@Param("userId") Long userId);
 
+    /**
+     * Id and username of each friend of a user, without loading the requests
+     */
+    @Query("SELECT u.id, u.username FROM FriendRequest fr, User u WHERE fr.status = 'ACCEPTED' AND " +
+            "((fr.sender.id = :userId AND u.id = fr.receiver.id) OR " +
+            "(fr.receiver.id = :userId AND u.id = fr.sender.id))")
+    List<Object[]> findFriendIdsAndUsernames(@Param("userId") Long userId);
+
     /**
      * Check if pending request exists
      */
@@ -0,0 +1,16 @@
+package vn.cococord.repository;
+
+import java.util.List;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import vn.cococord.entity.mongodb.MessageEdit;
+
+@Repository
+public interface IMessageEditRepository extends MongoRepository<MessageEdit, String> {
+
+    List<MessageEdit> findByMessageIdOrderByEditedAtDesc(String messageId);
+
+    void deleteByMessageId(String messageId);
+}
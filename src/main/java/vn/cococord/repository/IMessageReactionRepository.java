@@ -0,0 +1,35 @@
+package vn.cococord.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import vn.cococord.entity.mongodb.MessageReaction;
+
+@Repository
+public interface IMessageReactionRepository extends MongoRepository<MessageReaction, String> {
+
+    /**
+     * The viewer's own reactions on a page of messages (drives the "me" flag)
+     */
+    @Query(value = "{ 'messageId': { $in: ?0 }, 'userId': ?1 }", fields = "{ 'messageId': 1, 'emoji': 1 }")
+    List<MessageReaction> findByMessageIdInAndUserId(Collection<String> messageIds, Long userId);
+
+    // Reactors in reaction order, keyset-paginated on _id
+
+    Slice<MessageReaction> findByMessageIdAndEmoji(String messageId, String emoji, Pageable pageable);
+
+    @Query("{ 'messageId': ?0, 'emoji': ?1, '_id': { $gt: ?2 } }")
+    Slice<MessageReaction> findByMessageIdAndEmojiAfter(String messageId, String emoji, ObjectId after,
+            Pageable pageable);
+
+    long deleteByMessageIdAndEmojiAndUserId(String messageId, String emoji, Long userId);
+
+    void deleteByMessageId(String messageId);
+}
@@ -1,7 +1,9 @@
 package vn.cococord.repository;
 
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -13,6 +15,13 @@ import java.util.List;
 @Repository
 public interface IMessageRepository extends MongoRepository<Message, String> {
 
+    /**
+     * Projection for history reads: leaves out fields responses never use
+     */
+    String HISTORY_FIELDS = "{ 'editHistory': 0, 'embeds': 0, 'reactions.userIds': 0 }";
+
+    // Sorted by the Pageable (createdAt desc)
+    @Query(value = "{ 'channelId': ?0 }", fields = HISTORY_FIELDS)
     Page<Message> findByChannelIdOrderByCreatedAtDesc(Long channelId, Pageable pageable);
 
     List<Message> findByChannelIdAndCreatedAtAfterOrderByCreatedAtAsc(Long channelId, LocalDateTime since);
@@ -20,7 +29,32 @@ public interface IMessageRepository extends MongoRepository<Message, String> {
     @Query("{ 'channelId': ?0, 'createdAt': { $lt: ?1 } }")
     Page<Message> findByChannelIdBeforeTimestamp(Long channelId, LocalDateTime timestamp, Pageable pageable);
 
-    List<Message> findByParentMessageIdOrderByCreatedAtAsc(String parentMessageId);
+    // ===== Keyset (cursor) pagination on the (channelId, createdAt) index =====
+    // _id breaks ties between messages that share a createdAt value.
+    // Slice results fetch one extra row to compute hasNext and never run a count.
+
+    @Query(value = "{ 'channelId': ?0 }", fields = HISTORY_FIELDS)
+    Slice<Message> findByChannelId(Long channelId, Pageable pageable);
+
+    @Query(value = "{ 'channelId': ?0, $or: [ { 'createdAt': { $lt: ?1 } }, { 'createdAt': ?1, '_id': { $lt: ?2 } } ] }",
+            fields = HISTORY_FIELDS)
+    Slice<Message> findByChannelIdBeforeCursor(Long channelId, LocalDateTime createdAt, ObjectId id,
+            Pageable pageable);
+
+    @Query(value = "{ 'channelId': ?0, $or: [ { 'createdAt': { $gt: ?1 } }, { 'createdAt': ?1, '_id': { $gt: ?2 } } ] }",
+            fields = HISTORY_FIELDS)
+    Slice<Message> findByChannelIdAfterCursor(Long channelId, LocalDateTime createdAt, ObjectId id,
+            Pageable pageable);
+
+    // ===== Thread replies, keyset-paginated on the (parentMessageId, createdAt, _id) index =====
+
+    @Query(value = "{ 'parentMessageId': ?0 }", fields = HISTORY_FIELDS)
+    Slice<Message> findByParentMessageId(String parentMessageId, Pageable pageable);
+
+    @Query(value = "{ 'parentMessageId': ?0, $or: [ { 'createdAt': { $gt: ?1 } }, { 'createdAt': ?1, '_id': { $gt: ?2 } } ] }",
+            fields = HISTORY_FIELDS)
+    Slice<Message> findByParentMessageIdAfterCursor(String parentMessageId, LocalDateTime createdAt, ObjectId id,
+            Pageable pageable);
 
     @Query("{ 'channelId': ?0, 'userId': ?1 }")
     List<Message> findByChannelIdAndUserId(Long channelId, Long userId);
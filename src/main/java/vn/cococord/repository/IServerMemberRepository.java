@@ -1,8 +1,10 @@
 package vn.cococord.repository;
 
 import java.util.List;
+import java.util.Collection;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -24,6 +26,9 @@ public interface IServerMemberRepository extends JpaRepository<ServerMember, Lon
 
     boolean existsByServerIdAndUserId(Long serverId, Long userId);
 
+    @Query("SELECT sm.server.id FROM ServerMember sm WHERE sm.user.id = :userId")
+    List<Long> findServerIdsByUserId(@Param("userId") Long userId);
+
     void deleteByServerIdAndUserId(Long serverId, Long userId);
 
     @Query("SELECT COUNT(sm) FROM ServerMember sm WHERE sm.server.id = :serverId")
@@ -31,4 +36,22 @@ public interface IServerMemberRepository extends JpaRepository<ServerMember, Lon
 
     @Query("SELECT sm.user.id FROM ServerMember sm WHERE sm.server.id = :serverId")
     List<Long> findUserIdsByServerId(@Param("serverId") Long serverId);
+
+    // Rows of [userId, roleId], roleId null for members without a role
+    @Query("SELECT sm.user.id, r.id FROM ServerMember sm LEFT JOIN sm.role r "
+            + "WHERE sm.server.id = :serverId AND sm.user.id IN :userIds")
+    List<Object[]> findUserIdsAndRoleIds(@Param("serverId") Long serverId,
+            @Param("userIds") Collection<Long> userIds);
+
+    // Keyset chunks over the (server_id, user_id) unique index, for fan-out to large servers
+
+    @Query("SELECT sm.user.id FROM ServerMember sm WHERE sm.server.id = :serverId AND sm.user.id > :afterUserId "
+            + "ORDER BY sm.user.id")
+    List<Long> findUserIdsByServerIdAfter(@Param("serverId") Long serverId, @Param("afterUserId") Long afterUserId,
+            Pageable pageable);
+
+    @Query("SELECT sm.user.id FROM ServerMember sm WHERE sm.server.id = :serverId AND sm.role.id IN :roleIds "
+            + "AND sm.user.id > :afterUserId ORDER BY sm.user.id")
+    List<Long> findUserIdsByServerIdAndRoleIdsAfter(@Param("serverId") Long serverId,
+            @Param("roleIds") Collection<Long> roleIds, @Param("afterUserId") Long afterUserId, Pageable pageable);
 }
@@ -3,13 +3,16 @@ package vn.cococord.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import vn.cococord.entity.mysql.User;
 import vn.cococord.entity.mysql.User.UserStatus;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -56,4 +59,34 @@ public interface IUserRepository extends JpaRepository<User, Long> {
     // Muted users
     @Query("SELECT u FROM User u WHERE u.isMuted = true")
     List<User> findMutedUsers();
+
+    /**
+     * Presence write-behind: one UPDATE for every user that ended in the same status
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.status = :status WHERE u.id IN :ids")
+    int updateStatusByIds(@Param("status") UserStatus status, @Param("ids") Collection<Long> ids);
+
+    /**
+     * (id, customStatusExpiresAt) of custom statuses expiring in (from, to]
+     */
+    @Query("SELECT u.id, u.customStatusExpiresAt FROM User u " +
+            "WHERE u.customStatusExpiresAt > :from AND u.customStatusExpiresAt <= :to")
+    List<Object[]> findCustomStatusExpiries(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT u.id FROM User u WHERE u.customStatusExpiresAt <= :now ORDER BY u.customStatusExpiresAt")
+    List<Long> findIdsWithExpiredCustomStatus(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids AND u.customStatusExpiresAt <= :now")
+    List<Long> findIdsWithExpiredCustomStatus(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * Clear custom statuses still expired at now; a status set again meanwhile is kept
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.customStatus = null, u.customStatusEmoji = null, u.customStatusExpiresAt = null " +
+            "WHERE u.id IN :ids AND u.customStatusExpiresAt <= :now")
+    int clearExpiredCustomStatusByIds(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
 }
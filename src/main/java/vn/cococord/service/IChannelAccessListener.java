@@ -0,0 +1,30 @@
+package vn.cococord.service;
+
+/**
+ * Notified when something that decides who may see a channel, server or DM group
+ * changed: permission overrides, roles, membership.
+ * Server and channel changes arrive through IChannelSendContextCache's invalidation
+ * calls, DM membership changes from IDMGroupService and IDirectMessageService.
+ * Calls may happen inside the changing transaction, so listeners that re-read the
+ * database defer until commit.
+ */
+public interface IChannelAccessListener {
+
+    default void onChannelChanged(Long channelId) {
+    }
+
+    default void onServerChanged(Long serverId) {
+    }
+
+    default void onServerMemberChanged(Long serverId, Long userId) {
+    }
+
+    default void onDmMemberAdded(Long dmGroupId, Long userId) {
+    }
+
+    default void onDmMemberRemoved(Long dmGroupId, Long userId) {
+    }
+
+    default void onDmGroupDeleted(Long dmGroupId) {
+    }
+}
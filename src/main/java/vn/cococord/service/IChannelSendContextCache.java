@@ -0,0 +1,31 @@
+package vn.cococord.service;
+
+import java.util.function.Supplier;
+
+import vn.cococord.dto.permission.ChannelSendContext;
+
+/**
+ * Per-session cache of channel send contexts.
+ * Only contexts that allow sending are kept, so invalidation is needed for
+ * changes that can take a permission away or change the author snapshot.
+ * Channel, server and server-member invalidations are also passed on to
+ * IChannelAccessListener beans.
+ */
+public interface IChannelSendContextCache {
+
+    /**
+     * Return the cached context for this session and channel, or build it with the
+     * loader. A null sessionId bypasses the cache.
+     */
+    ChannelSendContext getOrLoad(String sessionId, Long channelId, Supplier<ChannelSendContext> loader);
+
+    void invalidateSession(String sessionId);
+
+    void invalidateUser(Long userId);
+
+    void invalidateChannel(Long channelId);
+
+    void invalidateServer(Long serverId);
+
+    void invalidateServerMember(Long serverId, Long userId);
+}
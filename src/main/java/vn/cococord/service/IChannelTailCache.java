@@ -0,0 +1,67 @@
+package vn.cococord.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+import vn.cococord.dto.response.ChatMessageResponse;
+
+/**
+ * Bounded in-memory tail of the newest messages of active channels.
+ * Used to serve the first history page without a MongoDB query.
+ */
+public interface IChannelTailCache {
+
+    /**
+     * Newest messages of a channel, newest first, when the tail can answer a page of
+     * this size on its own
+     */
+    Optional<TailPage> getNewest(Long channelId, int size);
+
+    /**
+     * Max number of messages kept per channel (the largest page the tail can serve)
+     */
+    int capacity();
+
+    /**
+     * Stamp to take before loading a channel from MongoDB; a seed is rejected if
+     * the channel changed after the stamp was taken
+     */
+    long beginLoad(Long channelId);
+
+    /**
+     * Install the newest messages of a channel (newest first)
+     *
+     * @param exhaustive true when the list holds every message of the channel
+     */
+    void seed(Long channelId, List<ChatMessageResponse> newestFirst, boolean exhaustive, long stamp);
+
+    /**
+     * Attach the channel's total message count to an existing tail
+     */
+    void setTotalCount(Long channelId, long totalCount, long stamp);
+
+    void append(ChatMessageResponse message);
+
+    void replace(ChatMessageResponse message);
+
+    void update(Long channelId, String messageId, UnaryOperator<ChatMessageResponse> updater);
+
+    void remove(Long channelId, String messageId);
+
+    void evict(Long channelId);
+
+    /**
+     * A /topic/channel/** event another node published (redis-relay broker): its
+     * sends, edits and deletes never ran through this node's tail
+     */
+    void onRelayedEvent(String destination, byte[] payload);
+
+    /**
+     * @param content    Newest first
+     * @param hasMore    Whether older messages exist beyond this page
+     * @param totalCount Total messages in the channel, or -1 when unknown
+     */
+    record TailPage(List<ChatMessageResponse> content, boolean hasMore, long totalCount) {
+    }
+}
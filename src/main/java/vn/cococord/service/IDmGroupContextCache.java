@@ -0,0 +1,21 @@
+package vn.cococord.service;
+
+import vn.cococord.dto.permission.DmGroupContext;
+
+/**
+ * Cache of DM group membership and member display data for the DM send path.
+ * Membership changes arrive as IChannelAccessListener calls; profile changes
+ * through invalidateUser.
+ */
+public interface IDmGroupContextCache {
+
+    /**
+     * Cached context of the group, loaded with one query on a miss; null when the
+     * group does not exist or has no members
+     */
+    DmGroupContext get(Long dmGroupId);
+
+    void invalidateGroup(Long dmGroupId);
+
+    void invalidateUser(Long userId);
+}
@@ -0,0 +1,24 @@
+package vn.cococord.service;
+
+import java.util.List;
+
+import vn.cococord.entity.mysql.User;
+
+/**
+ * Background delivery of mention notifications, off the message send path.
+ */
+public interface IMentionFanoutService {
+
+    /**
+     * Notify everyone a message mentions. Direct, role and @everyone targets are
+     * merged so each recipient gets one notification and one mention event.
+     *
+     * @param mentioner          Snapshot of the author (not a managed entity)
+     * @param roleIds            Mentioned roles; only mentionable roles are expanded
+     *                           unless canMentionEveryone is set
+     * @param everyone           Whether the message mentions @everyone / @here
+     * @param canMentionEveryone Whether the author holds MENTION_EVERYONE
+     */
+    void fanOut(User mentioner, Long channelId, String messageId, List<Long> userIds, List<Long> roleIds,
+            boolean everyone, boolean canMentionEveryone);
+}
@@ -3,25 +3,53 @@ package vn.cococord.service;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import vn.cococord.dto.request.EditMessageRequest;
 import vn.cococord.dto.request.SendMessageRequest;
 import vn.cococord.dto.response.ChatMessageResponse;
+import vn.cococord.dto.response.MessageEditResponse;
+import vn.cococord.dto.response.ReactionUserResponse;
 import vn.cococord.entity.mongodb.Message;
 
 public interface IMessageService {
 
     ChatMessageResponse sendMessage(SendMessageRequest request, String username);
 
+    /**
+     * Send a message from a STOMP session; access checks are cached per session and channel
+     */
+    ChatMessageResponse sendMessage(SendMessageRequest request, String username, String sessionId);
+
     ChatMessageResponse editMessage(EditMessageRequest request, String username);
 
     void deleteMessage(String messageId, String username);
 
-    ChatMessageResponse getMessageById(String messageId);
+    /**
+     * Previous versions of a message, newest first
+     */
+    List<MessageEditResponse> getEditHistory(String messageId, String username);
+
+    /**
+     * Reads below take the viewer's username to set the "me" flag on reactions
+     */
+    ChatMessageResponse getMessageById(String messageId, String username);
+
+    Page<ChatMessageResponse> getChannelMessages(Long channelId, int page, int size, String username);
 
-    Page<ChatMessageResponse> getChannelMessages(Long channelId, int page, int size);
+    /**
+     * Cursor-paginated channel history, newest first, without a total count.
+     * At most one of before/after/around (message ids) may be set; none returns
+     * the newest page. For around, hasNext reports whether older messages exist.
+     */
+    Slice<ChatMessageResponse> getChannelMessages(Long channelId, String before, String after, String around,
+            int size, String username);
 
-    List<ChatMessageResponse> getMessageReplies(String parentMessageId);
+    /**
+     * Replies to a message, oldest first. after is the id of the last reply of
+     * the previous page; the parent carries replyCount / lastReplyAt for totals.
+     */
+    Slice<ChatMessageResponse> getMessageReplies(String parentMessageId, String after, int size, String username);
 
     /**
      * Add reaction to a message
@@ -48,6 +76,13 @@ public interface IMessageService {
      */
     void toggleReaction(String messageId, String emoji, String username);
 
+    /**
+     * Users who reacted with an emoji, in reaction order.
+     * after is the id of the last entry of the previous page.
+     */
+    Slice<ReactionUserResponse> getReactionUsers(String messageId, String emoji, String after, int size,
+            String username);
+
     Message convertToEntity(SendMessageRequest request, Long userId, String username, String displayName,
             String avatarUrl);
 
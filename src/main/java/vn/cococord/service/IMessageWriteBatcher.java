@@ -0,0 +1,24 @@
+package vn.cococord.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import vn.cococord.entity.mongodb.Message;
+
+/**
+ * Group-commit stage for new channel messages.
+ * Messages are collected per channel for a short window and written with one
+ * bulk insert, keeping the order in which they were enqueued.
+ */
+public interface IMessageWriteBatcher {
+
+    /**
+     * Queue a message for the next bulk insert of its channel.
+     *
+     * @param message     The message to persist (id is assigned by the insert)
+     * @param onPersisted Callback run after the insert, in channel order, before
+     *                    the returned future completes
+     * @return Future completed with the persisted message
+     */
+    CompletableFuture<Message> enqueue(Message message, Consumer<Message> onPersisted);
+}
@@ -31,6 +31,13 @@ public interface INotificationService {
      */
     void sendNewDirectMessageNotification(User sender, User receiver, Long dmGroupId, String preview);
 
+    /**
+     * Send the same new direct message notification to the other members with one
+     * multi-row insert
+     */
+    void sendNewDirectMessageNotifications(Long senderId, String senderUsername, String senderDisplayName,
+            List<Long> receiverIds, Long dmGroupId, String preview);
+
     /**
      * Send added to group DM notification
      */
@@ -51,6 +58,11 @@ public interface INotificationService {
      */
     void sendMentionNotification(User mentioner, User mentioned, Long channelId, String channelName);
 
+    /**
+     * Send the same mention notification to many users with one multi-row insert
+     */
+    void sendMentionNotifications(User mentioner, List<Long> mentionedUserIds, Long channelId, String channelName);
+
     /**
      * Send role assigned notification
      */
@@ -110,6 +110,14 @@ public interface IPermissionService {
      * @return true nếu user có thể xem channel
      */
     boolean canViewChannel(Long userId, Long channelId);
+
+    /**
+     * Batched {@link #canViewChannel}: channel overrides and role permissions are loaded
+     * once, each call of the returned filter costs one membership query for its users
+     * @param channelId Channel ID
+     * @return filter keeping the user IDs that can view the channel
+     */
+    java.util.function.UnaryOperator<java.util.List<Long>> channelViewerFilter(Long channelId);
     
     /**
      * Kiểm tra xem User có thể gửi tin nhắn trong Channel không
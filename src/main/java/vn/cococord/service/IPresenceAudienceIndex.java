@@ -0,0 +1,35 @@
+package vn.cococord.service;
+
+import java.util.Set;
+
+/**
+ * Who is told about a user's presence changes: friends and DM co-members by
+ * username, servers by id. Kept in memory so a status change fans out without
+ * queries. Friendship and block changes arrive from IFriendService, server and DM
+ * membership changes as IChannelAccessListener calls, renames through invalidateUser.
+ */
+public interface IPresenceAudienceIndex {
+
+    /**
+     * Audience of the user, loaded with three light queries on a miss
+     */
+    Audience get(Long userId);
+
+    void onFriendshipAdded(Long userId, String username, Long friendId, String friendUsername);
+
+    void onFriendshipRemoved(Long userId, Long friendId);
+
+    /**
+     * One of the users blocked or unblocked the other: both entries are rebuilt,
+     * and blocked users are never part of an audience
+     */
+    void onBlockChanged(Long userId, Long otherUserId);
+
+    /**
+     * Drops the user's entry and every entry listing the user as a peer
+     */
+    void invalidateUser(Long userId);
+
+    record Audience(Set<String> usernames, Set<Long> serverIds) {
+    }
+}
@@ -0,0 +1,68 @@
+package vn.cococord.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+import vn.cococord.entity.mysql.User;
+import vn.cococord.entity.mysql.User.UserStatus;
+
+/**
+ * Authoritative presence status. Transitions change the store only; a flusher
+ * writes the latest status of changed users to MySQL in batches, so connects,
+ * disconnects and idle flips do not each cost an UPDATE on users.
+ */
+public interface IPresenceStateStore {
+
+    /**
+     * Presence data of the user, loaded from MySQL on first use
+     */
+    Optional<PresenceSnapshot> get(String username);
+
+    Optional<PresenceSnapshot> get(Long userId);
+
+    /**
+     * Current status of each known user id
+     */
+    Map<Long, UserStatus> getStatuses(Collection<Long> userIds);
+
+    /**
+     * Apply a status transition atomically; the new status is written to MySQL by
+     * the next flush
+     */
+    Transition transition(Long userId, UnaryOperator<UserStatus> change);
+
+    /**
+     * Take a user row just saved by a write-through update (status or custom status
+     * chosen by the user) as the current state
+     */
+    void put(User user);
+
+    /**
+     * Users with a session on this node are kept in memory regardless of retention,
+     * so idle and disconnect transitions never reload them from MySQL
+     */
+    void setConnected(Long userId, boolean connected);
+
+    /**
+     * Drop the custom status of a user whose row was just cleared, keeping the
+     * status; returns the resulting presence data
+     */
+    Optional<PresenceSnapshot> clearCustomStatus(Long userId);
+
+    /**
+     * Write pending status changes to MySQL now
+     */
+    void flush();
+
+    record PresenceSnapshot(Long userId, String username, UserStatus status, String customStatus,
+            String customStatusEmoji) {
+    }
+
+    record Transition(PresenceSnapshot user, UserStatus from, UserStatus to) {
+        public boolean changed() {
+            return from != to;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package vn.cococord.service;
+
+import vn.cococord.entity.mongodb.TypingIndicator.TypingContext;
+
+/**
+ * Who is typing where. Client typing frames only update this state; subscribers of
+ * /topic/channel/{id}/typing and /topic/dm/{id}/typing get the aggregated list
+ * (TypingEvent) at most once per flush interval, and only when it changed.
+ */
+public interface ITypingTracker {
+
+    /**
+     * @param targetId Channel id (SERVER) or DM group id (DM)
+     * @param typing   false when the user stopped typing or sent the message
+     */
+    void update(TypingContext context, Long targetId, String username, boolean typing);
+}
@@ -11,6 +11,10 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -31,6 +35,7 @@ import vn.cococord.exception.BadRequestException;
 import vn.cococord.exception.ResourceNotFoundException;
 import vn.cococord.repository.*;
 import vn.cococord.service.IAdminService;
+import vn.cococord.service.IChannelSendContextCache;
 import vn.cococord.service.IEmailService;
 
 @Service
@@ -51,6 +56,8 @@ public class AdminServiceImpl implements IAdminService {
     private final IEmailService emailService;
     private final SimpMessagingTemplate messagingTemplate;
     private final IChannelRepository channelRepository;
+    private final IChannelSendContextCache sendContextCache;
+    private final MongoTemplate mongoTemplate;
 
     // ================== Dashboard ==================
 
@@ -856,6 +863,7 @@ public class AdminServiceImpl implements IAdminService {
         }
 
         serverRepository.delete(server);
+        sendContextCache.invalidateServer(deletedServerId);
 
         logAdminAction(AdminAuditLog.AdminActionType.SERVER_DELETE,
                 details,
@@ -1109,12 +1117,12 @@ public class AdminServiceImpl implements IAdminService {
     @Override
     public void deleteMessage(String messageId, String adminUsername) {
         try {
-            Message message = messageRepository.findById(messageId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Message not found"));
-
-            message.setIsDeleted(true);
-            message.setDeletedAt(LocalDateTime.now());
-            messageRepository.save(message);
+            // Field update rather than a document save, so concurrent reaction counters survive
+            if (mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(messageId)),
+                    new Update().set("isDeleted", true).set("deletedAt", LocalDateTime.now()),
+                    Message.class).getMatchedCount() == 0) {
+                throw new ResourceNotFoundException("Message not found");
+            }
 
             logAdminAction(AdminAuditLog.AdminActionType.MESSAGE_DELETE,
                     "Deleted message " + messageId,
@@ -22,6 +22,8 @@ import vn.cococord.repository.ICategoryRepository;
 import vn.cococord.repository.IChannelRepository;
 import vn.cococord.repository.IServerRepository;
 import vn.cococord.repository.IUserRepository;
+import vn.cococord.service.IChannelSendContextCache;
+import vn.cococord.service.IChannelTailCache;
 import vn.cococord.service.IChannelService;
 import vn.cococord.service.IPermissionService;
 import vn.cococord.service.IServerService;
@@ -39,6 +41,8 @@ public class ChannelServiceImpl implements IChannelService {
     private final IUserRepository userRepository;
     private final IServerService serverService;
     private final IPermissionService permissionService;
+    private final IChannelSendContextCache sendContextCache;
+    private final IChannelTailCache channelTailCache;
 
     private static final int MAX_CHANNELS_PER_CATEGORY = 50;
 
@@ -180,6 +184,7 @@ public class ChannelServiceImpl implements IChannelService {
         }
 
         channel = channelRepository.save(channel);
+        sendContextCache.invalidateChannel(channelId);
         log.info("Channel updated: {} by user: {}", channel.getName(), username);
 
         return convertToResponse(channel);
@@ -203,6 +208,8 @@ public class ChannelServiceImpl implements IChannelService {
         }
 
         channelRepository.delete(channel);
+        sendContextCache.invalidateChannel(channelId);
+        channelTailCache.evict(channelId);
         log.info("Channel deleted: {} by user: {}", channel.getName(), username);
     }
 
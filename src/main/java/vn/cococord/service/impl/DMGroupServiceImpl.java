@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,6 +22,7 @@ import vn.cococord.exception.ResourceNotFoundException;
 import vn.cococord.repository.IDirectMessageGroupRepository;
 import vn.cococord.repository.IDirectMessageMemberRepository;
 import vn.cococord.repository.IUserRepository;
+import vn.cococord.service.IChannelAccessListener;
 import vn.cococord.service.IDMGroupService;
 
 @Service
@@ -31,6 +33,7 @@ public class DMGroupServiceImpl implements IDMGroupService {
     private final IDirectMessageGroupRepository dmGroupRepository;
     private final IDirectMessageMemberRepository dmMemberRepository;
     private final IUserRepository userRepository;
+    private final ObjectProvider<IChannelAccessListener> accessListeners;
 
     @Override
     @Transactional(readOnly = true)
@@ -138,9 +141,11 @@ public class DMGroupServiceImpl implements IDMGroupService {
         if (dmGroup.getIsGroup() && dmGroup.getOwner().getId().equals(user.getId())) {
             // Owner leaving a group DM - delete the entire group
             dmGroupRepository.delete(dmGroup);
+            accessListeners.forEach(listener -> listener.onDmGroupDeleted(groupId));
         } else {
             // Regular member leaving or 1-1 DM
             dmMemberRepository.deleteByDmGroupIdAndUserId(groupId, user.getId());
+            accessListeners.forEach(listener -> listener.onDmMemberRemoved(groupId, user.getId()));
 
             // If no members left, delete the group
             if (dmGroupRepository.countMembersByDmGroupId(groupId) == 0) {
@@ -185,6 +190,7 @@ public class DMGroupServiceImpl implements IDMGroupService {
                 .user(targetUser)
                 .build();
         dmMemberRepository.save(member);
+        accessListeners.forEach(listener -> listener.onDmMemberAdded(groupId, userId));
     }
 
     @Override
@@ -220,6 +226,7 @@ public class DMGroupServiceImpl implements IDMGroupService {
 
         // Remove member
         dmMemberRepository.deleteByDmGroupIdAndUserId(groupId, userId);
+        accessListeners.forEach(listener -> listener.onDmMemberRemoved(groupId, userId));
     }
 
     @Override
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -13,6 +14,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import vn.cococord.dto.permission.DmGroupContext;
+import vn.cococord.dto.permission.DmMemberSnapshot;
 import vn.cococord.entity.mongodb.DirectMessage;
 import vn.cococord.entity.mysql.DirectMessageGroup;
 import vn.cococord.entity.mysql.DirectMessageMember;
@@ -23,7 +26,9 @@ import vn.cococord.repository.IDirectMessageGroupRepository;
 import vn.cococord.repository.IDirectMessageMemberRepository;
 import vn.cococord.repository.IDirectMessageRepository;
 import vn.cococord.repository.IUserRepository;
+import vn.cococord.service.IChannelAccessListener;
 import vn.cococord.service.IDirectMessageService;
+import vn.cococord.service.IDmGroupContextCache;
 import vn.cococord.service.INotificationService;
 
 @Service
@@ -41,6 +46,8 @@ public class DirectMessageServiceImpl implements IDirectMessageService {
     private final IUserRepository userRepository;
     private final INotificationService notificationService;
     private final org.springframework.messaging.simp.SimpMessagingTemplate messagingTemplate;
+    private final IDmGroupContextCache dmGroupContextCache;
+    private final ObjectProvider<IChannelAccessListener> accessListeners;
 
     @Override
     @Transactional(readOnly = true)
@@ -180,6 +187,7 @@ public class DirectMessageServiceImpl implements IDirectMessageService {
                 .build();
 
         dmMemberRepository.save(member);
+        accessListeners.forEach(listener -> listener.onDmMemberAdded(dmGroupId, userId));
 
         // Send notification to added user
         notificationService.sendAddedToGroupDMNotification(adder, user, dmGroupId, dmGroup.getName());
@@ -212,6 +220,7 @@ public class DirectMessageServiceImpl implements IDirectMessageService {
         }
 
         dmMemberRepository.deleteByDmGroupIdAndUserId(dmGroupId, userId);
+        accessListeners.forEach(listener -> listener.onDmMemberRemoved(dmGroupId, userId));
 
         // Send notification to removed user (only if kicked, not if self-leaving)
         if (!isSelfLeaving) {
@@ -297,6 +306,7 @@ public class DirectMessageServiceImpl implements IDirectMessageService {
         @SuppressWarnings("null")
         List<DirectMessageMember> toDelete = members;
         dmMemberRepository.deleteAll(toDelete);
+        accessListeners.forEach(listener -> listener.onDmGroupDeleted(dmGroupId));
 
         // Delete group
         dmGroupRepository.delete(dmGroup);
@@ -333,15 +343,13 @@ public class DirectMessageServiceImpl implements IDirectMessageService {
     @Transactional
     public DirectMessage sendDirectMessageWithAttachments(Long dmGroupId, Long senderId, String content,
             List<String> attachmentUrls, String type, String metadata) {
-        // Verify DM group exists and user is member
-        if (!dmGroupRepository.isUserMemberOfGroup(dmGroupId, senderId)) {
+        // Membership and author data come from the cached group context
+        DmGroupContext group = dmGroupContextCache.get(dmGroupId);
+        DmMemberSnapshot sender = group != null ? group.getMember(senderId) : null;
+        if (sender == null) {
             throw new ForbiddenException("You are not a member of this DM group");
         }
 
-        @SuppressWarnings("null")
-        User sender = userRepository.findById(senderId)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
         // Parse message type from string, default to TEXT
         DirectMessage.MessageType messageType = parseMessageType(type);
 
@@ -370,24 +378,10 @@ public class DirectMessageServiceImpl implements IDirectMessageService {
         DirectMessage savedMessage = directMessageRepository.save(message);
         message = savedMessage;
 
-        // Send notifications to other members (except sender)
-        // Verify DM group exists
-        if (!dmGroupRepository.existsById(dmGroupId)) {
-            throw new ResourceNotFoundException("DM Group not found");
-        }
-
-        List<Long> memberIds = dmMemberRepository.findByDmGroupId(dmGroupId).stream()
-                .map(m -> m.getUser().getId())
-                .filter(id -> !id.equals(senderId))
-                .toList();
-
-        for (Long memberId : memberIds) {
-            @SuppressWarnings("null")
-            User receiver = userRepository.findById(memberId)
-                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-            String preview = content != null && !content.isBlank() ? content : "[Attachment]";
-            notificationService.sendNewDirectMessageNotification(sender, receiver, dmGroupId, preview);
-        }
+        // Notify the other members with one multi-row insert
+        String preview = content != null && !content.isBlank() ? content : "[Attachment]";
+        notificationService.sendNewDirectMessageNotifications(sender.getUserId(), sender.getUsername(),
+                sender.getDisplayName(), group.otherMemberIds(senderId), dmGroupId, preview);
 
         log.info("Sent direct message in DM group {} by user {}", dmGroupId, senderId);
         return message;
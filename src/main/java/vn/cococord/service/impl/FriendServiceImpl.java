@@ -21,6 +21,7 @@ import vn.cococord.repository.IBlockedUserRepository;
 import vn.cococord.repository.IFriendRequestRepository;
 import vn.cococord.repository.IUserRepository;
 import vn.cococord.service.IFriendService;
+import vn.cococord.service.IPresenceAudienceIndex;
 import vn.cococord.service.INotificationService;
 
 import java.time.LocalDateTime;
@@ -41,6 +42,7 @@ public class FriendServiceImpl implements IFriendService {
     private final INotificationService notificationService;
     private final SimpMessagingTemplate messagingTemplate;
     private final vn.cococord.repository.IServerMemberRepository serverMemberRepository;
+    private final IPresenceAudienceIndex presenceAudienceIndex;
 
     private void sendFriendRealtimeEvent(Long userId, FriendRelationshipEvent event) {
         if (userId == null || event == null)
@@ -151,6 +153,8 @@ public class FriendServiceImpl implements IFriendService {
         request.setStatus(FriendRequestStatus.ACCEPTED);
         request.setRespondedAt(LocalDateTime.now());
         friendRequestRepository.save(request);
+        presenceAudienceIndex.onFriendshipAdded(request.getSender().getId(), request.getSender().getUsername(),
+                request.getReceiver().getId(), request.getReceiver().getUsername());
 
         // Send notification to the sender that their request was accepted
         notificationService.sendFriendAcceptedNotification(user, request.getSender());
@@ -292,6 +296,7 @@ public class FriendServiceImpl implements IFriendService {
 
         // Delete the friendship
         friendRequestRepository.delete(friendRequest);
+        presenceAudienceIndex.onFriendshipRemoved(user.getId(), friendId);
 
         // Realtime: remove friend from both sides
         User other = friendRequest.getSender().getId().equals(user.getId())
@@ -327,6 +332,7 @@ public class FriendServiceImpl implements IFriendService {
         // Remove friendship if exists
         friendRequestRepository.findBetweenUsers(blocker.getId(), blocked.getId())
                 .ifPresent(friendRequestRepository::delete);
+        presenceAudienceIndex.onBlockChanged(blocker.getId(), blocked.getId());
 
         // Create block record
         BlockedUser blockRecord = BlockedUser.builder()
@@ -351,6 +357,7 @@ public class FriendServiceImpl implements IFriendService {
         }
 
         blockedUserRepository.deleteByUserIdAndBlockedUserId(blocker.getId(), userId);
+        presenceAudienceIndex.onBlockChanged(blocker.getId(), userId);
 
         // Realtime: blocker no longer blocked; best-effort notify other side too
         User other = userRepository.findById(userId).orElse(null);
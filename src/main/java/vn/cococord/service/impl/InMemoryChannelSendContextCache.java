@@ -0,0 +1,149 @@
+package vn.cococord.service.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.config.CacheInvalidationBus;
+import vn.cococord.config.CacheInvalidator;
+import vn.cococord.dto.permission.ChannelSendContext;
+import vn.cococord.service.IChannelAccessListener;
+import vn.cococord.service.IChannelSendContextCache;
+
+/**
+ * Contexts are grouped by session, so a disconnect drops its session's contexts
+ * in one step and does not disturb loads of other sessions. User, channel and
+ * server changes scan all sessions (they are rare) and reach the other nodes
+ * through CacheInvalidationBus. Entries also expire after ttl-ms, which bounds
+ * what a load racing with its session's disconnect can leave behind.
+ */
+@Component
+@Slf4j
+public class InMemoryChannelSendContextCache implements IChannelSendContextCache {
+
+    // Channel / server / membership invalidations are forwarded (subscription authorization)
+    private final ObjectProvider<IChannelAccessListener> accessListeners;
+
+    @Value("${app.chat.send-context-cache.ttl-ms:600000}")
+    private long ttlMs;
+
+    // sessionId -> channelId -> context
+    private final Map<String, Map<Long, Entry>> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * A context built while an invalidation happened is returned to the caller but
+     * not stored, so it cannot resurrect stale data.
+     */
+    private final CacheInvalidator<Change> invalidator;
+
+    public InMemoryChannelSendContextCache(ObjectProvider<IChannelAccessListener> accessListeners,
+            CacheInvalidationBus invalidationBus) {
+        this.accessListeners = accessListeners;
+        this.invalidator = invalidationBus.register("channel-send-context", Change.class, change -> List.of(),
+                this::drop);
+    }
+
+    @Override
+    public ChannelSendContext getOrLoad(String sessionId, Long channelId, Supplier<ChannelSendContext> loader) {
+        if (sessionId == null || channelId == null) {
+            return loader.get();
+        }
+
+        long now = System.currentTimeMillis();
+        Map<Long, Entry> channels = sessions.get(sessionId);
+        Entry cached = channels != null ? channels.get(channelId) : null;
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.context();
+        }
+
+        long stamp = invalidator.stamp(sessionId);
+        ChannelSendContext loaded = loader.get();
+        if (loaded != null && loaded.canSendMessages() && invalidator.isCurrent(sessionId, stamp)) {
+            sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                    .put(channelId, new Entry(loaded, now + ttlMs));
+        }
+        return loaded;
+    }
+
+    @Override
+    public void invalidateSession(String sessionId) {
+        if (sessionId != null) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    @Override
+    public void invalidateUser(Long userId) {
+        if (userId != null) {
+            invalidator.invalidate(new Change(userId, null, null));
+        }
+    }
+
+    @Override
+    public void invalidateChannel(Long channelId) {
+        if (channelId != null) {
+            invalidator.invalidate(new Change(null, channelId, null));
+            accessListeners.forEach(listener -> listener.onChannelChanged(channelId));
+        }
+    }
+
+    @Override
+    public void invalidateServer(Long serverId) {
+        if (serverId != null) {
+            invalidator.invalidate(new Change(null, null, serverId));
+            accessListeners.forEach(listener -> listener.onServerChanged(serverId));
+        }
+    }
+
+    @Override
+    public void invalidateServerMember(Long serverId, Long userId) {
+        if (serverId != null && userId != null) {
+            invalidator.invalidate(new Change(userId, null, serverId));
+            accessListeners.forEach(listener -> listener.onServerMemberChanged(serverId, userId));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        if (event != null) {
+            invalidateSession(event.getSessionId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.chat.send-context-cache.ttl-ms:600000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        sessions.values().forEach(channels -> channels.values().removeIf(entry -> entry.expiresAt() <= now));
+        sessions.values().removeIf(Map::isEmpty);
+    }
+
+    private void drop(Change change) {
+        sessions.values().forEach(channels -> channels.entrySet()
+                .removeIf(entry -> change.matches(entry.getKey(), entry.getValue().context())));
+    }
+
+    private record Entry(ChannelSendContext context, long expiresAt) {
+    }
+
+    /**
+     * Contexts of the user / channel / server given (all set fields must match)
+     */
+    record Change(@Nullable Long userId, @Nullable Long channelId, @Nullable Long serverId) {
+
+        private boolean matches(Long contextChannelId, ChannelSendContext context) {
+            return (userId == null || userId.equals(context.getUserId()))
+                    && (channelId == null || channelId.equals(contextChannelId))
+                    && (serverId == null || serverId.equals(context.getServerId()));
+        }
+    }
+}
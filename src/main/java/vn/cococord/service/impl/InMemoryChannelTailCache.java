@@ -0,0 +1,374 @@
+package vn.cococord.service.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.dto.response.ChatMessageResponse;
+import vn.cococord.service.IChannelTailCache;
+
+/**
+ * Keeps the newest messages of recently read channels in bounded deques.
+ *
+ * Channels are evicted least-recently-used first once the estimated size of all
+ * tails goes over app.chat.tail-cache.max-bytes. Mutations bump a striped
+ * version counter so a seed loaded from MongoDB is dropped if a message was
+ * sent, edited or deleted in that channel while the query was running.
+ *
+ * With the redis-relay broker, messages sent on other nodes are appended from the
+ * relayed message.created event; any other relayed channel event (edit, delete,
+ * reaction, thread counters) evicts the channel, which reloads on the next read.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryChannelTailCache implements IChannelTailCache {
+
+    private static final int VERSION_STRIPES = 1024;
+    private static final String CHANNEL_TOPIC_PREFIX = "/topic/channel/";
+    private static final String TYPING_SUFFIX = "/typing";
+    private static final String CREATED_EVENT = "message.created";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.chat.tail-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.chat.tail-cache.messages-per-channel:100}")
+    private int messagesPerChannel;
+
+    @Value("${app.chat.tail-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    // Access-ordered, guarded by itself
+    private final LinkedHashMap<Long, ChannelTail> tails = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private long totalBytes;
+
+    @Override
+    public Optional<TailPage> getNewest(Long channelId, int size) {
+        if (!enabled || channelId == null || size <= 0) {
+            return Optional.empty();
+        }
+        ChannelTail tail;
+        synchronized (tails) {
+            tail = tails.get(channelId);
+        }
+        if (tail == null) {
+            return Optional.empty();
+        }
+        synchronized (tail) {
+            int available = tail.messages.size();
+            if (size > available && !tail.exhaustive) {
+                return Optional.empty();
+            }
+            List<ChatMessageResponse> page = new ArrayList<>(Math.min(size, available));
+            Iterator<ChatMessageResponse> it = tail.messages.iterator();
+            while (it.hasNext() && page.size() < size) {
+                page.add(it.next());
+            }
+            boolean hasMore = available > size || !tail.exhaustive;
+            return Optional.of(new TailPage(page, hasMore, tail.totalCount));
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return enabled ? messagesPerChannel : 0;
+    }
+
+    @Override
+    public long beginLoad(Long channelId) {
+        return versions.get(stripe(channelId));
+    }
+
+    @Override
+    public void seed(Long channelId, List<ChatMessageResponse> newestFirst, boolean exhaustive, long stamp) {
+        if (!enabled || channelId == null) {
+            return;
+        }
+        ChannelTail tail = new ChannelTail();
+        tail.exhaustive = exhaustive && newestFirst.size() <= messagesPerChannel;
+        for (ChatMessageResponse message : newestFirst) {
+            if (tail.messages.size() >= messagesPerChannel) {
+                break;
+            }
+            tail.messages.addLast(message);
+            tail.bytes += estimateBytes(message);
+        }
+
+        synchronized (tails) {
+            if (versions.get(stripe(channelId)) != stamp) {
+                log.debug("Dropping stale tail seed for channel {}", channelId);
+                return;
+            }
+            ChannelTail previous = tails.put(channelId, tail);
+            if (previous != null) {
+                totalBytes -= previous.bytes;
+            }
+            totalBytes += tail.bytes;
+            evictOverBudget();
+        }
+    }
+
+    @Override
+    public void setTotalCount(Long channelId, long totalCount, long stamp) {
+        ChannelTail tail = peek(channelId);
+        if (tail == null) {
+            return;
+        }
+        synchronized (tail) {
+            if (versions.get(stripe(channelId)) == stamp) {
+                tail.totalCount = totalCount;
+            }
+        }
+    }
+
+    @Override
+    public void append(ChatMessageResponse message) {
+        Long channelId = message.getChannelId();
+        ChannelTail tail = mutate(channelId);
+        if (tail == null) {
+            return;
+        }
+        long delta;
+        synchronized (tail) {
+            if (contains(tail, message.getId())) {
+                // Seed query already saw this message before its insert callback ran
+                return;
+            }
+            long before = tail.bytes;
+            tail.messages.addFirst(message);
+            tail.bytes += estimateBytes(message);
+            while (tail.messages.size() > messagesPerChannel) {
+                tail.bytes -= estimateBytes(tail.messages.removeLast());
+                tail.exhaustive = false;
+            }
+            if (tail.totalCount >= 0) {
+                tail.totalCount++;
+            }
+            delta = tail.bytes - before;
+        }
+        addBytes(delta);
+    }
+
+    @Override
+    public void replace(ChatMessageResponse message) {
+        update(message.getChannelId(), message.getId(), current -> message);
+    }
+
+    @Override
+    public void update(Long channelId, String messageId, UnaryOperator<ChatMessageResponse> updater) {
+        ChannelTail tail = mutate(channelId);
+        if (tail == null) {
+            return;
+        }
+        long delta = 0;
+        synchronized (tail) {
+            // Deques have no set(index); rebuild in place, tails are small
+            int size = tail.messages.size();
+            for (int i = 0; i < size; i++) {
+                ChatMessageResponse current = tail.messages.removeFirst();
+                if (Objects.equals(current.getId(), messageId)) {
+                    ChatMessageResponse updated = updater.apply(current);
+                    delta = estimateBytes(updated) - estimateBytes(current);
+                    current = updated;
+                }
+                tail.messages.addLast(current);
+            }
+            tail.bytes += delta;
+        }
+        addBytes(delta);
+    }
+
+    @Override
+    public void remove(Long channelId, String messageId) {
+        ChannelTail tail = mutate(channelId);
+        if (tail == null) {
+            return;
+        }
+        long delta = 0;
+        synchronized (tail) {
+            Iterator<ChatMessageResponse> it = tail.messages.iterator();
+            while (it.hasNext()) {
+                ChatMessageResponse current = it.next();
+                if (Objects.equals(current.getId(), messageId)) {
+                    it.remove();
+                    delta = -estimateBytes(current);
+                    if (tail.totalCount > 0) {
+                        tail.totalCount--;
+                    }
+                    break;
+                }
+            }
+            if (delta == 0 && !tail.exhaustive) {
+                // Deleted message is older than the tail; only the count moves
+                if (tail.totalCount > 0) {
+                    tail.totalCount--;
+                }
+            }
+            tail.bytes += delta;
+        }
+        addBytes(delta);
+    }
+
+    @Override
+    public void evict(Long channelId) {
+        if (channelId == null) {
+            return;
+        }
+        versions.incrementAndGet(stripe(channelId));
+        synchronized (tails) {
+            ChannelTail removed = tails.remove(channelId);
+            if (removed != null) {
+                totalBytes -= removed.bytes;
+            }
+        }
+    }
+
+    @Override
+    public void onRelayedEvent(String destination, byte[] payload) {
+        if (!enabled || !destination.startsWith(CHANNEL_TOPIC_PREFIX) || destination.endsWith(TYPING_SUFFIX)) {
+            return;
+        }
+        int end = destination.indexOf('/', CHANNEL_TOPIC_PREFIX.length());
+        Long channelId;
+        try {
+            channelId = Long.valueOf(end < 0 ? destination.substring(CHANNEL_TOPIC_PREFIX.length())
+                    : destination.substring(CHANNEL_TOPIC_PREFIX.length(), end));
+        } catch (NumberFormatException e) {
+            return;
+        }
+
+        ChatMessageResponse created = null;
+        try {
+            JsonNode event = objectMapper.readTree(payload);
+            if (CREATED_EVENT.equals(event.path("type").asText()) && event.path("payload").isObject()) {
+                created = objectMapper.treeToValue(event.get("payload"), ChatMessageResponse.class);
+            }
+        } catch (Exception e) {
+            log.debug("Unreadable relayed event for channel {}: {}", channelId, e.getMessage());
+        }
+        if (created != null && channelId.equals(created.getChannelId()) && isNewest(channelId, created)) {
+            append(created);
+        } else {
+            evict(channelId);
+        }
+    }
+
+    /**
+     * Relayed sends of different nodes can arrive out of order; only one newer than
+     * the tail's head can be appended without re-sorting
+     */
+    private boolean isNewest(Long channelId, ChatMessageResponse message) {
+        ChannelTail tail = peek(channelId);
+        if (tail == null) {
+            return true;
+        }
+        synchronized (tail) {
+            ChatMessageResponse head = tail.messages.peekFirst();
+            return head == null || head.getCreatedAt() == null
+                    || (message.getCreatedAt() != null && !message.getCreatedAt().isBefore(head.getCreatedAt()));
+        }
+    }
+
+    /**
+     * Bump the channel's version and return its tail, if cached
+     */
+    private ChannelTail mutate(Long channelId) {
+        if (channelId == null) {
+            return null;
+        }
+        versions.incrementAndGet(stripe(channelId));
+        return peek(channelId);
+    }
+
+    private ChannelTail peek(Long channelId) {
+        synchronized (tails) {
+            // Writes count as activity too, so they refresh the LRU position
+            return tails.get(channelId);
+        }
+    }
+
+    private void addBytes(long delta) {
+        if (delta == 0) {
+            return;
+        }
+        synchronized (tails) {
+            totalBytes += delta;
+            if (delta > 0) {
+                evictOverBudget();
+            }
+        }
+    }
+
+    // Caller holds the tails lock
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Long, ChannelTail>> it = tails.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Long, ChannelTail> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue().bytes;
+            log.debug("Evicted tail of channel {}", eldest.getKey());
+        }
+    }
+
+    private static boolean contains(ChannelTail tail, String messageId) {
+        for (ChatMessageResponse current : tail.messages) {
+            if (Objects.equals(current.getId(), messageId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int stripe(Long channelId) {
+        return (Long.hashCode(channelId) & 0x7fffffff) % VERSION_STRIPES;
+    }
+
+    /**
+     * Rough heap footprint: object headers plus two bytes per char
+     */
+    private static long estimateBytes(ChatMessageResponse message) {
+        long bytes = 256;
+        bytes += chars(message.getContent()) + chars(message.getUsername()) + chars(message.getDisplayName())
+                + chars(message.getAvatarUrl()) + chars(message.getId()) + chars(message.getParentMessageId())
+                + chars(message.getThreadId());
+        if (message.getMentionedUserIds() != null) {
+            bytes += 24L * message.getMentionedUserIds().size();
+        }
+        if (message.getAttachments() != null) {
+            for (ChatMessageResponse.AttachmentResponse attachment : message.getAttachments()) {
+                bytes += 96 + chars(attachment.getFileName()) + chars(attachment.getFileUrl())
+                        + chars(attachment.getFileType());
+            }
+        }
+        return bytes;
+    }
+
+    private static long chars(String value) {
+        return value == null ? 0 : 2L * value.length();
+    }
+
+    private static final class ChannelTail {
+        private final ArrayDeque<ChatMessageResponse> messages = new ArrayDeque<>();
+        private boolean exhaustive;
+        private long totalCount = -1;
+        private long bytes;
+    }
+}
@@ -0,0 +1,131 @@
+package vn.cococord.service.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.config.CacheInvalidationBus;
+import vn.cococord.config.CacheInvalidator;
+import vn.cococord.dto.permission.DmGroupContext;
+import vn.cococord.dto.permission.DmMemberSnapshot;
+import vn.cococord.repository.IDirectMessageMemberRepository;
+import vn.cococord.service.IChannelAccessListener;
+import vn.cococord.service.IDmGroupContextCache;
+
+/**
+ * A group change drops that group only; a user change drops every group the user
+ * is a member of. Both are published to the other nodes after commit.
+ */
+@Component
+@Slf4j
+public class InMemoryDmGroupContextCache implements IDmGroupContextCache, IChannelAccessListener {
+
+    private final IDirectMessageMemberRepository dmMemberRepository;
+
+    @Value("${app.chat.dm-group-cache.ttl-ms:600000}")
+    private long ttlMs;
+
+    private final Map<Long, Entry> groups = new ConcurrentHashMap<>();
+
+    /**
+     * A context built while its group was invalidated is returned to the caller but
+     * not stored, so it cannot resurrect stale data.
+     */
+    private final CacheInvalidator<Change> invalidator;
+
+    public InMemoryDmGroupContextCache(IDirectMessageMemberRepository dmMemberRepository,
+            CacheInvalidationBus invalidationBus) {
+        this.dmMemberRepository = dmMemberRepository;
+        this.invalidator = invalidationBus.register("dm-group-context", Change.class, Change::keys, this::drop);
+    }
+
+    @Override
+    public DmGroupContext get(Long dmGroupId) {
+        if (dmGroupId == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Entry cached = groups.get(dmGroupId);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.context();
+        }
+
+        long stamp = invalidator.stamp(dmGroupId);
+        List<DmMemberSnapshot> members = dmMemberRepository.findMemberSnapshots(dmGroupId);
+        if (members.isEmpty()) {
+            return null;
+        }
+        Map<Long, DmMemberSnapshot> byUserId = new LinkedHashMap<>();
+        members.forEach(member -> byUserId.put(member.getUserId(), member));
+        DmGroupContext context = new DmGroupContext(dmGroupId, Collections.unmodifiableMap(byUserId));
+        if (invalidator.isCurrent(dmGroupId, stamp)) {
+            groups.put(dmGroupId, new Entry(context, now + ttlMs));
+        }
+        return context;
+    }
+
+    @Override
+    public void invalidateGroup(Long dmGroupId) {
+        if (dmGroupId != null) {
+            invalidator.invalidate(new Change(dmGroupId, null));
+        }
+    }
+
+    @Override
+    public void invalidateUser(Long userId) {
+        if (userId != null) {
+            invalidator.invalidate(new Change(null, userId));
+        }
+    }
+
+    @Override
+    public void onDmMemberAdded(Long dmGroupId, Long userId) {
+        invalidateGroup(dmGroupId);
+    }
+
+    @Override
+    public void onDmMemberRemoved(Long dmGroupId, Long userId) {
+        invalidateGroup(dmGroupId);
+    }
+
+    @Override
+    public void onDmGroupDeleted(Long dmGroupId) {
+        invalidateGroup(dmGroupId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.chat.dm-group-cache.ttl-ms:600000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        groups.values().removeIf(entry -> entry.expiresAt() <= now);
+    }
+
+    private void drop(Change change) {
+        if (change.dmGroupId() != null) {
+            groups.remove(change.dmGroupId());
+        } else {
+            groups.values().removeIf(entry -> entry.context().isMember(change.userId()));
+        }
+    }
+
+    /**
+     * A group (dmGroupId) or every group of a member (userId)
+     */
+    record Change(@Nullable Long dmGroupId, @Nullable Long userId) {
+
+        Collection<?> keys() {
+            return dmGroupId != null ? List.of(dmGroupId) : List.of();
+        }
+    }
+
+    private record Entry(DmGroupContext context, long expiresAt) {
+    }
+}
@@ -0,0 +1,231 @@
+package vn.cococord.service.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import vn.cococord.config.CacheInvalidationBus;
+import vn.cococord.config.CacheInvalidator;
+import vn.cococord.repository.IBlockedUserRepository;
+import vn.cococord.repository.IDirectMessageMemberRepository;
+import vn.cococord.repository.IFriendRequestRepository;
+import vn.cococord.repository.IServerMemberRepository;
+import vn.cococord.service.IChannelAccessListener;
+import vn.cococord.service.IPresenceAudienceIndex;
+
+/**
+ * Friendships are applied to cached entries in place; server and DM membership
+ * and block changes drop the entries they touch, which reload on the next status
+ * change. Blocked users (either direction) are left out when an entry is loaded.
+ * Server deletions are not tracked: a stale server id only costs a send to a
+ * topic nobody subscribes to until the entry expires (ttl-ms).
+ *
+ * Every change is also published to the other nodes after commit (CacheInvalidationBus);
+ * they drop the affected entries instead of serving them until ttl-ms.
+ */
+@Component
+@SuppressWarnings("null")
+public class InMemoryPresenceAudienceIndex implements IPresenceAudienceIndex, IChannelAccessListener {
+
+    private final IFriendRequestRepository friendRequestRepository;
+    private final IServerMemberRepository serverMemberRepository;
+    private final IDirectMessageMemberRepository dmMemberRepository;
+    private final IBlockedUserRepository blockedUserRepository;
+
+    @Value("${app.presence.audience-index.ttl-ms:600000}")
+    private long ttlMs;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * An entry loaded while a change touching it happened is returned to the caller
+     * but not stored, so it cannot resurrect stale data.
+     */
+    private final CacheInvalidator<Invalidation> invalidator;
+
+    public InMemoryPresenceAudienceIndex(IFriendRequestRepository friendRequestRepository,
+            IServerMemberRepository serverMemberRepository,
+            IDirectMessageMemberRepository dmMemberRepository,
+            IBlockedUserRepository blockedUserRepository,
+            CacheInvalidationBus invalidationBus) {
+        this.friendRequestRepository = friendRequestRepository;
+        this.serverMemberRepository = serverMemberRepository;
+        this.dmMemberRepository = dmMemberRepository;
+        this.blockedUserRepository = blockedUserRepository;
+        this.invalidator = invalidationBus.register("presence-audience", Invalidation.class, Invalidation::keys,
+                this::drop);
+    }
+
+    @Override
+    public Audience get(Long userId) {
+        if (userId == null) {
+            return new Audience(Set.of(), Set.of());
+        }
+        long now = System.currentTimeMillis();
+        Entry cached = entries.get(userId);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.audience();
+        }
+
+        long stamp = invalidator.stamp(userId);
+        Set<Long> blocked = new HashSet<>(blockedUserRepository.findBlockRelatedUserIds(userId));
+        Map<Long, String> friends = new HashMap<>();
+        for (Object[] row : friendRequestRepository.findFriendIdsAndUsernames(userId)) {
+            if (!blocked.contains((Long) row[0])) {
+                friends.put((Long) row[0], (String) row[1]);
+            }
+        }
+        Map<Long, String> dmPeers = new HashMap<>();
+        Set<Long> dmGroupIds = new HashSet<>();
+        for (Object[] row : dmMemberRepository.findCoMembersOfUser(userId)) {
+            dmGroupIds.add((Long) row[0]);
+            if (!blocked.contains((Long) row[1])) {
+                dmPeers.put((Long) row[1], (String) row[2]);
+            }
+        }
+        Set<Long> serverIds = new HashSet<>(serverMemberRepository.findServerIdsByUserId(userId));
+
+        Entry entry = new Entry(friends, dmPeers, dmGroupIds, serverIds, now + ttlMs);
+        if (invalidator.isCurrent(userId, stamp)) {
+            entries.put(userId, entry);
+        }
+        return entry.audience();
+    }
+
+    @Override
+    public void onFriendshipAdded(Long userId, String username, Long friendId, String friendUsername) {
+        if (userId == null || friendId == null) {
+            return;
+        }
+        invalidator.apply(new Invalidation(Set.of(userId, friendId), false, null), () -> {
+            entries.computeIfPresent(userId, (id, entry) -> entry.withFriend(friendId, friendUsername));
+            entries.computeIfPresent(friendId, (id, entry) -> entry.withFriend(userId, username));
+        });
+    }
+
+    @Override
+    public void onFriendshipRemoved(Long userId, Long friendId) {
+        if (userId == null || friendId == null) {
+            return;
+        }
+        invalidator.apply(new Invalidation(Set.of(userId, friendId), false, null), () -> {
+            entries.computeIfPresent(userId, (id, entry) -> entry.withoutFriend(friendId));
+            entries.computeIfPresent(friendId, (id, entry) -> entry.withoutFriend(userId));
+        });
+    }
+
+    @Override
+    public void onBlockChanged(Long userId, Long otherUserId) {
+        if (userId != null && otherUserId != null) {
+            invalidate(new Invalidation(Set.of(userId, otherUserId), false, null));
+        }
+    }
+
+    @Override
+    public void invalidateUser(Long userId) {
+        if (userId != null) {
+            invalidate(new Invalidation(Set.of(userId), true, null));
+        }
+    }
+
+    @Override
+    public void onServerMemberChanged(Long serverId, Long userId) {
+        if (userId != null) {
+            invalidate(new Invalidation(Set.of(userId), false, null));
+        }
+    }
+
+    @Override
+    public void onDmMemberAdded(Long dmGroupId, Long userId) {
+        invalidateDmGroup(dmGroupId, userId);
+    }
+
+    @Override
+    public void onDmMemberRemoved(Long dmGroupId, Long userId) {
+        invalidateDmGroup(dmGroupId, userId);
+    }
+
+    @Override
+    public void onDmGroupDeleted(Long dmGroupId) {
+        invalidateDmGroup(dmGroupId, null);
+    }
+
+    @Scheduled(fixedDelayString = "${app.presence.audience-index.ttl-ms:600000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+    }
+
+    private void invalidateDmGroup(Long dmGroupId, Long userId) {
+        if (dmGroupId != null) {
+            invalidate(new Invalidation(userId != null ? Set.of(userId) : Set.of(), false, dmGroupId));
+        }
+    }
+
+    private void invalidate(Invalidation invalidation) {
+        invalidator.invalidate(invalidation);
+    }
+
+    private void drop(Invalidation invalidation) {
+        entries.entrySet().removeIf(entry -> invalidation.userIds().contains(entry.getKey())
+                || (invalidation.withPeers() && entry.getValue().names(invalidation.userIds()))
+                || (invalidation.dmGroupId() != null
+                        && entry.getValue().dmGroupIds().contains(invalidation.dmGroupId())));
+    }
+
+    /**
+     * Entries to drop on other nodes: the users' own, entries naming them as peers
+     * (withPeers) and entries of members of dmGroupId
+     */
+    record Invalidation(Set<Long> userIds, boolean withPeers, @Nullable Long dmGroupId) {
+
+        /**
+         * Peers and DM co-members are only known from the entries: those changes reach every key
+         */
+        Collection<?> keys() {
+            return withPeers || dmGroupId != null ? Set.of() : userIds;
+        }
+    }
+
+    private record Entry(Map<Long, String> friends, Map<Long, String> dmPeers, Set<Long> dmGroupIds,
+            Set<Long> serverIds, long expiresAt, Audience audience) {
+
+        private Entry(Map<Long, String> friends, Map<Long, String> dmPeers, Set<Long> dmGroupIds,
+                Set<Long> serverIds, long expiresAt) {
+            this(Map.copyOf(friends), Map.copyOf(dmPeers), Set.copyOf(dmGroupIds), Set.copyOf(serverIds),
+                    expiresAt, audienceOf(friends, dmPeers, serverIds));
+        }
+
+        private boolean names(Set<Long> userIds) {
+            return userIds.stream().anyMatch(userId -> friends.containsKey(userId) || dmPeers.containsKey(userId));
+        }
+
+        private Entry withFriend(Long friendId, String friendUsername) {
+            Map<Long, String> updated = new HashMap<>(friends);
+            updated.put(friendId, friendUsername);
+            return new Entry(updated, dmPeers, dmGroupIds, serverIds, expiresAt);
+        }
+
+        private Entry withoutFriend(Long friendId) {
+            Map<Long, String> updated = new HashMap<>(friends);
+            updated.remove(friendId);
+            return new Entry(updated, dmPeers, dmGroupIds, serverIds, expiresAt);
+        }
+
+        private static Audience audienceOf(Map<Long, String> friends, Map<Long, String> dmPeers,
+                Set<Long> serverIds) {
+            Set<String> usernames = new HashSet<>(friends.values());
+            usernames.addAll(dmPeers.values());
+            return new Audience(Collections.unmodifiableSet(usernames), Set.copyOf(serverIds));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package vn.cococord.service.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.config.ClusterUserDirectory;
+import vn.cococord.dto.websocket.TypingEvent;
+import vn.cococord.entity.mongodb.TypingIndicator.TypingContext;
+import vn.cococord.service.ITypingTracker;
+
+/**
+ * Typing state kept in memory per channel / DM group (app.websocket.typing.*).
+ * A typer expires ttl-ms after their last frame (clients repeat it every few seconds
+ * while typing). Every flush-interval-ms the rooms that changed publish their list,
+ * capped at max-listed names, so a room costs at most one broadcast per interval
+ * however many people type in it.
+ *
+ * In redis-relay mode each node only knows the typers connected to it. Events carry
+ * the node id and clients merge them per node; a room with typers is republished
+ * every ttl-ms / 2 even when unchanged so clients can drop the list of a node that
+ * stopped publishing.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@SuppressWarnings("null")
+public class InMemoryTypingTracker implements ITypingTracker {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectProvider<ClusterUserDirectory> userDirectory;
+
+    @Value("${app.websocket.typing.ttl-ms:6000}")
+    private long ttlMs;
+
+    @Value("${app.websocket.typing.max-listed:5}")
+    private int maxListed;
+
+    // All access to a Room happens inside compute on its key
+    private final Map<RoomKey, Room> rooms = new ConcurrentHashMap<>();
+
+    @Override
+    public void update(TypingContext context, Long targetId, String username, boolean typing) {
+        if (targetId == null || username == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        rooms.compute(new RoomKey(context, targetId), (key, room) -> {
+            if (typing) {
+                Room target = room != null ? room : new Room();
+                target.typers.put(username, now + ttlMs);
+                return target;
+            }
+            if (room != null) {
+                room.typers.remove(username);
+            }
+            return room;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.websocket.typing.flush-interval-ms:1000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        ClusterUserDirectory directory = userDirectory.getIfAvailable();
+        String node = directory != null ? directory.getNodeId() : null;
+        List<TypingEvent> changed = new ArrayList<>();
+        for (RoomKey key : rooms.keySet()) {
+            rooms.computeIfPresent(key, (k, room) -> {
+                room.typers.values().removeIf(expiresAt -> expiresAt <= now);
+                List<String> listed = room.typers.keySet().stream().limit(Math.max(1, maxListed)).toList();
+                int count = room.typers.size();
+                if (count != room.sentCount || !listed.equals(room.sentUsernames)
+                        || (count > 0 && now - room.sentAt >= ttlMs / 2)) {
+                    room.sentCount = count;
+                    room.sentUsernames = listed;
+                    room.sentAt = now;
+                    changed.add(TypingEvent.builder()
+                            .channelId(k.context() == TypingContext.SERVER ? k.targetId() : null)
+                            .dmGroupId(k.context() == TypingContext.DM ? k.targetId() : null)
+                            .usernames(listed)
+                            .count(count)
+                            .node(node)
+                            .ttlMs(ttlMs)
+                            .build());
+                }
+                // Nobody typing and subscribers already told so
+                return count == 0 ? null : room;
+            });
+        }
+        for (TypingEvent event : changed) {
+            String destination = event.getChannelId() != null
+                    ? "/topic/channel/" + event.getChannelId() + "/typing"
+                    : "/topic/dm/" + event.getDmGroupId() + "/typing";
+            try {
+                messagingTemplate.convertAndSend(destination, event);
+            } catch (Exception e) {
+                log.debug("Failed to publish typing state to {}: {}", destination, e.getMessage());
+            }
+        }
+    }
+
+    private record RoomKey(TypingContext context, Long targetId) {
+    }
+
+    private static final class Room {
+        // username -> expiry, in the order typing started
+        private final LinkedHashMap<String, Long> typers = new LinkedHashMap<>();
+        private List<String> sentUsernames = List.of();
+        private int sentCount;
+        private long sentAt;
+    }
+}
@@ -0,0 +1,170 @@
+package vn.cococord.service.impl;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.dto.websocket.MentionEvent;
+import vn.cococord.entity.mysql.Channel;
+import vn.cococord.entity.mysql.Role;
+import vn.cococord.entity.mysql.User;
+import vn.cococord.repository.IChannelRepository;
+import vn.cococord.repository.IRoleRepository;
+import vn.cococord.repository.IServerMemberRepository;
+import vn.cococord.repository.IUserRepository;
+import vn.cococord.service.IMentionFanoutService;
+import vn.cococord.service.INotificationService;
+import vn.cococord.service.IPermissionService;
+
+/**
+ * Resolves mention targets in chunks of app.chat.mention-fanout.chunk-size:
+ * each chunk costs one user/member query, one multi-row notification insert
+ * and one pre-serialized mention event per recipient. In private channels the
+ * channel's overrides are loaded once per fan-out and each chunk is filtered
+ * with one extra membership query.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@SuppressWarnings("null")
+public class MentionFanoutServiceImpl implements IMentionFanoutService {
+
+    private final IChannelRepository channelRepository;
+    private final IRoleRepository roleRepository;
+    private final IServerMemberRepository serverMemberRepository;
+    private final IUserRepository userRepository;
+    private final INotificationService notificationService;
+    private final IPermissionService permissionService;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${app.chat.mention-fanout.chunk-size:500}")
+    private int chunkSize;
+
+    @Async
+    @Override
+    public void fanOut(User mentioner, Long channelId, String messageId, List<Long> userIds, List<Long> roleIds,
+            boolean everyone, boolean canMentionEveryone) {
+        Channel channel = channelRepository.findById(channelId).orElse(null);
+        if (channel == null) {
+            log.warn("Skipping mention fan-out for message {}: channel {} not found", messageId, channelId);
+            return;
+        }
+
+        Delivery delivery = new Delivery(mentioner, channel, MentionEvent.builder()
+                .type("mention")
+                .mentionerId(mentioner.getId())
+                .mentionerUsername(mentioner.getUsername())
+                .mentionerDisplayName(mentioner.getDisplayName())
+                .mentionerAvatarUrl(mentioner.getAvatarUrl())
+                .channelId(channelId)
+                .channelName(channel.getName())
+                .serverId(channel.getServer().getId())
+                .messageId(messageId)
+                .build());
+
+        // Direct mentions: drop ids that are not users
+        for (int from = 0; from < userIds.size(); from += chunkSize) {
+            List<Long> chunk = userIds.subList(from, Math.min(from + chunkSize, userIds.size()));
+            delivery.deliver(userRepository.findAllById(chunk).stream().map(User::getId).toList());
+        }
+
+        Long serverId = channel.getServer().getId();
+        List<Role> roles = roleIds.isEmpty() ? List.of()
+                : roleRepository.findAllById(roleIds).stream()
+                        .filter(role -> serverId.equals(role.getServer().getId()))
+                        .filter(role -> canMentionEveryone || Boolean.TRUE.equals(role.getIsMentionable()))
+                        .toList();
+
+        // Mentioning the default role is the same as @everyone
+        boolean expandEveryone = canMentionEveryone
+                && (everyone || roles.stream().anyMatch(role -> Boolean.TRUE.equals(role.getIsDefault())));
+        if (expandEveryone) {
+            streamMembers(delivery, after -> serverMemberRepository.findUserIdsByServerIdAfter(serverId, after,
+                    PageRequest.of(0, chunkSize)));
+        } else if (!roles.isEmpty()) {
+            List<Long> expandedRoleIds = roles.stream().map(Role::getId).toList();
+            streamMembers(delivery, after -> serverMemberRepository.findUserIdsByServerIdAndRoleIdsAfter(serverId,
+                    expandedRoleIds, after, PageRequest.of(0, chunkSize)));
+        }
+
+        log.debug("Mention fan-out for message {} reached {} user(s)", messageId, delivery.recipientCount());
+    }
+
+    private void streamMembers(Delivery delivery, Function<Long, List<Long>> nextChunk) {
+        Long after = 0L;
+        while (true) {
+            List<Long> memberIds = nextChunk.apply(after);
+            if (memberIds.isEmpty()) {
+                return;
+            }
+            delivery.deliver(memberIds);
+            if (memberIds.size() < chunkSize) {
+                return;
+            }
+            after = memberIds.get(memberIds.size() - 1);
+        }
+    }
+
+    /**
+     * State of one fan-out: who has been notified and the shared event payload
+     */
+    private final class Delivery {
+        private final User mentioner;
+        private final Channel channel;
+        private final Message<?> event;
+        private final Set<Long> notified = new HashSet<>();
+        // Private channels only: overrides and role permissions loaded once for the whole fan-out
+        private final UnaryOperator<List<Long>> viewers;
+
+        private Delivery(User mentioner, Channel channel, MentionEvent event) {
+            this.mentioner = mentioner;
+            this.channel = channel;
+            // Serialize once; every recipient gets the same bytes
+            this.event = messagingTemplate.getMessageConverter().toMessage(event, new MessageHeaders(null));
+            // Never notify the author
+            notified.add(mentioner.getId());
+            this.viewers = Boolean.TRUE.equals(channel.getIsPrivate())
+                    ? permissionService.channelViewerFilter(channel.getId())
+                    : UnaryOperator.identity();
+        }
+
+        private void deliver(List<Long> candidates) {
+            List<Long> recipients = viewers.apply(candidates.stream().filter(notified::add).toList());
+            if (recipients.isEmpty()) {
+                return;
+            }
+
+            try {
+                notificationService.sendMentionNotifications(mentioner, recipients, channel.getId(),
+                        channel.getName());
+            } catch (Exception e) {
+                log.error("Failed to create {} mention notification(s) in channel {}: {}",
+                        recipients.size(), channel.getId(), e.getMessage());
+            }
+
+            for (Long userId : recipients) {
+                try {
+                    messagingTemplate.send("/topic/user." + userId + ".mention", event);
+                } catch (Exception e) {
+                    log.error("Failed to send mention WebSocket event to user {}: {}", userId, e.getMessage());
+                }
+            }
+        }
+
+        private int recipientCount() {
+            return notified.size() - 1;
+        }
+    }
+}
@@ -112,7 +112,8 @@ public class MessageSearchServiceImpl implements IMessageSearchService {
         // Apply pagination
         query.skip((long) page * size).limit(size);
 
-        // Execute query
+        // Execute query, skipping fields search results never show
+        query.fields().exclude("editHistory").exclude("embeds").exclude("reactions.userIds");
         List<Message> messages = mongoTemplate.find(query, Message.class);
 
         // Convert to response with user info
@@ -2,40 +2,71 @@ package vn.cococord.service.impl;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import vn.cococord.config.EmbeddedEditHistoryMigration;
+import vn.cococord.config.EmbeddedReactionMigration;
+import vn.cococord.dto.permission.ChannelSendContext;
 import vn.cococord.dto.request.EditMessageRequest;
 import vn.cococord.dto.request.SendMessageRequest;
 import vn.cococord.dto.response.ChatMessageResponse;
-import vn.cococord.dto.websocket.MentionEvent;
+import vn.cococord.dto.response.MessageEditResponse;
+import vn.cococord.dto.response.ReactionUserResponse;
+import vn.cococord.dto.websocket.MessageAckEvent;
 import vn.cococord.dto.websocket.ReactionEvent;
+import vn.cococord.dto.websocket.ThreadUpdateEvent;
 import vn.cococord.dto.websocket.WebSocketEvent;
 import vn.cococord.entity.mongodb.Message;
-import vn.cococord.entity.mysql.Channel;
+import vn.cococord.entity.mongodb.MessageEdit;
+import vn.cococord.entity.mongodb.MessageReaction;
+import vn.cococord.entity.mysql.PermissionBit;
 import vn.cococord.entity.mysql.User;
+import vn.cococord.exception.BadRequestException;
 import vn.cococord.exception.ResourceNotFoundException;
 import vn.cococord.exception.UnauthorizedException;
 import vn.cococord.repository.IChannelRepository;
+import vn.cococord.repository.IMessageEditRepository;
+import vn.cococord.repository.IMessageReactionRepository;
 import vn.cococord.repository.IMessageRepository;
 import vn.cococord.repository.IUserRepository;
+import vn.cococord.repository.mysql.IServerMuteRepository;
+import vn.cococord.service.IChannelSendContextCache;
+import vn.cococord.service.IChannelTailCache;
 import vn.cococord.service.IChannelService;
+import vn.cococord.service.IMentionFanoutService;
 import vn.cococord.service.IMessageService;
-import vn.cococord.service.INotificationService;
+import vn.cococord.service.IMessageWriteBatcher;
 import vn.cococord.service.IPermissionService;
 
 @Service
@@ -48,29 +79,55 @@ public class MessageServiceImpl implements IMessageService {
     private final IUserRepository userRepository;
     private final IChannelRepository channelRepository;
     private final IChannelService channelService;
-    private final INotificationService notificationService;
     private final IPermissionService permissionService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final IMessageWriteBatcher messageWriteBatcher;
+    private final IChannelSendContextCache sendContextCache;
+    private final IServerMuteRepository serverMuteRepository;
+    private final IChannelTailCache channelTailCache;
+    private final MongoTemplate mongoTemplate;
+    private final IMessageReactionRepository reactionRepository;
+    private final IMessageEditRepository messageEditRepository;
+    private final IMentionFanoutService mentionFanoutService;
+    private final EmbeddedReactionMigration reactionMigration;
+
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    private static final int MAX_UNIQUE_REACTIONS = 20;
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+    private static final Sort OLDEST_FIRST = Sort.by(Sort.Direction.ASC, "createdAt", "id");
 
     // Regex pattern for mentions: <@userId> format (e.g., <@123>)
-    private static final Pattern MENTION_PATTERN = Pattern.compile("<@(\\d+)>");
+    private static final Pattern USER_MENTION_PATTERN = Pattern.compile("<@(\\d+)>");
+    // Role mentions: <@&roleId>
+    private static final Pattern ROLE_MENTION_PATTERN = Pattern.compile("<@&(\\d+)>");
+    private static final Pattern EVERYONE_MENTION_PATTERN = Pattern.compile("(?<![\\w<])@(everyone|here)\\b");
 
     @Override
     public ChatMessageResponse sendMessage(SendMessageRequest request, String username) {
+        return sendMessage(request, username, null);
+    }
+
+    @Override
+    public ChatMessageResponse sendMessage(SendMessageRequest request, String username, String sessionId) {
+        // Access, permission and author snapshot come from the per-session cache after warm-up
+        ChannelSendContext context = sendContextCache.getOrLoad(sessionId, request.getChannelId(),
+                () -> loadSendContext(request.getChannelId(), username));
+
         // Check if user has access to channel
-        if (!channelService.canUserAccessChannel(request.getChannelId(), username)) {
+        if (!context.isAccessible()) {
             throw new UnauthorizedException("You don't have access to this channel");
         }
 
-        // Get user first for permission check
-        User user = getUserByUsername(username);
-
         // Check if user has SEND_MESSAGES permission in this channel
-        if (!permissionService.canSendMessagesInChannel(user.getId(), request.getChannelId())) {
+        if (!PermissionBit.SEND_MESSAGES.isSet(context.getPermissionBitmask())) {
             log.warn("User {} denied SEND_MESSAGES in channel {}", username, request.getChannelId());
             throw new UnauthorizedException("Bạn không có quyền gửi tin nhắn trong kênh này");
         }
 
+        if (context.isMuted()) {
+            throw new UnauthorizedException("Bạn đang bị tắt tiếng trong server này");
+        }
+
         // Validate that either content or attachments is present
         boolean hasContent = request.getContent() != null && !request.getContent().trim().isEmpty();
         boolean hasAttachments = request.getAttachments() != null && !request.getAttachments().isEmpty();
@@ -79,74 +136,149 @@ public class MessageServiceImpl implements IMessageService {
             throw new IllegalArgumentException("Message must have either content or attachments");
         }
 
-        // user already declared above for permission check
-
         Message message = convertToEntity(
                 request,
-                user.getId(),
-                user.getUsername(),
-                user.getDisplayName(),
-                user.getAvatarUrl());
-
-        // Detect mentions and save mentioned user IDs (only if content exists)
-        List<Long> mentionedUserIds = hasContent ? extractMentionedUserIds(request.getContent()) : new ArrayList<>();
+                context.getUserId(),
+                context.getUsername(),
+                context.getDisplayName(),
+                context.getAvatarUrl());
+        message.setServerId(context.getServerId());
+
+        // Detect mentions and save mentioned user / role IDs (only if content exists)
+        List<Long> mentionedUserIds = hasContent ? extractMentionedIds(USER_MENTION_PATTERN, request.getContent())
+                : new ArrayList<>();
+        List<Long> mentionedRoleIds = hasContent ? extractMentionedIds(ROLE_MENTION_PATTERN, request.getContent())
+                : new ArrayList<>();
+        boolean canMentionEveryone = PermissionBit.MENTION_EVERYONE.isSet(context.getPermissionBitmask());
+        boolean mentionEveryone = hasContent && canMentionEveryone
+                && EVERYONE_MENTION_PATTERN.matcher(request.getContent()).find();
         message.setMentionedUserIds(mentionedUserIds);
-
-        message = messageRepository.save(message);
-        log.info("Message sent by user: {} in channel: {}", username, request.getChannelId());
-
-        // Process mentions - create notifications and send WebSocket events
-        if (!mentionedUserIds.isEmpty()) {
-            processMentions(user, mentionedUserIds, request.getChannelId(), message.getId());
+        message.setMentionedRoleIds(mentionedRoleIds);
+        message.setMentionEveryone(mentionEveryone);
+
+        // Persist through the per-channel group commit; broadcast and ack run in channel order
+        message = awaitPersisted(messageWriteBatcher.enqueue(message, saved -> {
+            log.info("Message sent by user: {} in channel: {}", username, saved.getChannelId());
+
+            // Runs in channel order, so the tail stays sorted without re-checking timestamps
+            ChatMessageResponse created = convertToResponse(saved);
+            channelTailCache.append(created);
+
+            // Broadcast to channel via WebSocket
+            messagingTemplate.convertAndSend("/topic/channel/" + saved.getChannelId(),
+                    new WebSocketEvent("message.created", created));
+
+            messagingTemplate.convertAndSendToUser(username, "/queue/acks",
+                    MessageAckEvent.builder()
+                            .nonce(request.getNonce())
+                            .messageId(saved.getId())
+                            .channelId(saved.getChannelId())
+                            .createdAt(saved.getCreatedAt())
+                            .build());
+        }));
+
+        // Notifications and mention events are fanned out in the background
+        if (!mentionedUserIds.isEmpty() || !mentionedRoleIds.isEmpty() || mentionEveryone) {
+            User mentioner = User.builder()
+                    .id(context.getUserId())
+                    .username(context.getUsername())
+                    .displayName(context.getDisplayName())
+                    .avatarUrl(context.getAvatarUrl())
+                    .build();
+            mentionFanoutService.fanOut(mentioner, request.getChannelId(), message.getId(), mentionedUserIds,
+                    mentionedRoleIds, mentionEveryone, canMentionEveryone);
         }
 
-        // Broadcast to channel via WebSocket
-        ChatMessageResponse response = convertToResponse(message);
-        messagingTemplate.convertAndSend("/topic/channel/" + request.getChannelId(),
-                new WebSocketEvent("message.created", response));
+        if (message.getParentMessageId() != null) {
+            onReplyAdded(message);
+        }
 
-        return response;
+        return convertToResponse(message);
     }
 
     @Override
     public ChatMessageResponse editMessage(EditMessageRequest request, String username) {
-        Message message = messageRepository.findById(request.getMessageId())
-                .orElseThrow(() -> new ResourceNotFoundException("Message not found"));
-
         User user = getUserByUsername(username);
-
-        // Only message author can edit
-        if (!message.getUserId().equals(user.getId())) {
+        LocalDateTime editedAt = LocalDateTime.now();
+
+        // Only the author's own message matches; the pre-edit document comes back for the edit log
+        Query query = Query.query(Criteria.where("_id").is(request.getMessageId()).and("userId").is(user.getId()));
+        query.fields().exclude("editHistory").exclude("embeds").exclude("reactions.userIds");
+        Message message = mongoTemplate.findAndModify(query,
+                new Update().set("content", request.getContent()).set("isEdited", true).set("editedAt", editedAt),
+                Message.class);
+
+        if (message == null) {
+            if (!messageRepository.existsById(request.getMessageId())) {
+                throw new ResourceNotFoundException("Message not found");
+            }
             throw new UnauthorizedException("You can only edit your own messages");
         }
 
-        // Add to edit history
-        if (message.getEditHistory() == null) {
-            message.setEditHistory(new ArrayList<>());
-        }
-
-        Message.EditHistory editHistory = Message.EditHistory.builder()
+        messageEditRepository.insert(MessageEdit.builder()
+                .messageId(message.getId())
+                .channelId(message.getChannelId())
                 .oldContent(message.getContent())
-                .editedAt(LocalDateTime.now())
-                .build();
-        message.getEditHistory().add(editHistory);
+                .editedAt(editedAt)
+                .build());
 
-        // Update content
         message.setContent(request.getContent());
         message.setIsEdited(true);
-        message.setEditedAt(LocalDateTime.now());
-
-        message = messageRepository.save(message);
+        message.setEditedAt(editedAt);
         log.info("Message edited by user: {}, messageId: {}", username, request.getMessageId());
 
         // Broadcast update via WebSocket
         ChatMessageResponse response = convertToResponse(message);
+        channelTailCache.replace(response);
         messagingTemplate.convertAndSend("/topic/channel/" + message.getChannelId(),
                 new WebSocketEvent("message.updated", response));
 
         return response;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<MessageEditResponse> getEditHistory(String messageId, String username) {
+        Query lookup = Query.query(Criteria.where("_id").is(messageId));
+        lookup.fields().include("channelId").include("editHistory");
+        Message message = mongoTemplate.findOne(lookup, Message.class);
+        if (message == null) {
+            throw new ResourceNotFoundException("Message not found");
+        }
+        if (!channelService.canUserAccessChannel(message.getChannelId(), username)) {
+            throw new UnauthorizedException("You don't have access to this channel");
+        }
+
+        List<MessageEdit> edits = new ArrayList<>(messageEditRepository.findByMessageIdOrderByEditedAtDesc(messageId));
+        List<Message.EditHistory> embedded = message.getEditHistory();
+        if (embedded != null && !embedded.isEmpty()) {
+            // Not migrated yet (EmbeddedEditHistoryMigration): add the entries it has not moved
+            Set<String> moved = edits.stream().map(MessageEdit::getId).collect(Collectors.toSet());
+            for (int i = 0; i < embedded.size(); i++) {
+                String id = EmbeddedEditHistoryMigration.editId(messageId, i);
+                if (!moved.contains(id)) {
+                    edits.add(MessageEdit.builder()
+                            .id(id)
+                            .messageId(messageId)
+                            .oldContent(embedded.get(i).getOldContent())
+                            .editedAt(embedded.get(i).getEditedAt())
+                            .build());
+                }
+            }
+            edits.sort(Comparator.comparing(MessageEdit::getEditedAt,
+                    Comparator.nullsLast(Comparator.reverseOrder())));
+        }
+
+        return edits.stream()
+                .map(edit -> MessageEditResponse.builder()
+                        .id(edit.getId())
+                        .messageId(edit.getMessageId())
+                        .oldContent(edit.getOldContent())
+                        .editedAt(edit.getEditedAt())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
     @Override
     public void deleteMessage(String messageId, String username) {
         Message message = messageRepository.findById(messageId)
@@ -166,6 +298,12 @@ public class MessageServiceImpl implements IMessageService {
 
         Long channelId = message.getChannelId();
         messageRepository.delete(message);
+        reactionRepository.deleteByMessageId(messageId);
+        messageEditRepository.deleteByMessageId(messageId);
+        channelTailCache.remove(channelId, messageId);
+        if (message.getParentMessageId() != null) {
+            onReplyRemoved(message);
+        }
         log.info("Message deleted by user: {} (author: {}, hasPermission: {}), messageId: {}",
                 username, isAuthor, hasManagePermission, messageId);
 
@@ -176,200 +314,521 @@ public class MessageServiceImpl implements IMessageService {
 
     @Override
     @Transactional(readOnly = true)
-    public ChatMessageResponse getMessageById(String messageId) {
+    public ChatMessageResponse getMessageById(String messageId, String username) {
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new ResourceNotFoundException("Message not found"));
 
-        return convertToResponse(message);
+        return withViewerReactions(List.of(convertToResponse(message)), username).get(0);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public Page<ChatMessageResponse> getChannelMessages(Long channelId, int page, int size) {
-        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        Page<Message> messages = messageRepository.findByChannelIdOrderByCreatedAtDesc(channelId, pageRequest);
+    public Page<ChatMessageResponse> getChannelMessages(Long channelId, int page, int size, String username) {
+        Page<ChatMessageResponse> result = page == 0 ? getNewestPageFromTail(channelId, size) : null;
+        if (result == null) {
+            PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+            result = messageRepository.findByChannelIdOrderByCreatedAtDesc(channelId, pageRequest)
+                    .map(this::convertToResponse);
+        }
 
-        return messages.map(this::convertToResponse);
+        return new PageImpl<>(withViewerReactions(result.getContent(), username), result.getPageable(),
+                result.getTotalElements());
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<ChatMessageResponse> getMessageReplies(String parentMessageId) {
-        List<Message> replies = messageRepository.findByParentMessageIdOrderByCreatedAtAsc(parentMessageId);
+    public Slice<ChatMessageResponse> getChannelMessages(Long channelId, String before, String after, String around,
+            int size, String username) {
+        int anchors = (before != null ? 1 : 0) + (after != null ? 1 : 0) + (around != null ? 1 : 0);
+        if (anchors > 1) {
+            throw new BadRequestException("Only one of before, after or around can be used");
+        }
+
+        int limit = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        Slice<Message> messages;
+
+        if (before != null) {
+            messages = findOlderThan(getCursorAnchor(channelId, before), limit);
+        } else if (after != null) {
+            messages = findNewerThan(getCursorAnchor(channelId, after), limit);
+        } else if (around != null) {
+            Message anchor = getCursorAnchor(channelId, around);
+            int olderCount = (limit - 1) / 2;
+            int newerCount = limit - 1 - olderCount;
+
+            List<Message> content = new ArrayList<>();
+            if (newerCount > 0) {
+                content.addAll(findNewerThan(anchor, newerCount).getContent());
+            }
+            content.add(anchor);
+            boolean hasOlder = false;
+            if (olderCount > 0) {
+                Slice<Message> older = findOlderThan(anchor, olderCount);
+                content.addAll(older.getContent());
+                hasOlder = older.hasNext();
+            }
+            messages = new SliceImpl<>(content, PageRequest.of(0, limit, NEWEST_FIRST), hasOlder);
+        } else {
+            Optional<IChannelTailCache.TailPage> tail = getTail(channelId, limit);
+            if (tail.isPresent()) {
+                return new SliceImpl<>(withViewerReactions(tail.get().content(), username),
+                        PageRequest.of(0, limit, NEWEST_FIRST), tail.get().hasMore());
+            }
+            messages = messageRepository.findByChannelId(channelId, PageRequest.of(0, limit, NEWEST_FIRST));
+        }
+
+        Slice<ChatMessageResponse> responses = messages.map(this::convertToResponse);
+        return new SliceImpl<>(withViewerReactions(responses.getContent(), username), responses.getPageable(),
+                responses.hasNext());
+    }
+
+    /**
+     * First offset page served from the tail cache, or null when the tail cannot answer it
+     */
+    private Page<ChatMessageResponse> getNewestPageFromTail(Long channelId, int size) {
+        Optional<IChannelTailCache.TailPage> tail = getTail(channelId, size);
+        if (tail.isEmpty()) {
+            return null;
+        }
+        long totalCount = tail.get().totalCount();
+        if (totalCount < 0) {
+            // Count once per seed; afterwards sends and deletes keep it current
+            long stamp = channelTailCache.beginLoad(channelId);
+            totalCount = messageRepository.countByChannelId(channelId);
+            channelTailCache.setTotalCount(channelId, totalCount, stamp);
+        }
+        return new PageImpl<>(tail.get().content(),
+                PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "createdAt")), totalCount);
+    }
+
+    /**
+     * Newest messages from the tail cache, seeding it from MongoDB on a miss
+     */
+    private Optional<IChannelTailCache.TailPage> getTail(Long channelId, int size) {
+        if (size > channelTailCache.capacity()) {
+            return Optional.empty();
+        }
+        Optional<IChannelTailCache.TailPage> tail = channelTailCache.getNewest(channelId, size);
+        if (tail.isPresent()) {
+            return tail;
+        }
 
-        return replies.stream()
+        long stamp = channelTailCache.beginLoad(channelId);
+        Slice<Message> newest = messageRepository.findByChannelId(channelId,
+                PageRequest.of(0, channelTailCache.capacity(), NEWEST_FIRST));
+        List<ChatMessageResponse> seed = newest.getContent().stream()
                 .map(this::convertToResponse)
                 .collect(Collectors.toList());
+        channelTailCache.seed(channelId, seed, !newest.hasNext(), stamp);
+
+        List<ChatMessageResponse> page = seed.size() > size ? seed.subList(0, size) : seed;
+        return Optional.of(new IChannelTailCache.TailPage(page, newest.hasNext() || seed.size() > size, -1));
     }
 
     @Override
-    @Transactional
-    public void addReaction(String messageId, String emoji, String username) {
-        Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new ResourceNotFoundException("Message not found"));
-
-        User user = getUserByUsername(username);
-
-        // Initialize reactions list if null
-        if (message.getReactions() == null) {
-            message.setReactions(new ArrayList<>());
+    @Transactional(readOnly = true)
+    public Slice<ChatMessageResponse> getMessageReplies(String parentMessageId, String after, int size,
+            String username) {
+        Query lookup = Query.query(Criteria.where("_id").is(parentMessageId));
+        lookup.fields().include("channelId");
+        Message parent = mongoTemplate.findOne(lookup, Message.class);
+        if (parent == null) {
+            throw new ResourceNotFoundException("Message not found");
+        }
+        if (!channelService.canUserAccessChannel(parent.getChannelId(), username)) {
+            throw new UnauthorizedException("You don't have access to this channel");
         }
 
-        // Find existing reaction for this emoji
-        Message.Reaction existingReaction = message.getReactions().stream()
-                .filter(r -> r.getEmoji().equals(emoji))
-                .findFirst()
-                .orElse(null);
-
-        if (existingReaction != null) {
-            // Add user to existing reaction if not already present
-            if (!existingReaction.getUserIds().contains(user.getId())) {
-                existingReaction.getUserIds().add(user.getId());
-                existingReaction.setCount(existingReaction.getUserIds().size());
+        int limit = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        PageRequest pageRequest = PageRequest.of(0, limit, OLDEST_FIRST);
+        Slice<Message> replies;
+        if (after != null) {
+            if (!ObjectId.isValid(after)) {
+                throw new BadRequestException("Invalid message cursor: " + after);
             }
+            Message anchor = messageRepository.findById(after)
+                    .filter(reply -> parentMessageId.equals(reply.getParentMessageId()))
+                    .orElseThrow(() -> new ResourceNotFoundException("Cursor message not found in thread"));
+            replies = messageRepository.findByParentMessageIdAfterCursor(parentMessageId, anchor.getCreatedAt(),
+                    new ObjectId(anchor.getId()), pageRequest);
         } else {
-            // Create new reaction
-            Message.Reaction newReaction = Message.Reaction.builder()
-                    .emoji(emoji)
-                    .count(1)
-                    .build();
-            newReaction.getUserIds().add(user.getId());
-            message.getReactions().add(newReaction);
+            replies = messageRepository.findByParentMessageId(parentMessageId, pageRequest);
         }
 
-        // Limit to 20 unique reactions
-        if (message.getReactions().size() > 20) {
-            throw new UnauthorizedException("Maximum 20 unique reactions allowed per message");
+        Slice<ChatMessageResponse> responses = replies.map(this::convertToResponse);
+        return new SliceImpl<>(withViewerReactions(responses.getContent(), username), responses.getPageable(),
+                responses.hasNext());
+    }
+
+    /**
+     * Count a new reply on its parent. The parent must be in the same channel;
+     * replies to anything else are stored but not counted.
+     */
+    private void onReplyAdded(Message reply) {
+        Query query = withThreadSummary(Query.query(Criteria.where("_id").is(reply.getParentMessageId())
+                .and("channelId").is(reply.getChannelId())));
+        Message parent = mongoTemplate.findAndModify(query,
+                new Update().inc("replyCount", 1).max("lastReplyAt", reply.getCreatedAt()),
+                FindAndModifyOptions.options().returnNew(true), Message.class);
+        if (parent != null) {
+            broadcastThreadUpdate(parent);
         }
+    }
 
-        messageRepository.save(message);
+    /**
+     * Uncount a deleted reply. lastReplyAt is only recomputed when the newest reply went away.
+     */
+    private void onReplyRemoved(Message reply) {
+        Query query = withThreadSummary(Query.query(Criteria.where("_id").is(reply.getParentMessageId())
+                .and("channelId").is(reply.getChannelId())
+                .and("replyCount").gt(0)));
+        Message parent = mongoTemplate.findAndModify(query, new Update().inc("replyCount", -1),
+                FindAndModifyOptions.options().returnNew(true), Message.class);
+        if (parent == null) {
+            return;
+        }
 
-        // Find the updated reaction to get the correct count
-        Message.Reaction targetReaction = message.getReactions().stream()
-                .filter(r -> r.getEmoji().equals(emoji))
-                .findFirst()
-                .orElse(null);
-        int finalCount = targetReaction != null ? targetReaction.getCount() : 0;
+        if (parent.getLastReplyAt() != null && !parent.getLastReplyAt().isAfter(reply.getCreatedAt())) {
+            LocalDateTime lastReplyAt = messageRepository.findByParentMessageId(parent.getId(),
+                    PageRequest.of(0, 1, NEWEST_FIRST)).stream()
+                    .findFirst()
+                    .map(Message::getCreatedAt)
+                    .orElse(null);
+            // Guarded on the old value so a reply arriving meanwhile is not overwritten
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(parent.getId())
+                    .and("lastReplyAt").is(parent.getLastReplyAt())),
+                    new Update().set("lastReplyAt", lastReplyAt), Message.class);
+            parent.setLastReplyAt(lastReplyAt);
+        }
+        broadcastThreadUpdate(parent);
+    }
 
-        // Broadcast reaction update via WebSocket
-        messagingTemplate.convertAndSend("/topic/channel/" + message.getChannelId(),
-                new WebSocketEvent("MESSAGE_REACTION_UPDATED",
-                        ReactionEvent.builder()
-                                .messageId(messageId)
-                                .emoji(emoji)
-                                .userId(user.getId())
-                                .username(user.getUsername())
-                                .action("ADD")
-                                .count(finalCount)
+    private void broadcastThreadUpdate(Message parent) {
+        channelTailCache.update(parent.getChannelId(), parent.getId(),
+                cached -> cached.toBuilder()
+                        .replyCount(parent.getReplyCount())
+                        .lastReplyAt(parent.getLastReplyAt())
+                        .build());
+
+        messagingTemplate.convertAndSend("/topic/channel/" + parent.getChannelId(),
+                new WebSocketEvent("thread.updated",
+                        ThreadUpdateEvent.builder()
+                                .parentMessageId(parent.getId())
+                                .channelId(parent.getChannelId())
+                                .replyCount(parent.getReplyCount())
+                                .lastReplyAt(parent.getLastReplyAt())
                                 .build()));
+    }
+
+    private static Query withThreadSummary(Query query) {
+        query.fields().include("channelId").include("replyCount").include("lastReplyAt");
+        return query;
+    }
+
+    @Override
+    @Transactional
+    public void addReaction(String messageId, String emoji, String username) {
+        User user = getUserByUsername(username);
+
+        Message counts = addToReactionStore(messageId, emoji, user.getId());
+        if (counts == null) {
+            // Already reacted with this emoji
+            return;
+        }
 
-        messageRepository.save(message);
+        broadcastReactionChange(messageId, emoji, user, "ADD", counts);
         log.info("Reaction added to message: {} by user: {}, emoji: {}", messageId, username, emoji);
     }
 
     @Override
     @Transactional
     public void removeReaction(String messageId, String emoji, String username) {
-        Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new ResourceNotFoundException("Message not found"));
+        User user = getUserByUsername(username);
 
+        Message counts = removeFromReactionStore(messageId, emoji, user.getId());
+        if (counts == null) {
+            if (!mongoTemplate.exists(Query.query(Criteria.where("_id").is(messageId)), Message.class)) {
+                throw new ResourceNotFoundException("Message not found");
+            }
+            return;
+        }
+
+        broadcastReactionChange(messageId, emoji, user, "REMOVE", counts);
+        log.info("Reaction removed from message: {} by user: {}, emoji: {}", messageId, username, emoji);
+    }
+
+    @Override
+    @Transactional
+    public void toggleReaction(String messageId, String emoji, String username) {
+        // Removal only succeeds if the user has reacted, so trying it first decides the toggle atomically
         User user = getUserByUsername(username);
 
-        if (message.getReactions() == null) {
+        Message counts = removeFromReactionStore(messageId, emoji, user.getId());
+        if (counts != null) {
+            broadcastReactionChange(messageId, emoji, user, "REMOVE", counts);
+            log.info("Reaction removed from message: {} by user: {}, emoji: {}", messageId, username, emoji);
             return;
         }
 
-        // Find and remove user from reaction
-        message.getReactions().forEach(reaction -> {
-            if (reaction.getEmoji().equals(emoji)) {
-                reaction.getUserIds().remove(user.getId());
-                reaction.setCount(reaction.getUserIds().size());
+        addReaction(messageId, emoji, username);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<ReactionUserResponse> getReactionUsers(String messageId, String emoji, String after, int size,
+            String username) {
+        Query lookup = Query.query(Criteria.where("_id").is(messageId));
+        lookup.fields().include("channelId");
+        Message message = mongoTemplate.findOne(lookup, Message.class);
+        if (message == null) {
+            throw new ResourceNotFoundException("Message not found");
+        }
+        if (!channelService.canUserAccessChannel(message.getChannelId(), username)) {
+            throw new UnauthorizedException("You don't have access to this channel");
+        }
+        migrateEmbeddedReactions(messageId);
+
+        int limit = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        PageRequest pageRequest = PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "id"));
+        Slice<MessageReaction> reactions;
+        if (after != null) {
+            if (!ObjectId.isValid(after)) {
+                throw new BadRequestException("Invalid cursor: " + after);
             }
+            reactions = reactionRepository.findByMessageIdAndEmojiAfter(messageId, emoji, new ObjectId(after),
+                    pageRequest);
+        } else {
+            reactions = reactionRepository.findByMessageIdAndEmoji(messageId, emoji, pageRequest);
+        }
+
+        Map<Long, User> users = userRepository.findAllById(
+                reactions.getContent().stream().map(MessageReaction::getUserId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(User::getId, u -> u));
+
+        return reactions.map(reaction -> {
+            User reactor = users.get(reaction.getUserId());
+            return ReactionUserResponse.builder()
+                    .id(reaction.getId())
+                    .userId(reaction.getUserId())
+                    .username(reactor != null ? reactor.getUsername() : null)
+                    .displayName(reactor != null ? reactor.getDisplayName() : null)
+                    .avatarUrl(reactor != null ? reactor.getAvatarUrl() : null)
+                    .reactedAt(reaction.getCreatedAt())
+                    .build();
         });
+    }
 
-        // Remove reactions with zero count, but FIRST broadcast the removal
-        // If we remove the reaction object entirely, the frontend might need to know
-        // the count is 0
-        // But usually we broadcast the updated state or the event "removed"
-
-        // Broadcast reaction removal via WebSocket
-        // We haven't removed the reaction object yet (unless count is 0), so we can get
-        // keys.
-        // But `removeIf` is called AFTER. Wait, my code shows `removeIf` after
-        // broadcast.
-        // So I can get the count.
-
-        // I need to find the specific reaction to get the count.
-        int count = message.getReactions().stream()
-                .filter(r -> r.getEmoji().equals(emoji))
-                .findFirst()
-                .map(r -> r.getUserIds().size()) // Correct count after removal (lines 262-265 removed user)
-                .orElse(0);
+    /**
+     * Record the reaction in the reaction store and bump the emoji's counter on the
+     * message. The unique (messageId, emoji, userId) index makes repeated adds no-ops.
+     *
+     * @return The message projected to channelId and reaction counts, or null if
+     *         the user had already reacted
+     */
+    private Message addToReactionStore(String messageId, String emoji, Long userId) {
+        Query lookup = Query.query(Criteria.where("_id").is(messageId));
+        lookup.fields().include("channelId");
+        Message target = mongoTemplate.findOne(lookup, Message.class);
+        if (target == null) {
+            throw new ResourceNotFoundException("Message not found");
+        }
+        migrateEmbeddedReactions(messageId);
 
-        messagingTemplate.convertAndSend("/topic/channel/" + message.getChannelId(),
+        try {
+            reactionRepository.insert(MessageReaction.builder()
+                    .messageId(messageId)
+                    .channelId(target.getChannelId())
+                    .emoji(emoji)
+                    .userId(userId)
+                    .build());
+        } catch (DuplicateKeyException e) {
+            return null;
+        }
+
+        FindAndModifyOptions returnNew = FindAndModifyOptions.options().returnNew(true);
+
+        // Two rounds cover a concurrent reactor creating the emoji between our two updates
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Query existing = Query.query(Criteria.where("_id").is(messageId).and("reactions.emoji").is(emoji));
+            Message updated = mongoTemplate.findAndModify(withReactionCounts(existing),
+                    new Update().inc("reactions.$.count", 1), returnNew, Message.class);
+            if (updated != null) {
+                return updated;
+            }
+
+            Query createNew = Query.query(Criteria.where("_id").is(messageId)
+                    .and("reactions.emoji").ne(emoji)
+                    .and("reactions." + (MAX_UNIQUE_REACTIONS - 1)).exists(false));
+            updated = mongoTemplate.findAndModify(withReactionCounts(createNew),
+                    new Update().push("reactions", new Document("emoji", emoji).append("count", 1)),
+                    returnNew, Message.class);
+            if (updated != null) {
+                return updated;
+            }
+        }
+
+        // No counter could be created: the message is at the emoji limit (or was deleted meanwhile)
+        reactionRepository.deleteByMessageIdAndEmojiAndUserId(messageId, emoji, userId);
+        throw new UnauthorizedException("Maximum " + MAX_UNIQUE_REACTIONS + " unique reactions allowed per message");
+    }
+
+    /**
+     * Delete the user's reaction from the store and decrement the emoji's counter,
+     * dropping the counter once it reaches zero.
+     *
+     * @return The projected message, or null if the user had not reacted
+     */
+    private Message removeFromReactionStore(String messageId, String emoji, Long userId) {
+        migrateEmbeddedReactions(messageId);
+        if (reactionRepository.deleteByMessageIdAndEmojiAndUserId(messageId, emoji, userId) == 0) {
+            return null;
+        }
+
+        Query query = Query.query(Criteria.where("_id").is(messageId).and("reactions.emoji").is(emoji));
+        Message updated = mongoTemplate.findAndModify(withReactionCounts(query),
+                new Update().inc("reactions.$.count", -1),
+                FindAndModifyOptions.options().returnNew(true), Message.class);
+
+        if (updated != null && getReactionCount(updated, emoji) <= 0) {
+            // Conditional on the count, so a reactor joining in between keeps the counter
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(messageId)),
+                    new Update().pull("reactions",
+                            new Document("emoji", emoji).append("count", new Document("$lte", 0))),
+                    Message.class);
+        }
+        return updated;
+    }
+
+    /**
+     * Old messages may still embed their reactors; those must be in the store before
+     * it decides whether the user has reacted.
+     */
+    private void migrateEmbeddedReactions(String messageId) {
+        if (!reactionMigration.isComplete()) {
+            reactionMigration.migrateMessage(messageId);
+        }
+    }
+
+    private void broadcastReactionChange(String messageId, String emoji, User user, String action, Message counts) {
+        List<ChatMessageResponse.ReactionResponse> reactions = toReactionResponses(counts.getReactions());
+        channelTailCache.update(counts.getChannelId(), messageId,
+                cached -> cached.toBuilder().reactions(reactions).build());
+
+        messagingTemplate.convertAndSend("/topic/channel/" + counts.getChannelId(),
                 new WebSocketEvent("MESSAGE_REACTION_UPDATED",
                         ReactionEvent.builder()
                                 .messageId(messageId)
                                 .emoji(emoji)
                                 .userId(user.getId())
                                 .username(user.getUsername())
-                                .action("REMOVE")
-                                .count(count)
+                                .action(action)
+                                .count(getReactionCount(counts, emoji))
                                 .build()));
+    }
 
-        message.getReactions().removeIf(r -> r.getCount() == 0 || r.getUserIds().isEmpty());
+    private static Query withReactionCounts(Query query) {
+        query.fields().include("channelId").include("reactions.emoji").include("reactions.emojiId")
+                .include("reactions.count");
+        return query;
+    }
 
-        messageRepository.save(message);
-        log.info("Reaction removed from message: {} by user: {}, emoji: {}", messageId, username, emoji);
+    private static int getReactionCount(Message message, String emoji) {
+        if (message.getReactions() == null) {
+            return 0;
+        }
+        return message.getReactions().stream()
+                .filter(r -> emoji.equals(r.getEmoji()))
+                .findFirst()
+                .map(r -> r.getCount() != null ? Math.max(0, r.getCount()) : 0)
+                .orElse(0);
     }
 
-    @Override
-    @Transactional
-    public void toggleReaction(String messageId, String emoji, String username) {
-        Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new ResourceNotFoundException("Message not found"));
-        User user = getUserByUsername(username);
+    private static List<ChatMessageResponse.ReactionResponse> toReactionResponses(List<Message.Reaction> reactions) {
+        if (reactions == null || reactions.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return reactions.stream()
+                .filter(r -> r.getCount() != null && r.getCount() > 0)
+                .map(r -> ChatMessageResponse.ReactionResponse.builder()
+                        .emoji(r.getEmoji())
+                        .emojiId(r.getEmojiId())
+                        .count(r.getCount())
+                        .build())
+                .collect(Collectors.toList());
+    }
 
-        boolean hasReacted = false;
-        if (message.getReactions() != null) {
-            hasReacted = message.getReactions().stream()
-                    .anyMatch(r -> r.getEmoji().equals(emoji) && r.getUserIds().contains(user.getId()));
+    /**
+     * Set the "me" flag on reactions the viewer has made. Responses may be shared
+     * (tail cache), so flagged messages are copied instead of mutated.
+     */
+    private List<ChatMessageResponse> withViewerReactions(List<ChatMessageResponse> messages, String username) {
+        if (username == null) {
+            return messages;
+        }
+        List<String> reactedIds = messages.stream()
+                .filter(m -> m.getReactions() != null && !m.getReactions().isEmpty())
+                .map(ChatMessageResponse::getId)
+                .collect(Collectors.toList());
+        if (reactedIds.isEmpty()) {
+            return messages;
         }
 
-        if (hasReacted) {
-            removeReaction(messageId, emoji, username);
-        } else {
-            addReaction(messageId, emoji, username);
+        Long viewerId = getUserByUsername(username).getId();
+        Map<String, Set<String>> mine = reactionRepository.findByMessageIdInAndUserId(reactedIds, viewerId).stream()
+                .collect(Collectors.groupingBy(MessageReaction::getMessageId,
+                        Collectors.mapping(MessageReaction::getEmoji, Collectors.toSet())));
+        if (!reactionMigration.isComplete()) {
+            // Reactors of messages not migrated yet are still embedded in the document
+            Query embedded = Query.query(Criteria.where("_id").in(reactedIds).and("reactions.userIds").is(viewerId));
+            embedded.fields().include("reactions.emoji").include("reactions.userIds");
+            for (Message message : mongoTemplate.find(embedded, Message.class)) {
+                message.getReactions().stream()
+                        .filter(r -> r.getUserIds() != null && r.getUserIds().contains(viewerId))
+                        .forEach(r -> mine.computeIfAbsent(message.getId(), id -> new HashSet<>()).add(r.getEmoji()));
+            }
         }
+        if (mine.isEmpty()) {
+            return messages;
+        }
+
+        return messages.stream()
+                .map(m -> {
+                    Set<String> emojis = mine.get(m.getId());
+                    if (emojis == null) {
+                        return m;
+                    }
+                    return m.toBuilder()
+                            .reactions(m.getReactions().stream()
+                                    .map(r -> r.toBuilder().me(emojis.contains(r.getEmoji())).build())
+                                    .collect(Collectors.toList()))
+                            .build();
+                })
+                .collect(Collectors.toList());
     }
 
     @Override
     @Transactional
     public void pinMessage(String messageId, String username) {
-        Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new ResourceNotFoundException("Message not found"));
-
         User user = getUserByUsername(username);
 
-        message.setIsPinned(true);
-        message.setPinnedAt(LocalDateTime.now());
-        message.setPinnedBy(user.getId());
-
-        messageRepository.save(message);
+        // Field update, not a document save, so concurrent reaction counters are not overwritten
+        if (mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(messageId)),
+                new Update().set("isPinned", true).set("pinnedAt", LocalDateTime.now()).set("pinnedBy", user.getId()),
+                Message.class).getMatchedCount() == 0) {
+            throw new ResourceNotFoundException("Message not found");
+        }
         log.info("Message pinned: {} by user: {}", messageId, username);
     }
 
     @Override
     @Transactional
     public void unpinMessage(String messageId, String username) {
-        Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new ResourceNotFoundException("Message not found"));
-
-        message.setIsPinned(false);
-        message.setPinnedAt(null);
-        message.setPinnedBy(null);
-
-        messageRepository.save(message);
+        if (mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(messageId)),
+                new Update().set("isPinned", false).set("pinnedAt", null).set("pinnedBy", null),
+                Message.class).getMatchedCount() == 0) {
+            throw new ResourceNotFoundException("Message not found");
+        }
         log.info("Message unpinned: {} by user: {}", messageId, username);
     }
 
@@ -417,7 +876,6 @@ public class MessageServiceImpl implements IMessageService {
                 .mentionEveryone(false)
                 .reactions(new ArrayList<>())
                 .isEdited(false)
-                .editHistory(new ArrayList<>())
                 .createdAt(LocalDateTime.now())
                 .build();
     }
@@ -449,15 +907,92 @@ public class MessageServiceImpl implements IMessageService {
                 .type(message.getType() != null ? message.getType().name() : "TEXT")
                 .parentMessageId(message.getParentMessageId())
                 .threadId(message.getThreadId())
+                .replyCount(message.getReplyCount() != null ? message.getReplyCount() : 0)
+                .lastReplyAt(message.getLastReplyAt())
                 .metadata(message.getMetadata())
                 .attachments(attachments)
                 .mentionedUserIds(message.getMentionedUserIds())
+                .reactions(toReactionResponses(message.getReactions()))
                 .isEdited(message.getIsEdited())
                 .editedAt(message.getEditedAt())
                 .createdAt(message.getCreatedAt())
                 .build();
     }
 
+    /**
+     * Build the send context with the same checks the uncached path used to run on
+     * every message: channel access, computed channel permissions and server mute.
+     */
+    private ChannelSendContext loadSendContext(Long channelId, String username) {
+        boolean accessible = channelService.canUserAccessChannel(channelId, username);
+        User user = getUserByUsername(username);
+
+        ChannelSendContext.ChannelSendContextBuilder context = ChannelSendContext.builder()
+                .userId(user.getId())
+                .username(user.getUsername())
+                .displayName(user.getDisplayName())
+                .avatarUrl(user.getAvatarUrl())
+                .channelId(channelId)
+                .accessible(accessible);
+
+        if (accessible) {
+            Long serverId = channelRepository.findById(channelId)
+                    .map(channel -> channel.getServer().getId())
+                    .orElse(null);
+            Long bitmask = permissionService.computeChannelPermissions(user.getId(), channelId).getFinalBitmask();
+            context.serverId(serverId)
+                    .permissionBitmask(bitmask != null ? bitmask : 0L)
+                    .muted(serverId != null
+                            && serverMuteRepository.isUserMuted(serverId, user.getId(), LocalDateTime.now()));
+        }
+
+        return context.build();
+    }
+
+    // ================== Cursor Pagination Helpers ==================
+
+    private Message getCursorAnchor(Long channelId, String messageId) {
+        if (!ObjectId.isValid(messageId)) {
+            throw new BadRequestException("Invalid message cursor: " + messageId);
+        }
+        return messageRepository.findById(messageId)
+                .filter(message -> channelId.equals(message.getChannelId()))
+                .orElseThrow(() -> new ResourceNotFoundException("Cursor message not found in channel"));
+    }
+
+    /**
+     * Messages strictly older than the anchor, newest first
+     */
+    private Slice<Message> findOlderThan(Message anchor, int limit) {
+        return messageRepository.findByChannelIdBeforeCursor(anchor.getChannelId(), anchor.getCreatedAt(),
+                new ObjectId(anchor.getId()), PageRequest.of(0, limit, NEWEST_FIRST));
+    }
+
+    /**
+     * Messages strictly newer than the anchor, returned newest first like every
+     * other history page. hasNext tells whether even newer messages exist.
+     */
+    private Slice<Message> findNewerThan(Message anchor, int limit) {
+        PageRequest pageRequest = PageRequest.of(0, limit, OLDEST_FIRST);
+        Slice<Message> newer = messageRepository.findByChannelIdAfterCursor(anchor.getChannelId(),
+                anchor.getCreatedAt(), new ObjectId(anchor.getId()), pageRequest);
+
+        List<Message> content = new ArrayList<>(newer.getContent());
+        Collections.reverse(content);
+        return new SliceImpl<>(content, pageRequest, newer.hasNext());
+    }
+
+    private Message awaitPersisted(CompletableFuture<Message> pendingWrite) {
+        try {
+            return pendingWrite.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
     private User getUserByUsername(String username) {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
@@ -466,91 +1001,27 @@ public class MessageServiceImpl implements IMessageService {
     // ================== Mention Processing Methods ==================
 
     /**
-     * Extract mentioned user IDs from message content using regex pattern <@userId>
+     * Extract mentioned IDs from message content: <@userId> or <@&roleId>
      * 
      * @param content The message content
-     * @return List of unique mentioned user IDs
+     * @return List of unique mentioned IDs
      */
-    private List<Long> extractMentionedUserIds(String content) {
+    private List<Long> extractMentionedIds(Pattern pattern, String content) {
         if (content == null || content.isEmpty()) {
             return new ArrayList<>();
         }
 
         Set<Long> mentionedIds = new HashSet<>();
-        Matcher matcher = MENTION_PATTERN.matcher(content);
+        Matcher matcher = pattern.matcher(content);
 
         while (matcher.find()) {
             try {
-                Long userId = Long.parseLong(matcher.group(1));
-                mentionedIds.add(userId);
+                mentionedIds.add(Long.parseLong(matcher.group(1)));
             } catch (NumberFormatException e) {
-                log.warn("Invalid user ID in mention: {}", matcher.group(1));
+                log.warn("Invalid ID in mention: {}", matcher.group(1));
             }
         }
 
         return new ArrayList<>(mentionedIds);
     }
-
-    /**
-     * Process mentions: create notifications and send WebSocket events to mentioned
-     * users
-     * 
-     * @param mentioner        The user who mentioned others
-     * @param mentionedUserIds List of mentioned user IDs
-     * @param channelId        The channel where the message was sent
-     * @param messageId        The message ID containing the mentions
-     */
-    private void processMentions(User mentioner, List<Long> mentionedUserIds, Long channelId, String messageId) {
-        // Get channel info for notification
-        Optional<Channel> channelOpt = channelRepository.findById(channelId);
-        String channelName = channelOpt.map(Channel::getName).orElse("Unknown Channel");
-        Long serverId = channelOpt.map(c -> c.getServer().getId()).orElse(null);
-
-        for (Long mentionedUserId : mentionedUserIds) {
-            // Don't notify if user mentions themselves
-            if (mentionedUserId.equals(mentioner.getId())) {
-                continue;
-            }
-
-            // Find the mentioned user
-            Optional<User> mentionedUserOpt = userRepository.findById(mentionedUserId);
-            if (mentionedUserOpt.isEmpty()) {
-                log.warn("Mentioned user not found: {}", mentionedUserId);
-                continue;
-            }
-
-            User mentionedUser = mentionedUserOpt.get();
-
-            // 1. Create notification in database
-            try {
-                notificationService.sendMentionNotification(mentioner, mentionedUser, channelId, channelName);
-                log.info("Created mention notification: mentioner={}, mentioned={}, channelId={}",
-                        mentioner.getUsername(), mentionedUser.getUsername(), channelId);
-            } catch (Exception e) {
-                log.error("Failed to create mention notification for user {}: {}", mentionedUserId, e.getMessage());
-            }
-
-            // 2. Send real-time WebSocket event for instant badge/sound notification
-            try {
-                MentionEvent mentionEvent = MentionEvent.builder()
-                        .type("mention")
-                        .mentionerId(mentioner.getId())
-                        .mentionerUsername(mentioner.getUsername())
-                        .mentionerDisplayName(mentioner.getDisplayName())
-                        .mentionerAvatarUrl(mentioner.getAvatarUrl())
-                        .channelId(channelId)
-                        .channelName(channelName)
-                        .serverId(serverId)
-                        .messageId(messageId)
-                        .build();
-
-                messagingTemplate.convertAndSend(
-                        "/topic/user." + mentionedUserId + ".mention",
-                        mentionEvent);
-                log.debug("Sent mention WebSocket event to user {}", mentionedUserId);
-            } catch (Exception e) {
-                log.error("Failed to send mention WebSocket event to user {}: {}", mentionedUserId, e.getMessage());
-            }
-        }
-    }
 }
@@ -0,0 +1,258 @@
+package vn.cococord.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.entity.mongodb.Message;
+import vn.cococord.service.IMessageWriteBatcher;
+
+/**
+ * Micro-batching writer for channel messages.
+ *
+ * Each channel has its own buffer. The first message starts a short window
+ * (app.chat.write-batch.window-ms); the buffer is flushed when the window ends
+ * or when it reaches app.chat.write-batch.max-size, whichever comes first.
+ * Flushes of the same channel are serialized so inserts and callbacks always
+ * run in enqueue order. If a batch insert fails partway, its messages are written
+ * again one at a time and each sender gets the outcome of its own message.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@SuppressWarnings("null")
+public class MongoMessageWriteBatcher implements IMessageWriteBatcher {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.chat.write-batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.chat.write-batch.window-ms:3}")
+    private long windowMillis;
+
+    @Value("${app.chat.write-batch.max-size:64}")
+    private int maxBatchSize;
+
+    @Value("${app.chat.write-batch.flush-threads:4}")
+    private int flushThreads;
+
+    private final Map<Long, ChannelBuffer> buffers = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService windowTimer;
+    private ExecutorService flushExecutor;
+
+    @PostConstruct
+    public void start() {
+        windowTimer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "chat-batch-timer"));
+        flushExecutor = Executors.newFixedThreadPool(Math.max(1, flushThreads), r -> daemon(r, "chat-batch-flush"));
+        log.info("Message write batching {} (window={}ms, maxSize={})",
+                enabled ? "enabled" : "disabled", windowMillis, maxBatchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        windowTimer.shutdownNow();
+        // Drain whatever is still buffered so accepted messages are not lost
+        buffers.forEach((channelId, buffer) -> {
+            while (flushBatch(channelId, buffer)) {
+                // next batch
+            }
+        });
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Message> enqueue(Message message, Consumer<Message> onPersisted) {
+        PendingWrite pending = new PendingWrite(message, onPersisted, new CompletableFuture<>());
+
+        if (!enabled || message.getChannelId() == null) {
+            writeBatch(List.of(pending));
+            return pending.future;
+        }
+
+        Long channelId = message.getChannelId();
+        while (true) {
+            ChannelBuffer buffer = buffers.computeIfAbsent(channelId, id -> new ChannelBuffer());
+            synchronized (buffer) {
+                if (buffer.retired) {
+                    // Buffer was removed after going idle, pick up the new one
+                    continue;
+                }
+                buffer.pending.add(pending);
+
+                // One flush task per buffer at a time: a slow insert must not park every
+                // flush thread on this buffer's lock. A full buffer skips the window.
+                if (!buffer.flushScheduled) {
+                    buffer.flushScheduled = true;
+                    if (buffer.pending.size() >= maxBatchSize) {
+                        flushExecutor.execute(() -> flush(channelId, buffer));
+                    } else {
+                        buffer.window = windowTimer.schedule(
+                                () -> flushExecutor.execute(() -> flush(channelId, buffer)),
+                                windowMillis, TimeUnit.MILLISECONDS);
+                    }
+                } else if (buffer.pending.size() >= maxBatchSize && buffer.window != null
+                        && buffer.window.cancel(false)) {
+                    // Filled up during its window: flush now instead of when the window ends
+                    buffer.window = null;
+                    flushExecutor.execute(() -> flush(channelId, buffer));
+                }
+            }
+            return pending.future;
+        }
+    }
+
+    private void flush(Long channelId, ChannelBuffer buffer) {
+        if (flushBatch(channelId, buffer)) {
+            // More than one batch was waiting: queue the rest behind other channels' flushes
+            try {
+                flushExecutor.execute(() -> flush(channelId, buffer));
+            } catch (RejectedExecutionException e) {
+                while (flushBatch(channelId, buffer)) {
+                    // shutting down, drain inline
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes at most max-size messages; true when more are pending and the buffer
+     * still counts as scheduled
+     */
+    private boolean flushBatch(Long channelId, ChannelBuffer buffer) {
+        buffer.flushLock.lock();
+        try {
+            List<PendingWrite> batch;
+            boolean more;
+            synchronized (buffer) {
+                buffer.window = null;
+                List<PendingWrite> head = buffer.pending.subList(0, Math.min(maxBatchSize, buffer.pending.size()));
+                batch = new ArrayList<>(head);
+                head.clear();
+                more = !buffer.pending.isEmpty();
+                buffer.flushScheduled = more;
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+            synchronized (buffer) {
+                // Drop idle buffers only after the write and its callbacks are done, so a
+                // replacement buffer can never overtake this batch
+                if (buffer.pending.isEmpty() && !buffer.flushScheduled) {
+                    buffer.retired = true;
+                    buffers.remove(channelId, buffer);
+                }
+            }
+            return more;
+        } finally {
+            buffer.flushLock.unlock();
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingWrite pending : batch) {
+            if (pending.message.getId() == null) {
+                // Known before the insert, so a failed batch can tell which documents were stored
+                pending.message.setId(new ObjectId().toHexString());
+            }
+            messages.add(pending.message);
+        }
+
+        try {
+            // Ordered bulk insert: one round trip for the whole batch
+            mongoTemplate.insert(messages, Message.class);
+            log.debug("Flushed {} message(s) for channel {}", messages.size(), messages.get(0).getChannelId());
+        } catch (Exception e) {
+            // The documents before the failing one are already stored: settle each message on its own
+            log.warn("Insert of message batch of {} for channel {} failed, writing one by one: {}",
+                    messages.size(), messages.get(0).getChannelId(), e.getMessage());
+            for (PendingWrite pending : batch) {
+                Exception failure = insertOne(pending.message);
+                if (failure != null) {
+                    log.error("Failed to insert message {} for channel {}: {}", pending.message.getId(),
+                            pending.message.getChannelId(), failure.getMessage());
+                    pending.future.completeExceptionally(failure);
+                } else {
+                    persisted(pending);
+                }
+            }
+            return;
+        }
+
+        for (PendingWrite pending : batch) {
+            persisted(pending);
+        }
+    }
+
+    /**
+     * @return null once the message is stored, whether by this insert or by the
+     *         failed batch before it
+     */
+    private Exception insertOne(Message message) {
+        try {
+            mongoTemplate.insert(message);
+            return null;
+        } catch (DuplicateKeyException e) {
+            boolean stored = mongoTemplate.exists(Query.query(Criteria.where("_id").is(message.getId())),
+                    Message.class);
+            return stored ? null : e;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    private static void persisted(PendingWrite pending) {
+        try {
+            pending.onPersisted.accept(pending.message);
+        } catch (Exception e) {
+            log.error("Post-insert callback failed for message {}: {}", pending.message.getId(), e.getMessage());
+        }
+        pending.future.complete(pending.message);
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class ChannelBuffer {
+        private final List<PendingWrite> pending = new ArrayList<>();
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private ScheduledFuture<?> window;
+        private boolean flushScheduled;
+        private boolean retired;
+    }
+
+    private record PendingWrite(Message message, Consumer<Message> onPersisted, CompletableFuture<Message> future) {
+    }
+}
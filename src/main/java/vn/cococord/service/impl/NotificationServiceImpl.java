@@ -1,10 +1,17 @@
 package vn.cococord.service.impl;
 
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -30,6 +37,7 @@ public class NotificationServiceImpl implements INotificationService {
     private final INotificationRepository notificationRepository;
     private final IUserRepository userRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final JdbcTemplate jdbcTemplate;
 
     @Override
     public NotificationResponse createNotification(User user, NotificationType type,
@@ -90,6 +98,26 @@ public class NotificationServiceImpl implements INotificationService {
         createNotification(receiver, NotificationType.NEW_DIRECT_MESSAGE, message, link, metadata);
     }
 
+    @Override
+    public void sendNewDirectMessageNotifications(Long senderId, String senderUsername, String senderDisplayName,
+            List<Long> receiverIds, Long dmGroupId, String preview) {
+        if (receiverIds.isEmpty()) {
+            return;
+        }
+
+        String senderName = senderDisplayName != null ? senderDisplayName : senderUsername;
+        String clipped = preview.length() > 50 ? preview.substring(0, 50) + "..." : preview;
+        String message = String.format("%s đã gửi cho bạn một tin nhắn: %s", senderName, clipped);
+        String link = "/dms/" + dmGroupId;
+        String metadata = String.format("{\"senderId\": %d, \"senderUsername\": \"%s\", \"dmGroupId\": %d}",
+                senderId, senderUsername, dmGroupId);
+
+        insertNotifications(receiverIds, NotificationType.NEW_DIRECT_MESSAGE, message, link, metadata);
+
+        log.info("Created {} direct message notification(s) from {} in DM group {}", receiverIds.size(),
+                senderUsername, dmGroupId);
+    }
+
     @Override
     public void sendAddedToGroupDMNotification(User adder, User newMember, Long dmGroupId, String groupName) {
         String adderName = adder.getDisplayName() != null ? adder.getDisplayName() : adder.getUsername();
@@ -136,6 +164,72 @@ public class NotificationServiceImpl implements INotificationService {
         createNotification(mentioned, NotificationType.MENTION, message, link, metadata);
     }
 
+    @Override
+    public void sendMentionNotifications(User mentioner, List<Long> mentionedUserIds, Long channelId,
+            String channelName) {
+        if (mentionedUserIds.isEmpty()) {
+            return;
+        }
+
+        String mentionerName = mentioner.getDisplayName() != null ? mentioner.getDisplayName()
+                : mentioner.getUsername();
+        String message = String.format("%s đã đề cập đến bạn trong #%s", mentionerName, channelName);
+        String link = "/channels/" + channelId;
+        String metadata = String.format("{\"mentionerId\": %d, \"channelId\": %d, \"channelName\": \"%s\"}",
+                mentioner.getId(), channelId, channelName);
+
+        insertNotifications(mentionedUserIds, NotificationType.MENTION, message, link, metadata);
+
+        log.info("Created {} mention notification(s) from {} in channel {}", mentionedUserIds.size(),
+                mentioner.getUsername(), channelId);
+    }
+
+    /**
+     * Same notification for many users: one multi-row INSERT, then a real-time push each
+     */
+    private void insertNotifications(List<Long> userIds, NotificationType type, String message, String link,
+            String metadata) {
+        LocalDateTime createdAt = LocalDateTime.now();
+
+        // IDENTITY ids disable Hibernate insert batching, so write one multi-row INSERT instead
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO notifications (user_id, type, message, link, is_read, created_at, metadata) VALUES ");
+        for (int i = 0; i < userIds.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?, ?)");
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS);
+            int index = 1;
+            for (Long userId : userIds) {
+                ps.setLong(index++, userId);
+                ps.setString(index++, type.name());
+                ps.setString(index++, message);
+                ps.setString(index++, link);
+                ps.setBoolean(index++, false);
+                ps.setTimestamp(index++, Timestamp.valueOf(createdAt));
+                ps.setString(index++, metadata);
+            }
+            return ps;
+        }, keyHolder);
+
+        // Generated keys come back in row order
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < userIds.size(); i++) {
+            Long id = i < keys.size() ? ((Number) keys.get(i).values().iterator().next()).longValue() : null;
+            sendRealTimeNotification(userIds.get(i), NotificationResponse.builder()
+                    .id(id)
+                    .type(type.name())
+                    .message(message)
+                    .link(link)
+                    .isRead(false)
+                    .createdAt(createdAt)
+                    .metadata(metadata)
+                    .build());
+        }
+    }
+
     @Override
     public void sendRoleAssignedNotification(User user, String roleName, String serverName) {
         String message = String.format("Bạn đã được gán vai trò '%s' trong %s", roleName, serverName);
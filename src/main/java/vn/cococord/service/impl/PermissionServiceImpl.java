@@ -1,11 +1,16 @@
 package vn.cococord.service.impl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
@@ -28,6 +33,7 @@ import vn.cococord.repository.IRoleRepository;
 import vn.cococord.repository.IServerMemberRepository;
 import vn.cococord.repository.IServerRepository;
 import vn.cococord.repository.IUserRepository;
+import vn.cococord.service.IChannelSendContextCache;
 import vn.cococord.service.IPermissionService;
 
 @Service
@@ -44,6 +50,7 @@ public class PermissionServiceImpl implements IPermissionService {
     private final IRoleRepository roleRepository;
     private final IUserRepository userRepository;
     private final vn.cococord.repository.IPermissionRepository permissionRepository;
+    private final IChannelSendContextCache sendContextCache;
 
     // Special permissions
     private static final String ADMINISTRATOR = "ADMINISTRATOR";
@@ -276,18 +283,9 @@ public class PermissionServiceImpl implements IPermissionService {
         // STEP 1: Get base permissions from server roles
         long baseBitmask = getBaseServerPermissions(userId, serverId);
         log.debug("Base server permissions bitmask for user {}: {}", userId, Long.toBinaryString(baseBitmask));
-
-        // If user has ADMINISTRATOR permission at server level, grant all permissions
         if (PermissionBit.ADMINISTRATOR.isSet(baseBitmask)) {
-            log.debug("User {} has ADMINISTRATOR permission, granting all permissions", userId);
-            ComputedPermissionsDTO result = ComputedPermissionsDTO.builder()
-                    .userId(userId)
-                    .channelId(channelId)
-                    .finalBitmask(PermissionBit.getAllPermissions())
-                    .isAdministrator(true)
-                    .build();
-            result.populateFromBitmask();
-            return result;
+            // Overrides cannot take anything away from an administrator
+            return computeChannelPermissions(userId, channelId, baseBitmask, List.of(), null);
         }
 
         // STEP 2: Get channel permission overrides
@@ -301,9 +299,34 @@ public class PermissionServiceImpl implements IPermissionService {
                 .filter(ChannelPermission::isRoleOverride)
                 .collect(Collectors.toList());
 
-        Optional<ChannelPermission> userOverride = overrides.stream()
+        ChannelPermission userOverride = overrides.stream()
                 .filter(ChannelPermission::isUserOverride)
-                .findFirst();
+                .findFirst()
+                .orElse(null);
+
+        return computeChannelPermissions(userId, channelId, baseBitmask, roleOverrides, userOverride);
+    }
+
+    /**
+     * Steps 3-4 of computeChannelPermissions for a member who is not the owner, from
+     * loaded data: baseBitmask of their server roles, the channel overrides of those
+     * roles (@everyone included) and their own override. channelViewerFilter loads
+     * these once per channel and role instead of once per user.
+     */
+    private ComputedPermissionsDTO computeChannelPermissions(Long userId, Long channelId, long baseBitmask,
+            List<ChannelPermission> roleOverrides, ChannelPermission userOverride) {
+        // If user has ADMINISTRATOR permission at server level, grant all permissions
+        if (PermissionBit.ADMINISTRATOR.isSet(baseBitmask)) {
+            log.debug("User {} has ADMINISTRATOR permission, granting all permissions", userId);
+            ComputedPermissionsDTO result = ComputedPermissionsDTO.builder()
+                    .userId(userId)
+                    .channelId(channelId)
+                    .finalBitmask(PermissionBit.getAllPermissions())
+                    .isAdministrator(true)
+                    .build();
+            result.populateFromBitmask();
+            return result;
+        }
 
         // STEP 3: Apply role-based overrides (Deny first, then Allow)
         long currentBitmask = baseBitmask;
@@ -311,34 +334,39 @@ public class PermissionServiceImpl implements IPermissionService {
         // Apply role DENY overrides
         for (ChannelPermission roleOverride : roleOverrides) {
             currentBitmask &= ~roleOverride.getDenyBitmask();
-            log.debug("Applied role {} deny override: {}", roleOverride.getTargetId(),
-                    Long.toBinaryString(roleOverride.getDenyBitmask()));
+            if (log.isDebugEnabled()) {
+                log.debug("Applied role {} deny override: {}", roleOverride.getTargetId(),
+                        Long.toBinaryString(roleOverride.getDenyBitmask()));
+            }
         }
 
         // Apply role ALLOW overrides
         for (ChannelPermission roleOverride : roleOverrides) {
             currentBitmask |= roleOverride.getAllowBitmask();
-            log.debug("Applied role {} allow override: {}", roleOverride.getTargetId(),
-                    Long.toBinaryString(roleOverride.getAllowBitmask()));
+            if (log.isDebugEnabled()) {
+                log.debug("Applied role {} allow override: {}", roleOverride.getTargetId(),
+                        Long.toBinaryString(roleOverride.getAllowBitmask()));
+            }
         }
 
         // STEP 4: Apply user-specific overrides (highest priority)
-        if (userOverride.isPresent()) {
-            ChannelPermission userPerm = userOverride.get();
-
+        if (userOverride != null) {
             // User DENY overrides everything
-            currentBitmask &= ~userPerm.getDenyBitmask();
-            log.debug("Applied user {} deny override: {}", userId,
-                    Long.toBinaryString(userPerm.getDenyBitmask()));
+            currentBitmask &= ~userOverride.getDenyBitmask();
 
             // User ALLOW overrides everything
-            currentBitmask |= userPerm.getAllowBitmask();
-            log.debug("Applied user {} allow override: {}", userId,
-                    Long.toBinaryString(userPerm.getAllowBitmask()));
+            currentBitmask |= userOverride.getAllowBitmask();
+            if (log.isDebugEnabled()) {
+                log.debug("Applied user {} override: deny {}, allow {}", userId,
+                        Long.toBinaryString(userOverride.getDenyBitmask()),
+                        Long.toBinaryString(userOverride.getAllowBitmask()));
+            }
         }
 
-        log.debug("Final permissions bitmask for user {} in channel {}: {}",
-                userId, channelId, Long.toBinaryString(currentBitmask));
+        if (log.isDebugEnabled()) {
+            log.debug("Final permissions bitmask for user {} in channel {}: {}",
+                    userId, channelId, Long.toBinaryString(currentBitmask));
+        }
 
         // Build result DTO
         ComputedPermissionsDTO result = ComputedPermissionsDTO.builder()
@@ -366,7 +394,13 @@ public class PermissionServiceImpl implements IPermissionService {
             return PermissionBit.getAllPermissions();
         }
 
-        // Convert to bitmask
+        return toBaseBitmask(permissionNames);
+    }
+
+    /**
+     * Role permission names to a bitmask, basic permissions when none are granted
+     */
+    private long toBaseBitmask(Set<String> permissionNames) {
         long bitmask = 0L;
         for (String permName : permissionNames) {
             PermissionBit bit = PermissionBit.fromName(permName);
@@ -380,8 +414,7 @@ public class PermissionServiceImpl implements IPermissionService {
         // READ_MESSAGE_HISTORY)
         // This prevents new users from being locked out of basic channel access
         if (bitmask == 0L) {
-            log.debug("User {} has no role permissions in server {}, granting default basic permissions", userId,
-                    serverId);
+            log.debug("No role permissions, granting default basic permissions");
             bitmask = PermissionBit.VIEW_CHANNEL.getValue()
                     | PermissionBit.SEND_MESSAGES.getValue()
                     | PermissionBit.READ_MESSAGE_HISTORY.getValue()
@@ -414,6 +447,68 @@ public class PermissionServiceImpl implements IPermissionService {
         return hasChannelPermission(userId, channelId, PermissionBit.VIEW_CHANNEL);
     }
 
+    @Override
+    public UnaryOperator<List<Long>> channelViewerFilter(Long channelId) {
+        Channel channel = channelId != null ? channelRepository.findById(channelId).orElse(null) : null;
+        if (channel == null) {
+            return userIds -> List.of();
+        }
+        Long serverId = channel.getServer().getId();
+        Long ownerId = serverRepository.findById(serverId)
+                .map(server -> server.getOwner() != null ? server.getOwner().getId() : null)
+                .orElse(null);
+        Long everyoneRoleId = roleRepository.findDefaultRoleByServerId(serverId)
+                .map(vn.cococord.entity.mysql.Role::getId)
+                .orElse(null);
+
+        Map<Long, ChannelPermission> roleOverrides = new HashMap<>();
+        Map<Long, ChannelPermission> userOverrides = new HashMap<>();
+        for (ChannelPermission override : channelPermissionRepository.findByChannel_Id(channelId)) {
+            if (override.isRoleOverride()) {
+                roleOverrides.put(override.getTargetId(), override);
+            } else if (override.isUserOverride()) {
+                userOverrides.putIfAbsent(override.getTargetId(), override);
+            }
+        }
+        // Role bitmasks are loaded once per role, then computeChannelPermissions runs per user
+        Map<Long, Long> roleBitmasks = new ConcurrentHashMap<>();
+
+        return userIds -> {
+            if (userIds.isEmpty()) {
+                return List.of();
+            }
+            Map<Long, Long> memberRoles = new HashMap<>();
+            for (Object[] row : serverMemberRepository.findUserIdsAndRoleIds(serverId, userIds)) {
+                memberRoles.put((Long) row[0], (Long) row[1]);
+            }
+            return userIds.stream().filter(userId -> {
+                if (userId.equals(ownerId)) {
+                    return true;
+                }
+                if (!memberRoles.containsKey(userId)) {
+                    return false;
+                }
+                Long roleId = memberRoles.get(userId);
+                long baseBitmask = roleId != null
+                        ? roleBitmasks.computeIfAbsent(roleId,
+                                id -> toBaseBitmask(rolePermissionRepository.findPermissionNamesByRoleId(id)))
+                        : toBaseBitmask(Set.of());
+
+                List<ChannelPermission> applied = new ArrayList<>(2);
+                if (roleId != null && roleOverrides.containsKey(roleId)) {
+                    applied.add(roleOverrides.get(roleId));
+                }
+                if (everyoneRoleId != null && !everyoneRoleId.equals(roleId)
+                        && roleOverrides.containsKey(everyoneRoleId)) {
+                    applied.add(roleOverrides.get(everyoneRoleId));
+                }
+                long bitmask = computeChannelPermissions(userId, channelId, baseBitmask, applied,
+                        userOverrides.get(userId)).getFinalBitmask();
+                return PermissionBit.VIEW_CHANNEL.isSet(bitmask);
+            }).toList();
+        };
+    }
+
     @Override
     public boolean canSendMessagesInChannel(Long userId, Long channelId) {
         ComputedPermissionsDTO permissions = computeChannelPermissions(userId, channelId);
@@ -504,6 +599,7 @@ public class PermissionServiceImpl implements IPermissionService {
             permission = channelPermissionRepository.save(permission);
             log.info("Updated user {} permissions in channel {}, permission ID={}", userId, channelId,
                     permission.getId());
+            sendContextCache.invalidateChannel(channelId);
         } catch (Exception e) {
             log.error("Failed to save permission for channel={}, user={}: {}", channelId, userId, e.getMessage(), e);
             throw e;
@@ -561,6 +657,7 @@ public class PermissionServiceImpl implements IPermissionService {
             permission = channelPermissionRepository.save(permission);
             log.info("Updated role {} permissions in channel {}, permission ID={}", roleId, channelId,
                     permission.getId());
+            sendContextCache.invalidateChannel(channelId);
         } catch (Exception e) {
             log.error("Failed to save permission for channel={}, role={}: {}", channelId, roleId, e.getMessage(), e);
             throw e;
@@ -575,6 +672,7 @@ public class PermissionServiceImpl implements IPermissionService {
         log.debug("Removing user {} permissions from channel {}", userId, channelId);
         channelPermissionRepository.deleteByChannel_IdAndTargetTypeAndTargetId(
                 channelId, ChannelPermission.TargetType.USER, userId);
+        sendContextCache.invalidateChannel(channelId);
         log.info("Removed user {} permissions from channel {}", userId, channelId);
     }
 
@@ -584,6 +682,7 @@ public class PermissionServiceImpl implements IPermissionService {
         log.debug("Removing role {} permissions from channel {}", roleId, channelId);
         channelPermissionRepository.deleteByChannel_IdAndTargetTypeAndTargetId(
                 channelId, ChannelPermission.TargetType.ROLE, roleId);
+        sendContextCache.invalidateChannel(channelId);
         log.info("Removed role {} permissions from channel {}", roleId, channelId);
     }
 
@@ -698,6 +797,7 @@ public class PermissionServiceImpl implements IPermissionService {
             rolePermissionRepository.save(rolePermission);
         }
 
+        sendContextCache.invalidateServer(role.getServer().getId());
         log.info("Granted all permissions to role {}", role.getName());
     }
 
@@ -730,6 +830,7 @@ public class PermissionServiceImpl implements IPermissionService {
             }
         }
 
+        sendContextCache.invalidateServer(role.getServer().getId());
         log.info("Granted permissions {} to role {}", permissionNames, role.getName());
     }
 
@@ -737,6 +838,8 @@ public class PermissionServiceImpl implements IPermissionService {
     @Transactional
     public void revokeAllPermissionsFromRole(Long roleId) {
         rolePermissionRepository.deleteByRoleId(roleId);
+        roleRepository.findById(roleId)
+                .ifPresent(role -> sendContextCache.invalidateServer(role.getServer().getId()));
         log.info("Revoked all permissions from role {}", roleId);
     }
 }
@@ -1,6 +1,9 @@
 package vn.cococord.service.impl;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -8,29 +11,41 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import vn.cococord.config.TimingWheel;
 import vn.cococord.dto.request.UpdateStatusRequest;
 import vn.cococord.dto.websocket.WebSocketEvent;
-import vn.cococord.entity.mysql.Server;
 import vn.cococord.entity.mysql.ServerMember;
 import vn.cococord.entity.mysql.User;
 import vn.cococord.entity.mysql.User.UserStatus;
 import vn.cococord.exception.ResourceNotFoundException;
 import vn.cococord.repository.IServerMemberRepository;
 import vn.cococord.repository.IUserRepository;
-import vn.cococord.service.IFriendService;
+import vn.cococord.service.IPresenceAudienceIndex;
+import vn.cococord.service.IPresenceAudienceIndex.Audience;
 import vn.cococord.service.IPresenceService;
+import vn.cococord.service.IPresenceStateStore;
+import vn.cococord.service.IPresenceStateStore.PresenceSnapshot;
+import vn.cococord.service.IPresenceStateStore.Transition;
 
 /**
  * Presence Service with automatic Redis/In-Memory fallback.
@@ -43,6 +58,9 @@ import vn.cococord.service.IPresenceService;
  * When Redis is NOT available:
  * - Falls back to ConcurrentHashMap (single instance only)
  * - Suitable for development and single-server deployments
+ *
+ * Statuses are read from and changed in IPresenceStateStore, which writes them to
+ * MySQL in batches; only user-chosen status updates save the user row directly.
  */
 @Service
 @Slf4j
@@ -52,35 +70,79 @@ public class PresenceServiceImpl implements IPresenceService {
 
     private final IUserRepository userRepository;
     private final IServerMemberRepository serverMemberRepository;
-    private final IFriendService friendService;
+    private final IPresenceAudienceIndex audienceIndex;
     private final SimpMessagingTemplate messagingTemplate;
+    private final IPresenceStateStore stateStore;
 
     // Optional Redis - may be null if Redis is disabled
     private final StringRedisTemplate redisTemplate;
 
-    // Fallback in-memory storage when Redis is not available
+    // Sessions on this node (with Redis the cluster-wide sets live in Redis)
     private final Map<Long, Set<String>> activeConnections = new ConcurrentHashMap<>();
-    private final Map<Long, LocalDateTime> lastActivity = new ConcurrentHashMap<>();
+    private final Map<Long, Long> lastActivity = new ConcurrentHashMap<>();
+
+    // In-memory idle detection: one wheel entry per active user, re-armed from lastActivity when it fires
+    private TimingWheel<Long> idleWheel;
+    private final Set<Long> idleArmed = ConcurrentHashMap.newKeySet();
+
+    // Custom statuses expiring within the lookahead, taken by the expiry worker when due
+    private final DelayQueue<CustomStatusExpiry> customStatusExpiries = new DelayQueue<>();
+    private volatile LocalDateTime customStatusLoadedUpTo = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private Thread customStatusExpiryWorker;
+
+    // userId -> status change not broadcast yet (debounce)
+    private final Map<Long, PendingBroadcast> pendingBroadcasts = new ConcurrentHashMap<>();
 
     // Redis keys
     private static final String PRESENCE_SESSIONS_PREFIX = "presence:sessions:";
-    private static final String PRESENCE_ACTIVITY_PREFIX = "presence:activity:";
+    private static final String PRESENCE_ACTIVITY_ZSET = "presence:activity";
     private static final String PRESENCE_ONLINE_SET = "presence:online";
-    private static final long PRESENCE_TTL_SECONDS = 300;
+    private static final int IDLE_CLAIM_BATCH = 1000;
+
+    // Removes and returns up to ARGV[2] users active at or before ARGV[1]: each crossing is claimed by one node
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_IDLE_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) "
+                    + "if #ids > 0 then redis.call('ZREM', KEYS[1], unpack(ids)) end "
+                    + "return ids",
+            List.class);
 
     @Value("${spring.data.redis.enabled:false}")
     private boolean redisEnabled;
 
+    @Value("${app.presence.idle-after-ms:600000}")
+    private long idleAfterMs;
+
+    @Value("${app.presence.idle-check-interval-ms:1000}")
+    private long idleCheckIntervalMs;
+
+    @Value("${app.presence.custom-status.lookahead-ms:300000}")
+    private long customStatusLookaheadMs;
+
+    @Value("${app.presence.custom-status.batch-size:500}")
+    private int customStatusBatchSize;
+
+    @Value("${app.presence.global-topic.enabled:false}")
+    private boolean globalTopicEnabled;
+
+    @Value("${app.presence.debounce-window-ms:2000}")
+    private long debounceWindowMs;
+
+    @Value("${app.presence.debounce-max-delay-ms:10000}")
+    private long debounceMaxDelayMs;
+
     public PresenceServiceImpl(
             IUserRepository userRepository,
             IServerMemberRepository serverMemberRepository,
-            IFriendService friendService,
+            IPresenceAudienceIndex audienceIndex,
             SimpMessagingTemplate messagingTemplate,
+            IPresenceStateStore stateStore,
             @Nullable StringRedisTemplate redisTemplate) {
         this.userRepository = userRepository;
         this.serverMemberRepository = serverMemberRepository;
-        this.friendService = friendService;
+        this.audienceIndex = audienceIndex;
         this.messagingTemplate = messagingTemplate;
+        this.stateStore = stateStore;
         this.redisTemplate = redisTemplate;
 
         if (redisTemplate != null) {
@@ -94,6 +156,20 @@ public class PresenceServiceImpl implements IPresenceService {
         return redisEnabled && redisTemplate != null;
     }
 
+    @PostConstruct
+    public void start() {
+        idleWheel = new TimingWheel<>(idleCheckIntervalMs, System.currentTimeMillis());
+        customStatusExpiryWorker = Thread.ofVirtual().name("custom-status-expiry")
+                .start(this::runCustomStatusExpiries);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (customStatusExpiryWorker != null) {
+            customStatusExpiryWorker.interrupt();
+        }
+    }
+
     // ==================== STATUS MANAGEMENT ====================
 
     @Override
@@ -101,7 +177,7 @@ public class PresenceServiceImpl implements IPresenceService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        String oldStatus = user.getStatus().name();
+        String oldStatus = stateStore.get(user.getId()).map(PresenceSnapshot::status).orElse(user.getStatus()).name();
 
         // Update status
         UserStatus newStatus = UserStatus.valueOf(request.getStatus());
@@ -122,6 +198,10 @@ public class PresenceServiceImpl implements IPresenceService {
         }
 
         userRepository.save(user);
+        stateStore.put(user);
+        scheduleCustomStatusExpiry(user.getId(), user.getCustomStatusExpiresAt());
+        // Chosen by the user: sent now, superseding any held transition
+        pendingBroadcasts.remove(user.getId());
 
         // Update last activity
         updateLastActivityInternal(user.getId());
@@ -136,25 +216,24 @@ public class PresenceServiceImpl implements IPresenceService {
 
     @Override
     public void trackUserConnection(String username, String sessionId) {
-        User user = userRepository.findByUsername(username)
+        PresenceSnapshot user = stateStore.get(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        Long userId = user.getId();
+        Long userId = user.userId();
 
+        activeConnections.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+        stateStore.setConnected(userId, true);
         if (isRedisAvailable()) {
             trackConnectionRedis(userId, sessionId);
         } else {
-            trackConnectionInMemory(userId, sessionId);
+            updateLastActivityInternal(userId);
         }
 
         // Auto-set to ONLINE if not INVISIBLE
-        if (user.getStatus() != UserStatus.INVISIBLE) {
-            String oldStatus = user.getStatus().name();
-            if (!oldStatus.equals("ONLINE")) {
-                user.setStatus(UserStatus.ONLINE);
-                userRepository.save(user);
-                broadcastStatusChange(user, oldStatus, "ONLINE");
-            }
+        Transition transition = stateStore.transition(userId,
+                status -> status == UserStatus.INVISIBLE ? status : UserStatus.ONLINE);
+        if (transition.changed()) {
+            broadcast(transition);
         }
 
         log.info("User {} connected with session {}", username, sessionId);
@@ -167,30 +246,24 @@ public class PresenceServiceImpl implements IPresenceService {
         updateLastActivityInternal(userId);
     }
 
-    private void trackConnectionInMemory(Long userId, String sessionId) {
-        activeConnections.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(sessionId);
-        lastActivity.put(userId, LocalDateTime.now());
-    }
-
     @Override
     public void removeUserConnection(String username, String sessionId) {
-        User user = userRepository.findByUsername(username)
+        PresenceSnapshot user = stateStore.get(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        Long userId = user.getId();
-        boolean noMoreSessions;
-
-        if (isRedisAvailable()) {
-            noMoreSessions = removeConnectionRedis(userId, sessionId);
-        } else {
-            noMoreSessions = removeConnectionInMemory(userId, sessionId);
+        Long userId = user.userId();
+        boolean noLocalSessions = removeLocalConnection(userId, sessionId);
+        if (noLocalSessions) {
+            stateStore.setConnected(userId, false);
         }
+        boolean noMoreSessions = isRedisAvailable() ? removeConnectionRedis(userId, sessionId) : noLocalSessions;
 
-        if (noMoreSessions && user.getStatus() != UserStatus.INVISIBLE) {
-            String oldStatus = user.getStatus().name();
-            user.setStatus(UserStatus.OFFLINE);
-            userRepository.save(user);
-            broadcastStatusChange(user, oldStatus, "OFFLINE");
+        if (noMoreSessions) {
+            Transition transition = stateStore.transition(userId,
+                    status -> status == UserStatus.INVISIBLE ? status : UserStatus.OFFLINE);
+            if (transition.changed()) {
+                broadcast(transition);
+            }
         }
 
         log.info("User {} disconnected session {}", username, sessionId);
@@ -203,13 +276,13 @@ public class PresenceServiceImpl implements IPresenceService {
 
         if (remainingSessions == null || remainingSessions == 0) {
             redisTemplate.opsForSet().remove(PRESENCE_ONLINE_SET, String.valueOf(userId));
-            redisTemplate.delete(PRESENCE_ACTIVITY_PREFIX + userId);
+            redisTemplate.opsForZSet().remove(PRESENCE_ACTIVITY_ZSET, String.valueOf(userId));
             return true;
         }
         return false;
     }
 
-    private boolean removeConnectionInMemory(Long userId, String sessionId) {
+    private boolean removeLocalConnection(Long userId, String sessionId) {
         Set<String> sessions = activeConnections.get(userId);
         if (sessions != null) {
             sessions.remove(sessionId);
@@ -226,8 +299,8 @@ public class PresenceServiceImpl implements IPresenceService {
 
     @Override
     public String getUserStatus(String username) {
-        return userRepository.findByUsername(username)
-                .map(user -> user.getStatus().name())
+        return stateStore.get(username)
+                .map(user -> user.status().name())
                 .orElse("OFFLINE");
     }
 
@@ -236,11 +309,13 @@ public class PresenceServiceImpl implements IPresenceService {
         List<ServerMember> members = serverMemberRepository.findByServerId(serverId);
         Set<Long> onlineSet = getOnlineUserIds();
 
-        return members.stream()
-                .map(ServerMember::getUser)
-                .filter(user -> onlineSet.contains(user.getId()))
-                .filter(user -> user.getStatus() != UserStatus.INVISIBLE)
-                .map(User::getId)
+        List<Long> onlineMemberIds = members.stream()
+                .map(member -> member.getUser().getId())
+                .filter(onlineSet::contains)
+                .toList();
+        Map<Long, UserStatus> statuses = stateStore.getStatuses(onlineMemberIds);
+        return onlineMemberIds.stream()
+                .filter(userId -> statuses.containsKey(userId) && statuses.get(userId) != UserStatus.INVISIBLE)
                 .collect(Collectors.toList());
     }
 
@@ -259,14 +334,14 @@ public class PresenceServiceImpl implements IPresenceService {
     @Override
     public Map<Long, String> getUsersPresence(List<Long> userIds) {
         Set<Long> onlineSet = getOnlineUserIds();
-        List<User> users = userRepository.findAllById(userIds);
+        Map<Long, UserStatus> statuses = stateStore.getStatuses(userIds);
 
-        return users.stream()
+        return statuses.entrySet().stream()
                 .collect(Collectors.toMap(
-                        User::getId,
-                        user -> {
-                            if (onlineSet.contains(user.getId()) && user.getStatus() != UserStatus.INVISIBLE) {
-                                return user.getStatus().name();
+                        Map.Entry::getKey,
+                        entry -> {
+                            if (onlineSet.contains(entry.getKey()) && entry.getValue() != UserStatus.INVISIBLE) {
+                                return entry.getValue().name();
                             }
                             return "OFFLINE";
                         }));
@@ -276,92 +351,171 @@ public class PresenceServiceImpl implements IPresenceService {
 
     @Override
     public void markUserAsIdle(String username) {
-        User user = userRepository.findByUsername(username)
+        PresenceSnapshot user = stateStore.get(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        if (user.getStatus() == UserStatus.ONLINE) {
-            String oldStatus = "ONLINE";
-            user.setStatus(UserStatus.IDLE);
-            userRepository.save(user);
-            broadcastStatusChange(user, oldStatus, "IDLE");
+        Transition transition = stateStore.transition(user.userId(),
+                status -> status == UserStatus.ONLINE ? UserStatus.IDLE : status);
+        if (transition.changed()) {
+            broadcast(transition);
             log.info("User {} marked as IDLE", username);
         }
     }
 
     @Override
     public void updateLastActivity(String username) {
-        userRepository.findByUsername(username).ifPresent(user -> {
-            updateLastActivityInternal(user.getId());
+        stateStore.get(username).ifPresent(user -> {
+            updateLastActivityInternal(user.userId());
 
             // If user was IDLE, set back to ONLINE
-            if (user.getStatus() == UserStatus.IDLE) {
-                user.setStatus(UserStatus.ONLINE);
-                userRepository.save(user);
-                broadcastStatusChange(user, "IDLE", "ONLINE");
+            Transition transition = stateStore.transition(user.userId(),
+                    status -> status == UserStatus.IDLE ? UserStatus.ONLINE : status);
+            if (transition.changed()) {
+                broadcast(transition);
             }
         });
     }
 
     private void updateLastActivityInternal(Long userId) {
+        long now = System.currentTimeMillis();
         if (isRedisAvailable()) {
-            String activityKey = PRESENCE_ACTIVITY_PREFIX + userId;
-            redisTemplate.opsForValue().set(activityKey, String.valueOf(System.currentTimeMillis()));
-            redisTemplate.expire(activityKey, PRESENCE_TTL_SECONDS, TimeUnit.SECONDS);
+            redisTemplate.opsForZSet().add(PRESENCE_ACTIVITY_ZSET, String.valueOf(userId), now);
         } else {
-            lastActivity.put(userId, LocalDateTime.now());
+            lastActivity.put(userId, now);
+            if (idleArmed.add(userId)) {
+                idleWheel.schedule(userId, now + idleAfterMs);
+            }
         }
     }
 
     // ==================== SCHEDULED TASKS ====================
 
-    @Scheduled(fixedRate = 60000)
+    /**
+     * Only users whose last activity crossed idle-after-ms are touched: with Redis
+     * they are claimed (read and removed in one script) from the activity sorted set,
+     * so each crossing is handled by exactly one node and re-enters the set with the
+     * user's next activity; otherwise the entries due on the idle wheel.
+     */
+    @Scheduled(fixedDelayString = "${app.presence.idle-check-interval-ms:1000}")
     public void autoIdleDetection() {
-        long idleThresholdMillis = System.currentTimeMillis() - (10 * 60 * 1000);
+        long now = System.currentTimeMillis();
+        long cutoff = now - idleAfterMs;
 
-        Set<Long> onlineUserIds = getOnlineUserIds();
-
-        for (Long userId : onlineUserIds) {
-            boolean isIdle;
+        if (isRedisAvailable()) {
+            List<?> claimed;
+            do {
+                claimed = redisTemplate.execute(CLAIM_IDLE_SCRIPT, List.of(PRESENCE_ACTIVITY_ZSET),
+                        Long.toString(cutoff), Integer.toString(IDLE_CLAIM_BATCH));
+                if (claimed != null) {
+                    claimed.forEach(userId -> markIdle(Long.parseLong(userId.toString())));
+                }
+            } while (claimed != null && claimed.size() == IDLE_CLAIM_BATCH);
+            return;
+        }
 
-            if (isRedisAvailable()) {
-                String activityKey = PRESENCE_ACTIVITY_PREFIX + userId;
-                String lastActivityStr = redisTemplate.opsForValue().get(activityKey);
-                isIdle = lastActivityStr != null && Long.parseLong(lastActivityStr) < idleThresholdMillis;
+        for (Long userId : idleWheel.advance(now)) {
+            Long lastActiveAt = lastActivity.get(userId);
+            if (lastActiveAt == null) {
+                // Disconnected; the next connection arms a new entry
+                idleArmed.remove(userId);
+            } else if (lastActiveAt + idleAfterMs > now) {
+                idleWheel.schedule(userId, lastActiveAt + idleAfterMs);
             } else {
-                LocalDateTime lastActiveTime = lastActivity.get(userId);
-                isIdle = lastActiveTime != null &&
-                        lastActiveTime.isBefore(LocalDateTime.now().minusMinutes(10));
+                idleArmed.remove(userId);
+                markIdle(userId);
             }
+        }
+    }
 
-            if (isIdle) {
-                userRepository.findById(userId).ifPresent(user -> {
-                    if (user.getStatus() == UserStatus.ONLINE) {
-                        user.setStatus(UserStatus.IDLE);
-                        userRepository.save(user);
-                        broadcastStatusChange(user, "ONLINE", "IDLE");
-                        log.info("Auto-marked user {} as IDLE", user.getUsername());
-                    }
-                });
+    private void markIdle(Long userId) {
+        try {
+            Transition transition = stateStore.transition(userId,
+                    status -> status == UserStatus.ONLINE ? UserStatus.IDLE : status);
+            if (transition.changed()) {
+                broadcast(transition);
+                log.info("Auto-marked user {} as IDLE", transition.user().username());
             }
+        } catch (Exception e) {
+            log.warn("Failed to mark user {} as IDLE: {}", userId, e.getMessage());
         }
     }
 
+    /**
+     * Clears custom statuses that are already overdue (missed by the queue: set on
+     * another node, or before a restart), then queues those expiring within the next
+     * lookahead-ms. Both are index range reads on customStatusExpiresAt.
+     */
     @Override
-    @Scheduled(fixedRate = 300000)
+    @Scheduled(fixedDelayString = "${app.presence.custom-status.lookahead-ms:300000}")
     public void clearExpiredCustomStatuses() {
         LocalDateTime now = LocalDateTime.now();
-        List<User> usersWithExpiredStatus = userRepository.findAll().stream()
-                .filter(user -> user.getCustomStatusExpiresAt() != null)
-                .filter(user -> user.getCustomStatusExpiresAt().isBefore(now))
-                .collect(Collectors.toList());
+        List<Long> overdue;
+        while (!(overdue = userRepository.findIdsWithExpiredCustomStatus(now,
+                PageRequest.of(0, customStatusBatchSize))).isEmpty()) {
+            expireCustomStatuses(overdue);
+        }
 
-        for (User user : usersWithExpiredStatus) {
-            user.setCustomStatus(null);
-            user.setCustomStatusEmoji(null);
-            user.setCustomStatusExpiresAt(null);
-            userRepository.save(user);
-            broadcastStatusChange(user, user.getStatus().name(), user.getStatus().name());
-            log.info("Cleared expired custom status for user {}", user.getUsername());
+        LocalDateTime upTo = now.plus(Duration.ofMillis(customStatusLookaheadMs));
+        for (Object[] row : userRepository.findCustomStatusExpiries(customStatusLoadedUpTo, upTo)) {
+            customStatusExpiries.add(new CustomStatusExpiry((Long) row[0], toEpochMilli((LocalDateTime) row[1])));
+        }
+        customStatusLoadedUpTo = upTo;
+    }
+
+    private void scheduleCustomStatusExpiry(Long userId, LocalDateTime expiresAt) {
+        // Later expiries are queued by a lookahead load; one queued twice is cleared once
+        LocalDateTime horizon = LocalDateTime.now().plus(Duration.ofMillis(customStatusLookaheadMs));
+        if (expiresAt != null && !expiresAt.isAfter(horizon)) {
+            customStatusExpiries.add(new CustomStatusExpiry(userId, toEpochMilli(expiresAt)));
+        }
+    }
+
+    private void runCustomStatusExpiries() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<CustomStatusExpiry> due = new ArrayList<>();
+                due.add(customStatusExpiries.take());
+                customStatusExpiries.drainTo(due, customStatusBatchSize - 1);
+                expireCustomStatuses(due.stream().map(CustomStatusExpiry::userId).distinct().toList());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Failed to expire custom statuses: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One UPDATE for the batch; users whose status was changed or re-set since they
+     * were queued are skipped
+     */
+    private void expireCustomStatuses(List<Long> userIds) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> expired = userRepository.findIdsWithExpiredCustomStatus(userIds, now);
+        if (expired.isEmpty()) {
+            return;
+        }
+        userRepository.clearExpiredCustomStatusByIds(expired, now);
+        for (Long userId : expired) {
+            stateStore.clearCustomStatus(userId).ifPresent(user -> broadcastStatusChange(user,
+                    user.status().name(), user.status().name()));
+        }
+        log.info("Cleared {} expired custom status(es)", expired.size());
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record CustomStatusExpiry(Long userId, long expiresAtMs) implements Delayed {
+        @Override
+        public long getDelay(@NonNull TimeUnit unit) {
+            return unit.convert(expiresAtMs - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(@NonNull Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
         }
     }
 
@@ -369,44 +523,80 @@ public class PresenceServiceImpl implements IPresenceService {
 
     @Override
     public void broadcastStatusChange(User user, String oldStatus, String newStatus) {
+        broadcastStatusChange(new PresenceSnapshot(user.getId(), user.getUsername(), user.getStatus(),
+                user.getCustomStatus(), user.getCustomStatusEmoji()), oldStatus, newStatus);
+    }
+
+    /**
+     * Held for debounce-window-ms after the user's last transition (at most
+     * debounce-max-delay-ms after the first), then sent once with the status from
+     * before the first and the latest snapshot. Flaps that end where they started
+     * are not sent at all.
+     */
+    private void broadcast(Transition transition) {
+        if (debounceWindowMs <= 0) {
+            broadcastStatusChange(transition.user(), transition.from().name(), transition.to().name());
+            return;
+        }
+        long now = System.currentTimeMillis();
+        pendingBroadcasts.merge(transition.user().userId(),
+                new PendingBroadcast(transition.from(), transition.user(), now, now),
+                (held, next) -> new PendingBroadcast(held.from(), next.latest(), held.firstAt(), now));
+    }
+
+    @Scheduled(fixedDelayString = "${app.presence.debounce-tick-ms:250}")
+    public void flushPendingBroadcasts() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, PendingBroadcast> entry : pendingBroadcasts.entrySet()) {
+            PendingBroadcast pending = entry.getValue();
+            if (pending.lastAt() + debounceWindowMs > now && pending.firstAt() + debounceMaxDelayMs > now) {
+                continue;
+            }
+            // A transition merged in meanwhile replaced the value: it is sent on a later tick
+            if (!pendingBroadcasts.remove(entry.getKey(), pending)) {
+                continue;
+            }
+            if (pending.latest().status() != pending.from()) {
+                broadcastStatusChange(pending.latest(), pending.from().name(), pending.latest().status().name());
+            }
+        }
+    }
+
+    private record PendingBroadcast(UserStatus from, PresenceSnapshot latest, long firstAt, long lastAt) {
+    }
+
+    private void broadcastStatusChange(PresenceSnapshot user, String oldStatus, String newStatus) {
         Map<String, Object> eventData = new HashMap<>();
-        eventData.put("userId", user.getId());
-        eventData.put("username", user.getUsername());
+        eventData.put("userId", user.userId());
+        eventData.put("username", user.username());
         eventData.put("oldStatus", oldStatus);
         eventData.put("newStatus", newStatus);
-        eventData.put("customStatus", user.getCustomStatus());
-        eventData.put("customStatusEmoji", user.getCustomStatusEmoji());
+        eventData.put("customStatus", user.customStatus());
+        eventData.put("customStatusEmoji", user.customStatusEmoji());
         eventData.put("timestamp", LocalDateTime.now());
 
         WebSocketEvent event = new WebSocketEvent("user.status.changed", eventData);
 
-        // Broadcast to user's friends
-        try {
-            var friends = friendService.getFriends(user.getUsername());
-            for (var friend : friends) {
-                messagingTemplate.convertAndSendToUser(
-                        friend.getUsername(),
-                        "/queue/presence",
-                        event);
+        // Friends and DM co-members, then the user's servers; no queries on this path
+        Audience audience = audienceIndex.get(user.userId());
+        for (String username : audience.usernames()) {
+            try {
+                messagingTemplate.convertAndSendToUser(username, "/queue/presence", event);
+            } catch (Exception e) {
+                log.error("Failed to broadcast presence to {}: {}", username, e.getMessage());
             }
-        } catch (Exception e) {
-            log.error("Failed to broadcast to friends: {}", e.getMessage());
         }
-
-        // Broadcast to servers where user is a member
-        try {
-            List<ServerMember> memberships = serverMemberRepository.findByUserId(user.getId());
-            for (ServerMember membership : memberships) {
-                Server server = membership.getServer();
-                messagingTemplate.convertAndSend(
-                        "/topic/server." + server.getId() + ".presence",
-                        event);
+        for (Long serverId : audience.serverIds()) {
+            try {
+                messagingTemplate.convertAndSend("/topic/server." + serverId + ".presence", event);
+            } catch (Exception e) {
+                log.error("Failed to broadcast presence to server {}: {}", serverId, e.getMessage());
             }
-        } catch (Exception e) {
-            log.error("Failed to broadcast to servers: {}", e.getMessage());
         }
 
-        // Also broadcast to global presence topic for legacy consumers.
-        messagingTemplate.convertAndSend("/topic/presence", event);
+        // Every user's status to every client: legacy consumers only
+        if (globalTopicEnabled) {
+            messagingTemplate.convertAndSend("/topic/presence", event);
+        }
     }
 }
@@ -44,6 +44,7 @@ import vn.cococord.repository.IServerRepository;
 import vn.cococord.repository.IUserRepository;
 import vn.cococord.repository.mysql.IServerBanRepository;
 import vn.cococord.repository.mysql.IServerMuteRepository;
+import vn.cococord.service.IChannelSendContextCache;
 import vn.cococord.service.IPermissionService;
 import vn.cococord.service.IServerService;
 
@@ -63,6 +64,7 @@ public class ServerServiceImpl implements IServerService {
     private final IServerBanRepository serverBanRepository;
     private final IServerMuteRepository serverMuteRepository;
     private final IPermissionService permissionService;
+    private final IChannelSendContextCache sendContextCache;
     private final SimpMessagingTemplate messagingTemplate;
     private final vn.cococord.service.IFileStorageService fileStorageService;
 
@@ -116,6 +118,7 @@ public class ServerServiceImpl implements IServerService {
                 .role(adminRole)
                 .build();
         serverMemberRepository.save(ownerMember);
+        sendContextCache.invalidateServerMember(server.getId(), owner.getId());
 
         // Create default channels
         Channel generalChannel = Channel.builder()
@@ -225,6 +228,7 @@ public class ServerServiceImpl implements IServerService {
         }
 
         serverRepository.delete(server);
+        sendContextCache.invalidateServer(serverId);
         log.info("Server deleted: {} by user: {}", server.getName(), username);
     }
 
@@ -251,6 +255,7 @@ public class ServerServiceImpl implements IServerService {
         }
 
         serverMemberRepository.delete(member);
+        sendContextCache.invalidateServerMember(serverId, user.getId());
         log.info("User {} left server: {}", username, server.getName());
     }
 
@@ -284,6 +289,7 @@ public class ServerServiceImpl implements IServerService {
                 .build();
 
         member = serverMemberRepository.save(member);
+        sendContextCache.invalidateServerMember(serverId, newUser.getId());
         log.info("User {} added to server: {}", newUser.getUsername(), server.getName());
 
         return convertToMemberResponse(member);
@@ -332,6 +338,7 @@ public class ServerServiceImpl implements IServerService {
                 .orElseThrow(() -> new ResourceNotFoundException("User is not a member of this server"));
 
         serverMemberRepository.delete(member);
+        sendContextCache.invalidateServerMember(serverId, targetUser.getId());
         log.info("User {} kicked from server: {} by {}", targetUser.getUsername(), server.getName(), username);
     }
 
@@ -386,6 +393,7 @@ public class ServerServiceImpl implements IServerService {
         // Remove from server if member
         serverMemberRepository.findByServerIdAndUserId(serverId, request.getUserId())
                 .ifPresent(serverMemberRepository::delete);
+        sendContextCache.invalidateServerMember(serverId, targetUser.getId());
 
         log.info("User {} banned from server: {} by {}", targetUser.getUsername(), server.getName(), username);
     }
@@ -462,6 +470,7 @@ public class ServerServiceImpl implements IServerService {
                 .build();
 
         serverMuteRepository.save(mute);
+        sendContextCache.invalidateServerMember(serverId, targetUser.getId());
         log.info("User {} muted in server: {} by {} for {} minutes",
                 targetUser.getUsername(), server.getName(), username, request.getDurationMinutes());
     }
@@ -699,6 +708,7 @@ public class ServerServiceImpl implements IServerService {
         }
 
         roleRepository.delete(role);
+        sendContextCache.invalidateServer(serverId);
         log.info("Role deleted: {} from server: {} by user: {}", role.getName(), role.getServer().getName(), username);
     }
 
@@ -999,6 +1009,7 @@ public class ServerServiceImpl implements IServerService {
         
         member.setRole(newRole);
         member = serverMemberRepository.save(member);
+        sendContextCache.invalidateServerMember(serverId, member.getUser().getId());
         
         log.info("Member {} role changed to {} in server {} by {}", 
                 member.getUser().getUsername(), newRole.getName(), server.getName(), username);
@@ -1059,6 +1070,7 @@ public class ServerServiceImpl implements IServerService {
         // Transfer server ownership
         server.setOwner(newOwner);
         serverRepository.save(server);
+        sendContextCache.invalidateServer(serverId);
         
         log.info("Server {} ownership transferred from {} to {}", server.getName(), username, newOwner.getUsername());
     }
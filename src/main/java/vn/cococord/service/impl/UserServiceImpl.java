@@ -27,6 +27,9 @@ import vn.cococord.repository.IUserNoteRepository;
 import vn.cococord.repository.IUserRepository;
 import vn.cococord.repository.IUserSessionRepository;
 import vn.cococord.service.IFileStorageService;
+import vn.cococord.service.IChannelSendContextCache;
+import vn.cococord.service.IDmGroupContextCache;
+import vn.cococord.service.IPresenceAudienceIndex;
 import vn.cococord.service.IUserService;
 
 @Service
@@ -39,6 +42,9 @@ public class UserServiceImpl implements IUserService {
         private final IUserNoteRepository userNoteRepository;
         private final IServerMemberRepository serverMemberRepository;
         private final IFileStorageService fileStorageService;
+        private final IChannelSendContextCache sendContextCache;
+        private final IDmGroupContextCache dmGroupContextCache;
+        private final IPresenceAudienceIndex presenceAudienceIndex;
 
         /**
          * 1.6 Get all active sessions for current user
@@ -249,6 +255,13 @@ public class UserServiceImpl implements IUserService {
                 }
 
                 userRepository.save(user);
+                // Cached send contexts and DM group contexts hold the author's name and avatar snapshot
+                sendContextCache.invalidateUser(user.getId());
+                dmGroupContextCache.invalidateUser(user.getId());
+                if (!user.getUsername().equals(username)) {
+                        // Peers' presence audiences address the user by username
+                        presenceAudienceIndex.invalidateUser(user.getId());
+                }
                 return convertToUserProfile(user);
         }
 
@@ -267,6 +280,8 @@ public class UserServiceImpl implements IUserService {
                 // Update user avatar URL
                 user.setAvatarUrl(uploadResponse.getFileUrl());
                 userRepository.save(user);
+                sendContextCache.invalidateUser(user.getId());
+                dmGroupContextCache.invalidateUser(user.getId());
 
                 return uploadResponse.getFileUrl();
         }
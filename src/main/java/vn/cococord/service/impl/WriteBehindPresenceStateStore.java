@@ -0,0 +1,293 @@
+package vn.cococord.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import vn.cococord.entity.mysql.User;
+import vn.cococord.entity.mysql.User.UserStatus;
+import vn.cococord.exception.ResourceNotFoundException;
+import vn.cococord.repository.IUserRepository;
+import vn.cococord.service.IPresenceStateStore;
+
+/**
+ * Presence state held in memory per user (app.presence.store.*), with the status
+ * also kept in a Redis hash when Redis is enabled so every node reads the same value.
+ *
+ * Transitions only mark the user as pending. Every flush-interval-ms the pending
+ * users are written with one UPDATE per resulting status; a user who flipped
+ * several times in between costs a single row. Entries untouched for retention-ms,
+ * without a pending write and without a session on this node are dropped and
+ * reloaded from MySQL when needed.
+ */
+@Component
+@Slf4j
+@SuppressWarnings("null")
+public class WriteBehindPresenceStateStore implements IPresenceStateStore {
+
+    private static final String STATUS_HASH = "presence:status";
+    private static final int FLUSH_CHUNK_SIZE = 500;
+
+    private final IUserRepository userRepository;
+
+    // Optional Redis - may be null if Redis is disabled
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${spring.data.redis.enabled:false}")
+    private boolean redisEnabled;
+
+    @Value("${app.presence.store.retention-ms:600000}")
+    private long retentionMs;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> userIdsByUsername = new ConcurrentHashMap<>();
+
+    // Users with a live session on this node; never evicted
+    private final Set<Long> connected = ConcurrentHashMap.newKeySet();
+
+    // userId -> latest status not yet written to MySQL
+    private final Map<Long, UserStatus> pending = new ConcurrentHashMap<>();
+
+    public WriteBehindPresenceStateStore(IUserRepository userRepository,
+            @Nullable StringRedisTemplate redisTemplate) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+    }
+
+    private boolean isRedisAvailable() {
+        return redisEnabled && redisTemplate != null;
+    }
+
+    @Override
+    public Optional<PresenceSnapshot> get(String username) {
+        Long userId = userIdsByUsername.get(username);
+        Entry entry = userId != null ? entries.get(userId) : null;
+        if (entry == null) {
+            entry = userRepository.findByUsername(username).map(this::cache).orElse(null);
+        }
+        return Optional.ofNullable(entry).map(this::snapshot);
+    }
+
+    @Override
+    public Optional<PresenceSnapshot> get(Long userId) {
+        return Optional.ofNullable(entry(userId)).map(this::snapshot);
+    }
+
+    @Override
+    public Map<Long, UserStatus> getStatuses(Collection<Long> userIds) {
+        Map<Long, UserStatus> statuses = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long userId : userIds) {
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                statuses.put(userId, entry.status);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            userRepository.findAllById(missing).forEach(user -> statuses.put(user.getId(), cache(user).status));
+        }
+
+        if (isRedisAvailable() && !statuses.isEmpty()) {
+            // Another node may have changed the status since this node cached the user
+            List<Object> ids = new ArrayList<>(statuses.keySet().stream().map(String::valueOf).toList());
+            try {
+                List<Object> shared = redisTemplate.opsForHash().multiGet(STATUS_HASH, ids);
+                for (int i = 0; i < ids.size(); i++) {
+                    UserStatus status = parse(shared.get(i));
+                    if (status != null) {
+                        statuses.put(Long.parseLong((String) ids.get(i)), status);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to read shared presence status: {}", e.getMessage());
+            }
+        }
+        return statuses;
+    }
+
+    @Override
+    public Transition transition(Long userId, UnaryOperator<UserStatus> change) {
+        Entry entry = entry(userId);
+        if (entry == null) {
+            throw new ResourceNotFoundException("User not found");
+        }
+        UserStatus from;
+        UserStatus to;
+        synchronized (entry) {
+            from = isRedisAvailable() ? sharedStatus(userId, entry.status) : entry.status;
+            to = change.apply(from);
+            entry.status = to;
+            entry.touchedAt = System.currentTimeMillis();
+            if (to != from) {
+                pending.put(userId, to);
+                publish(userId, to);
+            }
+        }
+        return new Transition(snapshot(entry), from, to);
+    }
+
+    @Override
+    public void put(User user) {
+        Entry entry = new Entry(user);
+        entries.put(user.getId(), entry);
+        userIdsByUsername.put(user.getUsername(), user.getId());
+        // The row was just saved with this status
+        pending.remove(user.getId());
+        publish(user.getId(), entry.status);
+    }
+
+    @Override
+    public void setConnected(Long userId, boolean isConnected) {
+        if (userId == null) {
+            return;
+        }
+        if (isConnected) {
+            connected.add(userId);
+        } else {
+            connected.remove(userId);
+        }
+    }
+
+    @Override
+    public Optional<PresenceSnapshot> clearCustomStatus(Long userId) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.customStatus = null;
+                entry.customStatusEmoji = null;
+            }
+        }
+        return get(userId);
+    }
+
+    @Override
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${app.presence.store.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<UserStatus, List<Long>> byStatus = new EnumMap<>(UserStatus.class);
+        for (Map.Entry<Long, UserStatus> change : pending.entrySet()) {
+            // Only take the value we write; a newer transition stays pending
+            if (pending.remove(change.getKey(), change.getValue())) {
+                byStatus.computeIfAbsent(change.getValue(), status -> new ArrayList<>()).add(change.getKey());
+            }
+        }
+
+        byStatus.forEach((status, userIds) -> {
+            for (int from = 0; from < userIds.size(); from += FLUSH_CHUNK_SIZE) {
+                List<Long> chunk = userIds.subList(from, Math.min(from + FLUSH_CHUNK_SIZE, userIds.size()));
+                try {
+                    userRepository.updateStatusByIds(status, chunk);
+                } catch (Exception e) {
+                    log.warn("Failed to write {} presence status(es) {}, retrying next flush: {}", chunk.size(),
+                            status, e.getMessage());
+                    chunk.forEach(userId -> pending.putIfAbsent(userId, status));
+                }
+            }
+        });
+
+        evictIdle();
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                if (entry.touchedAt < cutoff && !pending.containsKey(entry.userId)
+                        && !connected.contains(entry.userId)
+                        && entries.remove(entry.userId, entry)) {
+                    userIdsByUsername.remove(entry.username, entry.userId);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private Entry entry(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        Entry entry = entries.get(userId);
+        return entry != null ? entry : userRepository.findById(userId).map(this::cache).orElse(null);
+    }
+
+    // Keeps an existing entry: it may hold a status MySQL does not have yet
+    private Entry cache(User user) {
+        Entry entry = entries.computeIfAbsent(user.getId(), id -> new Entry(user));
+        userIdsByUsername.put(user.getUsername(), user.getId());
+        return entry;
+    }
+
+    private PresenceSnapshot snapshot(Entry entry) {
+        entry.touchedAt = System.currentTimeMillis();
+        return new PresenceSnapshot(entry.userId, entry.username, entry.status, entry.customStatus,
+                entry.customStatusEmoji);
+    }
+
+    private UserStatus sharedStatus(Long userId, UserStatus fallback) {
+        try {
+            UserStatus shared = parse(redisTemplate.opsForHash().get(STATUS_HASH, String.valueOf(userId)));
+            return shared != null ? shared : fallback;
+        } catch (Exception e) {
+            log.warn("Failed to read shared presence status of user {}: {}", userId, e.getMessage());
+            return fallback;
+        }
+    }
+
+    private void publish(Long userId, UserStatus status) {
+        if (!isRedisAvailable()) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHash().put(STATUS_HASH, String.valueOf(userId), status.name());
+        } catch (Exception e) {
+            log.warn("Failed to share presence status of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @Nullable
+    private static UserStatus parse(@Nullable Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return UserStatus.valueOf(value.toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        private final Long userId;
+        private final String username;
+        private volatile String customStatus;
+        private volatile String customStatusEmoji;
+        private volatile UserStatus status;
+        private volatile long touchedAt;
+
+        private Entry(User user) {
+            this.userId = user.getId();
+            this.username = user.getUsername();
+            this.customStatus = user.getCustomStatus();
+            this.customStatusEmoji = user.getCustomStatusEmoji();
+            this.status = user.getStatus() != null ? user.getStatus() : UserStatus.OFFLINE;
+            this.touchedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -115,6 +115,8 @@
 
   // Typing indicator state
   let typingUsers = new Map(); // username -> { timeout, displayName, avatarUrl }
+  let typingHiddenCount = 0; // typers the server counted but did not list
+  let typingNodes = new Map(); // node -> { usernames, count, expiry } from the last TypingEvent of each node
   let myTypingTimeout = null;
   let myStopTypingTimeout = null;
   let isCurrentlyTyping = false;
@@ -1793,7 +1795,9 @@
   function renderTypingIndicator() {
     let indicator = document.getElementById("typingIndicator");
 
-    if (typingUsers.size === 0) {
+    const users = Array.from(typingUsers.values());
+    const total = users.length + typingHiddenCount;
+    if (total === 0) {
       if (indicator) indicator.remove();
       return;
     }
@@ -1806,7 +1810,6 @@
       el.chatComposer.parentElement.insertBefore(indicator, el.chatComposer);
     }
 
-    const users = Array.from(typingUsers.values());
     const avatarsHtml = users
       .slice(0, 3)
       .map(
@@ -1822,18 +1825,20 @@
       .join("");
 
     let text = "";
-    if (users.length === 1) {
+    if (users.length === 0) {
+      text = `${total} người đang nhập...`;
+    } else if (total === 1) {
       text = `<strong>${escapeHtml(
         users[0].displayName
       )}</strong> đang nhập...`;
-    } else if (users.length === 2) {
+    } else if (total === 2 && users.length === 2) {
       text = `<strong>${escapeHtml(
         users[0].displayName
       )}</strong> và <strong>${escapeHtml(
         users[1].displayName
       )}</strong> đang nhập...`;
-    } else if (users.length > 2) {
-      text = `<strong>${escapeHtml(users[0].displayName)}</strong> và ${users.length - 1
+    } else {
+      text = `<strong>${escapeHtml(users[0].displayName)}</strong> và ${total - 1
         } người khác đang nhập...`;
     }
 
@@ -1846,21 +1851,45 @@
         `;
   }
 
-  function addTypingUser(username, displayName, avatarUrl) {
-    // Don't show own typing
-    if (currentUser && username === currentUser.username) return;
-
-    // Clear existing timeout
-    const existing = typingUsers.get(username);
-    if (existing?.timeout) clearTimeout(existing.timeout);
-
-    // Set new timeout (auto-hide after 5 seconds if no new event)
-    const timeout = setTimeout(() => {
-      typingUsers.delete(username);
-      renderTypingIndicator();
-    }, 5000);
+  // Each node sends the whole list of its typers (TypingEvent) whenever it changes and
+  // repeats it while someone types; the lists of all nodes are merged
+  function applyTypingEvent(event) {
+    const node = event.node || "";
+    const previous = typingNodes.get(node);
+    if (previous?.expiry) clearTimeout(previous.expiry);
+    if (!event.count) {
+      typingNodes.delete(node);
+    } else {
+      typingNodes.set(node, {
+        usernames: event.usernames || [],
+        count: event.count,
+        expiry: event.ttlMs
+          ? setTimeout(() => {
+            typingNodes.delete(node);
+            mergeTypingNodes();
+          }, event.ttlMs)
+          : null,
+      });
+    }
+    mergeTypingNodes();
+  }
 
-    typingUsers.set(username, { displayName, avatarUrl, timeout });
+  function mergeTypingNodes() {
+    typingUsers.clear();
+    let hidden = 0;
+    typingNodes.forEach(({ usernames, count }) => {
+      hidden += Math.max(0, count - usernames.length);
+      usernames
+        .filter((username) => !(currentUser && username === currentUser.username))
+        .forEach((username) => {
+          const member = members.find((m) => m.username === username);
+          typingUsers.set(username, {
+            displayName: member?.displayName || username,
+            avatarUrl: member?.avatarUrl || null,
+          });
+        });
+    });
+    typingHiddenCount = hidden;
     renderTypingIndicator();
   }
 
@@ -1876,6 +1905,11 @@
       if (u.timeout) clearTimeout(u.timeout);
     });
     typingUsers.clear();
+    typingNodes.forEach((n) => {
+      if (n.expiry) clearTimeout(n.expiry);
+    });
+    typingNodes.clear();
+    typingHiddenCount = 0;
     renderTypingIndicator();
   }
 
@@ -2195,26 +2229,7 @@
           // Wait a bit for connection to be fully established
           setTimeout(() => {
             try {
-              // Subscribe to presence updates
-              presenceSubscription = stompClient.subscribe(
-                "/topic/presence",
-                (message) => {
-                  try {
-                    const data = JSON.parse(message.body);
-                    const presence =
-                      data && data.type && data.payload ? data.payload : data;
-                    const username = presence?.username;
-                    const status = presence?.newStatus || presence?.status;
-                    if (username && status) {
-                      presenceMap.set(username, String(status).toUpperCase());
-                      renderMembersList();
-                    }
-                  } catch (e) {
-                    /* ignore */
-                  }
-                }
-              );
-
+              // Presence arrives per server, see subscribeToServerUpdates
               // Subscribe to user-specific error queue for permission denied and other errors
               stompClient.subscribe(
                 "/user/queue/errors",
@@ -2415,18 +2430,7 @@
       `/topic/channel/${channelId}/typing`,
       (message) => {
         try {
-          const payload = JSON.parse(message.body);
-          if (payload.isTyping) {
-            // Find member info
-            const member = members.find((m) => m.username === payload.username);
-            addTypingUser(
-              payload.username,
-              member?.displayName || payload.username,
-              member?.avatarUrl || null
-            );
-          } else {
-            removeTypingUser(payload.username);
-          }
+          applyTypingEvent(JSON.parse(message.body));
         } catch (e) {
           /* ignore */
         }
@@ -2518,6 +2522,34 @@
       }
     );
 
+    // Subscribe to presence of this server's members
+    if (presenceSubscription) {
+      try {
+        presenceSubscription.unsubscribe();
+      } catch (e) {
+        /* ignore */
+      }
+      presenceSubscription = null;
+    }
+    presenceSubscription = stompClient.subscribe(
+      `/topic/server.${serverId}.presence`,
+      (message) => {
+        try {
+          const data = JSON.parse(message.body);
+          const presence =
+            data && data.type && data.payload ? data.payload : data;
+          const username = presence?.username;
+          const status = presence?.newStatus || presence?.status;
+          if (username && status) {
+            presenceMap.set(username, String(status).toUpperCase());
+            renderMembersList();
+          }
+        } catch (e) {
+          /* ignore */
+        }
+      }
+    );
+
     // Subscribe to server status changes (lock/suspend)
     if (serverStatusSubscription) {
       try {
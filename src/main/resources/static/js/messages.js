@@ -18,6 +18,8 @@
         dmSearch: '',
         // Typing indicator state
         typingUsers: new Map(), // username -> { timeout, displayName, avatarUrl }
+        typingHiddenCount: 0, // typers the server counted but did not list
+        typingNodes: new Map(), // node -> { usernames, count, expiry } from the last TypingEvent of each node
         isCurrentlyTyping: false,
         typingTimeout: null,
         stopTypingTimeout: null
@@ -326,7 +328,9 @@
         let indicator = document.getElementById('typingIndicator');
         const container = els.messagesArea();
 
-        if (state.typingUsers.size === 0) {
+        const users = Array.from(state.typingUsers.values());
+        const total = users.length + state.typingHiddenCount;
+        if (total === 0) {
             if (indicator) indicator.remove();
             return;
         }
@@ -345,7 +349,6 @@
 
         if (!indicator) return;
 
-        const users = Array.from(state.typingUsers.values());
         const avatarsHtml = users.slice(0, 3).map(u => `
             <div class="typing-avatar">
                 ${u.avatarUrl ? `<img src="${escapeHtml(u.avatarUrl)}" alt="">` : escapeHtml((u.displayName || 'U').charAt(0).toUpperCase())}
@@ -353,12 +356,14 @@
         `).join('');
 
         let text = '';
-        if (users.length === 1) {
+        if (users.length === 0) {
+            text = `${total} người đang nhập...`;
+        } else if (total === 1) {
             text = `<strong>${escapeHtml(users[0].displayName)}</strong> đang nhập...`;
-        } else if (users.length === 2) {
+        } else if (total === 2 && users.length === 2) {
             text = `<strong>${escapeHtml(users[0].displayName)}</strong> và <strong>${escapeHtml(users[1].displayName)}</strong> đang nhập...`;
-        } else if (users.length > 2) {
-            text = `<strong>${escapeHtml(users[0].displayName)}</strong> và ${users.length - 1} người khác đang nhập...`;
+        } else {
+            text = `<strong>${escapeHtml(users[0].displayName)}</strong> và ${total - 1} người khác đang nhập...`;
         }
 
         indicator.innerHTML = `
@@ -373,28 +378,42 @@
         scrollToBottom();
     }
 
-    function addTypingUser(username, displayName, avatarUrl) {
-        // Don't show own typing
-        if (state.currentUser && username === state.currentUser.username) return;
-
-        // Clear existing timeout
-        const existing = state.typingUsers.get(username);
-        if (existing?.timeout) clearTimeout(existing.timeout);
-
-        // Set new timeout (auto-hide after 5 seconds if no new event)
-        const timeout = setTimeout(() => {
-            state.typingUsers.delete(username);
-            renderTypingIndicator();
-        }, 5000);
-
-        state.typingUsers.set(username, { displayName, avatarUrl, timeout });
-        renderTypingIndicator();
-    }
-
-    function removeTypingUser(username) {
-        const existing = state.typingUsers.get(username);
-        if (existing?.timeout) clearTimeout(existing.timeout);
-        state.typingUsers.delete(username);
+    // Each node sends the whole list of its typers (TypingEvent) whenever it changes and
+    // repeats it while someone types; the lists of all nodes are merged
+    function applyTypingEvent(event) {
+        const node = event.node || '';
+        const previous = state.typingNodes.get(node);
+        if (previous?.expiry) clearTimeout(previous.expiry);
+        if (!event.count) {
+            state.typingNodes.delete(node);
+        } else {
+            state.typingNodes.set(node, {
+                usernames: event.usernames || [],
+                count: event.count,
+                expiry: event.ttlMs
+                    ? setTimeout(() => { state.typingNodes.delete(node); mergeTypingNodes(); }, event.ttlMs)
+                    : null
+            });
+        }
+        mergeTypingNodes();
+    }
+
+    function mergeTypingNodes() {
+        state.typingUsers.clear();
+        let hidden = 0;
+        state.typingNodes.forEach(({ usernames, count }) => {
+            hidden += Math.max(0, count - usernames.length);
+            usernames
+                .filter(username => !(state.currentUser && username === state.currentUser.username))
+                .forEach(username => {
+                    const other = state.otherUser && state.otherUser.username === username ? state.otherUser : null;
+                    state.typingUsers.set(username, {
+                        displayName: other?.displayName || username,
+                        avatarUrl: other?.avatarUrl || null
+                    });
+                });
+        });
+        state.typingHiddenCount = hidden;
         renderTypingIndicator();
     }
 
@@ -406,7 +425,7 @@
         if (!state.isCurrentlyTyping) {
             state.isCurrentlyTyping = true;
             try {
-                state.stomp.send('/app/chat.dm.typing', {}, JSON.stringify({
+                state.stomp.send('/app/dm.typing', {}, JSON.stringify({
                     channelId: state.dmGroupId, // reusing channelId field for dmGroupId in DTO if needed, or backend handles it
                     dmGroupId: state.dmGroupId,
                     isTyping: true
@@ -435,7 +454,7 @@
         if (state.isCurrentlyTyping) {
             state.isCurrentlyTyping = false;
             try {
-                state.stomp.send('/app/chat.dm.typing', {}, JSON.stringify({
+                state.stomp.send('/app/dm.typing', {}, JSON.stringify({
                     dmGroupId: state.dmGroupId,
                     isTyping: false
                 }));
@@ -1153,7 +1172,8 @@
             () => {
                 state.stomp = stomp;
 
-                stomp.subscribe('/topic/presence', (msg) => {
+                // Friends and DM co-members receive presence on their own queue
+                stomp.subscribe('/user/queue/presence', (msg) => {
                     try {
                         const data = JSON.parse(msg.body);
                         const payload = (data && data.type && data.payload) ? data.payload : data;
@@ -1219,12 +1239,7 @@
                     // Typing events for this DM
                     stomp.subscribe(`/topic/dm/${state.dmGroupId}/typing`, (msg) => {
                         try {
-                            const data = JSON.parse(msg.body);
-                            if (data.isTyping) {
-                                addTypingUser(data.username, data.displayName, data.avatarUrl);
-                            } else {
-                                removeTypingUser(data.username);
-                            }
+                            applyTypingEvent(JSON.parse(msg.body));
                         } catch (_) { /* ignore */ }
                     });
                 }
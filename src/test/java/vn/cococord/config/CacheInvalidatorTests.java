@@ -0,0 +1,137 @@
+package vn.cococord.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class CacheInvalidatorTests {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final List<String> dropped = new ArrayList<>();
+    private final List<String> committed = new ArrayList<>();
+
+    private CacheInvalidationBus bus;
+    private CacheInvalidator<Change> invalidator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<StringRedisTemplate> redis = mock(ObjectProvider.class);
+        when(redis.getIfAvailable()).thenReturn(redisTemplate);
+        bus = new CacheInvalidationBus(new ObjectMapper(), redis, mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(bus, "redisEnabled", true);
+        invalidator = bus.register("test", Change.class,
+                change -> change.key() != null ? List.of(change.key()) : List.of(),
+                change -> dropped.add(String.valueOf(change.key())),
+                change -> committed.add(String.valueOf(change.key())));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void keyedChangeOnlyMovesTheStampOfItsKey() {
+        long touched = invalidator.stamp(1L);
+        long other = invalidator.stamp(2L);
+
+        invalidator.invalidate(new Change(1L));
+
+        assertThat(invalidator.isCurrent(1L, touched)).isFalse();
+        assertThat(invalidator.isCurrent(2L, other)).isTrue();
+    }
+
+    @Test
+    void changeWithoutKeysMovesEveryStamp() {
+        long first = invalidator.stamp(1L);
+        long second = invalidator.stamp(2L);
+
+        invalidator.invalidate(new Change(null));
+
+        assertThat(invalidator.isCurrent(1L, first)).isFalse();
+        assertThat(invalidator.isCurrent(2L, second)).isFalse();
+    }
+
+    @Test
+    void changeInATransactionIsAppliedAgainAndPublishedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        invalidator.invalidate(new Change(1L));
+
+        assertThat(dropped).containsExactly("1");
+        assertThat(committed).isEmpty();
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+
+        long stamp = invalidator.stamp(1L);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(invalidator.isCurrent(1L, stamp)).isFalse();
+        assertThat(dropped).containsExactly("1", "1");
+        assertThat(committed).containsExactly("1");
+        verify(redisTemplate).convertAndSend(eq(RedisConfig.CACHE_INVALIDATION_CHANNEL), anyString());
+    }
+
+    @Test
+    void changeFromAnotherNodeIsDroppedHereButNotPublishedAgain() {
+        invalidator.invalidate(new Change(5L));
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(RedisConfig.CACHE_INVALIDATION_CHANNEL), published.capture());
+
+        CacheInvalidationBus otherNode = new CacheInvalidationBus(new ObjectMapper(), mock(ObjectProvider.class),
+                mock(ObjectProvider.class));
+        List<String> otherDropped = new ArrayList<>();
+        CacheInvalidator<Change> other = otherNode.register("test", Change.class, change -> List.of(),
+                change -> otherDropped.add(String.valueOf(change.key())));
+        long stamp = other.stamp(5L);
+
+        otherNode.onMessage(new DefaultMessage(RedisConfig.CACHE_INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                published.getValue().getBytes(StandardCharsets.UTF_8)), null);
+        // Own messages come back from Redis too and are skipped
+        bus.onMessage(new DefaultMessage(RedisConfig.CACHE_INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                published.getValue().getBytes(StandardCharsets.UTF_8)), null);
+
+        assertThat(otherDropped).containsExactly("5");
+        assertThat(other.isCurrent(5L, stamp)).isFalse();
+        assertThat(dropped).containsExactly("5");
+    }
+
+    @Test
+    void subscribesOnlyWithRedis() {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<RedisMessageListenerContainer> containers = mock(ObjectProvider.class);
+        CacheInvalidationBus local = new CacheInvalidationBus(new ObjectMapper(), mock(ObjectProvider.class),
+                containers);
+
+        local.subscribe();
+
+        verify(containers, never()).getIfAvailable();
+    }
+
+    record Change(Long key) {
+    }
+}
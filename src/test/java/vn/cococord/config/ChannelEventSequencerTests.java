@@ -0,0 +1,216 @@
+package vn.cococord.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import vn.cococord.config.ChannelEventSequencer.Replay;
+import vn.cococord.config.ChannelEventSequencer.ReplayEvent;
+
+class ChannelEventSequencerTests {
+
+    private static final String DESTINATION = "/topic/channel/1";
+
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private ChannelEventSequencer sequencer;
+    // Above the node's start, so relayed numbers count as covered
+    private long base;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // No relay bean: numbers are allocated locally
+        sequencer = new ChannelEventSequencer(mock(ObjectProvider.class), mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(sequencer, "enabled", true);
+        ReflectionTestUtils.setField(sequencer, "eventsPerStream", 256);
+        ReflectionTestUtils.setField(sequencer, "maxAgeMs", 300_000L);
+        ReflectionTestUtils.setField(sequencer, "maxStreams", 1_000);
+        sequencer.start();
+        base = (System.currentTimeMillis() << 10) + 1_000_000;
+    }
+
+    @Test
+    void localEventsGetIncreasingSequences() {
+        long first = seqOf(publish(message(DESTINATION)));
+        long second = seqOf(publish(message(DESTINATION + "/reactions")));
+
+        assertThat(second).isGreaterThan(first);
+        assertThat(sequencer.replay(DESTINATION, first).events()).extracting(ReplayEvent::seq)
+                .containsExactly(second);
+    }
+
+    @Test
+    void typingAndOtherDestinationsAreNotSequenced() {
+        Message<?> typing = publish(message(DESTINATION + "/typing"));
+        Message<?> other = publish(message("/topic/server.1.presence"));
+
+        assertThat(SimpMessageHeaderAccessor.wrap(typing).getFirstNativeHeader(ChannelEventSequencer.SEQ_HEADER))
+                .isNull();
+        assertThat(SimpMessageHeaderAccessor.wrap(other).getFirstNativeHeader(ChannelEventSequencer.SEQ_HEADER))
+                .isNull();
+        assertThat(sequencer.replay(DESTINATION + "/typing", 0)).isNull();
+        assertThat(sequencer.replay("/topic/server.1.presence", 0)).isNull();
+    }
+
+    @Test
+    void outOfOrderEventsAreReplayedInSequenceOrder() {
+        publish(relayed(DESTINATION, base + 1));
+        publish(relayed(DESTINATION, base + 3));
+        publish(relayed(DESTINATION, base + 2));
+
+        Replay replay = sequencer.replay(DESTINATION, base);
+
+        assertThat(replay.gap()).isFalse();
+        assertThat(replay.lastSeq()).isEqualTo(base + 3);
+        assertThat(replay.events()).extracting(ReplayEvent::seq).containsExactly(base + 1, base + 2, base + 3);
+        assertThat(sequencer.replay(DESTINATION, base + 1).events()).extracting(ReplayEvent::seq)
+                .containsExactly(base + 2, base + 3);
+    }
+
+    @Test
+    void resumingFromBeforeNodeStartIsAGap() {
+        publish(relayed(DESTINATION, base + 1));
+
+        assertThat(sequencer.replay(DESTINATION, 0).gap()).isTrue();
+        assertThat(sequencer.replay(DESTINATION, base).gap()).isFalse();
+    }
+
+    @Test
+    void streamWithoutEventsReportsGapOnlyBeforeNodeStart() {
+        assertThat(sequencer.replay("/topic/dm/9", 0).gap()).isTrue();
+        assertThat(sequencer.replay("/topic/dm/9", base).gap()).isFalse();
+        assertThat(sequencer.replay("/topic/dm/9", base).events()).isEmpty();
+    }
+
+    @Test
+    void trimmedEventsAreReportedAsAGap() {
+        ReflectionTestUtils.setField(sequencer, "eventsPerStream", 2);
+        publish(relayed(DESTINATION, base + 1));
+        publish(relayed(DESTINATION, base + 2));
+        publish(relayed(DESTINATION, base + 3));
+
+        // base + 1 was trimmed: resuming before it cannot be answered completely
+        Replay fromBase = sequencer.replay(DESTINATION, base);
+        assertThat(fromBase.gap()).isTrue();
+        assertThat(fromBase.events()).extracting(ReplayEvent::seq).containsExactly(base + 2, base + 3);
+
+        assertThat(sequencer.replay(DESTINATION, base + 1).gap()).isFalse();
+    }
+
+    @Test
+    void streamIsNumberedAndDeliveredOneEventAtATime() throws Exception {
+        Message<?> first = sequencer.preSend(message(DESTINATION), channel);
+
+        // Second publisher on the same stream waits until the first event was delivered
+        CompletableFuture<Long> second = CompletableFuture.supplyAsync(() -> seqOf(publish(message(DESTINATION))));
+        Thread.sleep(100);
+        assertThat(second).isNotDone();
+
+        // Other streams are not held up
+        assertThat(seqOf(publish(message("/topic/channel/2")))).isPositive();
+
+        sequencer.afterSendCompletion(first, channel, true, null);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isGreaterThan(seqOf(first));
+    }
+
+    @Test
+    void threadsNestingIntoEachOthersStreamsDoNotDeadlock() throws Exception {
+        String other = "/topic/channel/2";
+        CountDownLatch bothHeld = new CountDownLatch(2);
+        CompletableFuture<Long> first = CompletableFuture.supplyAsync(() -> nested(DESTINATION, other, bothHeld));
+        CompletableFuture<Long> second = CompletableFuture.supplyAsync(() -> nested(other, DESTINATION, bothHeld));
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isPositive();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isPositive();
+        // Both locks were released: a later publisher is not blocked
+        assertThat(seqOf(publish(message(DESTINATION)))).isPositive();
+        assertThat(seqOf(publish(message(other)))).isPositive();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisNumberIsAllocatedWithoutWaitingForTheStream() throws Exception {
+        ObjectProvider<RedisTopicRelay> relay = mock(ObjectProvider.class);
+        when(relay.getIfAvailable()).thenReturn(mock(RedisTopicRelay.class));
+        ObjectProvider<StringRedisTemplate> redis = mock(ObjectProvider.class);
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redis.getIfAvailable()).thenReturn(redisTemplate);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(base + 1, base + 2);
+        sequencer = new ChannelEventSequencer(relay, redis);
+        ReflectionTestUtils.setField(sequencer, "enabled", true);
+        ReflectionTestUtils.setField(sequencer, "eventsPerStream", 256);
+        ReflectionTestUtils.setField(sequencer, "maxAgeMs", 300_000L);
+        ReflectionTestUtils.setField(sequencer, "maxStreams", 1_000);
+        sequencer.start();
+
+        Message<?> held = sequencer.preSend(message(DESTINATION), channel);
+        CompletableFuture<Long> waiting = CompletableFuture.supplyAsync(() -> seqOf(publish(message(DESTINATION))));
+
+        verify(redisTemplate, timeout(5_000).times(2)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+        assertThat(waiting).isNotDone();
+        sequencer.afterSendCompletion(held, channel, true, null);
+        assertThat(seqOf(held)).isEqualTo(base + 1);
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isEqualTo(base + 2);
+    }
+
+    // Holds outer's lock until the other thread holds its own, then publishes to inner from inside
+    private long nested(String outer, String inner, CountDownLatch bothHeld) {
+        Message<?> held = sequencer.preSend(message(outer), channel);
+        try {
+            bothHeld.countDown();
+            bothHeld.await(5, TimeUnit.SECONDS);
+            return seqOf(publish(message(inner)));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            sequencer.afterSendCompletion(held, channel, true, null);
+        }
+    }
+
+    private Message<?> publish(Message<?> message) {
+        Message<?> stamped = sequencer.preSend(message, channel);
+        sequencer.afterSendCompletion(stamped, channel, true, null);
+        return stamped;
+    }
+
+    private static long seqOf(Message<?> message) {
+        return Long.parseLong(SimpMessageHeaderAccessor.wrap(message)
+                .getFirstNativeHeader(ChannelEventSequencer.SEQ_HEADER));
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage("{}".getBytes(), accessor.getMessageHeaders());
+    }
+
+    // As re-published by the Redis relay: origin number in x-seq
+    private static Message<byte[]> relayed(String destination, long seq) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setNativeHeader(ChannelEventSequencer.SEQ_HEADER, Long.toString(seq));
+        accessor.setHeader(RedisTopicRelay.RELAYED_HEADER, true);
+        return MessageBuilder.createMessage("{}".getBytes(), accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,184 @@
+package vn.cococord.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import vn.cococord.dto.permission.ComputedPermissionsDTO;
+import vn.cococord.entity.mysql.Channel;
+import vn.cococord.entity.mysql.PermissionBit;
+import vn.cococord.entity.mysql.Server;
+import vn.cococord.entity.mysql.User;
+import vn.cococord.repository.IChannelRepository;
+import vn.cococord.repository.IDirectMessageMemberRepository;
+import vn.cococord.repository.IServerMemberRepository;
+import vn.cococord.repository.IUserRepository;
+import vn.cococord.service.IPermissionService;
+
+class ChannelSubscriptionGuardTests {
+
+    private static final long USER_ID = 7L;
+    private static final long SERVER_ID = 100L;
+    private static final long PUBLIC_CHANNEL = 1L;
+    private static final long PRIVATE_CHANNEL = 2L;
+
+    private final IChannelRepository channelRepository = mock(IChannelRepository.class);
+    private final IServerMemberRepository serverMemberRepository = mock(IServerMemberRepository.class);
+    private final IDirectMessageMemberRepository dmMemberRepository = mock(IDirectMessageMemberRepository.class);
+    private final IUserRepository userRepository = mock(IUserRepository.class);
+    private final IPermissionService permissionService = mock(IPermissionService.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final MessageChannel inbound = mock(MessageChannel.class);
+    private final MessageHandler broker = mock(SimpleBrokerMessageHandler.class);
+
+    private ChannelSubscriptionGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        guard = new ChannelSubscriptionGuard(channelRepository, serverMemberRepository, dmMemberRepository,
+                userRepository, permissionService, messagingTemplate,
+                new CacheInvalidationBus(new ObjectMapper(), mock(ObjectProvider.class), mock(ObjectProvider.class)));
+        ReflectionTestUtils.setField(guard, "enabled", true);
+        ReflectionTestUtils.setField(guard, "cacheTtlMs", 600_000L);
+
+        Server server = Server.builder().id(SERVER_ID).build();
+        when(channelRepository.findById(PUBLIC_CHANNEL))
+                .thenReturn(Optional.of(Channel.builder().id(PUBLIC_CHANNEL).server(server).isPrivate(false).build()));
+        when(channelRepository.findById(PRIVATE_CHANNEL))
+                .thenReturn(Optional.of(Channel.builder().id(PRIVATE_CHANNEL).server(server).isPrivate(true).build()));
+        when(serverMemberRepository.findServerIdsByUserId(USER_ID)).thenReturn(List.of(SERVER_ID));
+        when(messagingTemplate.getMessageChannel()).thenReturn(inbound);
+    }
+
+    @Test
+    void userTopicIsAllowedOnlyForTheSessionsOwnId() {
+        assertThat(subscribe("alice", USER_ID, "/topic/user.7.notifications")).isNotNull();
+        assertThat(subscribe("alice", USER_ID, "/topic/user.8.notifications")).isNull();
+    }
+
+    @Test
+    void principalNameIsNeverMappedBackToAnId() {
+        // "bob" renamed away and a new account took the name: the session still belongs to user 7
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.of(User.builder().id(8L).build()));
+
+        assertThat(subscribe("bob", USER_ID, "/topic/user.8.notifications")).isNull();
+        assertThat(subscribe("bob", USER_ID, "/topic/user.7.notifications")).isNotNull();
+        verify(userRepository, never()).findByUsername(any());
+    }
+
+    @Test
+    void sessionWithoutBoundUserIsDenied() {
+        assertThat(subscribe("alice", null, "/topic/user.7.notifications")).isNull();
+        assertThat(subscribe("alice", null, "/topic/channel/1")).isNull();
+    }
+
+    @Test
+    void bindUserStoresTheAuthenticatedUsersId() {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(User.builder().id(USER_ID).build()));
+        SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        connect.setUser(principal("alice"));
+        connect.setSessionAttributes(new HashMap<>());
+
+        guard.bindUser(connect);
+
+        assertThat(connect.getSessionAttributes()).containsEntry(ChannelSubscriptionGuard.USER_ID_ATTRIBUTE, USER_ID);
+    }
+
+    @Test
+    void channelsNeedMembershipAndPrivateChannelsViewChannel() {
+        when(permissionService.computeChannelPermissions(USER_ID, PRIVATE_CHANNEL))
+                .thenReturn(ComputedPermissionsDTO.builder().finalBitmask(0L).build());
+
+        assertThat(subscribe("alice", USER_ID, "/topic/channel/1")).isNotNull();
+        assertThat(subscribe("alice", USER_ID, "/topic/channel/2")).isNull();
+        assertThat(subscribe("mallory", 9L, "/topic/channel/1")).isNull();
+    }
+
+    @Test
+    void grantsAreCachedPerUser() {
+        when(permissionService.computeChannelPermissions(USER_ID, PRIVATE_CHANNEL))
+                .thenReturn(ComputedPermissionsDTO.builder().finalBitmask(PermissionBit.VIEW_CHANNEL.getValue()).build());
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(subscribe("alice", USER_ID, "/topic/channel/1")).isNotNull();
+            assertThat(subscribe("alice", USER_ID, "/topic/channel/2")).isNotNull();
+            assertThat(subscribe("alice", USER_ID, "/topic/server.100.presence")).isNotNull();
+        }
+
+        verify(serverMemberRepository, times(1)).findServerIdsByUserId(USER_ID);
+        verify(channelRepository, times(1)).findById(PRIVATE_CHANNEL);
+        verify(permissionService, times(1)).computeChannelPermissions(USER_ID, PRIVATE_CHANNEL);
+    }
+
+    @Test
+    void removedMemberLosesLiveSubscriptions() {
+        assertThat(subscribe("alice", USER_ID, "/topic/channel/1")).isNotNull();
+        when(serverMemberRepository.findServerIdsByUserId(USER_ID)).thenReturn(List.of());
+
+        guard.onServerMemberChanged(SERVER_ID, USER_ID);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(inbound, timeout(1_000)).send(sent.capture());
+        assertThat(SimpMessageHeaderAccessor.getMessageType(sent.getValue().getHeaders()))
+                .isEqualTo(SimpMessageType.UNSUBSCRIBE);
+        assertThat(SimpMessageHeaderAccessor.getSubscriptionId(sent.getValue().getHeaders())).isEqualTo("sub-1");
+    }
+
+    @Test
+    void canReadUsesTheSessionBoundId() {
+        SimpMessageHeaderAccessor session = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        session.setUser(principal("bob"));
+        session.setSessionAttributes(new HashMap<>(Map.of(ChannelSubscriptionGuard.USER_ID_ATTRIBUTE, USER_ID)));
+
+        assertThat(guard.canRead(session, "/topic/channel/1")).isTrue();
+        assertThat(guard.canRead(session, "/topic/user.8.notifications")).isFalse();
+    }
+
+    private Message<?> subscribe(String username, Long userId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId("s-" + username);
+        accessor.setSubscriptionId("sub-1");
+        accessor.setDestination(destination);
+        accessor.setUser(principal(username));
+        Map<String, Object> attributes = new HashMap<>();
+        if (userId != null) {
+            attributes.put(ChannelSubscriptionGuard.USER_ID_ATTRIBUTE, userId);
+        }
+        accessor.setSessionAttributes(attributes);
+        return guard.beforeHandle(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), inbound,
+                broker);
+    }
+
+    private static Principal principal(String username) {
+        return new UsernamePasswordAuthenticationToken(username, null, List.of());
+    }
+}
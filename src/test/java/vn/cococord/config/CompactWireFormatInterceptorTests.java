@@ -0,0 +1,113 @@
+package vn.cococord.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.WebSocketHandler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+class CompactWireFormatInterceptorTests {
+
+    private static final String EVENT = """
+            {"type":"message.created","payload":{"id":"m1","userId":7,"username":"alice",
+            "displayName":"Alice","avatarUrl":null,"content":"hi","type":"TEXT","pinned":false,
+            "attachments":[]}}""";
+
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private final ObjectMapper json = new ObjectMapper();
+    private CompactWireFormatInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new CompactWireFormatInterceptor();
+        ReflectionTestUtils.setField(interceptor, "enabled", true);
+    }
+
+    @Test
+    void sessionsThatDoNotAskAreNotTouched() {
+        byte[] payload = EVENT.getBytes(StandardCharsets.UTF_8);
+        Message<?> message = deliver("s1", payload);
+
+        assertThat(message.getPayload()).isSameAs(payload);
+    }
+
+    @Test
+    void authorIsSentOncePerSubscriptionAndDefaultsAreStripped() throws Exception {
+        connect("s1", "compact", Map.of());
+
+        Message<?> first = deliver("s1", EVENT.getBytes(StandardCharsets.UTF_8));
+        Message<?> second = deliver("s1", EVENT.getBytes(StandardCharsets.UTF_8));
+
+        JsonNode frame = json.readTree((byte[]) first.getPayload());
+        assertThat(frame.path("t").asText()).isEqualTo("message.created");
+        assertThat(frame.path("a").path("7").path("n").asText()).isEqualTo("alice");
+        assertThat(frame.path("p").has("username")).isFalse();
+        assertThat(frame.path("p").has("type")).isFalse();
+        assertThat(frame.path("p").has("pinned")).isFalse();
+        assertThat(frame.path("p").has("attachments")).isFalse();
+        assertThat(json.readTree((byte[]) second.getPayload()).has("a")).isFalse();
+        assertThat(formatOf(first)).isEqualTo("compact");
+    }
+
+    @Test
+    void rawWebSocketSessionGetsCbor() throws Exception {
+        connect("s1", "compact-cbor", Map.of());
+
+        Message<?> message = deliver("s1", EVENT.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(formatOf(message)).isEqualTo("compact-cbor");
+        assertThat(new CBORMapper().readTree((byte[]) message.getPayload()).path("p").path("content").asText())
+                .isEqualTo("hi");
+    }
+
+    @Test
+    void sockJsSessionAskingForCborGetsCompactJson() throws Exception {
+        Map<String, Object> attributes = new HashMap<>();
+        interceptor.sockJsSessionMarker().beforeHandshake(mock(ServerHttpRequest.class),
+                mock(ServerHttpResponse.class), mock(WebSocketHandler.class), attributes);
+        connect("s1", "compact-cbor", attributes);
+
+        Message<?> message = deliver("s1", EVENT.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(formatOf(message)).isEqualTo("compact");
+        assertThat(json.readTree((byte[]) message.getPayload()).path("p").path("content").asText()).isEqualTo("hi");
+    }
+
+    private void connect(String sessionId, String format, Map<String, Object> attributes) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(new HashMap<>(attributes));
+        accessor.setNativeHeader(CompactWireFormatInterceptor.WIRE_FORMAT_HEADER, format);
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), channel);
+    }
+
+    private Message<?> deliver(String sessionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-1");
+        accessor.setDestination("/topic/channel/1");
+        return interceptor.preSend(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()), channel);
+    }
+
+    private static String formatOf(Message<?> message) {
+        return SimpMessageHeaderAccessor.wrap(message)
+                .getFirstNativeHeader(CompactWireFormatInterceptor.WIRE_FORMAT_HEADER);
+    }
+}
@@ -0,0 +1,81 @@
+package vn.cococord.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import vn.cococord.entity.mongodb.Message;
+import vn.cococord.entity.mongodb.MessageReaction;
+
+class EmbeddedReactionMigrationTests {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations counts = mock(BulkOperations.class);
+    private final BulkOperations reactors = mock(BulkOperations.class);
+    private EmbeddedReactionMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        migration = new EmbeddedReactionMigration(mongoTemplate);
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, Message.class)).thenReturn(counts);
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, MessageReaction.class)).thenReturn(reactors);
+        when(reactors.insert(anyList())).thenReturn(reactors);
+    }
+
+    @Test
+    void countsAreRaisedNotOverwrittenAndReactorsStripped() {
+        when(mongoTemplate.findOne(any(Query.class), eq(Message.class))).thenReturn(Message.builder()
+                .id("m1")
+                .channelId(5L)
+                .reactions(List.of(
+                        Message.Reaction.builder().emoji("a").count(2).userIds(new LinkedHashSet<>(List.of(1L, 2L)))
+                                .build(),
+                        Message.Reaction.builder().emoji("b").count(4).build()))
+                .build());
+
+        migration.migrateMessage("m1");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MessageReaction>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(reactors).insert(inserted.capture());
+        assertThat(inserted.getValue()).extracting(MessageReaction::getUserId).containsExactly(1L, 2L);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(counts).updateOne(query.capture(), update.capture());
+        Document applied = update.getValue().getUpdateObject();
+        // Concurrent $inc from the live path survive; the counter without embedded ids is untouched
+        assertThat(applied).doesNotContainKey("$set");
+        assertThat(applied.get("$max", Document.class)).containsEntry("reactions.$[r0].count", 2);
+        assertThat(applied.get("$unset", Document.class)).containsOnlyKeys("reactions.$[r0].userIds");
+        assertThat(update.getValue().getArrayFilters()).hasSize(1);
+        // Guarded: a message migrated meanwhile by another writer is left alone
+        assertThat(query.getValue().getQueryObject().toJson()).contains("reactions.userIds.0");
+        verify(counts).execute();
+    }
+
+    @Test
+    void migratedMessageIsLeftAlone() {
+        migration.migrateMessage("m1");
+
+        verify(mongoTemplate, never()).bulkOps(any(BulkMode.class), any(Class.class));
+    }
+}
@@ -0,0 +1,183 @@
+package vn.cococord.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+class ExactMatchSubscriptionRegistryTests {
+
+    private ExactMatchSubscriptionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new ExactMatchSubscriptionRegistry();
+    }
+
+    @Test
+    void exactDestinationOnlyMatchesItself() {
+        subscribe(registry, "s1", "sub1", "/topic/channel/1");
+        subscribe(registry, "s2", "sub1", "/topic/channel/2");
+
+        MultiValueMap<String, String> found = find(registry, "/topic/channel/1");
+
+        assertThat(found).containsOnlyKeys("s1");
+        assertThat(found.get("s1")).containsExactly("sub1");
+        assertThat(find(registry, "/topic/channel/3")).isEmpty();
+    }
+
+    @Test
+    void patternSubscriptionsAreMergedWithExactOnes() {
+        subscribe(registry, "s1", "sub1", "/topic/channel/1");
+        subscribe(registry, "s2", "sub1", "/topic/channel/*");
+        subscribe(registry, "s3", "sub1", "/topic/voice/**");
+
+        MultiValueMap<String, String> found = find(registry, "/topic/channel/1");
+
+        assertThat(found).containsOnlyKeys("s1", "s2");
+        assertThat(find(registry, "/topic/channel/9")).containsOnlyKeys("s2");
+        assertThat(find(registry, "/topic/voice/1/state")).containsOnlyKeys("s3");
+    }
+
+    @Test
+    void sameSessionKeepsEverySubscriptionId() {
+        subscribe(registry, "s1", "sub1", "/topic/channel/1");
+        subscribe(registry, "s1", "sub2", "/topic/channel/1");
+
+        assertThat(find(registry, "/topic/channel/1").get("s1")).containsExactly("sub1", "sub2");
+    }
+
+    @Test
+    void removalLeavesPublishedSnapshotUntouched() {
+        subscribe(registry, "s1", "sub1", "/topic/channel/1");
+        subscribe(registry, "s2", "sub1", "/topic/channel/1");
+        MultiValueMap<String, String> before = find(registry, "/topic/channel/1");
+
+        unsubscribe(registry, "s1", "sub1");
+
+        assertThat(before).containsOnlyKeys("s1", "s2");
+        assertThat(find(registry, "/topic/channel/1")).containsOnlyKeys("s2");
+    }
+
+    @Test
+    void unchangedDestinationSharesSnapshot() {
+        subscribe(registry, "s1", "sub1", "/topic/channel/1");
+
+        assertThat(find(registry, "/topic/channel/1")).isSameAs(find(registry, "/topic/channel/1"));
+    }
+
+    @Test
+    void unsubscribeRemovesOnlyThatSubscription() {
+        subscribe(registry, "s1", "sub1", "/topic/channel/1");
+        subscribe(registry, "s1", "sub2", "/topic/channel/*");
+        subscribe(registry, "s2", "sub1", "/topic/channel/1");
+
+        unsubscribe(registry, "s1", "sub2");
+
+        assertThat(find(registry, "/topic/channel/1")).containsOnlyKeys("s1", "s2");
+        assertThat(find(registry, "/topic/channel/5")).isEmpty();
+    }
+
+    @Test
+    void unregisteringSessionDropsExactAndPatternSubscriptions() {
+        subscribe(registry, "s1", "sub1", "/topic/channel/1");
+        subscribe(registry, "s1", "sub2", "/topic/channel/*");
+        subscribe(registry, "s2", "sub1", "/topic/channel/1");
+
+        registry.unregisterAllSubscriptions("s1");
+
+        assertThat(find(registry, "/topic/channel/1")).containsOnlyKeys("s2");
+        assertThat(find(registry, "/topic/channel/5")).isEmpty();
+        // A second disconnect for the same session is a no-op
+        registry.unregisterAllSubscriptions("s1");
+        assertThat(find(registry, "/topic/channel/1")).containsOnlyKeys("s2");
+    }
+
+    @Test
+    void findsExactDestinationAmong100kSubscriptions() {
+        subscribeMany(registry, 100_000);
+
+        assertThat(find(registry, "/topic/channel/42")).hasSize(10);
+    }
+
+    /**
+     * Publish lookups at 100k subscriptions against Spring's default registry with its
+     * destination cache off (a publish to a destination that is not cached scans every
+     * subscription, so it gets fewer lookups). Run with -Dbenchmark=true; prints the
+     * average lookup time of each.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkLookupAt100kSubscriptions() {
+        DefaultSubscriptionRegistry defaultRegistry = new DefaultSubscriptionRegistry();
+        defaultRegistry.setCacheLimit(0);
+        subscribeMany(registry, 100_000);
+        subscribeMany(defaultRegistry, 100_000);
+
+        long exactNanos = timeLookups(registry, 100_000);
+        long defaultNanos = timeLookups(defaultRegistry, 50);
+
+        System.out.printf("100k subscriptions: exact-match %d ns/lookup, default %d ns/lookup%n",
+                exactNanos, defaultNanos);
+    }
+
+    // 10 sessions per destination, 10k destinations
+    private static void subscribeMany(SubscriptionRegistry target, int count) {
+        for (int i = 0; i < count; i++) {
+            subscribe(target, "s" + i, "sub" + i, "/topic/channel/" + (i % (count / 10)));
+        }
+    }
+
+    private static long timeLookups(SubscriptionRegistry target, int lookups) {
+        List<Message<byte[]>> messages = IntStream.range(0, lookups)
+                .mapToObj(i -> message("/topic/channel/" + (i % 10_000)))
+                .toList();
+        // Warm-up, also builds the snapshots
+        messages.stream().limit(10_000).forEach(target::findSubscriptions);
+        long start = System.nanoTime();
+        int found = 0;
+        for (Message<byte[]> message : messages) {
+            found += target.findSubscriptions(message).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(found).isEqualTo(lookups * 10);
+        return elapsed / lookups;
+    }
+
+    private static void subscribe(SubscriptionRegistry target, String sessionId, String subscriptionId,
+            String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        target.registerSubscription(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private static void unsubscribe(SubscriptionRegistry target, String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        target.unregisterSubscription(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private static MultiValueMap<String, String> find(SubscriptionRegistry target, String destination) {
+        return target.findSubscriptions(message(destination));
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,197 @@
+package vn.cococord.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+class SessionOutboundBufferTests {
+
+    private static final String SESSION = "s1";
+
+    private SessionOutboundBuffer buffer;
+    private WebSocketSession session;
+    // Stands in for the outbound channel: records what the buffer releases
+    private final List<Message<?>> sent = new ArrayList<>();
+    private final MessageChannel channel = (message, timeout) -> sent.add(message);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        buffer = new SessionOutboundBuffer();
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "maxBytes", 1_048_576L);
+        ReflectionTestUtils.setField(buffer, "sendTimeLimitMs", 10_000L);
+
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(SESSION);
+        buffer.decorate(mock(WebSocketHandler.class)).afterConnectionEstablished(session);
+    }
+
+    @Test
+    void firstMessageIsReleasedAndTheRestWaitInOrder() {
+        Message<?> first = chat("1");
+        Message<?> second = chat("2");
+        Message<?> third = chat("3");
+
+        assertThat(buffer.preSend(first, channel)).isNull();
+        buffer.preSend(second, channel);
+        buffer.preSend(third, channel);
+        assertThat(sent).containsExactly(first);
+
+        handled();
+        handled();
+        assertThat(sent).containsExactly(first, second, third);
+    }
+
+    @Test
+    void releasedMessagePassesThroughTheChannel() {
+        Message<?> first = chat("1");
+        buffer.preSend(first, channel);
+
+        // The buffer sends it again through the channel; this time it must be delivered
+        assertThat(buffer.preSend(sent.get(0), channel)).isSameAs(first);
+    }
+
+    @Test
+    void typingListsOfOneNodeAreCoalescedToTheLatest() {
+        buffer.preSend(chat("in flight"), channel);
+        buffer.preSend(typing("node-a", 1), channel);
+        buffer.preSend(typing("node-a", 2), channel);
+        Message<?> latest = typing("node-a", 3);
+        buffer.preSend(latest, channel);
+        Message<?> otherNode = typing("node-b", 1);
+        buffer.preSend(otherNode, channel);
+
+        handled();
+        handled();
+        handled();
+        assertThat(sent).hasSize(3).endsWith(latest, otherNode);
+        assertThat(buffer.snapshot()).containsEntry("coalesced", 2L);
+    }
+
+    @Test
+    void presenceIsCoalescedPerUser() {
+        buffer.preSend(chat("in flight"), channel);
+        buffer.preSend(message("/topic/server.1.presence", "{\"userId\":7,\"status\":\"IDLE\"}"), channel);
+        Message<?> latest = message("/topic/server.1.presence", "{\"userId\":7,\"status\":\"ONLINE\"}");
+        buffer.preSend(latest, channel);
+        Message<?> otherUser = message("/topic/server.1.presence", "{\"userId\":8,\"status\":\"ONLINE\"}");
+        buffer.preSend(otherUser, channel);
+
+        handled();
+        handled();
+        assertThat(sent).hasSize(3).endsWith(latest, otherUser);
+    }
+
+    @Test
+    void queuedChatGoesBeforeCoalescedEvents() {
+        buffer.preSend(chat("in flight"), channel);
+        Message<?> typing = typing("node-a", 1);
+        buffer.preSend(typing, channel);
+        Message<?> chat = chat("2");
+        buffer.preSend(chat, channel);
+
+        handled();
+        handled();
+        assertThat(sent).hasSize(3).endsWith(chat, typing);
+    }
+
+    @Test
+    void chatIsNeverCoalesced() {
+        buffer.preSend(chat("in flight"), channel);
+        buffer.preSend(chat("same"), channel);
+        buffer.preSend(chat("same"), channel);
+
+        handled();
+        handled();
+        assertThat(sent).hasSize(3);
+        assertThat(buffer.snapshot()).containsEntry("coalesced", 0L);
+    }
+
+    @Test
+    void sessionOverByteBudgetIsClosedAndDropsFurtherMessages() throws Exception {
+        ReflectionTestUtils.setField(buffer, "maxBytes", 2_000L);
+        buffer.preSend(chat("in flight"), channel);
+        buffer.preSend(chat("x".repeat(1_000)), channel);
+        buffer.preSend(chat("x".repeat(1_000)), channel);
+
+        verify(session, timeout(1_000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(buffer.snapshot()).containsEntry("overflowDisconnects", 1L).containsEntry("queuedBytes", 0L);
+
+        handled();
+        buffer.preSend(chat("after"), channel);
+        assertThat(sent).hasSize(1);
+    }
+
+    @Test
+    void coalescedEventsDoNotGrowTheBudget() {
+        ReflectionTestUtils.setField(buffer, "maxBytes", 2_000L);
+        buffer.preSend(chat("in flight"), channel);
+        for (int i = 0; i < 100; i++) {
+            buffer.preSend(typing("node-a", i), channel);
+        }
+
+        assertThat(buffer.snapshot()).containsEntry("overflowDisconnects", 0L).containsEntry("coalesced", 99L);
+    }
+
+    @Test
+    void sessionStuckOnOneSendIsClosed() throws Exception {
+        ReflectionTestUtils.setField(buffer, "sendTimeLimitMs", 0L);
+        buffer.preSend(chat("in flight"), channel);
+        Thread.sleep(5);
+        buffer.preSend(chat("2"), channel);
+
+        verify(session, timeout(1_000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(buffer.snapshot()).containsEntry("timeoutDisconnects", 1L);
+    }
+
+    @Test
+    void messagesOfUnknownSessionsPassThrough() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId("unknown");
+        accessor.setDestination("/topic/channel/1");
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+
+        assertThat(buffer.preSend(message, channel)).isSameAs(message);
+    }
+
+    private void handled() {
+        buffer.afterMessageHandled(sent.get(sent.size() - 1), channel, mock(MessageHandler.class), null);
+    }
+
+    private static Message<byte[]> chat(String content) {
+        return message("/topic/channel/1", "{\"content\":\"" + content + "\"}");
+    }
+
+    // Aggregated typing list as published by one node
+    private static Message<byte[]> typing(String node, int count) {
+        return message("/topic/channel/1/typing",
+                "{\"channelId\":1,\"usernames\":[\"alice\"],\"count\":" + count + ",\"node\":\"" + node + "\"}");
+    }
+
+    private static Message<byte[]> message(String destination, String json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(SESSION);
+        accessor.setSubscriptionId("sub-1");
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
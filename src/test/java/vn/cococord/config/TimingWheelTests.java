@@ -0,0 +1,85 @@
+package vn.cococord.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTests {
+
+    private static final long TICK_MS = 10;
+    // Ticks covered by each level: 64, 64^2, 64^3, 64^4
+    private static final long LEVEL_1 = 64;
+    private static final long LEVEL_2 = 64 * 64;
+    private static final long LEVEL_3 = 64 * 64 * 64;
+    private static final long RANGE = 64L * 64 * 64 * 64;
+
+    @Test
+    void firesOnDeadlineTickNotBefore() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 0);
+        wheel.schedule("a", 10 * TICK_MS);
+
+        assertThat(wheel.advance(9 * TICK_MS)).isEmpty();
+        assertThat(wheel.advance(10 * TICK_MS)).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 1_000 * TICK_MS);
+        wheel.schedule("late", 0);
+
+        assertThat(wheel.advance(1_001 * TICK_MS)).containsExactly("late");
+    }
+
+    @Test
+    void firesExactlyOnDeadlineAcrossLevelBoundaries() {
+        // Unaligned start so level boundaries fall in the middle of the slots
+        long startTick = 12_345;
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK_MS, startTick * TICK_MS);
+        List<Long> offsets = List.of(1L, 63L, LEVEL_1 - 1, LEVEL_1, LEVEL_1 + 1, LEVEL_2 - 1, LEVEL_2, LEVEL_2 + 1,
+                LEVEL_2 + LEVEL_1 + 7, LEVEL_3 - 1, LEVEL_3, LEVEL_3 + 1);
+        for (Long offset : offsets) {
+            wheel.schedule(offset, (startTick + offset) * TICK_MS);
+        }
+
+        Map<Long, Long> firedAt = new HashMap<>();
+        for (long tick = startTick + 1; tick <= startTick + LEVEL_3 + 1; tick++) {
+            for (Long offset : wheel.advance(tick * TICK_MS)) {
+                firedAt.put(offset, tick - startTick);
+            }
+        }
+
+        for (Long offset : offsets) {
+            assertThat(firedAt).containsEntry(offset, offset);
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void advancingManyTicksAtOnceFiresEverythingDue() {
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK_MS, 0);
+        wheel.schedule(1L, LEVEL_1 * TICK_MS);
+        wheel.schedule(2L, LEVEL_2 * TICK_MS);
+        wheel.schedule(3L, (LEVEL_2 + 1) * TICK_MS);
+
+        assertThat(wheel.advance(LEVEL_2 * TICK_MS)).containsExactly(1L, 2L);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void deadlineBeyondLastLevelIsClampedAndNotFiredEarly() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 0);
+        long deadlineTick = RANGE + 100;
+        wheel.schedule("far", deadlineTick * TICK_MS);
+
+        // The clamped slot comes due at the end of the range: re-inserted, not fired
+        assertThat(wheel.advance((RANGE + 1) * TICK_MS)).isEmpty();
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance((deadlineTick - 1) * TICK_MS)).isEmpty();
+        assertThat(wheel.advance(deadlineTick * TICK_MS)).containsExactly("far");
+    }
+}
@@ -0,0 +1,114 @@
+package vn.cococord.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import vn.cococord.config.CacheInvalidationBus;
+import vn.cococord.dto.permission.ChannelSendContext;
+import vn.cococord.entity.mysql.PermissionBit;
+
+@SuppressWarnings("unchecked")
+class InMemoryChannelSendContextCacheTests {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private InMemoryChannelSendContextCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new InMemoryChannelSendContextCache(mock(ObjectProvider.class),
+                new CacheInvalidationBus(new ObjectMapper(), mock(ObjectProvider.class), mock(ObjectProvider.class)));
+        ReflectionTestUtils.setField(cache, "ttlMs", 600_000L);
+    }
+
+    @Test
+    void contextIsLoadedOncePerSessionAndChannel() {
+        cache.getOrLoad("s1", 1L, loader(7L, 100L));
+        cache.getOrLoad("s1", 1L, loader(7L, 100L));
+        cache.getOrLoad("s2", 1L, loader(7L, 100L));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void disconnectDropsOnlyThatSession() {
+        cache.getOrLoad("s1", 1L, loader(7L, 100L));
+        cache.getOrLoad("s2", 1L, loader(8L, 100L));
+
+        cache.invalidateSession("s1");
+        cache.getOrLoad("s1", 1L, loader(7L, 100L));
+        cache.getOrLoad("s2", 1L, loader(8L, 100L));
+
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void disconnectDuringALoadOfAnotherSessionDoesNotDiscardIt() {
+        cache.getOrLoad("s2", 1L, () -> {
+            cache.invalidateSession("s1");
+            return loader(8L, 100L).get();
+        });
+        cache.getOrLoad("s2", 1L, loader(8L, 100L));
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void serverMemberChangeDropsThatUsersContextsInEverySession() {
+        cache.getOrLoad("s1", 1L, loader(7L, 100L));
+        cache.getOrLoad("s2", 2L, loader(7L, 100L));
+        cache.getOrLoad("s3", 1L, loader(8L, 100L));
+
+        cache.invalidateServerMember(100L, 7L);
+        cache.getOrLoad("s1", 1L, loader(7L, 100L));
+        cache.getOrLoad("s2", 2L, loader(7L, 100L));
+        cache.getOrLoad("s3", 1L, loader(8L, 100L));
+
+        assertThat(loads).hasValue(5);
+    }
+
+    @Test
+    void contextLoadedDuringAnInvalidationIsNotStored() {
+        cache.getOrLoad("s1", 1L, () -> {
+            cache.invalidateServer(100L);
+            return loader(7L, 100L).get();
+        });
+        cache.getOrLoad("s1", 1L, loader(7L, 100L));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void expiredContextIsLoadedAgain() {
+        ReflectionTestUtils.setField(cache, "ttlMs", -1L);
+        cache.getOrLoad("s1", 1L, loader(7L, 100L));
+        cache.getOrLoad("s1", 1L, loader(7L, 100L));
+
+        cache.evictExpired();
+
+        assertThat(loads).hasValue(2);
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(cache, "sessions")).isEmpty();
+    }
+
+    private Supplier<ChannelSendContext> loader(Long userId, Long serverId) {
+        return () -> {
+            loads.incrementAndGet();
+            return ChannelSendContext.builder()
+                    .userId(userId)
+                    .serverId(serverId)
+                    .accessible(true)
+                    .permissionBitmask(PermissionBit.SEND_MESSAGES.getValue())
+                    .build();
+        };
+    }
+}
@@ -0,0 +1,155 @@
+package vn.cococord.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import vn.cococord.dto.response.ChatMessageResponse;
+import vn.cococord.dto.websocket.WebSocketEvent;
+import vn.cococord.service.IChannelTailCache.TailPage;
+
+class InMemoryChannelTailCacheTests {
+
+    private static final long CHANNEL = 1L;
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private InMemoryChannelTailCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new InMemoryChannelTailCache(objectMapper);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "messagesPerChannel", 3);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1_000_000L);
+    }
+
+    @Test
+    void seededTailServesPagesItCanAnswerCompletely() {
+        seed(List.of(message("m2", 2), message("m1", 1)), true);
+
+        TailPage page = cache.getNewest(CHANNEL, 1).orElseThrow();
+        assertThat(page.content()).extracting(ChatMessageResponse::getId).containsExactly("m2");
+        assertThat(page.hasMore()).isTrue();
+        // Exhaustive: a larger page is still the whole channel
+        assertThat(cache.getNewest(CHANNEL, 10).orElseThrow().hasMore()).isFalse();
+    }
+
+    @Test
+    void partialTailDoesNotAnswerLargerPages() {
+        seed(List.of(message("m3", 3), message("m2", 2)), false);
+
+        assertThat(cache.getNewest(CHANNEL, 2)).isPresent();
+        assertThat(cache.getNewest(CHANNEL, 3)).isEmpty();
+    }
+
+    @Test
+    void seedLoadedWhileTheChannelChangedIsDropped() {
+        long stamp = cache.beginLoad(CHANNEL);
+        cache.evict(CHANNEL);
+
+        cache.seed(CHANNEL, List.of(message("m1", 1)), true, stamp);
+
+        assertThat(cache.getNewest(CHANNEL, 1)).isEmpty();
+    }
+
+    @Test
+    void appendKeepsNewestFirstWithinCapacity() {
+        seed(List.of(message("m3", 3), message("m2", 2), message("m1", 1)), true);
+
+        cache.append(message("m4", 4));
+        // Already seen by the seed query: not added twice
+        cache.append(message("m4", 4));
+
+        TailPage page = cache.getNewest(CHANNEL, 3).orElseThrow();
+        assertThat(page.content()).extracting(ChatMessageResponse::getId).containsExactly("m4", "m3", "m2");
+        assertThat(page.hasMore()).isTrue();
+    }
+
+    @Test
+    void updateAndRemoveChangeTheCachedMessages() {
+        seed(List.of(message("m2", 2), message("m1", 1)), true);
+        cache.setTotalCount(CHANNEL, 2, cache.beginLoad(CHANNEL));
+
+        cache.update(CHANNEL, "m1", current -> current.toBuilder().content("edited").build());
+        cache.remove(CHANNEL, "m2");
+
+        TailPage page = cache.getNewest(CHANNEL, 3).orElseThrow();
+        assertThat(page.content()).extracting(ChatMessageResponse::getContent).containsExactly("edited");
+        assertThat(page.totalCount()).isEqualTo(1);
+    }
+
+    @Test
+    void leastRecentlyUsedChannelIsEvictedOverBudget() {
+        ReflectionTestUtils.setField(cache, "maxBytes", 700L);
+        cache.seed(1L, List.of(message("a", 1)), true, cache.beginLoad(1L));
+        cache.seed(2L, List.of(message("b", 1)), true, cache.beginLoad(2L));
+        cache.getNewest(1L, 1);
+
+        cache.seed(3L, List.of(message("c", 1)), true, cache.beginLoad(3L));
+
+        assertThat(cache.getNewest(1L, 1)).isPresent();
+        assertThat(cache.getNewest(2L, 1)).isEmpty();
+        assertThat(cache.getNewest(3L, 1)).isPresent();
+    }
+
+    @Test
+    void relayedSendIsAppended() throws Exception {
+        seed(List.of(message("m1", 1)), true);
+
+        cache.onRelayedEvent("/topic/channel/1", event("message.created", message("m2", 2)));
+
+        assertThat(cache.getNewest(CHANNEL, 2).orElseThrow().content()).extracting(ChatMessageResponse::getId)
+                .containsExactly("m2", "m1");
+    }
+
+    @Test
+    void relayedSendOlderThanTheHeadEvictsInsteadOfMisordering() throws Exception {
+        seed(List.of(message("m3", 3)), true);
+
+        cache.onRelayedEvent("/topic/channel/1", event("message.created", message("m2", 2)));
+
+        assertThat(cache.getNewest(CHANNEL, 1)).isEmpty();
+    }
+
+    @Test
+    void otherRelayedChannelEventsEvictTheChannel() throws Exception {
+        seed(List.of(message("m1", 1)), true);
+        cache.onRelayedEvent("/topic/channel/1/typing", event("typing", message("m1", 1)));
+        assertThat(cache.getNewest(CHANNEL, 1)).isPresent();
+
+        cache.onRelayedEvent("/topic/channel/1", event("message.updated", message("m1", 1)));
+        assertThat(cache.getNewest(CHANNEL, 1)).isEmpty();
+
+        seed(List.of(message("m1", 1)), true);
+        cache.onRelayedEvent("/topic/channel/1/delete", "\"m1\"".getBytes());
+        assertThat(cache.getNewest(CHANNEL, 1)).isEmpty();
+    }
+
+    private void seed(List<ChatMessageResponse> newestFirst, boolean exhaustive) {
+        cache.seed(CHANNEL, newestFirst, exhaustive, cache.beginLoad(CHANNEL));
+    }
+
+    private byte[] event(String type, ChatMessageResponse payload) throws Exception {
+        return objectMapper.writeValueAsBytes(new WebSocketEvent(type, payload));
+    }
+
+    private static ChatMessageResponse message(String id, int minute) {
+        return ChatMessageResponse.builder()
+                .id(id)
+                .channelId(CHANNEL)
+                .content("content " + id)
+                .createdAt(NOW.plusMinutes(minute))
+                .build();
+    }
+}
@@ -0,0 +1,223 @@
+package vn.cococord.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import vn.cococord.config.EmbeddedReactionMigration;
+import vn.cococord.dto.response.ChatMessageResponse;
+import vn.cococord.dto.websocket.ReactionEvent;
+import vn.cococord.dto.websocket.WebSocketEvent;
+import vn.cococord.entity.mongodb.Message;
+import vn.cococord.entity.mongodb.MessageReaction;
+import vn.cococord.entity.mysql.User;
+import vn.cococord.exception.UnauthorizedException;
+import vn.cococord.repository.IChannelRepository;
+import vn.cococord.repository.IMessageEditRepository;
+import vn.cococord.repository.IMessageReactionRepository;
+import vn.cococord.repository.IMessageRepository;
+import vn.cococord.repository.IUserRepository;
+import vn.cococord.repository.mysql.IServerMuteRepository;
+import vn.cococord.service.IChannelSendContextCache;
+import vn.cococord.service.IChannelService;
+import vn.cococord.service.IChannelTailCache;
+import vn.cococord.service.IMentionFanoutService;
+import vn.cococord.service.IMessageWriteBatcher;
+import vn.cococord.service.IPermissionService;
+
+class MessageReactionTests {
+
+    private static final String MESSAGE_ID = "m1";
+    private static final String EMOJI = "👍";
+    private static final long USER_ID = 7L;
+
+    private final IMessageRepository messageRepository = mock(IMessageRepository.class);
+    private final IUserRepository userRepository = mock(IUserRepository.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final IMessageReactionRepository reactionRepository = mock(IMessageReactionRepository.class);
+    private final EmbeddedReactionMigration reactionMigration = mock(EmbeddedReactionMigration.class);
+
+    private MessageServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new MessageServiceImpl(messageRepository, userRepository, mock(IChannelRepository.class),
+                mock(IChannelService.class), mock(IPermissionService.class), messagingTemplate,
+                mock(IMessageWriteBatcher.class), mock(IChannelSendContextCache.class),
+                mock(IServerMuteRepository.class), mock(IChannelTailCache.class), mongoTemplate, reactionRepository,
+                mock(IMessageEditRepository.class), mock(IMentionFanoutService.class), reactionMigration);
+
+        when(userRepository.findByUsername("alice"))
+                .thenReturn(Optional.of(User.builder().id(USER_ID).username("alice").build()));
+        when(mongoTemplate.findOne(any(Query.class), eq(Message.class)))
+                .thenReturn(Message.builder().id(MESSAGE_ID).channelId(5L).build());
+        when(reactionMigration.isComplete()).thenReturn(true);
+    }
+
+    @Test
+    void reactionIncrementsTheExistingCounter() {
+        when(findAndModify()).thenReturn(counts(3));
+
+        service.addReaction(MESSAGE_ID, EMOJI, "alice");
+
+        verify(reactionRepository).insert(any(MessageReaction.class));
+        assertThat(updates()).containsExactly(new Document("$inc", new Document("reactions.$.count", 1)));
+        assertThat(broadcast().getCount()).isEqualTo(3);
+        assertThat(broadcast().getAction()).isEqualTo("ADD");
+    }
+
+    @Test
+    void firstReactionWithAnEmojiPushesItsCounter() {
+        when(findAndModify()).thenReturn(null, counts(1));
+
+        service.addReaction(MESSAGE_ID, EMOJI, "alice");
+
+        assertThat(updates()).hasSize(2);
+        assertThat(updates().get(1).get("$push", Document.class).get("reactions", Document.class))
+                .containsEntry("emoji", EMOJI).containsEntry("count", 1);
+        assertThat(broadcast().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void repeatedReactionIsNotCountedAgain() {
+        when(reactionRepository.insert(any(MessageReaction.class))).thenThrow(new DuplicateKeyException("dup"));
+
+        service.addReaction(MESSAGE_ID, EMOJI, "alice");
+
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Message.class));
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void reactionOverTheEmojiLimitIsRolledBack() {
+        when(findAndModify()).thenReturn(null);
+
+        assertThatThrownBy(() -> service.addReaction(MESSAGE_ID, EMOJI, "alice"))
+                .isInstanceOf(UnauthorizedException.class);
+        verify(reactionRepository).deleteByMessageIdAndEmojiAndUserId(MESSAGE_ID, EMOJI, USER_ID);
+    }
+
+    @Test
+    void removingTheLastReactionDropsTheCounter() {
+        when(reactionRepository.deleteByMessageIdAndEmojiAndUserId(MESSAGE_ID, EMOJI, USER_ID)).thenReturn(1L);
+        when(findAndModify()).thenReturn(counts(0));
+
+        service.removeReaction(MESSAGE_ID, EMOJI, "alice");
+
+        assertThat(updates()).containsExactly(new Document("$inc", new Document("reactions.$.count", -1)));
+        ArgumentCaptor<UpdateDefinition> pull = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), pull.capture(), eq(Message.class));
+        // Only pulled while still at zero, so a concurrent reactor keeps the counter
+        assertThat(pull.getValue().getUpdateObject().toJson()).contains("\"$lte\": 0");
+        assertThat(broadcast().getAction()).isEqualTo("REMOVE");
+    }
+
+    @Test
+    void removingAReactionThatDoesNotExistChangesNothing() {
+        when(mongoTemplate.exists(any(Query.class), eq(Message.class))).thenReturn(true);
+
+        service.removeReaction(MESSAGE_ID, EMOJI, "alice");
+
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Message.class));
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void unmigratedMessageIsMigratedBeforeTheStoreIsAsked() {
+        when(reactionMigration.isComplete()).thenReturn(false);
+        when(reactionRepository.deleteByMessageIdAndEmojiAndUserId(MESSAGE_ID, EMOJI, USER_ID)).thenReturn(1L);
+        when(findAndModify()).thenReturn(counts(2));
+
+        service.addReaction(MESSAGE_ID, EMOJI, "alice");
+        service.removeReaction(MESSAGE_ID, EMOJI, "alice");
+
+        InOrder order = inOrder(reactionMigration, reactionRepository);
+        order.verify(reactionMigration).migrateMessage(MESSAGE_ID);
+        order.verify(reactionRepository).insert(any(MessageReaction.class));
+        order.verify(reactionMigration).migrateMessage(MESSAGE_ID);
+        order.verify(reactionRepository).deleteByMessageIdAndEmojiAndUserId(MESSAGE_ID, EMOJI, USER_ID);
+    }
+
+    @Test
+    void embeddedReactorsCountAsTheViewersUntilMigrated() {
+        when(reactionMigration.isComplete()).thenReturn(false);
+        when(messageRepository.findById(MESSAGE_ID)).thenReturn(Optional.of(Message.builder().id(MESSAGE_ID)
+                .reactions(new ArrayList<>(List.of(Message.Reaction.builder().emoji(EMOJI).count(2).build())))
+                .build()));
+        when(mongoTemplate.find(any(Query.class), eq(Message.class))).thenReturn(List.of(Message.builder()
+                .id(MESSAGE_ID)
+                .reactions(List.of(Message.Reaction.builder().emoji(EMOJI).userIds(Set.of(USER_ID, 8L)).build()))
+                .build()));
+
+        ChatMessageResponse response = service.getMessageById(MESSAGE_ID, "alice");
+
+        assertThat(response.getReactions()).singleElement().satisfies(reaction -> {
+            assertThat(reaction.isMe()).isTrue();
+            assertThat(reaction.getCount()).isEqualTo(2);
+        });
+    }
+
+    @Test
+    void embeddedReactorsAreNotReadOnceMigrated() {
+        when(messageRepository.findById(MESSAGE_ID)).thenReturn(Optional.of(Message.builder().id(MESSAGE_ID)
+                .reactions(new ArrayList<>(List.of(Message.Reaction.builder().emoji(EMOJI).count(2).build())))
+                .build()));
+
+        ChatMessageResponse response = service.getMessageById(MESSAGE_ID, "alice");
+
+        assertThat(response.getReactions()).singleElement().satisfies(reaction -> assertThat(reaction.isMe()).isFalse());
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Message.class));
+    }
+
+    private Message findAndModify() {
+        return mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Message.class));
+    }
+
+    private List<Document> updates() {
+        ArgumentCaptor<UpdateDefinition> captor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, atLeastOnce()).findAndModify(any(Query.class), captor.capture(),
+                any(FindAndModifyOptions.class), eq(Message.class));
+        return captor.getAllValues().stream().map(UpdateDefinition::getUpdateObject).toList();
+    }
+
+    private ReactionEvent broadcast() {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/channel/5"), captor.capture());
+        return (ReactionEvent) ((WebSocketEvent) captor.getValue()).getPayload();
+    }
+
+    private static Message counts(int count) {
+        return Message.builder().id(MESSAGE_ID).channelId(5L)
+                .reactions(List.of(Message.Reaction.builder().emoji(EMOJI).count(count).build()))
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+package vn.cococord.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import vn.cococord.entity.mongodb.Message;
+
+class MongoMessageWriteBatcherTests {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final List<String> persisted = Collections.synchronizedList(new ArrayList<>());
+    private MongoMessageWriteBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        batcher = new MongoMessageWriteBatcher(mongoTemplate);
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "windowMillis", 20L);
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", 64);
+        ReflectionTestUtils.setField(batcher, "flushThreads", 2);
+        batcher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+    }
+
+    @Test
+    void channelMessagesAreInsertedTogetherAndSettledInEnqueueOrder() throws Exception {
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(batcher.enqueue(message(1L, "m" + i), saved -> persisted.add(saved.getContent())));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        List<Message> inserted = insertedBatches().get(0);
+        assertThat(inserted).extracting(Message::getContent).containsExactly("m0", "m1", "m2", "m3", "m4");
+        assertThat(persisted).containsExactly("m0", "m1", "m2", "m3", "m4");
+        assertThat(futures).allSatisfy(future -> assertThat(future.get().getId()).isNotNull());
+    }
+
+    @Test
+    void fullBufferIsFlushedWithoutWaitingForTheWindow() throws Exception {
+        ReflectionTestUtils.setField(batcher, "windowMillis", 60_000L);
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", 3);
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(batcher.enqueue(message(1L, "m" + i), saved -> { }));
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void batchesOfOneChannelAreNeverReordered() throws Exception {
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", 4);
+        // Slow inserts, so later batches queue up while earlier ones are written
+        when(mongoTemplate.insert(anyList(), eq(Message.class))).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return invocation.getArgument(0);
+        });
+
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(batcher.enqueue(message(1L, "m" + i), saved -> persisted.add(saved.getContent())));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add("m" + i);
+        }
+        assertThat(persisted).containsExactlyElementsOf(expected);
+        assertThat(insertedBatches().stream().flatMap(List::stream).map(Message::getContent))
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void failedBatchSettlesEachMessageFromItsOwnInsert() throws Exception {
+        when(mongoTemplate.insert(anyList(), eq(Message.class)))
+                .thenThrow(new DuplicateKeyException("E11000 on the third document"));
+        // m0 was stored by the batch before it failed, m1 goes in now, m2 fails again
+        when(mongoTemplate.insert(argThat((Message m) -> m != null && "m0".equals(m.getContent()))))
+                .thenThrow(new DuplicateKeyException("E11000 _id"));
+        when(mongoTemplate.exists(any(Query.class), eq(Message.class))).thenReturn(true, false);
+        when(mongoTemplate.insert(argThat((Message m) -> m != null && "m1".equals(m.getContent()))))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new DuplicateKeyException("E11000 unique"))
+                .when(mongoTemplate).insert(argThat((Message m) -> m != null && "m2".equals(m.getContent())));
+
+        CompletableFuture<Message> stored = batcher.enqueue(message(1L, "m0"), saved -> persisted.add("m0"));
+        CompletableFuture<Message> retried = batcher.enqueue(message(1L, "m1"), saved -> persisted.add("m1"));
+        CompletableFuture<Message> failed = batcher.enqueue(message(1L, "m2"), saved -> persisted.add("m2"));
+
+        assertThat(stored.get(5, TimeUnit.SECONDS).getContent()).isEqualTo("m0");
+        assertThat(retried.get(5, TimeUnit.SECONDS).getContent()).isEqualTo("m1");
+        assertThat(failed).failsWithin(5, TimeUnit.SECONDS);
+        assertThat(persisted).containsExactly("m0", "m1");
+        verify(mongoTemplate, times(2)).exists(any(Query.class), eq(Message.class));
+    }
+
+    @Test
+    void unreachableDatabaseFailsEveryMessageOfTheBatch() {
+        when(mongoTemplate.insert(anyList(), eq(Message.class)))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+        when(mongoTemplate.insert(any(Message.class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+        CompletableFuture<Message> first = batcher.enqueue(message(1L, "m0"), saved -> persisted.add("m0"));
+        CompletableFuture<Message> second = batcher.enqueue(message(1L, "m1"), saved -> persisted.add("m1"));
+
+        assertThat(first).failsWithin(5, TimeUnit.SECONDS);
+        assertThat(second).failsWithin(5, TimeUnit.SECONDS);
+        assertThat(persisted).isEmpty();
+    }
+
+    @Test
+    void failingCallbackStillCompletesTheSend() throws Exception {
+        CompletableFuture<Message> future = batcher.enqueue(message(1L, "m0"), saved -> {
+            throw new IllegalStateException("broadcast failed");
+        });
+
+        assertThat(future.get(5, TimeUnit.SECONDS).getContent()).isEqualTo("m0");
+    }
+
+    @Test
+    void disabledBatchingInsertsOnTheCallingThread() {
+        ReflectionTestUtils.setField(batcher, "enabled", false);
+
+        CompletableFuture<Message> future = batcher.enqueue(message(1L, "m0"), saved -> persisted.add("m0"));
+
+        assertThat(future).isCompleted();
+        assertThat(persisted).containsExactly("m0");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Message>> insertedBatches() {
+        ArgumentCaptor<List<Message>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mongoTemplate, atLeastOnce()).insert(captor.capture(), eq(Message.class));
+        return captor.getAllValues();
+    }
+
+    private static Message message(Long channelId, String content) {
+        return Message.builder().channelId(channelId).content(content).build();
+    }
+}
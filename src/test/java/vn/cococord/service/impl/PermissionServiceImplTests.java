@@ -0,0 +1,166 @@
+package vn.cococord.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import vn.cococord.entity.mysql.Channel;
+import vn.cococord.entity.mysql.ChannelPermission;
+import vn.cococord.entity.mysql.ChannelPermission.TargetType;
+import vn.cococord.entity.mysql.PermissionBit;
+import vn.cococord.entity.mysql.Role;
+import vn.cococord.entity.mysql.Server;
+import vn.cococord.entity.mysql.ServerMember;
+import vn.cococord.entity.mysql.User;
+import vn.cococord.repository.IChannelPermissionRepository;
+import vn.cococord.repository.IChannelRepository;
+import vn.cococord.repository.IPermissionRepository;
+import vn.cococord.repository.IRolePermissionRepository;
+import vn.cococord.repository.IRoleRepository;
+import vn.cococord.repository.IServerMemberRepository;
+import vn.cococord.repository.IServerRepository;
+import vn.cococord.repository.IUserRepository;
+import vn.cococord.service.IChannelSendContextCache;
+
+class PermissionServiceImplTests {
+
+    private static final long SERVER = 100L;
+    private static final long CHANNEL = 1L;
+    private static final long EVERYONE = 10L;
+    private static final long MODERATOR = 20L;
+    private static final long ADMIN = 30L;
+
+    private static final long OWNER = 1L;
+    private static final long PLAIN_MEMBER = 2L;
+    private static final long MODERATOR_MEMBER = 3L;
+    private static final long ADMIN_MEMBER = 4L;
+    private static final long ALLOWED_MEMBER = 5L;
+    private static final long STRANGER = 6L;
+
+    // userId -> roleId, null for members without a role
+    private static final Map<Long, Long> MEMBER_ROLES = new HashMap<>();
+    static {
+        MEMBER_ROLES.put(PLAIN_MEMBER, null);
+        MEMBER_ROLES.put(MODERATOR_MEMBER, MODERATOR);
+        MEMBER_ROLES.put(ADMIN_MEMBER, ADMIN);
+        MEMBER_ROLES.put(ALLOWED_MEMBER, null);
+    }
+
+    private static final Map<Long, Set<String>> ROLE_PERMISSIONS = Map.of(
+            MODERATOR, Set.of("SEND_MESSAGES"),
+            ADMIN, Set.of("ADMINISTRATOR"));
+
+    private final IRolePermissionRepository rolePermissionRepository = mock(IRolePermissionRepository.class);
+    private final IServerMemberRepository serverMemberRepository = mock(IServerMemberRepository.class);
+    private final IServerRepository serverRepository = mock(IServerRepository.class);
+    private final IChannelRepository channelRepository = mock(IChannelRepository.class);
+    private final IChannelPermissionRepository channelPermissionRepository = mock(IChannelPermissionRepository.class);
+    private final IRoleRepository roleRepository = mock(IRoleRepository.class);
+
+    private final List<ChannelPermission> overrides = List.of(
+            override(TargetType.ROLE, EVERYONE, 0L, PermissionBit.VIEW_CHANNEL.getValue()),
+            override(TargetType.ROLE, MODERATOR, PermissionBit.VIEW_CHANNEL.getValue(), 0L),
+            override(TargetType.ROLE, ADMIN, 0L, PermissionBit.VIEW_CHANNEL.getValue()),
+            override(TargetType.USER, ALLOWED_MEMBER, PermissionBit.VIEW_CHANNEL.getValue(), 0L));
+
+    private PermissionServiceImpl permissionService;
+
+    @BeforeEach
+    void setUp() {
+        permissionService = new PermissionServiceImpl(rolePermissionRepository, serverMemberRepository,
+                serverRepository, channelRepository, channelPermissionRepository, roleRepository,
+                mock(IUserRepository.class), mock(IPermissionRepository.class), mock(IChannelSendContextCache.class));
+
+        Server server = Server.builder().id(SERVER).owner(User.builder().id(OWNER).build()).build();
+        when(channelRepository.findById(CHANNEL)).thenReturn(Optional.of(Channel.builder().id(CHANNEL)
+                .server(server).build()));
+        when(serverRepository.findById(SERVER)).thenReturn(Optional.of(server));
+        when(roleRepository.findDefaultRoleByServerId(SERVER)).thenReturn(Optional.of(Role.builder().id(EVERYONE)
+                .build()));
+        when(channelPermissionRepository.findByChannel_Id(CHANNEL)).thenReturn(overrides);
+
+        when(serverMemberRepository.existsByServerIdAndUserId(eq(SERVER), anyLong()))
+                .thenAnswer(call -> MEMBER_ROLES.containsKey(call.<Long>getArgument(1)));
+        when(serverMemberRepository.findByServerIdAndUserId(eq(SERVER), anyLong())).thenAnswer(call -> {
+            Long userId = call.getArgument(1);
+            if (!MEMBER_ROLES.containsKey(userId)) {
+                return Optional.empty();
+            }
+            Long roleId = MEMBER_ROLES.get(userId);
+            return Optional.of(ServerMember.builder()
+                    .role(roleId != null ? Role.builder().id(roleId).build() : null)
+                    .build());
+        });
+        when(serverMemberRepository.findUserIdsAndRoleIds(eq(SERVER), any())).thenAnswer(call -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (Long userId : call.<List<Long>>getArgument(1)) {
+                if (MEMBER_ROLES.containsKey(userId)) {
+                    rows.add(new Object[] { userId, MEMBER_ROLES.get(userId) });
+                }
+            }
+            return rows;
+        });
+
+        when(rolePermissionRepository.findPermissionNamesByRoleId(anyLong()))
+                .thenAnswer(call -> ROLE_PERMISSIONS.getOrDefault(call.<Long>getArgument(0), Set.of()));
+        when(rolePermissionRepository.findPermissionNamesByUserIdAndServerId(anyLong(), eq(SERVER)))
+                .thenAnswer(call -> {
+                    Long roleId = MEMBER_ROLES.get(call.<Long>getArgument(0));
+                    return roleId != null ? ROLE_PERMISSIONS.getOrDefault(roleId, Set.of()) : Set.of();
+                });
+        when(channelPermissionRepository.findByChannelIdAndUserIdOrRoleIds(eq(CHANNEL), anyLong(), anyList()))
+                .thenAnswer(call -> {
+                    Long userId = call.getArgument(1);
+                    List<Long> roleIds = call.getArgument(2);
+                    return overrides.stream()
+                            .filter(o -> o.isUserOverride() ? o.getTargetId().equals(userId)
+                                    : roleIds.contains(o.getTargetId()))
+                            .toList();
+                });
+    }
+
+    @Test
+    void viewerFilterAgreesWithComputedChannelPermissions() {
+        List<Long> everyone = List.of(OWNER, PLAIN_MEMBER, MODERATOR_MEMBER, ADMIN_MEMBER, ALLOWED_MEMBER, STRANGER);
+
+        List<Long> viewers = permissionService.channelViewerFilter(CHANNEL).apply(everyone);
+
+        assertThat(viewers).containsExactly(OWNER, MODERATOR_MEMBER, ADMIN_MEMBER, ALLOWED_MEMBER);
+        assertThat(everyone).filteredOn(userId -> permissionService.canViewChannel(userId, CHANNEL))
+                .containsExactlyElementsOf(viewers);
+    }
+
+    @Test
+    void administratorIsNotLimitedByOverrides() {
+        assertThat(permissionService.computeChannelPermissions(ADMIN_MEMBER, CHANNEL).getFinalBitmask())
+                .isEqualTo(PermissionBit.getAllPermissions());
+    }
+
+    @Test
+    void unknownChannelHasNoViewers() {
+        assertThat(permissionService.channelViewerFilter(99L).apply(List.of(OWNER))).isEmpty();
+    }
+
+    private static ChannelPermission override(TargetType targetType, Long targetId, long allow, long deny) {
+        return ChannelPermission.builder()
+                .targetType(targetType)
+                .targetId(targetId)
+                .allowBitmask(allow)
+                .denyBitmask(deny)
+                .build();
+    }
+}